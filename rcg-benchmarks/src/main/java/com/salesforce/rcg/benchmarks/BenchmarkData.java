@@ -0,0 +1,77 @@
+package com.salesforce.rcg.benchmarks;
+
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.text.WeightedSamplingMode;
+import com.salesforce.rcg.text.impl.UnweightedWordGenerator;
+import com.salesforce.rcg.text.impl.WeightedWordGenerator;
+
+/** Builds the word generators the benchmarks run against.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public final class BenchmarkData {
+    /** Every word gets the same weight. */
+    public static final String UNIFORM = "uniform";
+
+    /** The word ranked <i>n</i> gets weight 1/<i>n</i>, which is roughly how
+     * real word lists (names, street types) fall off.
+     */
+    public static final String ZIPF = "zipf";
+
+    private BenchmarkData() {
+        // Only static methods
+    }
+
+    /** Get the word with a given index; short, distinct, and the same on
+     * every run.
+     */
+    public static String word(int index) {
+        return("w" + Integer.toString(index, 36));
+    }
+
+    /** Get the weight of a word under a named distribution.
+     *
+     * @param distribution {@link #UNIFORM} or {@link #ZIPF}
+     * @param index The word's index, from 0
+     */
+    public static double weight(String distribution, int index) {
+        if (UNIFORM.equals(distribution)) {
+            return(1.0);
+        } else if (ZIPF.equals(distribution)) {
+            return(1.0 / (index + 1));
+        }
+        throw new IllegalArgumentException("Unrecognized weight distribution: " + distribution);
+    }
+
+    /** Build a compiled weighted word generator.
+     *
+     * @param numWords The number of words
+     * @param distribution {@link #UNIFORM} or {@link #ZIPF}
+     * @param mode How the generator samples
+     * @param rng The generator's random source
+     */
+    public static WeightedWordGenerator weighted(int numWords, String distribution, WeightedSamplingMode mode,
+            RandomSource rng) {
+        WeightedWordGenerator result = new WeightedWordGenerator("benchmark", rng);
+        result.setSamplingMode(mode);
+        for (int i = 0; i < numWords; ++i) {
+            result.addWord(word(i), weight(distribution, i));
+        }
+        result.compile();
+        return(result);
+    }
+
+    /** Build an unweighted word generator.
+     *
+     * @param numWords The number of words
+     * @param rng The generator's random source
+     */
+    public static UnweightedWordGenerator unweighted(int numWords, RandomSource rng) {
+        UnweightedWordGenerator result = new UnweightedWordGenerator("benchmark", rng);
+        for (int i = 0; i < numWords; ++i) {
+            result.addWord(word(i));
+        }
+        return(result);
+    }
+}
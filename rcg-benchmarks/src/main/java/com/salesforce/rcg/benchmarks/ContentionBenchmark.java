@@ -0,0 +1,197 @@
+package com.salesforce.rcg.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.salesforce.rcg.numbers.dice.impl.SimpleDie;
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.random.RandomSourceType;
+import com.salesforce.rcg.text.WeightedSamplingMode;
+import com.salesforce.rcg.text.impl.WeightedWordGenerator;
+
+/** Throughput of one word generator and one die shared by 1, 4, 16 and 64
+ * threads.
+ *
+ * The <tt>shared</tt> benchmarks draw from the generator's own random
+ * source, so with <tt>java-util-random</tt> every thread contends on one
+ * seed; <tt>thread-local</tt> shows the same generator without that. The
+ * <tt>perThread</tt> benchmarks pass each thread its own source, which is
+ * the way to scale without contention. The <tt>metered</tt> benchmarks are
+ * the <tt>thread-local</tt> generator with its metrics on, so every thread
+ * adds to the same counters.
+ *
+ * @author mpreslermarshall
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentionBenchmark {
+    @State(Scope.Benchmark)
+    public static class Shared {
+        @Param({"java-util-random", "thread-local"})
+        public String randomSource;
+
+        WeightedWordGenerator generator;
+        SimpleDie die;
+
+        @Setup
+        public void setup() {
+            RandomSourceType type = RandomSourceType.from(randomSource);
+            generator = BenchmarkData.weighted(10_000, BenchmarkData.ZIPF, WeightedSamplingMode.ALIAS, type.create());
+            die = new SimpleDie(6, type.create());
+            die.setNumDice(3);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Metered {
+        WeightedWordGenerator generator;
+
+        @Setup
+        public void setup() {
+            generator = BenchmarkData.weighted(10_000, BenchmarkData.ZIPF, WeightedSamplingMode.ALIAS,
+                    RandomSourceType.THREAD_LOCAL.create());
+            generator.setMetricsEnabled(true);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PerThread {
+        RandomSource rng = RandomSourceType.XOSHIRO256.create();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String sharedWord1(Shared shared) {
+        return(shared.generator.generateWord());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String sharedWord4(Shared shared) {
+        return(shared.generator.generateWord());
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String sharedWord16(Shared shared) {
+        return(shared.generator.generateWord());
+    }
+
+    @Benchmark
+    @Threads(64)
+    public String sharedWord64(Shared shared) {
+        return(shared.generator.generateWord());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String perThreadWord1(Shared shared, PerThread local) {
+        return(shared.generator.generateWord(local.rng));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String perThreadWord4(Shared shared, PerThread local) {
+        return(shared.generator.generateWord(local.rng));
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String perThreadWord16(Shared shared, PerThread local) {
+        return(shared.generator.generateWord(local.rng));
+    }
+
+    @Benchmark
+    @Threads(64)
+    public String perThreadWord64(Shared shared, PerThread local) {
+        return(shared.generator.generateWord(local.rng));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String meteredWord1(Metered metered) {
+        return(metered.generator.generateWord());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String meteredWord4(Metered metered) {
+        return(metered.generator.generateWord());
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String meteredWord16(Metered metered) {
+        return(metered.generator.generateWord());
+    }
+
+    @Benchmark
+    @Threads(64)
+    public String meteredWord64(Metered metered) {
+        return(metered.generator.generateWord());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int sharedRoll1(Shared shared) {
+        return(shared.die.roll());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int sharedRoll4(Shared shared) {
+        return(shared.die.roll());
+    }
+
+    @Benchmark
+    @Threads(16)
+    public int sharedRoll16(Shared shared) {
+        return(shared.die.roll());
+    }
+
+    @Benchmark
+    @Threads(64)
+    public int sharedRoll64(Shared shared) {
+        return(shared.die.roll());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int perThreadRoll1(Shared shared, PerThread local) {
+        return(shared.die.roll(local.rng));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int perThreadRoll4(Shared shared, PerThread local) {
+        return(shared.die.roll(local.rng));
+    }
+
+    @Benchmark
+    @Threads(16)
+    public int perThreadRoll16(Shared shared, PerThread local) {
+        return(shared.die.roll(local.rng));
+    }
+
+    @Benchmark
+    @Threads(64)
+    public int perThreadRoll64(Shared shared, PerThread local) {
+        return(shared.die.roll(local.rng));
+    }
+}
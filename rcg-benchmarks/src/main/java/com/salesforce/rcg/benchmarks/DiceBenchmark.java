@@ -0,0 +1,188 @@
+package com.salesforce.rcg.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.salesforce.rcg.numbers.dice.DiceExpression;
+import com.salesforce.rcg.numbers.dice.DiceFactory;
+import com.salesforce.rcg.numbers.dice.DiceHistogram;
+import com.salesforce.rcg.numbers.dice.DiceParserType;
+import com.salesforce.rcg.numbers.dice.DiceSimulator;
+import com.salesforce.rcg.numbers.dice.impl.CompositeDie;
+import com.salesforce.rcg.numbers.dice.impl.FlattenedDie;
+import com.salesforce.rcg.numbers.dice.impl.SimpleDie;
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.random.RandomSourceType;
+
+/** Cost of rolling dice (including kept dice), of rolling them in bulk with
+ * a {@link DiceSimulator}, and of parsing dice expressions.
+ *
+ * The parse benchmarks turn the factory's cache off, so every call parses;
+ * <tt>createCached</tt> shows what a cache hit costs instead.
+ * <tt>coldCreate</tt> is the first expression parsed in a new JVM, including
+ * loading the parser's classes.
+ *
+ * @author mpreslermarshall
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiceBenchmark {
+    /** The number of rolls in each simulation. */
+    public static final int SIMULATED_ROLLS = 1_000_000;
+
+    /** The expression the cold start benchmark parses. */
+    public static final String COLD_EXPRESSION = "chance: 25%, 3d6 + 2 & 1-10*4";
+
+    @State(Scope.Benchmark)
+    public static class Dice {
+        /** The number of d6 in the simple die: small enough to roll each
+         * die, and large enough to sample the sum instead.
+         */
+        @Param({"1", "3", "100"})
+        public int numDice;
+
+        SimpleDie simple;
+        CompositeDie composite;
+        FlattenedDie flattened;
+
+        @Setup
+        public void setup() {
+            RandomSource rng = RandomSourceType.XOSHIRO256.create(42L);
+            simple = die(numDice, 6, 0, rng);
+            composite = new CompositeDie(die(numDice, 6, 0, rng), die(1, 8, 0, rng), die(2, 4, 3, rng));
+            flattened = composite.freeze(rng);
+        }
+
+        private static SimpleDie die(int numDice, int sides, int adder, RandomSource rng) {
+            SimpleDie result = new SimpleDie(sides, rng);
+            result.setNumDice(numDice);
+            result.setAdder(adder);
+            return(result);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Kept {
+        /** Keep the highest few: the classic ability score roll, and a
+         * larger pool. The exploding ones have no table, and are rolled die
+         * by die.
+         */
+        @Param({"4d6k3", "10d10k5", "4d6! k3", "10d10! k5"})
+        public String expression;
+
+        DiceExpression dice;
+
+        @Setup
+        public void setup() {
+            dice = new DiceFactory(RandomSourceType.XOSHIRO256).create(expression);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Simulation {
+        /** Expressions the simulator has to roll one at a time, rather than
+         * sample.
+         */
+        @Param({"3d6", "4d6k3", "3d6!"})
+        public String expression;
+
+        DiceExpression dice;
+        DiceSimulator simulator;
+
+        @Setup
+        public void setup() {
+            dice = new DiceFactory().create(expression);
+            simulator = new DiceSimulator(2024L).setSampling(false);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ColdStart {
+        @Param({"antlr", "recursive-descent"})
+        public String parser;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Parsing {
+        @Param({"1d20", "3d6 + 2", "1d4 & 1d6 and 1d8", "4d6 & 2d8 & 1d4 & 10"})
+        public String expression;
+
+        @Param({"antlr", "recursive-descent"})
+        public String parser;
+
+        DiceFactory uncached;
+        DiceFactory cached;
+
+        @Setup
+        public void setup() {
+            DiceParserType parserType = DiceParserType.from(parser);
+            uncached = new DiceFactory().setParserType(parserType).setCacheSize(0);
+            cached = new DiceFactory().setParserType(parserType);
+            cached.create(expression);
+        }
+    }
+
+    @Benchmark
+    public int simpleRoll(Dice state) {
+        return(state.simple.roll());
+    }
+
+    @Benchmark
+    public int compositeRoll(Dice state) {
+        return(state.composite.roll());
+    }
+
+    @Benchmark
+    public int flattenedRoll(Dice state) {
+        return(state.flattened.roll());
+    }
+
+    @Benchmark
+    public int keptRoll(Kept state) {
+        return(state.dice.roll());
+    }
+
+    /** The cost per roll of a simulation, on the common pool. */
+    @Benchmark
+    @OperationsPerInvocation(SIMULATED_ROLLS)
+    public DiceHistogram simulate(Simulation state) {
+        return(state.simulator.simulate(state.dice, SIMULATED_ROLLS));
+    }
+
+    @Benchmark
+    public DiceExpression create(Parsing state) {
+        return(state.uncached.create(state.expression));
+    }
+
+    @Benchmark
+    public DiceExpression createCached(Parsing state) {
+        return(state.cached.create(state.expression));
+    }
+
+    /** One parse per fork, in a JVM that hasn't loaded the parser yet. */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(10)
+    public DiceExpression coldCreate(ColdStart state) {
+        return(new DiceFactory().setParserType(DiceParserType.from(state.parser)).create(COLD_EXPRESSION));
+    }
+}
@@ -0,0 +1,69 @@
+package com.salesforce.rcg.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.salesforce.rcg.numbers.dice.impl.SimpleDie;
+import com.salesforce.rcg.random.RandomSourceType;
+import com.salesforce.rcg.text.WeightedSamplingMode;
+import com.salesforce.rcg.text.impl.UnweightedWordGenerator;
+import com.salesforce.rcg.text.impl.WeightedWordGenerator;
+
+/** Single-threaded cost of a word or a roll with each kind of random
+ * source, to show how much of it is drawing the random numbers.
+ *
+ * @author mpreslermarshall
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RandomSourceBenchmark {
+    @State(Scope.Benchmark)
+    public static class Sources {
+        @Param({"xoshiro256**", "splitmix64", "pcg32", "java-util-random", "thread-local", "splittable"})
+        public String randomSource;
+
+        WeightedWordGenerator weighted;
+        UnweightedWordGenerator unweighted;
+        SimpleDie die;
+
+        @Setup
+        public void setup() {
+            RandomSourceType type = RandomSourceType.from(randomSource);
+            weighted = BenchmarkData.weighted(20_000, BenchmarkData.ZIPF, WeightedSamplingMode.ALIAS, type.create());
+            unweighted = BenchmarkData.unweighted(20_000, type.create());
+            die = new SimpleDie(6, type.create());
+            die.setNumDice(3);
+            die.setAdder(2);
+        }
+    }
+
+    @Benchmark
+    public String weightedWord(Sources state) {
+        return(state.weighted.generateWord());
+    }
+
+    @Benchmark
+    public String unweightedWord(Sources state) {
+        return(state.unweighted.generateWord());
+    }
+
+    @Benchmark
+    public int roll(Sources state) {
+        return(state.die.roll());
+    }
+}
@@ -0,0 +1,39 @@
+package com.salesforce.rcg.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** The main class of <tt>benchmarks.jar</tt>. It takes the usual JMH
+ * command line, and adds the GC profiler, so every run reports the bytes
+ * allocated per operation alongside its timings. For example:
+ *
+ * <pre>
+ *   java -jar rcg-benchmarks/target/benchmarks.jar WordGeneration -p words=1000
+ * </pre>
+ *
+ * @author mpreslermarshall
+ *
+ */
+public class RcgBenchmarks {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getProfilers().stream().noneMatch(p -> p.getKlass().equals(GCProfiler.class.getName()))) {
+            options.addProfiler(GCProfiler.class);
+        }
+        Runner runner = new Runner(options.build());
+        if (commandLine.shouldList()) {
+            runner.list();
+        } else {
+            runner.run();
+        }
+    }
+}
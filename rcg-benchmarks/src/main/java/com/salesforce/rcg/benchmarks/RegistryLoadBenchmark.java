@@ -0,0 +1,79 @@
+package com.salesforce.rcg.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.salesforce.rcg.text.WordGeneratorRegistry;
+
+/** Cost of loading word generators: the sample registry from its JSON
+ * resource, and weighted word lists from CSV files of various sizes. Each
+ * call loads into a new registry and generates one word, so weighted lists
+ * are compiled as part of the load.
+ *
+ * The census registry isn't covered, since it reads data files that aren't
+ * shipped with the library.
+ *
+ * @author mpreslermarshall
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RegistryLoadBenchmark {
+    public static final String SAMPLE_REGISTRY = "data/registries/Registry-Sample.json";
+
+    @State(Scope.Benchmark)
+    public static class WordFile {
+        @Param({"1000", "100000"})
+        public int words;
+
+        File file;
+
+        @Setup
+        public void setup() throws IOException {
+            file = File.createTempFile("rcg-benchmark", ".csv");
+            try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+                for (int i = 0; i < words; ++i) {
+                    // Zipf-like counts, as in the census lists
+                    writer.println(BenchmarkData.word(i) + "," + (1 + 1_000_000 / (i + 1)));
+                }
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            file.delete();
+        }
+    }
+
+    @Benchmark
+    public String sampleRegistry() throws Exception {
+        WordGeneratorRegistry registry = new WordGeneratorRegistry();
+        registry.loadResource(SAMPLE_REGISTRY);
+        return(registry.getGeneratorByName("roadnames").generateWord());
+    }
+
+    @Benchmark
+    public String weightedFile(WordFile state) throws IOException {
+        WordGeneratorRegistry registry = new WordGeneratorRegistry();
+        registry.loadWeightedWordGeneratorFromFile("words", state.file.getPath(), null, true, null);
+        return(registry.getGeneratorByName("words").generateWord());
+    }
+}
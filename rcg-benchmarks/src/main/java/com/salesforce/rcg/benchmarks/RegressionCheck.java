@@ -0,0 +1,314 @@
+package com.salesforce.rcg.benchmarks;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/** Compares a JMH run's JSON results against a checked-in baseline, prints
+ * the differences as a table, and fails if anything got slower by more than
+ * a tolerance. This is what the <tt>regression</tt> build profile runs after
+ * the benchmarks; see <tt>rcg/docs/index.md</tt>.
+ *
+ * A benchmark only counts as slower or faster if it changed by more than
+ * the tolerance, and by more than the two runs' errors together, so noisy
+ * benchmarks don't fail the build on noise alone. The errors only excuse so
+ * much, though: at most {@link #MAX_NOISE} of the baseline score, so a
+ * benchmark too noisy to measure can't hide a real slowdown.
+ *
+ * A result is identified by its benchmark and parameters. Results only in
+ * the run are listed as new; results only in the baseline fail the check,
+ * since a benchmark that stopped running can't show a regression. The
+ * baseline is a small JSON file of its own, rather than JMH's output, so
+ * that updating it makes a readable diff; <tt>--update</tt> writes one from
+ * a run.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public class RegressionCheck {
+    public static final double DEFAULT_TOLERANCE = 0.15;
+
+    /** The most the runs' errors can excuse, as a fraction of the baseline
+     * score.
+     */
+    public static final double MAX_NOISE = 0.25;
+
+    /** The status of one benchmark in a comparison. */
+    public enum Status {
+        OK("ok"),
+        FASTER("faster"),
+        SLOWER("SLOWER"),
+        NEW("new"),
+        MISSING("missing");
+
+        private final String name;
+
+        private Status(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return(name);
+        }
+    }
+
+    /** One benchmark's score: the mean, its error (half the width of JMH's
+     * 99.9% confidence interval), the units, and the JMH mode that says
+     * whether bigger is better.
+     */
+    public static final class Score {
+        public final String mode;
+        public final double score;
+        public final double error;
+        public final String unit;
+
+        public Score(String mode, double score, String unit) {
+            this(mode, score, 0.0, unit);
+        }
+
+        public Score(String mode, double score, double error, String unit) {
+            this.mode = mode;
+            this.score = score;
+            // JMH reports NaN when there were too few iterations to tell
+            this.error = Double.isNaN(error) ? 0.0 : error;
+            this.unit = unit;
+        }
+
+        /** Throughput is the only mode where a larger score is better. */
+        public boolean isHigherBetter() {
+            return("thrpt".equals(mode));
+        }
+    }
+
+    /** One row of the comparison table. */
+    public static final class Row {
+        public final String key;
+        public final Score baseline;
+        public final Score current;
+        public final Status status;
+
+        Row(String key, Score baseline, Score current, Status status) {
+            this.key = key;
+            this.baseline = baseline;
+            this.current = current;
+            this.status = status;
+        }
+
+        /** Get how much worse the current score is than the baseline, as a
+         * fraction: positive is a slowdown, negative a speedup, whatever the
+         * mode.
+         */
+        public double getSlowdown() {
+            double change = (current.score - baseline.score) / baseline.score;
+            return(current.isHigherBetter() ? -change : change);
+        }
+    }
+
+    private final double tolerance;
+    private final Map<String, Row> rows = new TreeMap<>();
+
+    /** Compare two sets of scores.
+     *
+     * @param baseline The expected scores, by key
+     * @param current The scores from this run, by key
+     * @param tolerance How much slower a benchmark may get, as a fraction
+     *   of its baseline score, before it fails the check.
+     */
+    public RegressionCheck(Map<String, Score> baseline, Map<String, Score> current, double tolerance) {
+        if (!(tolerance >= 0.0)) {
+            throw new IllegalArgumentException("The tolerance must be non-negative, not " + tolerance);
+        }
+        this.tolerance = tolerance;
+        TreeSet<String> keys = new TreeSet<>(baseline.keySet());
+        keys.addAll(current.keySet());
+        for (String key: keys) {
+            Score before = baseline.get(key);
+            Score after = current.get(key);
+            Status status;
+            if (null == before) {
+                status = Status.NEW;
+            } else if (null == after) {
+                status = Status.MISSING;
+            } else {
+                if (!before.mode.equals(after.mode) || !before.unit.equals(after.unit)) {
+                    throw new IllegalArgumentException("Benchmark " + key + " was measured in " + before.mode + " "
+                            + before.unit + " in the baseline, but " + after.mode + " " + after.unit + " now");
+                }
+                double slowdown = new Row(key, before, after, null).getSlowdown();
+                double noise = Math.min(before.error + after.error, MAX_NOISE * before.score);
+                boolean significant = Math.abs(after.score - before.score) > noise;
+                if (!significant) {
+                    status = Status.OK;
+                } else if (slowdown > tolerance) {
+                    status = Status.SLOWER;
+                } else if (slowdown < -tolerance) {
+                    status = Status.FASTER;
+                } else {
+                    status = Status.OK;
+                }
+            }
+            rows.put(key, new Row(key, before, after, status));
+        }
+    }
+
+    public double getTolerance() {
+        return(tolerance);
+    }
+
+    public Map<String, Row> getRows() {
+        return(rows);
+    }
+
+    /** Check whether any benchmark got slower than the tolerance allows, or
+     * is missing from the run.
+     */
+    public boolean hasRegressions() {
+        return(rows.values().stream().anyMatch(row -> (row.status == Status.SLOWER)
+                || (row.status == Status.MISSING)));
+    }
+
+    /** Print the comparison as a table. */
+    public void print(PrintStream out) {
+        int width = "Benchmark".length();
+        for (String key: rows.keySet()) {
+            width = Math.max(width, key.length());
+        }
+        String format = "%-" + width + "s  %14s  %14s  %-10s  %8s  %s%n";
+        out.printf(Locale.ROOT, format, "Benchmark", "Baseline", "Current", "Units", "Change", "Status");
+        for (Row row: rows.values()) {
+            Score any = (row.current != null) ? row.current : row.baseline;
+            out.printf(Locale.ROOT, format, row.key,
+                    (row.baseline != null) ? String.format(Locale.ROOT, "%.3f", row.baseline.score) : "-",
+                    (row.current != null) ? String.format(Locale.ROOT, "%.3f", row.current.score) : "-",
+                    any.unit,
+                    (row.baseline != null && row.current != null)
+                            ? String.format(Locale.ROOT, "%+.1f%%", 100.0 * row.getSlowdown()) : "-",
+                    row.status.getName());
+        }
+        out.printf(Locale.ROOT, "Change is the slowdown against the baseline; the tolerance is %.1f%%.%n",
+                100.0 * tolerance);
+    }
+
+    //
+    // Reading and writing scores
+    //
+
+    /** Get the key for one JMH result: the benchmark's class and method,
+     * then its parameters in order, such as
+     * <tt>DiceBenchmark.simpleRoll numDice=3</tt>.
+     */
+    static String keyOf(JSONObject result) {
+        String benchmark = result.getString("benchmark");
+        StringBuilder key = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.',
+                benchmark.lastIndexOf('.') - 1) + 1));
+        JSONObject params = result.optJSONObject("params");
+        if (params != null) {
+            for (String name: new TreeSet<>(params.keySet())) {
+                key.append(' ').append(name).append('=').append(params.getString(name));
+            }
+        }
+        return(key.toString());
+    }
+
+    /** Read the scores from JMH's JSON results (<tt>-rf json</tt>). */
+    public static Map<String, Score> parseJmhResults(String json) {
+        Map<String, Score> result = new TreeMap<>();
+        JSONArray results = new JSONArray(json);
+        for (int i = 0; i < results.length(); ++i) {
+            JSONObject entry = results.getJSONObject(i);
+            JSONObject metric = entry.getJSONObject("primaryMetric");
+            result.put(keyOf(entry), new Score(entry.getString("mode"), metric.getDouble("score"),
+                    metric.optDouble("scoreError", 0.0), metric.getString("scoreUnit")));
+        }
+        return(result);
+    }
+
+    /** Read the scores from a baseline file's contents. */
+    public static Map<String, Score> parseBaseline(String json) {
+        Map<String, Score> result = new TreeMap<>();
+        JSONObject scores = new JSONObject(json).getJSONObject("scores");
+        for (String key: scores.keySet()) {
+            JSONObject score = scores.getJSONObject(key);
+            result.put(key, new Score(score.getString("mode"), score.getDouble("score"),
+                    score.optDouble("error", 0.0), score.getString("unit")));
+        }
+        return(result);
+    }
+
+    /** Format scores as a baseline file, one benchmark per line, in order. */
+    public static String formatBaseline(Map<String, Score> scores) {
+        StringBuilder result = new StringBuilder("{\n    \"scores\": {");
+        String separator = "\n";
+        for (Map.Entry<String, Score> entry: new TreeMap<>(scores).entrySet()) {
+            Score score = entry.getValue();
+            result.append(separator).append("        ").append(JSONObject.quote(entry.getKey()))
+                    .append(": {\"mode\": ").append(JSONObject.quote(score.mode))
+                    .append(", \"score\": ").append(String.format(Locale.ROOT, "%.3f", score.score))
+                    .append(", \"error\": ").append(String.format(Locale.ROOT, "%.3f", score.error))
+                    .append(", \"unit\": ").append(JSONObject.quote(score.unit)).append('}');
+            separator = ",\n";
+        }
+        result.append("\n    }\n}\n");
+        return(result.toString());
+    }
+
+    private static String read(Path path) throws IOException {
+        return(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+    }
+
+    /** Run the check from the command line:
+     *
+     * <pre>
+     *   RegressionCheck &lt;baseline&gt; &lt;jmh-results&gt; [tolerance] [--update]
+     * </pre>
+     *
+     * Exits with status 1 if anything regressed or is missing. With
+     * <tt>--update</tt> (or <tt>--update=true</tt>), it writes the results to
+     * the baseline file instead of failing.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: RegressionCheck <baseline> <jmh-results> [tolerance] [--update]");
+            System.exit(2);
+        }
+        Path baselinePath = Paths.get(args[0]);
+        Map<String, Score> current = parseJmhResults(read(Paths.get(args[1])));
+        double tolerance = DEFAULT_TOLERANCE;
+        boolean update = false;
+        for (int i = 2; i < args.length; ++i) {
+            if (args[i].startsWith("--update")) {
+                // The build passes --update=true or --update=false
+                update = !args[i].endsWith("=false");
+            } else {
+                tolerance = Double.parseDouble(args[i]);
+            }
+        }
+
+        Map<String, Score> baseline = Files.exists(baselinePath) ? parseBaseline(read(baselinePath))
+                : new TreeMap<>();
+        RegressionCheck check = new RegressionCheck(baseline, current, tolerance);
+        check.print(System.out);
+
+        if (update) {
+            if (baselinePath.getParent() != null) {
+                Files.createDirectories(baselinePath.getParent());
+            }
+            Files.write(baselinePath, formatBaseline(current).getBytes(StandardCharsets.UTF_8));
+            System.out.println("Wrote a new baseline to " + baselinePath);
+        } else if (check.hasRegressions()) {
+            System.out.println("Benchmarks regressed by more than the tolerance, or are missing; if that's "
+                    + "expected, rerun with -Dregression.update=true to update the baseline.");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.salesforce.rcg.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.salesforce.rcg.random.RandomSourceType;
+import com.salesforce.rcg.text.WeightedSamplingMode;
+import com.salesforce.rcg.text.impl.UnweightedWordGenerator;
+import com.salesforce.rcg.text.impl.WeightedWordGenerator;
+
+/** Single-threaded cost of <tt>generateWord()</tt>, from 10 words to 10
+ * million, for uniform and Zipf weights and each sampling mode, and the cost
+ * per word of generating them {@value #BATCH_SIZE} at a time. The
+ * generators use a seeded xoshiro256** source, so this measures the
+ * generators rather than contention on a shared <tt>java.util.Random</tt>;
+ * {@link ContentionBenchmark} covers that.
+ *
+ * @author mpreslermarshall
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class WordGenerationBenchmark {
+    public static final int BATCH_SIZE = 10_000;
+
+    @State(Scope.Benchmark)
+    public static class Weighted {
+        @Param({"10", "1000", "100000", "10000000"})
+        public int words;
+
+        @Param({BenchmarkData.UNIFORM, BenchmarkData.ZIPF})
+        public String weights;
+
+        @Param({"alias", "binary-search"})
+        public String samplingMode;
+
+        WeightedWordGenerator generator;
+
+        @Setup
+        public void setup() {
+            generator = BenchmarkData.weighted(words, weights, WeightedSamplingMode.from(samplingMode),
+                    RandomSourceType.XOSHIRO256.create(42L));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Unweighted {
+        @Param({"10", "1000", "100000", "10000000"})
+        public int words;
+
+        UnweightedWordGenerator generator;
+
+        @Setup
+        public void setup() {
+            generator = BenchmarkData.unweighted(words, RandomSourceType.XOSHIRO256.create(42L));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Batch {
+        String[] words = new String[BATCH_SIZE];
+    }
+
+    @Benchmark
+    public String weighted(Weighted state) {
+        return(state.generator.generateWord());
+    }
+
+    @Benchmark
+    public String unweighted(Unweighted state) {
+        return(state.generator.generateWord());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public String[] weightedBatch(Weighted state, Batch batch) {
+        state.generator.generateWords(batch.words, 0, BATCH_SIZE);
+        return(batch.words);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public String[] unweightedBatch(Unweighted state, Batch batch) {
+        state.generator.generateWords(batch.words, 0, BATCH_SIZE);
+        return(batch.words);
+    }
+}
@@ -0,0 +1,143 @@
+package com.salesforce.rcg.benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import com.salesforce.rcg.benchmarks.RegressionCheck.Score;
+import com.salesforce.rcg.benchmarks.RegressionCheck.Status;
+
+public class RegressionCheckTest {
+    static final String JMH_RESULTS = "["
+            + "{\"benchmark\": \"com.salesforce.rcg.benchmarks.DiceBenchmark.simpleRoll\", \"mode\": \"avgt\","
+            + " \"params\": {\"numDice\": \"3\"},"
+            + " \"primaryMetric\": {\"score\": 12.5, \"scoreError\": 0.5, \"scoreUnit\": \"ns/op\"},"
+            + " \"secondaryMetrics\": {}},"
+            + "{\"benchmark\": \"com.salesforce.rcg.benchmarks.ContentionBenchmark.sharedRoll4\", \"mode\": \"thrpt\","
+            + " \"params\": {\"randomSource\": \"thread-local\"},"
+            + " \"primaryMetric\": {\"score\": 40.0, \"scoreError\": 1.0, \"scoreUnit\": \"ops/us\"},"
+            + " \"secondaryMetrics\": {}},"
+            + "{\"benchmark\": \"com.salesforce.rcg.benchmarks.RegistryLoadBenchmark.sampleRegistry\","
+            + " \"mode\": \"avgt\","
+            + " \"primaryMetric\": {\"score\": 2800.0, \"scoreError\": 10.0, \"scoreUnit\": \"us/op\"},"
+            + " \"secondaryMetrics\": {}}"
+            + "]";
+
+    @Test
+    public void parseJmhResultsTest() {
+        Map<String, Score> scores = RegressionCheck.parseJmhResults(JMH_RESULTS);
+        assertEquals(3, scores.size());
+        Score roll = scores.get("DiceBenchmark.simpleRoll numDice=3");
+        assertEquals("avgt", roll.mode);
+        assertEquals(12.5, roll.score, 0.0);
+        assertEquals(0.5, roll.error, 0.0);
+        assertEquals("ns/op", roll.unit);
+        assertTrue(scores.get("ContentionBenchmark.sharedRoll4 randomSource=thread-local").isHigherBetter());
+        assertEquals(2800.0, scores.get("RegistryLoadBenchmark.sampleRegistry").score, 0.0);
+    }
+
+    /** A baseline written from some scores reads back as the same scores. */
+    @Test
+    public void baselineRoundTripTest() {
+        Map<String, Score> scores = RegressionCheck.parseJmhResults(JMH_RESULTS);
+        String baseline = RegressionCheck.formatBaseline(scores);
+        Map<String, Score> read = RegressionCheck.parseBaseline(baseline);
+        assertEquals(scores.keySet(), read.keySet());
+        for (String key: scores.keySet()) {
+            assertEquals(scores.get(key).mode, read.get(key).mode);
+            assertEquals(scores.get(key).score, read.get(key).score, 0.0005);
+            assertEquals(scores.get(key).error, read.get(key).error, 0.0005);
+            assertEquals(scores.get(key).unit, read.get(key).unit);
+        }
+        // One line per benchmark, in order, so changes diff well
+        assertEquals(3 + 4, baseline.split("\n").length);
+        assertTrue(baseline.indexOf("ContentionBenchmark") < baseline.indexOf("DiceBenchmark"));
+    }
+
+    @Test
+    public void compareTest() {
+        Map<String, Score> baseline = new TreeMap<>();
+        baseline.put("same", new Score("avgt", 100.0, "ns/op"));
+        baseline.put("slower", new Score("avgt", 100.0, "ns/op"));
+        baseline.put("faster", new Score("avgt", 100.0, "ns/op"));
+        baseline.put("fewerOps", new Score("thrpt", 100.0, "ops/us"));
+        baseline.put("moreOps", new Score("thrpt", 100.0, "ops/us"));
+        baseline.put("gone", new Score("avgt", 100.0, "ns/op"));
+        Map<String, Score> current = new TreeMap<>();
+        current.put("same", new Score("avgt", 109.0, "ns/op"));
+        current.put("slower", new Score("avgt", 111.0, "ns/op"));
+        current.put("faster", new Score("avgt", 80.0, "ns/op"));
+        current.put("fewerOps", new Score("thrpt", 85.0, "ops/us"));
+        current.put("moreOps", new Score("thrpt", 120.0, "ops/us"));
+        current.put("added", new Score("avgt", 100.0, "ns/op"));
+
+        RegressionCheck check = new RegressionCheck(baseline, current, 0.10);
+        Map<String, RegressionCheck.Row> rows = check.getRows();
+        assertEquals(Status.OK, rows.get("same").status);
+        assertEquals(Status.SLOWER, rows.get("slower").status);
+        assertEquals(Status.FASTER, rows.get("faster").status);
+        assertEquals(Status.SLOWER, rows.get("fewerOps").status);
+        assertEquals(0.15, rows.get("fewerOps").getSlowdown(), 1e-9);
+        assertEquals(Status.FASTER, rows.get("moreOps").status);
+        assertEquals(Status.MISSING, rows.get("gone").status);
+        assertEquals(Status.NEW, rows.get("added").status);
+        assertTrue(check.hasRegressions());
+
+        // A looser tolerance lets the slowdowns through, but not the
+        // missing benchmark
+        assertTrue(new RegressionCheck(baseline, current, 0.20).hasRegressions());
+        baseline.remove("gone");
+        assertFalse(new RegressionCheck(baseline, current, 0.20).hasRegressions());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        check.print(new PrintStream(out, true));
+        String table = out.toString();
+        assertTrue(table.contains("+11.0%"));
+        assertTrue(table.contains("SLOWER"));
+        assertTrue(table.contains("tolerance is 10.0%"));
+    }
+
+    /** A change within the runs' errors isn't significant, but the errors
+     * can only excuse so much of the score.
+     */
+    @Test
+    public void noiseTest() {
+        Map<String, Score> baseline = new TreeMap<>();
+        baseline.put("noisy", new Score("avgt", 100.0, 10.0, "ns/op"));
+        baseline.put("steady", new Score("avgt", 100.0, 2.0, "ns/op"));
+        baseline.put("wild", new Score("avgt", 100.0, 60.0, "ns/op"));
+        Map<String, Score> current = new TreeMap<>();
+        current.put("noisy", new Score("avgt", 120.0, 15.0, "ns/op"));
+        current.put("steady", new Score("avgt", 120.0, 2.0, "ns/op"));
+        current.put("wild", new Score("avgt", 130.0, 60.0, "ns/op"));
+        current.put("unknown", new Score("avgt", 100.0, Double.NaN, "ns/op"));
+
+        RegressionCheck check = new RegressionCheck(baseline, current, 0.10);
+        assertEquals(Status.OK, check.getRows().get("noisy").status);
+        assertEquals(Status.SLOWER, check.getRows().get("steady").status);
+        // Errors of 120% of the score only excuse 25% of it
+        assertEquals(Status.SLOWER, check.getRows().get("wild").status);
+        assertEquals(0.0, current.get("unknown").error, 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unitMismatchTest() {
+        Map<String, Score> baseline = new TreeMap<>();
+        baseline.put("roll", new Score("avgt", 100.0, "ns/op"));
+        Map<String, Score> current = new TreeMap<>();
+        current.put("roll", new Score("avgt", 0.1, "us/op"));
+        new RegressionCheck(baseline, current, 0.10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeToleranceTest() {
+        new RegressionCheck(new TreeMap<>(), new TreeMap<>(), -0.1);
+    }
+}
@@ -56,12 +56,26 @@ frpExpression
     //     y = number of sides on each die
     //     z = constant to add or subtract. This part is also optional. If not
     //         present, it's assumed to be 0.
-    : INTEGER? die INTEGER add_or_subtract?
+    // The dice can also explode ("3d6!"), and only some of them may count
+    // towards the total ("4d6 keep 3"); see below.
+    : INTEGER? die INTEGER EXPLODE? selection? add_or_subtract?
+    ;
+
+// Which dice count towards the total. "4d6 keep 3", "4d6 k3", "4d6 keep highest 3" and
+// "4d6 drop lowest" all roll four dice and add up the highest three. "keep lowest 3" (or
+// "kl3") and "drop highest" go the other way. Dropping drops one die unless told otherwise.
+selection
+    : KEEP HIGHEST? INTEGER
+    | KEEP LOWEST INTEGER
+    | KEEP_HIGHEST INTEGER
+    | KEEP_LOWEST INTEGER
+    | DROP (LOWEST | HIGHEST) INTEGER?
     ;
     
-// A random die is represented by the Die interface. At some point I need a way to say whether you want standard dice
-// (the SimpleDie implementation) or various loaded dice.
-die : SIMPLE_DIE ;
+// A random die is represented by the Die interface. 'd' is a standard die, 'dh' one loaded
+// to roll high, and 'dl' one loaded to roll low: "3dh6" is three six-sided dice that favor
+// sixes. All of them are the SimpleDie implementation.
+die : SIMPLE_DIE | LOADED_HIGH_DIE | LOADED_LOW_DIE ;
 
 //
 // Utility constructs
@@ -105,6 +119,13 @@ AND
     | '&'
     ;
     
+KEEP : [kK] ([eE] [eE] [pP])? ;
+KEEP_HIGHEST : [kK] [hH] ;
+KEEP_LOWEST : [kK] [lL] ;
+DROP : [dD] [rR] [oO] [pP] ;
+HIGHEST : [hH] [iI] [gG] [hH] [eE] [sS] [tT] ;
+LOWEST : [lL] [oO] [wW] [eE] [sS] [tT] ;
+    
 //
 // Lexical analysis
 PLUS : '+' ;
@@ -114,6 +135,8 @@ COLON : ':' ;
 PERCENT : '%' ;
 PERIOD : '.' ;
 COMMA : ',' ;
+// An exploding die: one that rolls its highest face is rolled again, and that added on
+EXPLODE : '!' ;
 
 // Numbers
 //DECIMAL_NUMBER 
@@ -135,6 +158,8 @@ NZDIGIT : [1-9] ;
 // which may not be the right way to go about doing this if I have other tokens that begin
 // with 'd'. 
 SIMPLE_DIE : D;
+LOADED_HIGH_DIE : D [hH] ;
+LOADED_LOW_DIE : D [lL] ;
 
 //
 // Fragments for characters
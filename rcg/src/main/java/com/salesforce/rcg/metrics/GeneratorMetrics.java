@@ -0,0 +1,132 @@
+package com.salesforce.rcg.metrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counts what a word generator or dice expression does: how many words or
+ * rolls it has produced, how many table entries it looked at to produce
+ * them, how often it rebuilt its tables, and how long some of its calls took.
+ *
+ * The counters are LongAdders, so many threads can count at once without all
+ * writing to one cache line. Latency is only measured for one call in
+ * {@link #getSampleInterval()}, picked at random, since reading the clock
+ * costs about as much as generating a word.
+ *
+ * Generators only keep metrics when they're turned on; when they're off, the
+ * generator's metrics are null, and the only cost is checking for that.
+ *
+ * This class is threadsafe.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public final class GeneratorMetrics {
+    /** Measure the latency of one call in this many, unless told otherwise. */
+    public static final int DEFAULT_SAMPLE_INTERVAL = 64;
+
+    /** What {@link #startTimer()} returns for calls that aren't measured. */
+    public static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private final String name;
+    private final int sampleInterval;
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder recompiles = new LongAdder();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    public GeneratorMetrics(String name) {
+        this(name, DEFAULT_SAMPLE_INTERVAL);
+    }
+
+    /** Create a set of metrics.
+     *
+     * @param name The name of what they're for
+     * @param sampleInterval Measure the latency of one call in this many, on
+     *     average; 1 measures every call.
+     */
+    public GeneratorMetrics(String name, int sampleInterval) {
+        if (sampleInterval <= 0) {
+            throw new IllegalArgumentException("The sample interval must be positive: " + sampleInterval);
+        }
+        this.name = String.valueOf(name);
+        this.sampleInterval = sampleInterval;
+    }
+
+    public String getName() {
+        return(name);
+    }
+
+    public int getSampleInterval() {
+        return(sampleInterval);
+    }
+
+    /** Count words generated, or dice rolled. */
+    public void addGenerated(long count) {
+        generated.add(count);
+    }
+
+    /** Count table entries looked at. */
+    public void addProbes(long count) {
+        probes.add(count);
+    }
+
+    /** Count one rebuild of a generator's tables. */
+    public void addRecompile() {
+        recompiles.increment();
+    }
+
+    /** Start timing a call, if it's one of the calls that are measured.
+     *
+     * @return The time to pass to {@link #stopTimer(long)}, or
+     *     {@link #NOT_TIMED}.
+     */
+    public long startTimer() {
+        if ((sampleInterval > 1) && (ThreadLocalRandom.current().nextInt(sampleInterval) != 0)) {
+            return(NOT_TIMED);
+        }
+        return(System.nanoTime());
+    }
+
+    /** Finish timing a call.
+     *
+     * @param start What {@link #startTimer()} returned
+     */
+    public void stopTimer(long start) {
+        if (start != NOT_TIMED) {
+            latencies.record(System.nanoTime() - start);
+        }
+    }
+
+    /** Get the number of words generated, or dice rolled, so far. */
+    public long getGenerated() {
+        return(generated.sum());
+    }
+
+    public long getProbes() {
+        return(probes.sum());
+    }
+
+    public long getRecompiles() {
+        return(recompiles.sum());
+    }
+
+    /** Read all of the counts. Each counter is read separately, so calls
+     * counted while this runs may show up in some counts but not others.
+     */
+    public MetricsSnapshot snapshot() {
+        return(new MetricsSnapshot(name, generated.sum(), probes.sum(), recompiles.sum(), latencies.getCounts()));
+    }
+
+    /** Set every count back to zero. */
+    public void reset() {
+        generated.reset();
+        probes.reset();
+        recompiles.reset();
+        latencies.reset();
+    }
+
+    @Override
+    public String toString() {
+        return(snapshot().toString());
+    }
+}
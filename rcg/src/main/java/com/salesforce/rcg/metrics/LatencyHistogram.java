@@ -0,0 +1,74 @@
+package com.salesforce.rcg.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counts latencies in buckets that double in width: bucket 0 holds
+ * latencies of 0 nanoseconds, and bucket <tt>i</tt> holds latencies from
+ * 2<sup>i-1</sup> up to 2<sup>i</sup> nanoseconds. That's 64 buckets for
+ * anything a long can hold, and percentiles come out to within a factor of
+ * two, which is plenty for telling a 50ns call from a 5us one.
+ *
+ * Each bucket is a LongAdder, so threads recording at the same time don't
+ * fight over one counter. This class is threadsafe.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public final class LatencyHistogram {
+    /** The number of buckets. */
+    public static final int NUM_BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[NUM_BUCKETS];
+
+    public LatencyHistogram() {
+        for (int i = 0; i < NUM_BUCKETS; ++i) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /** Count one latency.
+     *
+     * @param nanos The latency, in nanoseconds. Negative values - from a
+     *     clock that went backwards - are counted as 0.
+     */
+    public void record(long nanos) {
+        buckets[bucketOf(nanos)].increment();
+    }
+
+    /** Get the bucket a latency is counted in. */
+    public static int bucketOf(long nanos) {
+        if (nanos <= 0L) {
+            return(0);
+        }
+        return(Math.min(NUM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos)));
+    }
+
+    /** Get the highest latency a bucket holds, in nanoseconds. */
+    public static long getBucketLimit(int bucket) {
+        if (bucket <= 0) {
+            return(0L);
+        }
+        if (bucket >= NUM_BUCKETS - 1) {
+            return(Long.MAX_VALUE);
+        }
+        return((1L << bucket) - 1L);
+    }
+
+    /** Get the count in each bucket. The counts are read one at a time, so
+     * latencies recorded while this runs may or may not be included.
+     */
+    public long[] getCounts() {
+        long[] result = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; ++i) {
+            result[i] = buckets[i].sum();
+        }
+        return(result);
+    }
+
+    /** Set every bucket back to zero. */
+    public void reset() {
+        for (LongAdder bucket: buckets) {
+            bucket.reset();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.salesforce.rcg.metrics;
+
+import java.util.Arrays;
+
+/** The counts from a {@link GeneratorMetrics} at one moment: what
+ * {@link GeneratorMetrics#snapshot()} returns, and what a registry reports
+ * for each of its generators.
+ *
+ * Snapshots are immutable.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public final class MetricsSnapshot {
+    private final String name;
+    private final long generated;
+    private final long probes;
+    private final long recompiles;
+    private final long[] latencyCounts;
+    private final long numLatencies;
+
+    MetricsSnapshot(String name, long generated, long probes, long recompiles, long[] latencyCounts) {
+        this.name = name;
+        this.generated = generated;
+        this.probes = probes;
+        this.recompiles = recompiles;
+        this.latencyCounts = latencyCounts;
+        long total = 0L;
+        for (long count: latencyCounts) {
+            total += count;
+        }
+        this.numLatencies = total;
+    }
+
+    /** Get the name of the generator or expression these are for. */
+    public String getName() {
+        return(name);
+    }
+
+    /** Get the number of words generated, or dice rolled. */
+    public long getGenerated() {
+        return(generated);
+    }
+
+    /** Get the number of table entries looked at to pick them. */
+    public long getProbes() {
+        return(probes);
+    }
+
+    /** Get the number of times the generator rebuilt its tables. */
+    public long getRecompiles() {
+        return(recompiles);
+    }
+
+    /** Get the number of calls whose latency was measured. */
+    public long getNumLatencies() {
+        return(numLatencies);
+    }
+
+    /** Get the count in each latency bucket; see {@link LatencyHistogram}. */
+    public long[] getLatencyCounts() {
+        return(latencyCounts.clone());
+    }
+
+    /** Get a percentile of the measured latencies: the upper limit of the
+     * bucket the percentile falls in, so it's within a factor of two.
+     *
+     * @param percent The percentile, from 0 through 100
+     * @return The latency in nanoseconds, or 0 if none were measured.
+     */
+    public long getLatencyPercentile(double percent) {
+        if (!(percent >= 0.0) || (percent > 100.0)) {
+            throw new IllegalArgumentException("A percentile must be from 0 through 100: " + percent);
+        }
+        if (numLatencies == 0L) {
+            return(0L);
+        }
+        double needed = percent / 100.0 * numLatencies;
+        long sum = 0L;
+        int last = 0;
+        for (int i = 0; i < latencyCounts.length; ++i) {
+            if (latencyCounts[i] == 0L) {
+                continue;
+            }
+            last = i;
+            sum += latencyCounts[i];
+            if (sum >= needed) {
+                return(LatencyHistogram.getBucketLimit(i));
+            }
+        }
+        return(LatencyHistogram.getBucketLimit(last));
+    }
+
+    @Override
+    public String toString() {
+        return("MetricsSnapshot[" + name
+                + ", generated: " + generated
+                + ", probes: " + probes
+                + ", recompiles: " + recompiles
+                + ", latencies: " + numLatencies
+                + ", median ns: " + getLatencyPercentile(50.0)
+                + ", p99 ns: " + getLatencyPercentile(99.0) + "]");
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof MetricsSnapshot)) {
+            return(false);
+        }
+        MetricsSnapshot that = (MetricsSnapshot) other;
+        return(name.equals(that.name) && (generated == that.generated) && (probes == that.probes)
+                && (recompiles == that.recompiles) && Arrays.equals(latencyCounts, that.latencyCounts));
+    }
+
+    @Override
+    public int hashCode() {
+        return(name.hashCode() * 31 + Long.hashCode(generated));
+    }
+}
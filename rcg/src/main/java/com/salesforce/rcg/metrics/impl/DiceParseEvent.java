@@ -0,0 +1,26 @@
+package com.salesforce.rcg.metrics.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** A JFR event for a dice factory parsing an expression it didn't have
+ * cached. Its duration is the time taken to parse the expression and build
+ * the dice.
+ *
+ * @author mpreslermarshall
+ *
+ */
+@Name("com.salesforce.rcg.DiceParse")
+@Label("Dice Parse")
+@Category({ "Random Content Generator", "Dice" })
+@Description("A dice expression parsed by a DiceFactory")
+final class DiceParseEvent extends Event {
+    @Label("Expression")
+    String expression;
+
+    @Label("Parser")
+    String parser;
+}
@@ -0,0 +1,140 @@
+package com.salesforce.rcg.metrics.impl;
+
+/** Emits this library's Java Flight Recorder events: word list loads, weight
+ * recompiles, and dice parses. They can be recorded with the standard JDK
+ * tools (<tt>jcmd &lt;pid&gt; JFR.start</tt>, or
+ * <tt>-XX:StartFlightRecording</tt>), with no agent.
+ *
+ * Each event is started with a <tt>begin</tt> method, which returns a token,
+ * and finished with the matching <tt>commit</tt> method, which takes the
+ * token and the event's details. The token is null when nothing is
+ * recording the event, and the commit methods do nothing with a null token,
+ * so callers needn't check anything themselves. Nothing here touches the
+ * JFR classes on a JVM that doesn't have them (Java 8 before update 262),
+ * so events just aren't emitted there.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public final class JfrEvents {
+    /** Whether this JVM has the JFR event API. */
+    public static final boolean AVAILABLE = isAvailable();
+
+    private JfrEvents() {
+        // Only static methods
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, JfrEvents.class.getClassLoader());
+            return(true);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return(false);
+        }
+    }
+
+    /** Start timing a word list load. */
+    public static Object beginFileLoad() {
+        if (!AVAILABLE) {
+            return(null);
+        }
+        WordFileLoadEvent event = new WordFileLoadEvent();
+        if (!event.isEnabled()) {
+            return(null);
+        }
+        event.begin();
+        return(event);
+    }
+
+    /** Finish a word list load.
+     *
+     * @param token What {@link #beginFileLoad()} returned
+     * @param generator The name of the generator loaded
+     * @param source The file or resource read
+     * @param characters The number of characters read
+     * @param lines The number of lines read
+     */
+    public static void commitFileLoad(Object token, String generator, String source, long characters, long lines) {
+        if (null == token) {
+            return;
+        }
+        WordFileLoadEvent event = (WordFileLoadEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.generator = generator;
+            event.source = source;
+            event.characters = characters;
+            event.lines = lines;
+            event.commit();
+        }
+    }
+
+    /** Start timing a weight recompile. */
+    public static Object beginRecompile() {
+        if (!AVAILABLE) {
+            return(null);
+        }
+        WeightRecompileEvent event = new WeightRecompileEvent();
+        if (!event.isEnabled()) {
+            return(null);
+        }
+        event.begin();
+        return(event);
+    }
+
+    /** Finish a weight recompile.
+     *
+     * @param token What {@link #beginRecompile()} returned
+     * @param generator The name of the generator
+     * @param words The number of words compiled
+     * @param samplingMode The name of the sampling mode compiled for
+     * @param exactCounts Whether the weights were compiled as exact counts
+     */
+    public static void commitRecompile(Object token, String generator, int words, String samplingMode,
+            boolean exactCounts) {
+        if (null == token) {
+            return;
+        }
+        WeightRecompileEvent event = (WeightRecompileEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.generator = generator;
+            event.words = words;
+            event.samplingMode = samplingMode;
+            event.exactCounts = exactCounts;
+            event.commit();
+        }
+    }
+
+    /** Start timing a dice parse. */
+    public static Object beginDiceParse() {
+        if (!AVAILABLE) {
+            return(null);
+        }
+        DiceParseEvent event = new DiceParseEvent();
+        if (!event.isEnabled()) {
+            return(null);
+        }
+        event.begin();
+        return(event);
+    }
+
+    /** Finish a dice parse.
+     *
+     * @param token What {@link #beginDiceParse()} returned
+     * @param expression The expression parsed
+     * @param parser The name of the parser used
+     */
+    public static void commitDiceParse(Object token, String expression, String parser) {
+        if (null == token) {
+            return;
+        }
+        DiceParseEvent event = (DiceParseEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.expression = expression;
+            event.parser = parser;
+            event.commit();
+        }
+    }
+}
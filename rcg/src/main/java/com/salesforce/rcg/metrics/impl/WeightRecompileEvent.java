@@ -0,0 +1,32 @@
+package com.salesforce.rcg.metrics.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** A JFR event for a weighted generator compiling its weights. Its duration
+ * is the time the compile took.
+ *
+ * @author mpreslermarshall
+ *
+ */
+@Name("com.salesforce.rcg.WeightRecompile")
+@Label("Weight Recompile")
+@Category({ "Random Content Generator", "Word Generators" })
+@Description("A weighted word generator compiled its cumulative weights or alias table")
+final class WeightRecompileEvent extends Event {
+    @Label("Generator")
+    String generator;
+
+    @Label("Words")
+    int words;
+
+    @Label("Sampling Mode")
+    String samplingMode;
+
+    @Label("Exact Counts")
+    @Description("Whether the weights were compiled as exact whole-number counts")
+    boolean exactCounts;
+}
@@ -0,0 +1,35 @@
+package com.salesforce.rcg.metrics.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** A JFR event for loading a word list into a generator. Its duration is the
+ * time taken to read and parse the list.
+ *
+ * @author mpreslermarshall
+ *
+ */
+@Name("com.salesforce.rcg.WordFileLoad")
+@Label("Word File Load")
+@Category({ "Random Content Generator", "Word Generators" })
+@Description("A word list read into a word generator")
+@StackTrace(false)
+final class WordFileLoadEvent extends Event {
+    @Label("Generator")
+    String generator;
+
+    @Label("Source")
+    @Description("The file or resource the words came from")
+    String source;
+
+    @Label("Characters")
+    @Description("The number of characters read, counting line ends; the same as bytes for ASCII word lists")
+    long characters;
+
+    @Label("Lines")
+    long lines;
+}
@@ -0,0 +1,66 @@
+package com.salesforce.rcg.numbers.dice;
+
+import java.util.Random;
+
+import com.salesforce.rcg.numbers.dice.impl.CompiledDie;
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.random.impl.JavaRandomSource;
+
+/** Compiles dice expressions so they roll in constant time.
+ *
+ * Rolling 1000d6 the usual way takes 1000 dice (or at least a few hundred
+ * random numbers), and a composite expression rolls every part of itself.
+ * A compiled expression works out the exact chance of rolling each value up
+ * front - chance prefix, adder, multiplier, "and" and all - and from then on
+ * rolls with a single alias-table lookup. That's a good trade for
+ * expressions rolled many times, such as in simulations.
+ *
+ * Expressions with more possible values than the limit (by default
+ * {@value #DEFAULT_MAX_SUPPORT}) aren't compiled, since the table would be
+ * too big; compiling them just returns the original expression.
+ *
+ * @see DiceFactory#setCompiling(boolean)
+ * @author mpreslermarshall
+ *
+ */
+public final class CompiledDice {
+    /** The default limit on the number of possible values in a compiled expression. */
+    public static final int DEFAULT_MAX_SUPPORT = 1 << 16;
+
+    private CompiledDice() {
+        // Not to be instantiated
+    }
+
+    /** Compile an expression, if it isn't too large. The compiled expression
+     * gets its own java.util.Random.
+     *
+     * @param expression The expression to compile
+     * @return The compiled expression, or <tt>expression</tt> if it can't be compiled.
+     */
+    public static DiceExpression compile(DiceExpression expression) {
+        return(compile(expression, DEFAULT_MAX_SUPPORT, new JavaRandomSource(new Random())));
+    }
+
+    /** Compile an expression, if it isn't too large.
+     *
+     * @param expression The expression to compile
+     * @param maxSupport The most possible values a compiled expression may have
+     * @param source The random source for the compiled expression. Unless
+     *     it's threadsafe, the compiled expression must then only be rolled
+     *     from one thread at a time.
+     * @return The compiled expression, or <tt>expression</tt> if it can't be compiled.
+     */
+    public static DiceExpression compile(DiceExpression expression, int maxSupport, RandomSource source) {
+        if (null == expression) {
+            throw new IllegalArgumentException("Can't compile a null expression");
+        }
+        if (expression instanceof CompiledDie) {
+            return(expression);
+        }
+        DiceDistribution distribution = expression.getDistribution(maxSupport);
+        if (null == distribution) {
+            return(expression);
+        }
+        return(new CompiledDie(expression, distribution, source));
+    }
+}
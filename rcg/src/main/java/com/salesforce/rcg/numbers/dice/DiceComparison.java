@@ -0,0 +1,76 @@
+package com.salesforce.rcg.numbers.dice;
+
+/** How often one dice expression rolled higher than another, over a number
+ * of rolls of each: the result of {@link DiceSimulator#compare}.
+ *
+ * Comparisons are immutable.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public final class DiceComparison {
+    private final long greater;
+    private final long equal;
+    private final long less;
+
+    DiceComparison(long greater, long equal, long less) {
+        this.greater = greater;
+        this.equal = equal;
+        this.less = less;
+    }
+
+    /** Add two comparisons together: the counts of both sets of rolls. */
+    DiceComparison plus(DiceComparison other) {
+        return(new DiceComparison(greater + other.greater, equal + other.equal, less + other.less));
+    }
+
+    /** Get the total number of rolls compared. */
+    public long getTotal() {
+        return(greater + equal + less);
+    }
+
+    /** Get the number of times the first expression rolled higher. */
+    public long getGreater() {
+        return(greater);
+    }
+
+    /** Get the number of times the two rolled the same. */
+    public long getEqual() {
+        return(equal);
+    }
+
+    /** Get the number of times the first expression rolled lower. */
+    public long getLess() {
+        return(less);
+    }
+
+    /** Get the fraction of the rolls where the first expression rolled
+     * higher: the estimate of P(A &gt; B).
+     */
+    public double getProbabilityGreater() {
+        return(fraction(greater));
+    }
+
+    /** Get the fraction of the rolls where the two rolled the same. */
+    public double getProbabilityEqual() {
+        return(fraction(equal));
+    }
+
+    /** Get the fraction of the rolls where the first expression rolled lower. */
+    public double getProbabilityLess() {
+        return(fraction(less));
+    }
+
+    private double fraction(long count) {
+        long total = getTotal();
+        if (total == 0L) {
+            throw new IllegalStateException("Nothing was rolled");
+        }
+        return((double) count / total);
+    }
+
+    @Override
+    public String toString() {
+        return("DiceComparison[greater: " + greater + ", equal: " + equal + ", less: " + less + "]");
+    }
+}
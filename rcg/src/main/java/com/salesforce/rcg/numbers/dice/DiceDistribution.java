@@ -0,0 +1,378 @@
+package com.salesforce.rcg.numbers.dice;
+
+import java.util.Arrays;
+
+/** The exact probability distribution of the values a dice expression rolls:
+ * for every value from the lowest possible roll to the highest, the chance
+ * of rolling it.
+ *
+ * Distributions are built up the same way the expressions are. Rolling
+ * several dice and adding them up is a convolution of their distributions,
+ * and the adder, multiplier, and chance prefix each change the distribution
+ * in their own way. Any of these can make the distribution too large to be
+ * worth building (10000d100 has nearly a million possible values), so each
+ * takes a limit on the number of values, and returns null if the result
+ * would be larger.
+ *
+ * Distributions are immutable.
+ *
+ * @see DiceExpression#getDistribution(int)
+ * @author mpreslermarshall
+ *
+ */
+public final class DiceDistribution {
+    /** The most multiply-adds building one distribution may take, so that a
+     * distribution that fits in the size limit but would take ages to
+     * compute gives up instead.
+     */
+    static final long WORK_LIMIT = 1L << 27;
+
+    /** The most possible values a distribution built just to answer
+     * questions about an expression may have; see
+     * {@link DiceExpression#probabilityOf(int)}. A distribution this size
+     * takes 8MB.
+     */
+    public static final int MAX_ANALYZED_SUPPORT = 1 << 20;
+
+    /** The lowest value that can be rolled. */
+    private final int min;
+
+    /** probabilities[i] is the chance of rolling min + i. */
+    private final double[] probabilities;
+
+    /** cumulative[i] is the chance of rolling min + i or less. Built the
+     * first time it's needed; racing threads at worst build one each.
+     */
+    private volatile double[] cumulative;
+
+    private DiceDistribution(int min, double[] probabilities) {
+        this.min = min;
+        this.probabilities = probabilities;
+    }
+
+    /** The distribution of an expression that always rolls the same value. */
+    public static DiceDistribution constant(int value) {
+        return(new DiceDistribution(value, new double[] { 1.0 }));
+    }
+
+    /** The distribution of the sum of several identical, fair dice.
+     *
+     * @param numDice The number of dice. Zero or fewer dice always roll 0.
+     * @param sides The number of sides on each die, numbered 1 through sides.
+     *     Dice with zero sides always roll 0.
+     * @param maxSupport The most possible values the result may have
+     * @return The distribution, or null if it would have more than
+     *     <tt>maxSupport</tt> values or take too long to build.
+     */
+    public static DiceDistribution sumOfDice(int numDice, int sides, int maxSupport) {
+        if (sides < 0) {
+            throw new IllegalArgumentException("The number of sides must not be negative: " + sides);
+        }
+        if ((numDice <= 0) || (sides == 0)) {
+            return(constant(0));
+        }
+        if (sides == 1) {
+            return(constant(numDice));
+        }
+        long size = (long) numDice * (sides - 1) + 1;
+        if ((size > maxSupport) || ((long) numDice * sides > Integer.MAX_VALUE)
+                || ((double) numDice * size > WORK_LIMIT)) {
+            return(null);
+        }
+
+        // Add the dice one at a time. Adding a fair die turns each value into
+        // the average of a window of <sides> values, which a running sum does
+        // in one pass. The sum only ever grows on the way up to the middle;
+        // the distribution is symmetric, so the upper half is copied from the
+        // lower half rather than computed by subtracting big numbers from
+        // each other, which would swamp the tiny chances out in the tail.
+        double[] current = new double[(int) size];
+        double[] next = new double[(int) size];
+        Arrays.fill(current, 0, sides, 1.0 / sides);
+        int length = sides;
+        for (int die = 1; die < numDice; ++die) {
+            int newLength = length + sides - 1;
+            int half = (newLength + 1) / 2;
+            double window = 0.0;
+            for (int i = 0; i < half; ++i) {
+                if (i < length) {
+                    window += current[i];
+                }
+                if (i >= sides) {
+                    window -= current[i - sides];
+                }
+                next[i] = window / sides;
+            }
+            for (int i = half; i < newLength; ++i) {
+                next[i] = next[newLength - 1 - i];
+            }
+            double[] swap = current;
+            current = next;
+            next = swap;
+            length = newLength;
+        }
+        return(new DiceDistribution(numDice, current));
+    }
+
+    /** The distribution of a single die whose faces have given relative
+     * weights, such as a loaded die.
+     *
+     * @param min The value of the first face
+     * @param weights The relative chance of rolling each face. They must
+     *     not be negative, and at least one must be positive.
+     * @return The distribution.
+     */
+    public static DiceDistribution fromWeights(int min, double[] weights) {
+        double total = 0.0;
+        for (double weight: weights) {
+            if (!(weight >= 0.0) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("Weights must be finite and not negative: " + weight);
+            }
+            total += weight;
+        }
+        if (!(total > 0.0)) {
+            throw new IllegalArgumentException("At least one weight must be positive");
+        }
+        if ((long) min + weights.length - 1 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The values must fit in an int");
+        }
+        double[] probabilities = new double[weights.length];
+        for (int i = 0; i < weights.length; ++i) {
+            probabilities[i] = weights[i] / total;
+        }
+        return(new DiceDistribution(min, probabilities));
+    }
+
+    /** The distribution of the sum of several independent rolls from this
+     * distribution, worked out by repeated squaring.
+     *
+     * @param count The number of rolls. Zero or fewer always total 0.
+     * @param maxSupport The most possible values the result may have
+     * @return The distribution, or null if it would be too large.
+     */
+    public DiceDistribution sumOf(int count, int maxSupport) {
+        if (count <= 0) {
+            return(constant(0));
+        }
+        if ((long) (probabilities.length - 1) * count + 1 > maxSupport) {
+            return(null);
+        }
+        DiceDistribution result = null;
+        DiceDistribution power = this;
+        int remaining = count;
+        while (true) {
+            if ((remaining & 1) != 0) {
+                result = (null == result) ? power : result.plus(power, maxSupport);
+                if (null == result) {
+                    return(null);
+                }
+            }
+            remaining >>>= 1;
+            if (remaining == 0) {
+                return(result);
+            }
+            power = power.plus(power, maxSupport);
+            if (null == power) {
+                return(null);
+            }
+        }
+    }
+
+    /** Get the distribution of an expression, to answer questions about it.
+     *
+     * @param expression The expression
+     * @return Its distribution.
+     * @throws UnsupportedOperationException If the expression's distribution
+     *     isn't known, or has more than {@link #MAX_ANALYZED_SUPPORT} values.
+     */
+    public static DiceDistribution of(DiceExpression expression) {
+        DiceDistribution result = expression.getDistribution(MAX_ANALYZED_SUPPORT);
+        if (null == result) {
+            throw new UnsupportedOperationException("The distribution of " + expression 
+                    + " is unknown or too large to work out");
+        }
+        return(result);
+    }
+
+    public int getMin() {
+        return(min);
+    }
+
+    public int getMax() {
+        return(min + probabilities.length - 1);
+    }
+
+    /** Get the number of values from the lowest possible roll through the
+     * highest. Some of them may have no chance of being rolled at all; for
+     * instance, 1d6 * 10 never rolls 11.
+     */
+    public int getSupportSize() {
+        return(probabilities.length);
+    }
+
+    /** Get the chance of rolling a value.
+     *
+     * @param value The value
+     * @return The probability, from 0 to 1.
+     */
+    public double probability(int value) {
+        long index = (long) value - min;
+        if ((index < 0) || (index >= probabilities.length)) {
+            return(0.0);
+        }
+        return(probabilities[(int) index]);
+    }
+
+    /** Get the chance of rolling a value or less.
+     *
+     * @param value The value
+     * @return The probability, from 0 to 1.
+     */
+    public double cdf(int value) {
+        long index = (long) value - min;
+        if (index < 0) {
+            return(0.0);
+        }
+        if (index >= probabilities.length) {
+            return(1.0);
+        }
+        double[] result = cumulative;
+        if (null == result) {
+            result = new double[probabilities.length];
+            double sum = 0.0;
+            for (int i = 0; i < probabilities.length; ++i) {
+                sum += probabilities[i];
+                result[i] = Math.min(sum, 1.0);
+            }
+            cumulative = result;
+        }
+        return(result[(int) index]);
+    }
+
+    /** Get the average roll. */
+    public double getMean() {
+        double sum = 0.0;
+        for (int i = 0; i < probabilities.length; ++i) {
+            sum += i * probabilities[i];
+        }
+        return(min + sum);
+    }
+
+    /** Get the variance of the rolls. */
+    public double getVariance() {
+        // Work relative to the mean, so large values don't swamp the result
+        double mean = getMean() - min;
+        double sum = 0.0;
+        for (int i = 0; i < probabilities.length; ++i) {
+            double offset = i - mean;
+            sum += offset * offset * probabilities[i];
+        }
+        return(sum);
+    }
+
+    /** Get the chance of rolling each value from {@link #getMin()} through
+     * {@link #getMax()}.
+     *
+     * @return A copy of the probabilities.
+     */
+    public double[] getProbabilities() {
+        return(probabilities.clone());
+    }
+
+    /** The distribution of this plus a constant. */
+    public DiceDistribution plus(int adder) {
+        if (adder == 0) {
+            return(this);
+        }
+        if (((long) getMax() + adder > Integer.MAX_VALUE) || ((long) min + adder < Integer.MIN_VALUE)) {
+            return(null);
+        }
+        return(new DiceDistribution(min + adder, probabilities));
+    }
+
+    /** The distribution of the sum of a roll from this and a roll from another.
+     *
+     * @param other The other distribution
+     * @param maxSupport The most possible values the result may have
+     * @return The distribution, or null if it would be too large.
+     */
+    public DiceDistribution plus(DiceDistribution other, int maxSupport) {
+        long size = (long) probabilities.length + other.probabilities.length - 1;
+        long newMin = (long) min + other.min;
+        if ((size > maxSupport) || (newMin < Integer.MIN_VALUE) || (newMin + size - 1 > Integer.MAX_VALUE)
+                || ((long) probabilities.length * other.probabilities.length > WORK_LIMIT)) {
+            return(null);
+        }
+        double[] result = new double[(int) size];
+        for (int i = 0; i < probabilities.length; ++i) {
+            double p = probabilities[i];
+            if (p == 0.0) {
+                continue;
+            }
+            for (int j = 0; j < other.probabilities.length; ++j) {
+                result[i + j] += p * other.probabilities[j];
+            }
+        }
+        return(new DiceDistribution((int) newMin, result));
+    }
+
+    /** The distribution of this times a constant.
+     *
+     * @param multiplier The constant
+     * @param maxSupport The most possible values the result may have
+     * @return The distribution, or null if it would be too large.
+     */
+    public DiceDistribution times(int multiplier, int maxSupport) {
+        if (multiplier == 1) {
+            return(this);
+        }
+        if (multiplier == 0) {
+            return(constant(0));
+        }
+        long scaledMin = (long) min * multiplier;
+        long scaledMax = (long) getMax() * multiplier;
+        long low = Math.min(scaledMin, scaledMax);
+        long high = Math.max(scaledMin, scaledMax);
+        if ((high - low + 1 > maxSupport) || (low < Integer.MIN_VALUE) || (high > Integer.MAX_VALUE)) {
+            return(null);
+        }
+        double[] result = new double[(int) (high - low + 1)];
+        for (int i = 0; i < probabilities.length; ++i) {
+            result[(int) ((long) (min + i) * multiplier - low)] = probabilities[i];
+        }
+        return(new DiceDistribution((int) low, result));
+    }
+
+    /** The distribution of rolling this with only a given chance of getting a
+     * result at all, and 0 otherwise.
+     *
+     * @param chance The chance of rolling this distribution. Values over 1
+     *     mean the same as 1, and values of 0 or less always give 0.
+     * @param maxSupport The most possible values the result may have
+     * @return The distribution, or null if it would be too large.
+     */
+    public DiceDistribution withChance(double chance, int maxSupport) {
+        if (chance >= 1.0) {
+            return(this);
+        }
+        if (chance <= 0.0) {
+            return(constant(0));
+        }
+        int low = Math.min(min, 0);
+        int high = Math.max(getMax(), 0);
+        if ((long) high - low + 1 > maxSupport) {
+            return(null);
+        }
+        double[] result = new double[high - low + 1];
+        for (int i = 0; i < probabilities.length; ++i) {
+            result[min + i - low] = probabilities[i] * chance;
+        }
+        result[-low] += 1.0 - chance;
+        return(new DiceDistribution(low, result));
+    }
+
+    @Override
+    public String toString() {
+        return("DiceDistribution [" + getMin() + ", " + getMax() + "]");
+    }
+}
@@ -1,5 +1,13 @@
 package com.salesforce.rcg.numbers.dice;
 
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import com.salesforce.rcg.metrics.GeneratorMetrics;
+import com.salesforce.rcg.numbers.dice.impl.RollSpliterator;
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.random.impl.Xoshiro256StarStarSource;
+
 /** The Die interface represents objects that act as do dice in the real world -
  * they can be rolled to produce a random integer based on the number of sides the
  * die has.
@@ -13,6 +21,190 @@ public interface DiceExpression {
      * @return A pseudo-random value within the range of values this die will generate.
      */
     public int roll();
+    
+    /** Roll the die using the given random number generator, rather than the
+     * die's own. The roll streams use this so that each part of a parallel
+     * stream can have its own random number generator. This default ignores
+     * <tt>random</tt> and just calls {@link #roll()}.
+     * 
+     * @param random The random number generator to use
+     * @return A pseudo-random value within the range of values this die will generate.
+     */
+    public default int roll(RandomSource random) {
+        return(roll());
+    }
+    
+    /** Roll the die a number of times, putting the results in part of an
+     * array. This is the way to roll many times in a loop without a call
+     * through the interface for each roll; implementations can also draw
+     * the rolls more cheaply in bulk than one at a time. The rolls have the
+     * same distribution as calling {@link #roll()} <tt>len</tt> times, but
+     * needn't be the same values. This default does just call
+     * {@link #roll()} for each one.
+     * 
+     * @param out The array to fill
+     * @param off The first index in <tt>out</tt> to fill
+     * @param len The number of rolls
+     */
+    public default void roll(int[] out, int off, int len) {
+        checkRange(out, off, len);
+        for (int i = off; i < off + len; ++i) {
+            out[i] = roll();
+        }
+    }
+    
+    /** Roll the die <tt>n</tt> times and count how often each value comes up.
+     * If the expression's exact distribution is small enough, the counts are
+     * drawn from it directly, which takes the same time however large
+     * <tt>n</tt> is; see {@link DiceHistogram#roll}. This default draws them
+     * with a new random number generator, seeded from this expression's
+     * random source if it has one.
+     * 
+     * @param n The number of rolls
+     * @return The number of times each value was rolled.
+     */
+    public default DiceHistogram rollHistogram(long n) {
+        RandomSource own = getRandomSource();
+        RandomSource random = (null == own) 
+                ? new Xoshiro256StarStarSource() 
+                : new Xoshiro256StarStarSource(own.nextLong());
+        return(DiceHistogram.roll(this, n, random));
+    }
+    
+    /** Check that a range of an array is valid for {@link #roll(int[], int, int)}. */
+    public static void checkRange(int[] out, int off, int len) {
+        if (null == out) {
+            throw new IllegalArgumentException("The output array must not be null");
+        }
+        if ((off < 0) || (len < 0) || (len > out.length - off)) {
+            throw new IndexOutOfBoundsException("Range [" + off + ", " + off + " + " + len
+                    + ") is out of bounds for an array of length " + out.length);
+        }
+    }
+    
+    /** Get an effectively unlimited stream of rolls of this die.
+     * 
+     * @see #rolls(long)
+     */
+    public default IntStream rolls() {
+        return(rolls(Long.MAX_VALUE));
+    }
+    
+    /** Get a stream of rolls of this die. This is meant to be the way to roll
+     * large numbers of dice quickly: the stream can be made parallel, and
+     * each part of a parallel stream gets its own independent random number
+     * generator, so the threads never contend on one Random.
+     * The stream's generators are seeded from this expression's random
+     * source, so a sequential stream from dice with a seeded source is
+     * repeatable.
+     * 
+     * @param streamSize The number of rolls in the stream
+     * @return The stream.
+     */
+    public default IntStream rolls(long streamSize) {
+        if (streamSize < 0L) {
+            throw new IllegalArgumentException("The stream size must not be negative: " + streamSize);
+        }
+        RandomSource own = getRandomSource();
+        RandomSource random = (null == own) 
+                ? new Xoshiro256StarStarSource() 
+                : new Xoshiro256StarStarSource(own.nextLong());
+        return(StreamSupport.intStream(new RollSpliterator(this, random, 0L, streamSize), false));
+    }
+    
+    /** Get the source of random numbers this expression rolls with. This
+     * default returns null, meaning the expression has no source of its own.
+     */
+    public default RandomSource getRandomSource() {
+        return(null);
+    }
+
+    /** Get the exact distribution of the values this expression rolls.
+     * {@link CompiledDice} uses this to roll the whole expression with a
+     * single table lookup. This default returns null, meaning the
+     * distribution isn't known.
+     * 
+     * @param maxSupport The most possible values the distribution may have.
+     *     Expressions with more than this should return null rather than
+     *     build a huge table.
+     * @return The distribution, or null if it's unknown or too large.
+     */
+    public default DiceDistribution getDistribution(int maxSupport) {
+        return(null);
+    }
+
+    /** Get the lowest value this can roll. This default works it out from
+     * the exact distribution.
+     * 
+     * @throws UnsupportedOperationException If the distribution is unknown
+     *     or too large; see {@link DiceDistribution#of}.
+     */
+    public default int getMin() {
+        return(DiceDistribution.of(this).getMin());
+    }
+    
+    /** Get the highest value this can roll. This default works it out from
+     * the exact distribution.
+     * 
+     * @throws UnsupportedOperationException If the distribution is unknown
+     *     or too large; see {@link DiceDistribution#of}.
+     */
+    public default int getMax() {
+        return(DiceDistribution.of(this).getMax());
+    }
+    
+    /** Get the exact average roll. This default works it out from the exact
+     * distribution.
+     * 
+     * @throws UnsupportedOperationException If the distribution is unknown
+     *     or too large; see {@link DiceDistribution#of}.
+     */
+    public default double getMean() {
+        return(DiceDistribution.of(this).getMean());
+    }
+    
+    /** Get the exact variance of the rolls. This default works it out from
+     * the exact distribution.
+     * 
+     * @throws UnsupportedOperationException If the distribution is unknown
+     *     or too large; see {@link DiceDistribution#of}.
+     */
+    public default double getVariance() {
+        return(DiceDistribution.of(this).getVariance());
+    }
+    
+    /** Get the exact chance of rolling a value.
+     * 
+     * @param value The value
+     * @return The probability, from 0 to 1.
+     * @throws UnsupportedOperationException If the distribution is unknown
+     *     or too large; see {@link DiceDistribution#of}.
+     */
+    public default double probabilityOf(int value) {
+        return(DiceDistribution.of(this).probability(value));
+    }
+    
+    /** Get the exact chance of rolling a value or less.
+     * 
+     * @param value The value
+     * @return The probability, from 0 to 1.
+     * @throws UnsupportedOperationException If the distribution is unknown
+     *     or too large; see {@link DiceDistribution#of}.
+     */
+    public default double cdf(int value) {
+        return(DiceDistribution.of(this).cdf(value));
+    }
+
+    /** Get the metrics this expression keeps: how many times it's been
+     * rolled, and how long rolling takes. Dice from a {@link DiceFactory}
+     * with metrics turned on keep them; this default returns null, meaning
+     * the expression keeps none.
+     * 
+     * @return The metrics, or null.
+     */
+    public default GeneratorMetrics getMetrics() {
+        return(null);
+    }
 
     /** Get the number of sides this die has. This must be an integer (a die 
      * with 3.14 sides makes no sense, unless Bloody Stupid Johnson designed it).
@@ -1,33 +1,461 @@
 package com.salesforce.rcg.numbers.dice;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
 
+import com.salesforce.rcg.metrics.GeneratorMetrics;
+import com.salesforce.rcg.metrics.MetricsSnapshot;
+import com.salesforce.rcg.metrics.impl.JfrEvents;
+import com.salesforce.rcg.numbers.dice.impl.CompiledDie;
 import com.salesforce.rcg.numbers.dice.impl.DiceConstructingWalker;
 import com.salesforce.rcg.numbers.dice.impl.DiceLexer;
+import com.salesforce.rcg.numbers.dice.impl.DiceOptimizer;
 import com.salesforce.rcg.numbers.dice.impl.DiceParser;
+import com.salesforce.rcg.numbers.dice.impl.DiceSumSampler;
+import com.salesforce.rcg.numbers.dice.impl.MeteredDie;
+import com.salesforce.rcg.numbers.dice.impl.RecursiveDescentDiceParser;
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.random.RandomSourceType;
+import com.salesforce.rcg.random.impl.JavaRandomSource;
+import com.salesforce.rcg.util.LruCache;
 
+/** Creates dice from dice expressions, such as "3d6 + 2".
+ * 
+ * By default each die gets its own java.util.Random. A factory can instead be
+ * told to give its dice a different kind of random source. In particular,
+ * {@link RandomSourceType#THREAD_LOCAL} gives the dice the per-thread mode the
+ * design doc asks for: a die shared by many threads rolls with each thread's
+ * own ThreadLocalRandom, so the threads don't contend with each other.
+ * 
+ * A factory can also compile the expressions it creates (see
+ * {@link CompiledDice}), so that each one rolls with a single table lookup
+ * however many dice it has.
+ * 
+ * Expressions too large to compile, such as 100000d20, don't roll every die
+ * either: each die picks the fastest way to total itself up, which for
+ * enough dice may be a normal approximation. How close that approximation
+ * must be is set with {@link #setAccuracy(double)}.
+ * 
+ * Parsing an expression takes far longer than rolling it, so a factory
+ * keeps a cache of the expressions it's parsed recently. It can also use a
+ * hand-written parser instead of the ANTLR one (see {@link DiceParserType}),
+ * which is faster still and rejects expressions it can't parse. Changing any of a
+ * factory's settings empties its cache.
+ * 
+ * With metrics turned on ({@link #setMetricsEnabled(boolean)}), the dice a
+ * factory creates count their rolls. All the dice created from the same
+ * expression count in the same {@link GeneratorMetrics}, and
+ * {@link #getMetricsSnapshot()} reads them all at once. Each expression
+ * parsed (rather than found in the cache) is also emitted as a JFR event,
+ * when a recording wants it; see {@link JfrEvents}.
+ * 
+ * @author mpreslermarshall
+ *
+ */
 public class DiceFactory {
+    /** The kind of random source to give each die, or null for the default. */
+    protected volatile RandomSourceType randomSourceType;
+    
+    /** Whether to compile the expressions this creates. */
+    protected volatile boolean compiling = false;
+    
+    /** Whether to optimize the expressions this creates. */
+    protected volatile boolean optimizing = false;
+    
+    /** How approximate the totals of huge numbers of dice may be. */
+    protected volatile double accuracy = DiceSumSampler.DEFAULT_ACCURACY;
+    
+    /** The default number of parsed expressions to cache. */
+    public static final int DEFAULT_CACHE_SIZE = 256;
+    
+    /** Parsed expressions, by their canonical form. */
+    protected volatile LruCache<String, CachedExpression> cache = new LruCache<>(DEFAULT_CACHE_SIZE);
+    
+    /** Counts changes to this factory's settings; see {@link CachedExpression}. */
+    protected final AtomicInteger generation = new AtomicInteger();
+    
+    /** Whether to hand out the same cached expression to every caller. */
+    protected volatile boolean sharingCachedDice = false;
+    
+    /** The parser to read expressions with. */
+    protected volatile DiceParserType parserType = DiceParserType.DEFAULT_PARSER_TYPE;
+    
+    /** Whether the dice this creates keep metrics. */
+    protected volatile boolean metricsEnabled = false;
+    
+    /** The metrics for each expression, by its canonical form. */
+    protected final ConcurrentMap<String, GeneratorMetrics> metrics = new ConcurrentHashMap<>();
+    
     public DiceFactory() {
+        this(null);
+    }
+    
+    /** Create a factory whose dice get a particular kind of random source.
+     * 
+     * @param randomSourceType The kind of source each die gets, or null for
+     *     the default. Each die gets its own source. Unless the sources are
+     *     threadsafe, each die must then only be rolled from one thread at
+     *     a time.
+     */
+    public DiceFactory(RandomSourceType randomSourceType) {
+        this.randomSourceType = randomSourceType;
+    }
+    
+    public RandomSourceType getRandomSourceType() {
+        return(randomSourceType);
+    }
+    
+    /** Change the kind of random source given to dice created from now on. 
+     * 
+     * @param randomSourceType The kind of source, or null for the default
+     * @return This factory
+     */
+    public DiceFactory setRandomSourceType(RandomSourceType randomSourceType) {
+        this.randomSourceType = randomSourceType;
+        clearCache();
+        return(this);
+    }
+    
+    public boolean isCompiling() {
+        return(compiling);
+    }
+    
+    /** Choose whether to compile expressions created from now on. Compiled
+     * expressions cost more to create, but roll in constant time;
+     * expressions with too many possible values are left uncompiled.
+     * 
+     * @param compiling true to compile expressions
+     * @return This factory
+     */
+    public DiceFactory setCompiling(boolean compiling) {
+        this.compiling = compiling;
+        clearCache();
+        return(this);
+    }
+    
+    public boolean isOptimizing() {
+        return(optimizing);
+    }
+    
+    /** Choose whether to optimize expressions created from now on, merging
+     * like dice and folding constants (see {@link DiceOptimizer}). Optimized
+     * expressions roll the same values with the same chances, but
+     * describe themselves in their rewritten form: "2d6 &amp; 3d6 &amp; 5"
+     * becomes "5d6 + 5".
+     * 
+     * @param optimizing true to optimize expressions
+     * @return This factory
+     */
+    public DiceFactory setOptimizing(boolean optimizing) {
+        this.optimizing = optimizing;
+        clearCache();
+        return(this);
+    }
+    
+    public double getAccuracy() {
+        return(accuracy);
+    }
+    
+    /** Set how approximate the totals of huge numbers of dice may be, for
+     * expressions created from now on.
+     * 
+     * @param accuracy The largest excess kurtosis at which a total may be
+     *     drawn from a normal approximation, or 0 to always be exact. See
+     *     {@link DiceSumSampler}.
+     * @return This factory
+     */
+    public DiceFactory setAccuracy(double accuracy) {
+        if (!(accuracy >= 0.0)) {
+            throw new IllegalArgumentException("The accuracy must not be negative: " + accuracy);
+        }
+        this.accuracy = accuracy;
+        clearCache();
+        return(this);
+    }
+    
+    public DiceParserType getParserType() {
+        return(parserType);
+    }
+    
+    /** Choose the parser to read expressions with from now on. This
+     * empties the cache.
+     * 
+     * @param parserType The parser
+     * @return This factory
+     */
+    public DiceFactory setParserType(DiceParserType parserType) {
+        if (null == parserType) {
+            throw new IllegalArgumentException("The parser type must not be null");
+        }
+        this.parserType = parserType;
+        clearCache();
+        return(this);
+    }
+    
+    /** Should dice from the cache be shared? */
+    public boolean isSharingCachedDice() {
+        return(sharingCachedDice);
+    }
+    
+    /** Choose whether expressions from the parse cache are shared.
+     * 
+     * Normally every call to {@link #create(String)} returns a new
+     * expression, with its own random sources, even when the string it's
+     * created from came from the cache. Sharing skips even that: every call
+     * with the same expression gets the same object, which is as cheap as
+     * creating dice gets. Shared dice are rolled by whoever gets them, on
+     * any thread, so they need threadsafe random sources (the default, or
+     * {@link RandomSourceType#THREAD_LOCAL}), and nobody may change them.
+     * 
+     * @param sharingCachedDice true to share cached expressions
+     * @return This factory
+     */
+    public DiceFactory setSharingCachedDice(boolean sharingCachedDice) {
+        this.sharingCachedDice = sharingCachedDice;
+        return(this);
+    }
+    
+    /** Set the most expressions the parse cache keeps. This empties the cache.
+     * 
+     * @param cacheSize The most parsed expressions to keep; 0 turns off caching.
+     * @return This factory
+     */
+    public DiceFactory setCacheSize(int cacheSize) {
+        cache = new LruCache<>(cacheSize);
+        return(this);
+    }
+    
+    public int getCacheSize() {
+        return(cache.getCapacity());
+    }
+    
+    /** Get the number of calls to {@link #create(String)} that found their
+     * expression in the cache.
+     */
+    public long getCacheHits() {
+        return(cache.getHits());
     }
     
+    /** Get the number of calls to {@link #create(String)} that had to parse
+     * their expression.
+     */
+    public long getCacheMisses() {
+        return(cache.getMisses());
+    }
+    
+    /** Empty the parse cache. */
+    public void clearCache() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+    
+    public boolean isMetricsEnabled() {
+        return(metricsEnabled);
+    }
+    
+    /** Choose whether the dice created from now on count their rolls. Dice
+     * created with metrics off cost nothing extra to roll; dice created with
+     * them on are wrapped in a {@link MeteredDie}. Dice already created keep
+     * counting, or not, as they were.
+     * 
+     * @param metricsEnabled true to count rolls
+     * @return This factory
+     */
+    public DiceFactory setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+        return(this);
+    }
+    
+    /** Get the metrics of every expression this factory has created dice
+     * for while metrics were on.
+     * 
+     * @return The metrics of each expression, by canonical form, in order.
+     */
+    public Map<String, MetricsSnapshot> getMetricsSnapshot() {
+        Map<String, MetricsSnapshot> result = new TreeMap<>();
+        for (Map.Entry<String, GeneratorMetrics> entry: metrics.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return(Collections.unmodifiableMap(result));
+    }
+    
+    /** Create a dice expression from a string such as "3d6 + 2".
+     * 
+     * Parsing is far slower than rolling, so parsed expressions are cached,
+     * keyed by their {@link #canonicalize canonical} form; creating the
+     * same expression again just builds new dice from the cached parse
+     * (or, for compiled expressions, shares the compiled table).
+     * 
+     * @param source The expression
+     * @return The dice expression.
+     */
     public DiceExpression create(String source) {
-        //System.out.println("Parsing dice expression '" + source + "'.");
-
-        // Parse the expression into an Antlr parse tree
-        DiceLexer lexer = new DiceLexer(CharStreams.fromString(source));
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
-        DiceParser parser = new DiceParser(tokens);
-        // MPM BUG: How can I force this to process the entire token stream, and not
-        // just give up once we've consumed all we can.
-        DiceParser.ExpressionContext expressionTree = parser.expression();
+        // Read the generation before the settings; see CachedExpression.
+        int currentGeneration = generation.get();
+        RandomSourceType type = randomSourceType;
+        boolean sharing = sharingCachedDice;
+        if (sharing && (type != null) && !type.isThreadSafe()) {
+            throw new IllegalStateException("Cached dice can only be shared if their random sources are threadsafe, and "
+                    + type.getName() + " sources aren't");
+        }
+        LruCache<String, CachedExpression> currentCache = cache;
+        String key = canonicalize(source);
         
-        //System.out.println("Expression tree created: " + expressionTree.toStringTree());
+        CachedExpression cached = currentCache.get(key);
+        if ((cached != null) && (cached.generation == currentGeneration)) {
+            if (sharing) {
+                return(metered(key, cached.expression));
+            } else if (cached.expression instanceof CompiledDie) {
+                return(metered(key, ((CompiledDie) cached.expression).withRandomSource(newRandomSource(type))));
+            } else {
+                return(metered(key, build(cached, type, false)));
+            }
+        }
         
-        DiceConstructingWalker walker = new DiceConstructingWalker();
-        DiceExpression result = walker.process(expressionTree);        
+        Object event = JfrEvents.beginDiceParse();
+        DiceParserType currentParserType = parserType;
+        CachedExpression entry;
+        if (currentParserType == DiceParserType.RECURSIVE_DESCENT) {
+            entry = new CachedExpression(currentGeneration, null, RecursiveDescentDiceParser.parse(source), null);
+        } else {
+            //System.out.println("Parsing dice expression '" + source + "'.");
+
+            // Parse the expression into an Antlr parse tree
+            DiceLexer lexer = new DiceLexer(CharStreams.fromString(source));
+            CommonTokenStream tokens = new CommonTokenStream(lexer);
+            DiceParser parser = new DiceParser(tokens);
+            // MPM BUG: How can I force this to process the entire token stream, and not
+            // just give up once we've consumed all we can.
+            DiceParser.ExpressionContext expressionTree = parser.expression();
 
+            //System.out.println("Expression tree created: " + expressionTree.toStringTree());
+            entry = new CachedExpression(currentGeneration, expressionTree, null, null);
+        }
+        
+        DiceExpression result = build(entry, type, compiling);
+        currentCache.put(key, new CachedExpression(currentGeneration, entry.tree, entry.parsed, result));
+        JfrEvents.commitDiceParse(event, source, currentParserType.getName());
+        if (sharing) {
+            return(metered(key, result));
+        }
+        // The cached dice may be shared later, once sharing is turned on, so
+        // a caller who isn't sharing gets dice of their own.
+        if (result instanceof CompiledDie) {
+            return(metered(key, ((CompiledDie) result).withRandomSource(newRandomSource(type))));
+        }
+        return(metered(key, build(entry, type, false)));
+    }
+    
+    /** Wrap newly created dice in a {@link MeteredDie}, if metrics are on. */
+    protected DiceExpression metered(String key, DiceExpression dice) {
+        if (!metricsEnabled) {
+            return(dice);
+        }
+        return(new MeteredDie(dice, metrics.computeIfAbsent(key, GeneratorMetrics::new)));
+    }
+    
+    /** Turn a parsed expression into dice. Neither parser's output is
+     * changed by building dice from it, so many threads can build dice from
+     * a cached expression at once.
+     */
+    protected DiceExpression build(CachedExpression parsed, RandomSourceType type, boolean compile) {
+        DiceExpression result;
+        if (parsed.parsed != null) {
+            result = parsed.parsed.build(type, accuracy);
+        } else {
+            DiceConstructingWalker walker = new DiceConstructingWalker(type, accuracy);
+            result = walker.process(parsed.tree);        
+        }
+        if (optimizing) {
+            result = DiceOptimizer.optimize(result);
+        }
+
+        if (compile) {
+            result = CompiledDice.compile(result, CompiledDice.DEFAULT_MAX_SUPPORT, newRandomSource(type));
+        }
         return(result);
     }
+    
+    protected static RandomSource newRandomSource(RandomSourceType type) {
+        return((type != null) ? type.create() : new JavaRandomSource(new Random()));
+    }
+    
+    /** Get the canonical form of a dice expression, which is what the parse
+     * cache is keyed by. Expressions with the same canonical form parse the
+     * same way.
+     * 
+     * The keywords are case-insensitive, so letters are lowercased. Spaces
+     * are mostly meaningless, so they're dropped - but not between two
+     * letters or digits ("1 2" is a range, "12" a constant), nor between a
+     * minus sign and a digit ("-3" is a negative number, "- 3" a minus sign
+     * and a number).
+     * 
+     * @param source The expression
+     * @return Its canonical form.
+     */
+    public static String canonicalize(String source) {
+        StringBuilder result = new StringBuilder(source.length());
+        char previous = 0;
+        boolean skippedSpace = false;
+        for (int i = 0; i < source.length(); ++i) {
+            char c = source.charAt(i);
+            if ((c == ' ') || (c == '\t') || (c == '\r') || (c == '\n')) {
+                // The same characters the grammar skips
+                skippedSpace = (result.length() > 0);
+                continue;
+            }
+            if ((c >= 'A') && (c <= 'Z')) {
+                c = (char) (c - 'A' + 'a');
+            }
+            if (skippedSpace && spaceMatters(previous, c)) {
+                result.append(' ');
+            }
+            skippedSpace = false;
+            result.append(c);
+            previous = c;
+        }
+        return(result.toString());
+    }
+    
+    private static boolean spaceMatters(char before, char after) {
+        boolean afterIsDigit = (after >= '0') && (after <= '9');
+        if (before == '-') {
+            return(afterIsDigit);
+        }
+        boolean beforeIsWord = Character.isLetterOrDigit(before);
+        return(beforeIsWord && (afterIsDigit || Character.isLetter(after)));
+    }
+    
+    /** A parsed expression, as kept in the cache: the ANTLR parse tree or
+     * the recursive-descent parser's result, and the dice built from it for
+     * the call that parsed it.
+     * 
+     * Changing a factory's settings changes the dice it should build, so
+     * it starts a new generation, and entries from older generations are
+     * ignored. A call reads the generation before the settings, so an entry
+     * built with old settings is never marked with the new generation.
+     */
+    protected static final class CachedExpression {
+        final int generation;
+        final DiceParser.ExpressionContext tree;
+        final RecursiveDescentDiceParser.ParsedExpression parsed;
+        final DiceExpression expression;
+        
+        CachedExpression(int generation, DiceParser.ExpressionContext tree,
+                RecursiveDescentDiceParser.ParsedExpression parsed, DiceExpression expression) {
+            this.generation = generation;
+            this.tree = tree;
+            this.parsed = parsed;
+            this.expression = expression;
+        }
+    }
 
 }
@@ -0,0 +1,311 @@
+package com.salesforce.rcg.numbers.dice;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.salesforce.rcg.random.BinomialSampler;
+import com.salesforce.rcg.random.RandomSource;
+
+/** How many times each value came up in a number of rolls of a dice
+ * expression. Only the values that came up at least once are kept, in
+ * increasing order.
+ *
+ * Histograms are immutable.
+ *
+ * @see DiceExpression#rollHistogram(long)
+ * @author mpreslermarshall
+ *
+ */
+public final class DiceHistogram {
+    /** The number of rolls made at a time when a histogram has to be rolled
+     * one value at a time.
+     */
+    static final int ROLL_CHUNK = 4096;
+
+    /** The values rolled, in increasing order. */
+    private final int[] values;
+
+    /** counts[i] is the number of times values[i] was rolled. */
+    private final long[] counts;
+
+    private final long total;
+
+    private DiceHistogram(int[] values, long[] counts) {
+        this.values = values;
+        this.counts = counts;
+        long sum = 0L;
+        for (long count: counts) {
+            sum += count;
+        }
+        this.total = sum;
+    }
+
+    /** Roll an expression <tt>n</tt> times and count the results.
+     *
+     * If the expression's exact distribution is small enough to build (no
+     * more than {@link CompiledDice#DEFAULT_MAX_SUPPORT} values), the counts
+     * are drawn straight from it: the number of rolls of each value, given
+     * the rolls not yet placed, is binomial, so it takes one binomial draw
+     * per possible value however large <tt>n</tt> is. Otherwise the
+     * expression is rolled <tt>n</tt> times.
+     *
+     * @param expression The expression to roll
+     * @param n The number of rolls
+     * @param source The random source for drawing from the distribution.
+     *     Expressions that have to be rolled use their own.
+     * @return The histogram.
+     */
+    public static DiceHistogram roll(DiceExpression expression, long n, RandomSource source) {
+        if (n < 0L) {
+            throw new IllegalArgumentException("The number of rolls must not be negative: " + n);
+        }
+        DiceDistribution distribution = expression.getDistribution(CompiledDice.DEFAULT_MAX_SUPPORT);
+        if (distribution != null) {
+            return(sample(distribution, n, source));
+        }
+
+        Map<Integer, long[]> tally = new HashMap<>();
+        int[] buffer = new int[(int) Math.min(n, ROLL_CHUNK)];
+        long remaining = n;
+        while (remaining > 0L) {
+            int chunk = (int) Math.min(remaining, buffer.length);
+            expression.roll(buffer, 0, chunk);
+            for (int i = 0; i < chunk; ++i) {
+                long[] count = tally.get(buffer[i]);
+                if (null == count) {
+                    count = new long[1];
+                    tally.put(buffer[i], count);
+                }
+                ++count[0];
+            }
+            remaining -= chunk;
+        }
+        return(fromTally(tally));
+    }
+
+    /** Build a histogram from a count of each value rolled.
+     *
+     * @param tally For each value rolled, a one-element array holding the
+     *     number of times it was rolled
+     */
+    static DiceHistogram fromTally(Map<Integer, long[]> tally) {
+        int[] values = new int[tally.size()];
+        int index = 0;
+        for (Integer value: tally.keySet()) {
+            values[index++] = value;
+        }
+        Arrays.sort(values);
+        long[] counts = new long[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            counts[i] = tally.get(values[i])[0];
+        }
+        return(new DiceHistogram(values, counts));
+    }
+
+    /** Build a histogram from counts of a run of values.
+     *
+     * @param min The value counted in <tt>counts[0]</tt>
+     * @param counts The number of times each value from <tt>min</tt> up was
+     *     rolled; values never rolled are left out of the histogram.
+     */
+    static DiceHistogram fromCounts(int min, long[] counts) {
+        int size = 0;
+        for (long count: counts) {
+            if (count > 0L) {
+                ++size;
+            }
+        }
+        int[] values = new int[size];
+        long[] nonZero = new long[size];
+        size = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            if (counts[i] > 0L) {
+                values[size] = min + i;
+                nonZero[size] = counts[i];
+                ++size;
+            }
+        }
+        return(new DiceHistogram(values, nonZero));
+    }
+
+    /** Draw the counts of <tt>n</tt> rolls from an exact distribution.
+     *
+     * @param distribution The distribution to draw from
+     * @param n The number of rolls
+     * @param source The random source to draw with
+     * @return The histogram.
+     */
+    public static DiceHistogram sample(DiceDistribution distribution, long n, RandomSource source) {
+        if (n < 0L) {
+            throw new IllegalArgumentException("The number of rolls must not be negative: " + n);
+        }
+        double[] probabilities = distribution.getProbabilities();
+        // The chance of the roll being value i or higher, summed from the top
+        // so the small tail probabilities aren't lost to rounding.
+        double[] atLeast = new double[probabilities.length];
+        double sum = 0.0;
+        for (int i = probabilities.length - 1; i >= 0; --i) {
+            sum += probabilities[i];
+            atLeast[i] = sum;
+        }
+
+        int[] values = new int[probabilities.length];
+        long[] counts = new long[probabilities.length];
+        int size = 0;
+        long remaining = n;
+        for (int i = 0; (i < probabilities.length) && (remaining > 0L); ++i) {
+            if (probabilities[i] <= 0.0) {
+                continue;
+            }
+            long count;
+            if (probabilities[i] >= atLeast[i]) {
+                // Nothing higher can be rolled
+                count = remaining;
+            } else {
+                count = BinomialSampler.sample(source, remaining, probabilities[i] / atLeast[i]);
+            }
+            if (count > 0L) {
+                values[size] = distribution.getMin() + i;
+                counts[size] = count;
+                ++size;
+                remaining -= count;
+            }
+        }
+        return(new DiceHistogram(Arrays.copyOf(values, size), Arrays.copyOf(counts, size)));
+    }
+
+    /** Add two histograms together: the counts of both sets of rolls.
+     *
+     * @param other The histogram to add to this one
+     * @return The combined histogram. Neither histogram is changed.
+     */
+    public DiceHistogram plus(DiceHistogram other) {
+        int[] mergedValues = new int[values.length + other.values.length];
+        long[] mergedCounts = new long[mergedValues.length];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while ((i < values.length) || (j < other.values.length)) {
+            if ((j >= other.values.length) || ((i < values.length) && (values[i] < other.values[j]))) {
+                mergedValues[size] = values[i];
+                mergedCounts[size] = counts[i++];
+            } else if ((i >= values.length) || (other.values[j] < values[i])) {
+                mergedValues[size] = other.values[j];
+                mergedCounts[size] = other.counts[j++];
+            } else {
+                mergedValues[size] = values[i];
+                mergedCounts[size] = counts[i++] + other.counts[j++];
+            }
+            ++size;
+        }
+        return(new DiceHistogram(Arrays.copyOf(mergedValues, size), Arrays.copyOf(mergedCounts, size)));
+    }
+
+    /** Get the total number of rolls. */
+    public long getTotal() {
+        return(total);
+    }
+
+    /** Get the number of different values rolled. */
+    public int size() {
+        return(values.length);
+    }
+
+    /** Get the number of times a value was rolled. */
+    public long getCount(int value) {
+        int index = Arrays.binarySearch(values, value);
+        return((index >= 0) ? counts[index] : 0L);
+    }
+
+    /** Get the values that were rolled, in increasing order. */
+    public int[] getValues() {
+        return(values.clone());
+    }
+
+    /** Get the number of times each value was rolled, in the same order as
+     * {@link #getValues()}.
+     */
+    public long[] getCounts() {
+        return(counts.clone());
+    }
+
+    /** Get the lowest value rolled. */
+    public int getMin() {
+        checkNotEmpty();
+        return(values[0]);
+    }
+
+    /** Get the highest value rolled. */
+    public int getMax() {
+        checkNotEmpty();
+        return(values[values.length - 1]);
+    }
+
+    /** Get the average of the rolls. */
+    public double getMean() {
+        checkNotEmpty();
+        double sum = 0.0;
+        for (int i = 0; i < values.length; ++i) {
+            sum += (double) values[i] * counts[i];
+        }
+        return(sum / total);
+    }
+
+    /** Get the variance of the rolls: the average squared distance from
+     * their average.
+     */
+    public double getVariance() {
+        double mean = getMean();
+        double sum = 0.0;
+        for (int i = 0; i < values.length; ++i) {
+            double distance = values[i] - mean;
+            sum += distance * distance * counts[i];
+        }
+        return(sum / total);
+    }
+
+    /** Get a percentile of the rolls: the lowest value that at least
+     * <tt>percent</tt>% of the rolls were no higher than. The 50th
+     * percentile is the median, and the 0th is the lowest value rolled.
+     *
+     * @param percent The percentile, from 0 through 100
+     * @return The value.
+     */
+    public int getPercentile(double percent) {
+        if (!(percent >= 0.0) || (percent > 100.0)) {
+            throw new IllegalArgumentException("A percentile must be from 0 through 100: " + percent);
+        }
+        checkNotEmpty();
+        // The number of rolls that must be at or below the value
+        double needed = percent / 100.0 * total;
+        long sum = 0L;
+        for (int i = 0; i < values.length; ++i) {
+            sum += counts[i];
+            if (sum >= needed) {
+                return(values[i]);
+            }
+        }
+        return(values[values.length - 1]);
+    }
+
+    private void checkNotEmpty() {
+        if (values.length == 0) {
+            throw new IllegalStateException("Nothing was rolled");
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append("DiceHistogram[");
+        for (int i = 0; i < values.length; ++i) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            result.append(values[i]).append(": ").append(counts[i]);
+        }
+        result.append("]");
+        return(result.toString());
+    }
+}
@@ -2,20 +2,147 @@ package com.salesforce.rcg.numbers.dice;
 
 /** Various modifiers that can be applied when creating dice. */
 public class DiceModifiers {
+    /** How much more likely a loaded die is to roll its favorite face than
+     * its least favorite, unless told otherwise.
+     */
+    public static final double DEFAULT_LOADING_STRENGTH = 2.0;
+    
     /** "Loaded dice" - this gives the ability to request that dice generate values
      * with a non-uniform distribution of values. Note that these values merely 
-     * specify that the die should be non-uniform; it does nothing do specify 
-     * _how_ non-uniform.
+     * specify that the die should be non-uniform; how non-uniform is up to
+     * the loading strength given to {@link #getFaceWeights}.
      * 
      * @author mpreslermarshall
      */
     public enum Loading {
         /** Dice that are LOADED_HIGH are more likely to generate higher
-         * values than 
+         * values than lower ones.
+         */
+        LOADED_HIGH("high"),
+        UNLOADED("unloaded"),
+        /** Dice that are LOADED_LOW are more likely to generate lower
+         * values than higher ones.
          */
-        LOADED_HIGH,
-        UNLOADED,
-        LOADED_LOW
+        LOADED_LOW("low");
+        
+        protected final String name;
+        
+        private Loading(String name) {
+            this.name = name;
+        }
+        
+        public String getName() {
+            return(name);
+        }
+        
+        /** Get the relative chance of a die rolling each of its faces. The
+         * weights rise (or fall) geometrically from one face to the next,
+         * so the favorite face is <tt>strength</tt> times as likely as the
+         * least favorite however many sides the die has.
+         * 
+         * @param sides The number of sides on the die. It must be positive.
+         * @param strength How many times as likely the favorite face is as
+         *     the least favorite. It must be at least 1; 1 is a fair die.
+         * @return The weights of faces 1 through <tt>sides</tt>.
+         */
+        public double[] getFaceWeights(int sides, double strength) {
+            if (sides <= 0) {
+                throw new IllegalArgumentException("The number of sides must be positive: " + sides);
+            }
+            if (!(strength >= 1.0) || Double.isInfinite(strength)) {
+                throw new IllegalArgumentException("The loading strength must be at least 1: " + strength);
+            }
+            double[] result = new double[sides];
+            for (int face = 0; face < sides; ++face) {
+                double position = (sides == 1) ? 0.0 : (double) face / (sides - 1);
+                switch (this) {
+                case LOADED_HIGH:
+                    result[face] = Math.pow(strength, position);
+                    break;
+                case LOADED_LOW:
+                    result[face] = Math.pow(strength, 1.0 - position);
+                    break;
+                default:
+                    result[face] = 1.0;
+                    break;
+                }
+            }
+            return(result);
+        }
+        
+        public static Loading from(String source) {
+            if (null == source) {
+                return(UNLOADED);
+            }
+            for (Loading loading: Loading.values()) {
+                if (loading.getName().equalsIgnoreCase(source)) {
+                    return(loading);
+                }
+            }
+            throw new IllegalArgumentException("Unrecognized dice loading: " + source);
+        }
     };
-
+    
+    /** Which of a set of dice count towards the total. "4d6 keep 3" rolls
+     * four dice and adds up the highest three; "4d6 drop lowest" is the
+     * same thing. Each selection comes with a count: the number of dice to
+     * keep, or the number to drop.
+     * 
+     * @author mpreslermarshall
+     */
+    public enum Selection {
+        /** Every die counts; the count is ignored. */
+        ALL("all"),
+        KEEP_HIGHEST("keep highest"),
+        KEEP_LOWEST("keep lowest"),
+        DROP_LOWEST("drop lowest"),
+        DROP_HIGHEST("drop highest");
+        
+        protected final String name;
+        
+        private Selection(String name) {
+            this.name = name;
+        }
+        
+        public String getName() {
+            return(name);
+        }
+        
+        /** Get whether the dice kept are the highest ones. */
+        public boolean keepsHighest() {
+            return((this == KEEP_HIGHEST) || (this == DROP_LOWEST));
+        }
+        
+        /** Get the number of dice kept.
+         * 
+         * @param numDice The number of dice rolled
+         * @param count The number of dice to keep or drop
+         * @return The number kept, from 0 through <tt>numDice</tt>.
+         */
+        public int getKept(int numDice, int count) {
+            int available = Math.max(numDice, 0);
+            switch (this) {
+            case KEEP_HIGHEST:
+            case KEEP_LOWEST:
+                return(Math.min(count, available));
+            case DROP_LOWEST:
+            case DROP_HIGHEST:
+                return((int) Math.max((long) available - count, 0L));
+            default:
+                return(available);
+            }
+        }
+        
+        public static Selection from(String source) {
+            if (null == source) {
+                return(ALL);
+            }
+            for (Selection selection: Selection.values()) {
+                if (selection.getName().equalsIgnoreCase(source)) {
+                    return(selection);
+                }
+            }
+            throw new IllegalArgumentException("Unrecognized dice selection: " + source);
+        }
+    }
 }
@@ -0,0 +1,48 @@
+package com.salesforce.rcg.numbers.dice;
+
+/** The parsers a {@link DiceFactory} can use to read dice expressions. Both
+ * accept the same expressions and build the same dice from them.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public enum DiceParserType {
+    /** The parser ANTLR generates from <tt>Dice.g4</tt>. Input it can't
+     * parse is reported on the console and skipped, rather than rejected.
+     */
+    ANTLR("antlr"),
+
+    /** A hand-written recursive-descent parser,
+     * {@link com.salesforce.rcg.numbers.dice.impl.RecursiveDescentDiceParser
+     * <tt>RecursiveDescentDiceParser</tt>}. It needs nothing beyond the JDK,
+     * is much quicker to load and to run, and throws an
+     * IllegalArgumentException for input it can't parse.
+     */
+    RECURSIVE_DESCENT("recursive-descent");
+
+    public static final DiceParserType DEFAULT_PARSER_TYPE = ANTLR;
+
+    protected final String name;
+
+    private DiceParserType(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return(name);
+    }
+
+    public static DiceParserType from(String source) {
+        if (null == source) {
+            return(DEFAULT_PARSER_TYPE);
+        }
+
+        for (DiceParserType type: DiceParserType.values()) {
+            if (type.getName().equalsIgnoreCase(source)) {
+                return(type);
+            }
+        }
+
+        throw new IllegalArgumentException("Unrecognized dice parser type: " + source);
+    }
+}
@@ -0,0 +1,302 @@
+package com.salesforce.rcg.numbers.dice;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.random.impl.SplitMix64Source;
+import com.salesforce.rcg.random.impl.Xoshiro256StarStarSource;
+
+/** Runs Monte Carlo simulations of dice expressions: rolls them many times,
+ * spread across a ForkJoinPool, and counts the results.
+ *
+ * The rolls are split into tasks of {@link #getTaskSize()} rolls each, and
+ * each task rolls with its own random source, seeded from the simulator's
+ * seed and the task's number. Each task counts its own rolls, and the
+ * counts are added up at the end. So there is nothing shared between the
+ * threads while they roll, and a simulator with a given seed gets the same
+ * results however many threads it runs on.
+ *
+ * Expressions are rolled with {@link DiceExpression#roll(RandomSource)},
+ * from several threads at once; the expressions in this package are fine
+ * with that. Where an expression's exact distribution is small enough
+ * (see {@link DiceHistogram#roll}), each task draws its counts straight
+ * from it rather than rolling, unless that's turned off with
+ * {@link #setSampling(boolean)}.
+ *
+ * A simulator can be shared by many threads once it's set up.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public class DiceSimulator {
+    /** The number of rolls each task makes, unless told otherwise. */
+    public static final long DEFAULT_TASK_SIZE = 1L << 20;
+
+    /** The most values a task counts in an array rather than a map. */
+    static final long DENSE_LIMIT = 1L << 16;
+
+    /** Spreads the seeds of different expressions and tasks apart. */
+    private static final long SEED_GAMMA = 0x9e3779b97f4a7c15L;
+
+    protected ForkJoinPool pool = ForkJoinPool.commonPool();
+    protected long seed;
+    protected long taskSize = DEFAULT_TASK_SIZE;
+    protected boolean sampling = true;
+
+    /** Create a simulator with a seed of its own. */
+    public DiceSimulator() {
+        this(SplitMix64Source.newSeed());
+    }
+
+    /** Create a simulator whose results can be reproduced.
+     *
+     * @param seed The seed all the random sources are made from
+     */
+    public DiceSimulator(long seed) {
+        this.seed = seed;
+    }
+
+    public ForkJoinPool getPool() {
+        return(pool);
+    }
+
+    /** Set the pool the tasks run in; the common pool by default. */
+    public DiceSimulator setPool(ForkJoinPool pool) {
+        if (null == pool) {
+            throw new IllegalArgumentException("The pool must not be null");
+        }
+        this.pool = pool;
+        return(this);
+    }
+
+    public long getSeed() {
+        return(seed);
+    }
+
+    public DiceSimulator setSeed(long seed) {
+        this.seed = seed;
+        return(this);
+    }
+
+    public long getTaskSize() {
+        return(taskSize);
+    }
+
+    /** Set the number of rolls in each task. Changing it changes which
+     * random numbers are used for which rolls, and so changes the results.
+     */
+    public DiceSimulator setTaskSize(long taskSize) {
+        if (taskSize <= 0L) {
+            throw new IllegalArgumentException("The task size must be positive: " + taskSize);
+        }
+        this.taskSize = taskSize;
+        return(this);
+    }
+
+    public boolean isSampling() {
+        return(sampling);
+    }
+
+    /** Set whether to draw counts from the exact distribution of
+     * expressions that have a small enough one, rather than rolling them.
+     * Either way, the counts have exactly the same distribution; sampling
+     * just takes time in proportion to the number of possible values rather
+     * than the number of rolls.
+     */
+    public DiceSimulator setSampling(boolean sampling) {
+        this.sampling = sampling;
+        return(this);
+    }
+
+    /** Roll an expression <tt>n</tt> times and count the results.
+     *
+     * @param expression The expression to roll
+     * @param n The number of rolls
+     * @return The histogram of the results, which has their mean,
+     *     percentiles, and so on.
+     */
+    public DiceHistogram simulate(DiceExpression expression, long n) {
+        return(simulate(expression, n, 0));
+    }
+
+    /** Roll each of several expressions <tt>n</tt> times, each with its own
+     * random sources, and count the results.
+     *
+     * @param expressions The expressions to roll
+     * @param n The number of rolls of each
+     * @return The histogram of each expression's rolls, in the same order.
+     */
+    public List<DiceHistogram> simulate(List<? extends DiceExpression> expressions, long n) {
+        if (null == expressions) {
+            throw new IllegalArgumentException("The expressions must not be null");
+        }
+        List<DiceHistogram> result = new ArrayList<>(expressions.size());
+        for (int i = 0; i < expressions.size(); ++i) {
+            result.add(simulate(expressions.get(i), n, i));
+        }
+        return(result);
+    }
+
+    /** Roll two expressions against each other <tt>n</tt> times, and count
+     * how often the first rolls higher, the same, or lower.
+     *
+     * @param first The first expression: A in P(A &gt; B)
+     * @param second The second expression: B in P(A &gt; B)
+     * @param n The number of rolls of each
+     * @return The counts.
+     */
+    public DiceComparison compare(DiceExpression first, DiceExpression second, long n) {
+        checkExpression(first);
+        checkExpression(second);
+        checkCount(n);
+        if (n == 0L) {
+            return(new DiceComparison(0L, 0L, 0L));
+        }
+        return(run(n, (task, count) -> {
+            RandomSource source = sourceFor(0, task);
+            long greater = 0L;
+            long equal = 0L;
+            for (long i = 0L; i < count; ++i) {
+                int a = first.roll(source);
+                int b = second.roll(source);
+                if (a > b) {
+                    ++greater;
+                } else if (a == b) {
+                    ++equal;
+                }
+            }
+            return(new DiceComparison(greater, equal, count - greater - equal));
+        }, DiceComparison::plus));
+    }
+
+    private DiceHistogram simulate(DiceExpression expression, long n, int stream) {
+        checkExpression(expression);
+        checkCount(n);
+        if (n == 0L) {
+            return(DiceHistogram.fromCounts(0, new long[0]));
+        }
+        DiceDistribution distribution = sampling ? expression.getDistribution(CompiledDice.DEFAULT_MAX_SUPPORT) : null;
+        if (distribution != null) {
+            return(run(n, (task, count) -> DiceHistogram.sample(distribution, count, sourceFor(stream, task)),
+                    DiceHistogram::plus));
+        }
+        long[] range = denseRange(expression);
+        return(run(n, (task, count) -> rollTask(expression, count, sourceFor(stream, task), range),
+                DiceHistogram::plus));
+    }
+
+    /** Roll one task's share of the rolls, counting them in an array if the
+     * expression's range is small enough, or a map if it isn't.
+     */
+    private static DiceHistogram rollTask(DiceExpression expression, long count, RandomSource source, long[] range) {
+        if (range != null) {
+            int min = (int) range[0];
+            long[] counts = new long[(int) (range[1] - range[0] + 1)];
+            for (long i = 0L; i < count; ++i) {
+                ++counts[expression.roll(source) - min];
+            }
+            return(DiceHistogram.fromCounts(min, counts));
+        }
+        Map<Integer, long[]> tally = new HashMap<>();
+        for (long i = 0L; i < count; ++i) {
+            int value = expression.roll(source);
+            long[] valueCount = tally.get(value);
+            if (null == valueCount) {
+                valueCount = new long[1];
+                tally.put(value, valueCount);
+            }
+            ++valueCount[0];
+        }
+        return(DiceHistogram.fromTally(tally));
+    }
+
+    /** Get an expression's lowest and highest rolls, if there are few
+     * enough values in between to count in an array.
+     */
+    private static long[] denseRange(DiceExpression expression) {
+        try {
+            long min = expression.getMin();
+            long max = expression.getMax();
+            if ((min <= max) && (max - min < DENSE_LIMIT)) {
+                return(new long[] { min, max });
+            }
+        } catch (UnsupportedOperationException e) {
+            // Nothing known about its range
+        }
+        return(null);
+    }
+
+    /** Get the random source for one task of one expression's rolls. */
+    RandomSource sourceFor(int stream, long task) {
+        long streamSeed = SplitMix64Source.mix(seed + SEED_GAMMA * (stream + 1L));
+        return(new Xoshiro256StarStarSource(SplitMix64Source.mix(streamSeed + SEED_GAMMA * (task + 1L))));
+    }
+
+    /** Run the tasks for <tt>n</tt> rolls in the pool, and merge their results. */
+    private <T> T run(long n, TaskBody<T> body, BinaryOperator<T> merge) {
+        long tasks = (n - 1) / taskSize + 1;
+        return(pool.invoke(new SimulationTask<>(body, merge, n, taskSize, 0L, tasks)));
+    }
+
+    private static void checkExpression(DiceExpression expression) {
+        if (null == expression) {
+            throw new IllegalArgumentException("The expression must not be null");
+        }
+    }
+
+    private static void checkCount(long n) {
+        if (n < 0L) {
+            throw new IllegalArgumentException("The number of rolls must not be negative: " + n);
+        }
+    }
+
+    /** The work of one task. */
+    private interface TaskBody<T> {
+        /** Make one task's rolls.
+         *
+         * @param task The task's number, from 0 up
+         * @param count The number of rolls to make
+         */
+        T run(long task, long count);
+    }
+
+    /** Runs a range of tasks, splitting it in half until there's only one. */
+    private static final class SimulationTask<T> extends RecursiveTask<T> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient TaskBody<T> body;
+        private final transient BinaryOperator<T> merge;
+        private final long n;
+        private final long taskSize;
+        private final long first;
+        private final long last;
+
+        SimulationTask(TaskBody<T> body, BinaryOperator<T> merge, long n, long taskSize, long first, long last) {
+            this.body = body;
+            this.merge = merge;
+            this.n = n;
+            this.taskSize = taskSize;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected T compute() {
+            if (last - first == 1L) {
+                long start = first * taskSize;
+                return(body.run(first, Math.min(taskSize, n - start)));
+            }
+            long middle = (first + last) >>> 1;
+            SimulationTask<T> right = new SimulationTask<>(body, merge, n, taskSize, middle, last);
+            right.fork();
+            T left = new SimulationTask<>(body, merge, n, taskSize, first, middle).compute();
+            return(merge.apply(left, right.join()));
+        }
+    }
+}
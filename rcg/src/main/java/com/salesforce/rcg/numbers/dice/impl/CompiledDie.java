@@ -0,0 +1,151 @@
+package com.salesforce.rcg.numbers.dice.impl;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.salesforce.rcg.numbers.dice.DiceDistribution;
+import com.salesforce.rcg.numbers.dice.DiceExpression;
+import com.salesforce.rcg.numbers.dice.DiceHistogram;
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.random.impl.JavaRandomSource;
+import com.salesforce.rcg.util.AliasTable;
+
+/** A dice expression that's been compiled down to its exact distribution.
+ * However many dice the original expression rolls, this rolls it with one
+ * random number and one lookup in an alias table.
+ *
+ * The table is built once, when the die is created, and never changes, so
+ * this is threadsafe as long as its random source is.
+ *
+ * @see com.salesforce.rcg.numbers.dice.CompiledDice
+ * @author mpreslermarshall
+ *
+ */
+public class CompiledDie implements DiceExpression {
+    /** The expression this was compiled from, which describes it. */
+    protected final DiceExpression original;
+    protected final DiceDistribution distribution;
+
+    /** The values that can be rolled. Values with no chance of being rolled
+     * are left out, so they can't sneak in through rounding in the table.
+     */
+    protected final int[] values;
+    protected final AliasTable table;
+    protected volatile RandomSource rng;
+
+    public CompiledDie(DiceExpression original, DiceDistribution distribution) {
+        this(original, distribution, new JavaRandomSource(new Random()));
+    }
+
+    public CompiledDie(DiceExpression original, DiceDistribution distribution, RandomSource rng) {
+        if ((null == original) || (null == distribution)) {
+            throw new IllegalArgumentException("The expression and its distribution must not be null");
+        }
+        this.original = original;
+        this.distribution = distribution;
+        setRandomSource(rng);
+
+        double[] probabilities = distribution.getProbabilities();
+        int count = 0;
+        for (double p: probabilities) {
+            if (p > 0.0) {
+                ++count;
+            }
+        }
+        values = new int[count];
+        double[] weights = new double[count];
+        count = 0;
+        for (int i = 0; i < probabilities.length; ++i) {
+            if (probabilities[i] > 0.0) {
+                values[count] = distribution.getMin() + i;
+                weights[count] = probabilities[i];
+                ++count;
+            }
+        }
+        table = new AliasTable(weights);
+    }
+
+    /** Create a die that shares another's table, but has its own random source. */
+    protected CompiledDie(CompiledDie other, RandomSource rng) {
+        this.original = other.original;
+        this.distribution = other.distribution;
+        this.values = other.values;
+        this.table = other.table;
+        setRandomSource(rng);
+    }
+
+    /** Get a die that rolls just like this one, with its own random source.
+     * The table isn't copied, so this is much cheaper than compiling the
+     * expression again.
+     *
+     * @param source The new die's random source
+     * @return The new die.
+     */
+    public CompiledDie withRandomSource(RandomSource source) {
+        return(new CompiledDie(this, source));
+    }
+
+    public void setRandomSource(RandomSource source) {
+        if (null == source) {
+            throw new IllegalArgumentException("The random source must not be null");
+        }
+        this.rng = source;
+    }
+
+    @Override
+    public RandomSource getRandomSource() {
+        return(rng);
+    }
+
+    /** Get the expression this was compiled from. */
+    public DiceExpression getOriginal() {
+        return(original);
+    }
+
+    @Override
+    public int roll() {
+        return(roll(rng));
+    }
+
+    @Override
+    public int roll(RandomSource random) {
+        if (values.length == 1) {
+            return(values[0]);
+        }
+        return(values[table.sample(random.nextDouble())]);
+    }
+
+    @Override
+    public void roll(int[] out, int off, int len) {
+        DiceExpression.checkRange(out, off, len);
+        RandomSource source = rng;
+        if (values.length == 1) {
+            Arrays.fill(out, off, off + len, values[0]);
+            return;
+        }
+        for (int i = off; i < off + len; ++i) {
+            out[i] = values[table.sample(source.nextDouble())];
+        }
+    }
+
+    @Override
+    public DiceHistogram rollHistogram(long n) {
+        return(DiceHistogram.sample(distribution, n, rng));
+    }
+
+    @Override
+    public DiceDistribution getDistribution(int maxSupport) {
+        if (distribution.getSupportSize() > maxSupport) {
+            return(null);
+        }
+        return(distribution);
+    }
+
+    /** A compiled die rolls exactly like its original, so it describes
+     * itself the same way.
+     */
+    @Override
+    public String toString() {
+        return(original.toString());
+    }
+}
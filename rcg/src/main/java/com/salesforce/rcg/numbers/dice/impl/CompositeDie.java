@@ -1,10 +1,13 @@
 package com.salesforce.rcg.numbers.dice.impl;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Vector;
 
+import com.salesforce.rcg.numbers.dice.DiceDistribution;
 import com.salesforce.rcg.numbers.dice.DiceExpression;
+import com.salesforce.rcg.random.RandomSource;
 
 /** A <tt>CompositeDie</tt> contains zero or more DiceExpressions. Rolling a composite
  * die consists of rolling each of the underlying dice expressions, and adding
@@ -14,7 +17,8 @@ import com.salesforce.rcg.numbers.dice.DiceExpression;
  * time, or they can be added incrementally with the {@link #addDie <tt>addDie</tt>} method.
  * 
  * CompositeDie objects are threadsafe, assuming that the underlying dice that make it
- * up are also threadsafe.  
+ * up are also threadsafe. Once a composite die is built, it can be
+ * {@link #freeze frozen} into a {@link FlattenedDie}, which rolls faster.
  * 
  * So why, you may ask, does this exist, when a {@link SimpleDie <tt>SimpleDie</tt>}
  * can already represent multiple dice? The answer is that a composite die allows 
@@ -28,6 +32,14 @@ import com.salesforce.rcg.numbers.dice.DiceExpression;
  */
 public class CompositeDie implements DiceExpression {
     protected final List<DiceExpression> dice = new Vector<>();
+    /** A copy of the dice, replaced whenever one is added, so rolling can
+     * walk an array instead of locking the list and allocating an iterator.
+     */
+    protected volatile DiceExpression[] snapshot = new DiceExpression[0];
+    /** The last distribution worked out, and the dice's distributions it
+     * was worked out from.
+     */
+    private volatile CachedDistribution cachedDistribution;
     
     public CompositeDie() {
     }
@@ -48,26 +60,195 @@ public class CompositeDie implements DiceExpression {
         if (null == die) {
             throw new IllegalArgumentException("Can't add null dice to a composite die!");
         }
-        dice.add(die);
+        synchronized (dice) {
+            dice.add(die);
+            snapshot = dice.toArray(new DiceExpression[0]);
+        }
         
         return this;
     }
     
+    /** Freeze this composite die into a {@link FlattenedDie}, which rolls
+     * the same dice without locking or walking the list of dice. The
+     * flattened dice get their own java.util.Random.
+     * 
+     * @return The flattened dice.
+     * @throws IllegalArgumentException If this contains anything other
+     *     than simple and composite dice.
+     */
+    public FlattenedDie freeze() {
+        return(FlattenedDie.flatten(this));
+    }
+    
+    /** Freeze this composite die into a {@link FlattenedDie}.
+     * 
+     * @param source The random source to roll all the dice with
+     * @return The flattened dice.
+     * @throws IllegalArgumentException If this contains anything other
+     *     than simple and composite dice.
+     */
+    public FlattenedDie freeze(RandomSource source) {
+        return(FlattenedDie.flatten(this, source));
+    }
+    
     public int size() {
         return dice.size();
     }
     
     @Override
     public int roll() {
+        DiceExpression[] current = snapshot;
+        int sum = 0;
+        
+        for (int i = 0; i < current.length; ++i) {
+            sum += current[i].roll();
+        }
+        
+        return sum;
+    }
+    
+    @Override
+    public int roll(RandomSource random) {
+        DiceExpression[] current = snapshot;
         int sum = 0;
         
-        for (DiceExpression die: dice) {
-            sum += die.roll();
+        for (int i = 0; i < current.length; ++i) {
+            sum += current[i].roll(random);
         }
         
         return sum;
     }
     
+    /** A composite die has no random source of its own, so this is the
+     * source of the first of its dice that has one, or null if none does.
+     */
+    @Override
+    public RandomSource getRandomSource() {
+        for (DiceExpression die: snapshot) {
+            RandomSource source = die.getRandomSource();
+            if (source != null) {
+                return(source);
+            }
+        }
+        return(null);
+    }
+    
+    /** Roll many times at once: each of the dice fills in all its rolls in
+     * one go, and they're added up. The list of dice is only read once,
+     * rather than once per roll.
+     */
+    @Override
+    public void roll(int[] out, int off, int len) {
+        DiceExpression.checkRange(out, off, len);
+        DiceExpression[] current = snapshot;
+        if (current.length == 0) {
+            Arrays.fill(out, off, off + len, 0);
+            return;
+        }
+        current[0].roll(out, off, len);
+        if (current.length > 1) {
+            int[] rolls = new int[len];
+            for (int d = 1; d < current.length; ++d) {
+                current[d].roll(rolls, 0, len);
+                for (int i = 0; i < len; ++i) {
+                    out[off + i] += rolls[i];
+                }
+            }
+        }
+    }
+    
+    /** The distribution of the total is the convolution of the dice's
+     * distributions, so it's only known if all of theirs are. The result is
+     * kept for as long as the dice give back the same distributions (which
+     * they do until they're changed), so it's only worked out once.
+     */
+    @Override
+    public DiceDistribution getDistribution(int maxSupport) {
+        DiceExpression[] current = snapshot;
+        DiceDistribution[] parts = new DiceDistribution[current.length];
+        for (int i = 0; i < current.length; ++i) {
+            parts[i] = current[i].getDistribution(maxSupport);
+            if (null == parts[i]) {
+                return(null);
+            }
+        }
+        
+        CachedDistribution cached = cachedDistribution;
+        if ((cached != null) && (cached.parts.length == parts.length)) {
+            boolean same = true;
+            for (int i = 0; (i < parts.length) && same; ++i) {
+                same = (cached.parts[i] == parts[i]);
+            }
+            if (same) {
+                if (cached.distribution != null) {
+                    return((cached.distribution.getSupportSize() <= maxSupport) ? cached.distribution : null);
+                }
+                if (maxSupport <= cached.maxSupport) {
+                    return(null);
+                }
+            }
+        }
+        
+        DiceDistribution result = DiceDistribution.constant(0);
+        for (DiceDistribution part: parts) {
+            result = result.plus(part, maxSupport);
+            if (null == result) {
+                break;
+            }
+        }
+        cachedDistribution = new CachedDistribution(parts, maxSupport, result);
+        return(result);
+    }
+    
+    /** The lowest total: the sum of the dice's lowest rolls. */
+    @Override
+    public int getMin() {
+        long sum = 0L;
+        for (DiceExpression die: snapshot) {
+            sum += die.getMin();
+        }
+        return(saturate(sum));
+    }
+    
+    /** The highest total: the sum of the dice's highest rolls. */
+    @Override
+    public int getMax() {
+        long sum = 0L;
+        for (DiceExpression die: snapshot) {
+            sum += die.getMax();
+        }
+        return(saturate(sum));
+    }
+    
+    /** Clamp a total to an int, so that dice with no highest roll (exploding
+     * dice, whose getMax() is Integer.MAX_VALUE) keep having none.
+     */
+    private static int saturate(long sum) {
+        return((int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, sum)));
+    }
+    
+    /** The average total: the sum of the dice's averages. */
+    @Override
+    public double getMean() {
+        double sum = 0.0;
+        for (DiceExpression die: snapshot) {
+            sum += die.getMean();
+        }
+        return(sum);
+    }
+    
+    /** The dice are rolled independently, so the variance of the total is
+     * the sum of their variances.
+     */
+    @Override
+    public double getVariance() {
+        double sum = 0.0;
+        for (DiceExpression die: snapshot) {
+            sum += die.getVariance();
+        }
+        return(sum);
+    }
+    
     @Override
     public synchronized String toString() {
         if (size() == 0) {
@@ -85,4 +266,18 @@ public class CompositeDie implements DiceExpression {
             return result.toString();
         }
     }
+    
+    private static final class CachedDistribution {
+        final DiceDistribution[] parts;
+        /** The size limit it was worked out with. */
+        final int maxSupport;
+        /** The distribution, or null if it was too large. */
+        final DiceDistribution distribution;
+        
+        CachedDistribution(DiceDistribution[] parts, int maxSupport, DiceDistribution distribution) {
+            this.parts = parts;
+            this.maxSupport = maxSupport;
+            this.distribution = distribution;
+        }
+    }
 }
@@ -7,18 +7,41 @@ import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.tree.TerminalNode;
 
 import com.salesforce.rcg.numbers.dice.DiceExpression;
+import com.salesforce.rcg.numbers.dice.DiceModifiers.Loading;
+import com.salesforce.rcg.numbers.dice.DiceModifiers.Selection;
 import com.salesforce.rcg.numbers.dice.impl.DiceParser.Add_or_subtractContext;
 import com.salesforce.rcg.numbers.dice.impl.DiceParser.BasicExpressionContext;
 import com.salesforce.rcg.numbers.dice.impl.DiceParser.ConstantExpressionContext;
 import com.salesforce.rcg.numbers.dice.impl.DiceParser.DicePrefixContext;
+import com.salesforce.rcg.numbers.dice.impl.DiceParser.DieContext;
 import com.salesforce.rcg.numbers.dice.impl.DiceParser.ExpressionContext;
 import com.salesforce.rcg.numbers.dice.impl.DiceParser.FrpExpressionContext;
 import com.salesforce.rcg.numbers.dice.impl.DiceParser.MinMaxExpressionContext;
 import com.salesforce.rcg.numbers.dice.impl.DiceParser.MultiplierContext;
+import com.salesforce.rcg.numbers.dice.impl.DiceParser.SelectionContext;
 import com.salesforce.rcg.numbers.dice.impl.DiceParser.SingleDieContext;
+import com.salesforce.rcg.random.RandomSourceType;
 
 public class DiceConstructingWalker {
+    /** The kind of random source to give each die, or null to leave the dice
+     * with their default source.
+     */
+    protected final RandomSourceType randomSourceType;
+    
+    /** The accuracy threshold for rolling huge numbers of dice. */
+    protected final double accuracy;
+    
     public DiceConstructingWalker() {
+        this(null);
+    }
+    
+    public DiceConstructingWalker(RandomSourceType randomSourceType) {
+        this(randomSourceType, DiceSumSampler.DEFAULT_ACCURACY);
+    }
+    
+    public DiceConstructingWalker(RandomSourceType randomSourceType, double accuracy) {
+        this.randomSourceType = randomSourceType;
+        this.accuracy = accuracy;
     }
     
     public DiceExpression process(ExpressionContext expressionTree) {
@@ -57,6 +80,11 @@ public class DiceConstructingWalker {
             result = processDicePrefix(result, expressionTree.dicePrefix());
         }
         
+        if (randomSourceType != null) {
+            result.setRandomSource(randomSourceType.create());
+        }
+        result.setAccuracy(accuracy);
+        
         return result;
     }
 
@@ -128,9 +156,44 @@ public class DiceConstructingWalker {
         
         // Build a die as specified
         SimpleDie result = new SimpleDie(numDice, sides, adder);
+        result.setLoading(getLoading(expression));
+        if (expression.EXPLODE() != null) {
+            result.setExploding(true);
+        }
+        if (expression.selection() != null) {
+            processSelection(result, expression.selection());
+        }
         return(result);
     }
     
+    protected void processSelection(SimpleDie die, SelectionContext expression) {
+        Selection selection;
+        if (expression.DROP() != null) {
+            selection = (expression.HIGHEST() != null) ? Selection.DROP_HIGHEST : Selection.DROP_LOWEST;
+        } else if ((expression.KEEP_LOWEST() != null) || (expression.LOWEST() != null)) {
+            selection = Selection.KEEP_LOWEST;
+        } else {
+            selection = Selection.KEEP_HIGHEST;
+        }
+        
+        // Dropping drops one die unless it says otherwise
+        int count = 1;
+        if (expression.INTEGER() != null) {
+            count = Integer.parseInt(expression.INTEGER().getSymbol().getText());
+        }
+        die.setSelection(selection, count);
+    }
+    
+    protected Loading getLoading(FrpExpressionContext expression) {
+        DieContext die = expression.die();
+        if (die.LOADED_HIGH_DIE() != null) {
+            return(Loading.LOADED_HIGH);
+        } else if (die.LOADED_LOW_DIE() != null) {
+            return(Loading.LOADED_LOW);
+        }
+        return(Loading.UNLOADED);
+    }
+    
     protected int getAdder(FrpExpressionContext expression) {
         // Did they specify a multiplier?
         Add_or_subtractContext asContext = expression.add_or_subtract();
@@ -0,0 +1,220 @@
+package com.salesforce.rcg.numbers.dice.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.salesforce.rcg.numbers.dice.DiceExpression;
+
+/** Rewrites dice expressions into simpler ones that roll exactly the same
+ * way. {@link DiceConstructingWalker} builds just what the expression says,
+ * so "2d6 &amp; 3d6 &amp; 5" is three dice objects, the last of which runs
+ * all the dice-rolling logic to come up with 5 every time. After
+ * optimizing, it's the one die "5d6 + 5".
+ *
+ * The rewrites are:
+ * <ul>
+ * <li>Composite dice inside composite dice are flattened into one.</li>
+ * <li>A chance prefix of 100% or more is dropped, and a die with a chance
+ *     of 0% or less becomes the constant 0.</li>
+ * <li>Anything that always rolls the same value - no dice, dice with no
+ *     sides or one side, or a multiplier of 0 - becomes a constant, which
+ *     never uses its random source.</li>
+ * <li>Dice with the same number of sides, the same multiplier and the same
+ *     loading (and no chance prefix) are merged into one set of dice: 2d6 + 3d6 is 5d6.</li>
+ * <li>All the constants are added together, and folded into the adder of
+ *     one of the dice if the multipliers allow it.</li>
+ * </ul>
+ * The result is a {@link SimpleDie} if everything merged into one, and
+ * otherwise a {@link CompositeDie}; its <tt>toString()</tt> describes the
+ * rewritten form. Dice with a chance prefix can't be merged with anything,
+ * since each has its own chance of rolling nothing; nor can dice that
+ * are kept, dropped or exploding. Expressions this doesn't know about
+ * (such as compiled dice) are kept as they are.
+ *
+ * The expression passed in isn't changed. The new dice take their random
+ * sources from the dice they replace.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public final class DiceOptimizer {
+    private DiceOptimizer() {
+        // Not to be instantiated
+    }
+
+    /** Optimize a dice expression.
+     *
+     * @param expression The expression to optimize
+     * @return An expression that rolls exactly the same values with the
+     *     same chances, usually more cheaply. It may be <tt>expression</tt>
+     *     itself if there's nothing to improve.
+     */
+    public static DiceExpression optimize(DiceExpression expression) {
+        if (null == expression) {
+            throw new IllegalArgumentException("Can't optimize a null expression");
+        }
+        if (!(expression instanceof SimpleDie) && !(expression instanceof CompositeDie)) {
+            return(expression);
+        }
+
+        List<DiceExpression> terms = new ArrayList<>();
+        addTerms(expression, terms);
+
+        long constant = 0L;
+        List<DiceExpression> result = new ArrayList<>();
+        for (DiceExpression term: terms) {
+            if (!(term instanceof SimpleDie)) {
+                result.add(term);
+                continue;
+            }
+            SimpleDie die = (SimpleDie) term;
+            if (die.getNumSides() < 0) {
+                // Rolling it fails; leave that to happen as it would have
+                result.add(copy(die));
+                continue;
+            }
+            Long value = constantValue(die);
+            if (value != null) {
+                constant += value;
+                continue;
+            }
+            if ((die.getChance() < 1.0) || die.isPooled()) {
+                result.add(copy(die));
+                continue;
+            }
+            SimpleDie match = findMatch(result, die);
+            if (match != null) {
+                match.setNumDice(match.getNumDice() + die.getNumDice());
+                match.setAdder(match.getAdder() + die.getAdder());
+            } else {
+                SimpleDie merged = copy(die);
+                merged.setChance(1.0);
+                result.add(merged);
+            }
+        }
+
+        if ((constant != 0L) || result.isEmpty()) {
+            if ((constant < Integer.MIN_VALUE) || (constant > Integer.MAX_VALUE)) {
+                // Rolling it overflows; don't change the way it does
+                return(expression);
+            }
+            foldConstant(result, (int) constant, findSource(terms));
+        }
+
+        if (result.size() == 1) {
+            return(result.get(0));
+        }
+        return(new CompositeDie(result));
+    }
+
+    private static void addTerms(DiceExpression expression, List<DiceExpression> terms) {
+        if (expression instanceof CompositeDie) {
+            for (DiceExpression die: ((CompositeDie) expression).snapshot) {
+                addTerms(die, terms);
+            }
+        } else {
+            terms.add(expression);
+        }
+    }
+
+    /** Get the value a die always rolls, or null if it doesn't always roll
+     * the same value.
+     */
+    private static Long constantValue(SimpleDie die) {
+        if (die.getChance() <= 0.0) {
+            return(0L);
+        }
+        boolean noDice = (die.getNumSides() == 0) || (die.getNumDice() <= 0);
+        long rolled;
+        if (noDice) {
+            rolled = die.getAdder();
+        } else if (die.isPooled()) {
+            return(null);
+        } else if (die.getNumSides() == 1) {
+            rolled = (long) die.getNumDice() + die.getAdder();
+        } else if (die.getMultiplier() == 0) {
+            return(0L);
+        } else {
+            return(null);
+        }
+        if ((rolled != 0L) && (die.getChance() < 1.0)) {
+            // Either that or 0
+            return(null);
+        }
+        long value = rolled * die.getMultiplier();
+        if ((rolled < Integer.MIN_VALUE) || (rolled > Integer.MAX_VALUE)
+                || (value < Integer.MIN_VALUE) || (value > Integer.MAX_VALUE)) {
+            return(null);
+        }
+        return(value);
+    }
+
+    /** Find dice already in the result that a die can be merged into. */
+    private static SimpleDie findMatch(List<DiceExpression> result, SimpleDie die) {
+        for (DiceExpression candidate: result) {
+            if (!(candidate instanceof SimpleDie)) {
+                continue;
+            }
+            SimpleDie other = (SimpleDie) candidate;
+            if ((other.getChance() >= 1.0) && (other.getNumSides() == die.getNumSides())
+                    && (other.getMultiplier() == die.getMultiplier())
+                    && (other.getNumDice() > 0) && (other.getNumSides() > 0)
+                    && Arrays.equals(other.getFaceWeights(), die.getFaceWeights())
+                    && !other.isPooled() && !die.isPooled()
+                    && ((long) other.getNumDice() + die.getNumDice() <= Integer.MAX_VALUE)
+                    && fitsInInt((long) other.getAdder() + die.getAdder())) {
+                return(other);
+            }
+        }
+        return(null);
+    }
+
+    /** Add a constant to the result: to the adder of dice whose multiplier
+     * divides it, or else as a constant of its own.
+     */
+    private static void foldConstant(List<DiceExpression> result, int constant, SimpleDie sourceDie) {
+        for (DiceExpression candidate: result) {
+            if (!(candidate instanceof SimpleDie)) {
+                continue;
+            }
+            SimpleDie die = (SimpleDie) candidate;
+            int multiplier = die.getMultiplier();
+            if ((die.getChance() >= 1.0) && (die.getNumSides() > 0) && (multiplier != 0)
+                    && (constant % multiplier == 0)
+                    && fitsInInt((long) die.getAdder() + constant / multiplier)) {
+                die.setAdder(die.getAdder() + constant / multiplier);
+                return;
+            }
+        }
+        // The same form the factory gives constants
+        SimpleDie constantDie = new SimpleDie(1, 0, constant);
+        if (sourceDie != null) {
+            constantDie.setRandomSource(sourceDie.getRandomSource());
+        }
+        result.add(0, constantDie);
+    }
+
+    private static SimpleDie findSource(List<DiceExpression> terms) {
+        for (DiceExpression term: terms) {
+            if (term instanceof SimpleDie) {
+                return((SimpleDie) term);
+            }
+        }
+        return(null);
+    }
+
+    private static boolean fitsInInt(long value) {
+        return((value >= Integer.MIN_VALUE) && (value <= Integer.MAX_VALUE));
+    }
+
+    private static SimpleDie copy(SimpleDie die) {
+        SimpleDie result = new SimpleDie(die.getNumDice(), die.getNumSides(), die.getAdder());
+        result.setMultiplier(die.getMultiplier());
+        result.setChance(die.getChance());
+        result.setAccuracy(die.getAccuracy());
+        result.copyModifiers(die);
+        result.setRandomSource(die.getRandomSource());
+        return(result);
+    }
+}
@@ -0,0 +1,522 @@
+package com.salesforce.rcg.numbers.dice.impl;
+
+import java.util.Arrays;
+
+import com.salesforce.rcg.numbers.dice.CompiledDice;
+import com.salesforce.rcg.numbers.dice.DiceDistribution;
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.util.AliasTable;
+
+/** Draws the total of a pool of dice where the total is more than just the
+ * sum of every die: only the highest (or lowest) few dice are kept, or the
+ * dice explode - a die that rolls its highest face is rolled again and
+ * added on, as many times as it keeps coming up highest.
+ *
+ * There are two ways to draw the total:
+ * <ul>
+ * <li>{@link Method#TABLE}: for dice that don't explode, the exact
+ *     distribution of the kept total is worked out when the sampler is
+ *     created, and the total is drawn from an alias table over it with one
+ *     random number. This is used when the distribution has no more than
+ *     {@link CompiledDice#DEFAULT_MAX_SUPPORT} values and doesn't take too
+ *     long to work out, which covers the usual "4d6 keep 3" and
+ *     "10d10 keep 5".</li>
+ * <li>{@link Method#ROLL}: every die is rolled into a buffer, and the kept
+ *     dice are found by partial selection (quickselect) in place, without
+ *     sorting. Each thread has its own buffer, which is reused from one
+ *     roll to the next, so nothing is allocated per roll.</li>
+ * </ul>
+ *
+ * The dice can be loaded, in which case each face is drawn from an alias
+ * table over the faces. Samplers are immutable and threadsafe.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public final class DicePoolSampler {
+    /** How the total is drawn. */
+    public enum Method {
+        /** Draw the total from a table of its exact distribution. */
+        TABLE,
+        /** Roll each die and pick out the ones kept. */
+        ROLL
+    }
+
+    /** The most steps working out the exact distribution may take; see
+     * {@link #keptDistribution}.
+     */
+    static final long WORK_LIMIT = 1L << 26;
+
+    /** Below this many dice, selection just sorts them by insertion. */
+    private static final int INSERTION_SORT_SIZE = 8;
+
+    private final int numDice;
+    private final int sides;
+    private final int kept;
+    private final boolean highest;
+    private final boolean exploding;
+    private final Method method;
+
+    /** The chance of each face, from 1 up. */
+    private final double[] faceProbabilities;
+    /** For loaded dice, the faces that can come up and a table to pick
+     * among them; null for fair dice.
+     */
+    private final int[] faces;
+    private final AliasTable faceTable;
+    /** The lowest and highest faces that can come up. */
+    private final int lowFace;
+    private final int highFace;
+
+    /** The exact distribution of the total, if it was small enough to build. */
+    private final DiceDistribution distribution;
+    /** For TABLE, the totals that can come up, and a table to pick among them. */
+    private final int[] values;
+    private final AliasTable table;
+
+    /** The dice rolled for each thread's current total. */
+    private final ThreadLocal<int[]> buffers;
+
+    /** Create a sampler.
+     *
+     * @param numDice The number of dice rolled. It must not be negative.
+     * @param sides The number of sides on each die. It must be positive.
+     * @param weights The relative chance of each face, from 1 up, or null
+     *     for fair dice. If given, there must be one for each side.
+     * @param kept The number of dice that count towards the total, from 0
+     *     through <tt>numDice</tt>
+     * @param highest Whether the dice kept are the highest ones, rather than
+     *     the lowest
+     * @param exploding Whether a die that rolls its highest face is rolled
+     *     again and added on
+     * @throws IllegalArgumentException If any of those are out of range, or
+     *     the dice would explode forever because they can only come up on
+     *     their highest face.
+     */
+    public DicePoolSampler(int numDice, int sides, double[] weights, int kept, boolean highest, boolean exploding) {
+        if (numDice < 0) {
+            throw new IllegalArgumentException("The number of dice must not be negative: " + numDice);
+        }
+        if (sides <= 0) {
+            throw new IllegalArgumentException("The number of sides must be positive: " + sides);
+        }
+        if ((kept < 0) || (kept > numDice)) {
+            throw new IllegalArgumentException("Can't keep " + kept + " of " + numDice + " dice");
+        }
+        if ((weights != null) && (weights.length != sides)) {
+            throw new IllegalArgumentException("There must be a weight for each of the " + sides
+                    + " sides, not " + weights.length);
+        }
+        this.numDice = numDice;
+        this.sides = sides;
+        this.kept = kept;
+        this.highest = highest;
+        this.exploding = exploding;
+
+        if (weights != null) {
+            faceProbabilities = DiceDistribution.fromWeights(1, weights).getProbabilities();
+            int count = 0;
+            for (double p: faceProbabilities) {
+                if (p > 0.0) {
+                    ++count;
+                }
+            }
+            faces = new int[count];
+            double[] faceWeights = new double[count];
+            count = 0;
+            for (int i = 0; i < sides; ++i) {
+                if (faceProbabilities[i] > 0.0) {
+                    faces[count] = i + 1;
+                    faceWeights[count] = faceProbabilities[i];
+                    ++count;
+                }
+            }
+            faceTable = new AliasTable(faceWeights);
+            lowFace = faces[0];
+            highFace = faces[faces.length - 1];
+        } else {
+            faceProbabilities = new double[sides];
+            Arrays.fill(faceProbabilities, 1.0 / sides);
+            faces = null;
+            faceTable = null;
+            lowFace = 1;
+            highFace = sides;
+        }
+        if (exploding && (lowFace == sides)) {
+            throw new IllegalArgumentException("Dice that always roll their highest face would explode forever");
+        }
+
+        if (exploding) {
+            distribution = null;
+        } else {
+            distribution = keptDistribution(CompiledDice.DEFAULT_MAX_SUPPORT);
+        }
+        if (distribution != null) {
+            method = Method.TABLE;
+            double[] probabilities = distribution.getProbabilities();
+            int count = 0;
+            for (double p: probabilities) {
+                if (p > 0.0) {
+                    ++count;
+                }
+            }
+            values = new int[count];
+            double[] tableWeights = new double[count];
+            count = 0;
+            for (int i = 0; i < probabilities.length; ++i) {
+                if (probabilities[i] > 0.0) {
+                    values[count] = distribution.getMin() + i;
+                    tableWeights[count] = probabilities[i];
+                    ++count;
+                }
+            }
+            table = new AliasTable(tableWeights);
+            buffers = null;
+        } else {
+            method = Method.ROLL;
+            values = null;
+            table = null;
+            final int size = numDice;
+            buffers = ThreadLocal.withInitial(() -> new int[size]);
+        }
+    }
+
+    public Method getMethod() {
+        return(method);
+    }
+
+    public int getNumDice() {
+        return(numDice);
+    }
+
+    public int getNumSides() {
+        return(sides);
+    }
+
+    /** Get the number of dice that count towards the total. */
+    public int getKept() {
+        return(kept);
+    }
+
+    public boolean isKeepingHighest() {
+        return(highest);
+    }
+
+    public boolean isExploding() {
+        return(exploding);
+    }
+
+    /** Get the lowest total. */
+    public long getMinTotal() {
+        return((long) kept * lowFace);
+    }
+
+    /** Get the highest total, or Long.MAX_VALUE if the dice explode and so
+     * have no highest total.
+     */
+    public long getMaxTotal() {
+        return(exploding ? Long.MAX_VALUE : (long) kept * highFace);
+    }
+
+    /** Get the distribution of the total.
+     *
+     * @param maxSupport The most possible values it may have
+     * @return The distribution, or null if it's too large or too much work
+     *     to build, or the dice explode and so have no end of possible
+     *     totals.
+     */
+    public DiceDistribution getDistribution(int maxSupport) {
+        if (exploding) {
+            return(null);
+        }
+        if (distribution != null) {
+            return((distribution.getSupportSize() <= maxSupport) ? distribution : null);
+        }
+        if (maxSupport <= CompiledDice.DEFAULT_MAX_SUPPORT) {
+            // It would have been built if it fitted
+            return(null);
+        }
+        return(keptDistribution(maxSupport));
+    }
+
+    /** Get the exact average total.
+     *
+     * @throws UnsupportedOperationException If some dice are dropped, and
+     *     the distribution is too large to work it out from.
+     */
+    public double getMean() {
+        if (exploding && (kept == numDice)) {
+            return(numDice * explodingMoments()[0]);
+        }
+        return(analyzedDistribution().getMean());
+    }
+
+    /** Get the exact variance of the total.
+     *
+     * @throws UnsupportedOperationException If some dice are dropped, and
+     *     the distribution is too large to work it out from.
+     */
+    public double getVariance() {
+        if (exploding && (kept == numDice)) {
+            double[] moments = explodingMoments();
+            return(numDice * (moments[1] - moments[0] * moments[0]));
+        }
+        return(analyzedDistribution().getVariance());
+    }
+
+    private DiceDistribution analyzedDistribution() {
+        DiceDistribution result = getDistribution(DiceDistribution.MAX_ANALYZED_SUPPORT);
+        if (null == result) {
+            throw new UnsupportedOperationException("The distribution of " + numDice + "d" + sides
+                    + (exploding ? " exploding" : "") + " keeping " + kept + " is too large to analyze");
+        }
+        return(result);
+    }
+
+    /** The mean and mean square of one exploding die. A die is its face F,
+     * plus another exploding die if F is the highest face (chance p), so
+     * E[X] = E[F] / (1 - p) and E[X^2] = (E[F^2] + 2 sides p E[X]) / (1 - p).
+     */
+    private double[] explodingMoments() {
+        double mean = 0.0;
+        double meanSquare = 0.0;
+        for (int face = 1; face <= sides; ++face) {
+            mean += face * faceProbabilities[face - 1];
+            meanSquare += (double) face * face * faceProbabilities[face - 1];
+        }
+        double p = faceProbabilities[sides - 1];
+        double dieMean = mean / (1.0 - p);
+        double dieMeanSquare = (meanSquare + 2.0 * sides * p * dieMean) / (1.0 - p);
+        return(new double[] { dieMean, dieMeanSquare });
+    }
+
+    /** Draw a total.
+     *
+     * @param source The random source to draw from
+     * @return The total of the dice kept.
+     */
+    public long sum(RandomSource source) {
+        if (kept == 0) {
+            return(0L);
+        }
+        if (method == Method.TABLE) {
+            if (values.length == 1) {
+                return(values[0]);
+            }
+            return(values[table.sample(source.nextDouble())]);
+        }
+        if (kept == numDice) {
+            long total = 0L;
+            for (int i = 0; i < numDice; ++i) {
+                total += rollDie(source);
+            }
+            return(total);
+        }
+
+        int[] dice = buffers.get();
+        for (int i = 0; i < numDice; ++i) {
+            dice[i] = rollDie(source);
+        }
+        long total = 0L;
+        if (highest) {
+            select(dice, numDice, numDice - kept);
+            for (int i = numDice - kept; i < numDice; ++i) {
+                total += dice[i];
+            }
+        } else {
+            select(dice, numDice, kept - 1);
+            for (int i = 0; i < kept; ++i) {
+                total += dice[i];
+            }
+        }
+        return(total);
+    }
+
+    /** Draw the totals of several rolls into part of an array.
+     *
+     * @param source The random source to draw from
+     * @param out The array to fill
+     * @param off The first index in <tt>out</tt> to fill
+     * @param len The number of rolls
+     */
+    public void fill(RandomSource source, int[] out, int off, int len) {
+        for (int i = off; i < off + len; ++i) {
+            out[i] = (int) sum(source);
+        }
+    }
+
+    private int rollDie(RandomSource source) {
+        int face = drawFace(source);
+        if (!exploding) {
+            return(face);
+        }
+        int total = face;
+        while (face == sides) {
+            face = drawFace(source);
+            total += face;
+        }
+        return(total);
+    }
+
+    private int drawFace(RandomSource source) {
+        if (null == faceTable) {
+            return(source.nextInt(sides) + 1);
+        }
+        return(faces[faceTable.sample(source.nextDouble())]);
+    }
+
+    /** Partially order the first <tt>count</tt> values of an array, so that
+     * <tt>values[k]</tt> holds the value it would if they were sorted, every
+     * value before it is no larger, and every value after it is no smaller.
+     * This is quickselect, with Hoare partitioning so that the many equal
+     * values dice roll don't slow it down; it takes linear time on average,
+     * and allocates nothing.
+     */
+    static void select(int[] values, int count, int k) {
+        int low = 0;
+        int high = count - 1;
+        while (high - low >= INSERTION_SORT_SIZE) {
+            int pivot = medianOfThree(values[low], values[(low + high) >>> 1], values[high]);
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    ++i;
+                }
+                while (values[j] > pivot) {
+                    --j;
+                }
+                if (i <= j) {
+                    int temp = values[i];
+                    values[i] = values[j];
+                    values[j] = temp;
+                    ++i;
+                    --j;
+                }
+            }
+            // Now everything up to j is at most the pivot, everything from i
+            // on is at least the pivot, and anything in between equals it.
+            if (k <= j) {
+                high = j;
+            } else if (k >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+        for (int i = low + 1; i <= high; ++i) {
+            int value = values[i];
+            int j = i - 1;
+            while ((j >= low) && (values[j] > value)) {
+                values[j + 1] = values[j];
+                --j;
+            }
+            values[j + 1] = value;
+        }
+    }
+
+    private static int medianOfThree(int a, int b, int c) {
+        return(Math.max(Math.min(a, b), Math.min(Math.max(a, b), c)));
+    }
+
+    /** Work out the exact distribution of the kept total.
+     *
+     * The faces are taken from the best (highest, if the highest dice are
+     * kept) to the worst. For each face, the number of the dice not yet
+     * placed that show it is binomial, given they show this face or a
+     * worse one; the first <tt>kept</tt> dice placed are the ones kept. So
+     * the distribution is built up over (dice placed, total kept so far),
+     * face by face, without ever listing the rolls themselves.
+     *
+     * @return The distribution, or null if it would have more than
+     *     <tt>maxSupport</tt> values or take more than {@link #WORK_LIMIT}
+     *     steps.
+     */
+    private DiceDistribution keptDistribution(int maxSupport) {
+        long support = (long) kept * (highFace - lowFace) + 1;
+        int maxSum = kept * sides;
+        double pairs = (numDice + 1.0) * (numDice + 2.0) / 2.0;
+        if ((support > maxSupport) || (sides * pairs * (maxSum + 1.0) > WORK_LIMIT)) {
+            return(null);
+        }
+
+        double[] logFactorial = new double[numDice + 1];
+        for (int i = 2; i <= numDice; ++i) {
+            logFactorial[i] = logFactorial[i - 1] + Math.log(i);
+        }
+        // The chance of each face or any worse one, summed from the worst up
+        double[] atMost = new double[sides];
+        double sum = 0.0;
+        for (int step = sides - 1; step >= 0; --step) {
+            sum += faceProbabilities[faceAt(step) - 1];
+            atMost[step] = sum;
+        }
+
+        double[][] current = new double[numDice + 1][];
+        current[0] = new double[maxSum + 1];
+        current[0][0] = 1.0;
+        for (int step = 0; step < sides; ++step) {
+            int face = faceAt(step);
+            // Once only faces that can't come up are left, every die has
+            // been placed, and none shows this face
+            double q = (step == sides - 1) ? 1.0
+                    : (atMost[step] <= 0.0) ? 0.0
+                    : Math.min(1.0, faceProbabilities[face - 1] / atMost[step]);
+            double[][] next = new double[numDice + 1][];
+            for (int placed = 0; placed <= numDice; ++placed) {
+                double[] from = current[placed];
+                if (null == from) {
+                    continue;
+                }
+                int remaining = numDice - placed;
+                int keptSoFar = Math.min(placed, kept);
+                for (int showing = 0; showing <= remaining; ++showing) {
+                    double p = binomial(remaining, showing, q, logFactorial);
+                    if (p <= 0.0) {
+                        continue;
+                    }
+                    int shift = Math.min(showing, kept - keptSoFar) * face;
+                    double[] to = next[placed + showing];
+                    if (null == to) {
+                        to = new double[maxSum + 1];
+                        next[placed + showing] = to;
+                    }
+                    for (int total = 0; total + shift <= maxSum; ++total) {
+                        if (from[total] != 0.0) {
+                            to[total + shift] += from[total] * p;
+                        }
+                    }
+                }
+            }
+            current = next;
+        }
+
+        double[] totals = current[numDice];
+        int first = 0;
+        while (totals[first] <= 0.0) {
+            ++first;
+        }
+        int last = maxSum;
+        while (totals[last] <= 0.0) {
+            --last;
+        }
+        return(DiceDistribution.fromWeights(first, Arrays.copyOfRange(totals, first, last + 1)));
+    }
+
+    /** The face taken at a step of {@link #keptDistribution}: best first. */
+    private int faceAt(int step) {
+        return(highest ? sides - step : step + 1);
+    }
+
+    /** The chance of <tt>k</tt> successes in <tt>n</tt> trials. */
+    private static double binomial(int n, int k, double p, double[] logFactorial) {
+        if (p <= 0.0) {
+            return((k == 0) ? 1.0 : 0.0);
+        }
+        if (p >= 1.0) {
+            return((k == n) ? 1.0 : 0.0);
+        }
+        return(Math.exp(logFactorial[n] - logFactorial[k] - logFactorial[n - k]
+                + k * Math.log(p) + (n - k) * Math.log1p(-p)));
+    }
+}
@@ -0,0 +1,236 @@
+package com.salesforce.rcg.numbers.dice.impl;
+
+import com.salesforce.rcg.random.BinomialSampler;
+import com.salesforce.rcg.random.BoundedIntBatch;
+import com.salesforce.rcg.random.RandomSource;
+
+/** Draws the total of rolling a number of identical dice, choosing the
+ * cheapest way to do it for the number of dice and sides.
+ *
+ * A few dice are simply rolled, several to a random number (see
+ * {@link BoundedIntBatch}). That takes time in proportion to the number of
+ * dice, which is too slow for something like 100000d20, so there are two
+ * ways of drawing the total directly:
+ * <ul>
+ * <li>{@link Method#MULTINOMIAL}: draw how many dice show each face, one
+ *     binomial draw per face. This is exact, and takes time in proportion to
+ *     the number of sides.</li>
+ * <li>{@link Method#NORMAL}: the total of many dice is very nearly normally
+ *     distributed, so draw from a normal distribution with the same mean and
+ *     variance, corrected for the (slightly flatter) shape of the real
+ *     distribution and rounded to a whole number. Draws outside the range
+ *     the dice can actually roll are thrown away, so it never rolls an
+ *     impossible total. This is approximate, and takes constant time.</li>
+ * </ul>
+ *
+ * How approximate the normal method may be is set by an accuracy threshold:
+ * it's used only if the excess kurtosis of the dice total - the leading
+ * term of its difference from a true normal distribution, which shrinks in
+ * proportion to the number of dice - is no bigger than the threshold. (The
+ * correction then removes most of even that difference.) A threshold of 0
+ * means the total is always exact.
+ *
+ * Samplers are immutable and threadsafe.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public final class DiceSumSampler {
+    /** How the total is drawn. */
+    public enum Method {
+        /** Roll every die, several to a random number. */
+        BATCHED,
+        /** Draw the number of dice showing each face. */
+        MULTINOMIAL,
+        /** Draw from a corrected normal distribution. */
+        NORMAL
+    }
+
+    /** The default accuracy threshold, which allows the normal method from
+     * about 12000 dice up.
+     */
+    public static final double DEFAULT_ACCURACY = 1e-4;
+
+    /** Rolling this many random numbers' worth of dice is always cheap enough. */
+    private static final double BATCHED_CHEAP_DRAWS = 16.0;
+
+    /** The rough cost of a binomial draw, in random numbers. */
+    private static final double BINOMIAL_COST = 8.0;
+
+    /** The most dice {@link #fill} draws at once. */
+    private static final int FILL_CHUNK = 1024;
+
+    private final int numDice;
+    private final int sides;
+    private final Method method;
+    private final BoundedIntBatch batch;
+    private final double mean;
+    private final double standardDeviation;
+    /** The Cornish-Fisher correction for kurtosis: kurtosis / 24. */
+    private final double kurtosisCorrection;
+
+    /** Create a sampler that picks the best method for the dice.
+     *
+     * @param numDice The number of dice
+     * @param sides The number of sides on each die
+     * @param accuracy The largest excess kurtosis at which the normal
+     *     method may be used; 0 to always be exact.
+     */
+    public DiceSumSampler(int numDice, int sides, double accuracy) {
+        this(numDice, sides, chooseMethod(numDice, sides, accuracy));
+    }
+
+    /** Create a sampler that uses a particular method.
+     *
+     * @param numDice The number of dice
+     * @param sides The number of sides on each die. It must be positive.
+     * @param method The method to use
+     */
+    public DiceSumSampler(int numDice, int sides, Method method) {
+        if (sides <= 0) {
+            throw new IllegalArgumentException("The number of sides must be positive: " + sides);
+        }
+        this.numDice = numDice;
+        this.sides = sides;
+        this.method = method;
+        this.batch = (method == Method.BATCHED) ? new BoundedIntBatch(sides) : null;
+        this.mean = numDice * (sides + 1) / 2.0;
+        this.standardDeviation = Math.sqrt(numDice * ((double) sides * sides - 1.0) / 12.0);
+        this.kurtosisCorrection = excessKurtosis(numDice, sides) / 24.0;
+    }
+
+    /** The excess kurtosis of the total of <tt>numDice</tt> fair dice. A
+     * single die has -6(s^2 + 1) / 5(s^2 - 1), and adding up n dice divides
+     * that by n.
+     */
+    static double excessKurtosis(int numDice, int sides) {
+        if ((numDice <= 0) || (sides <= 1)) {
+            return(0.0);
+        }
+        double squared = (double) sides * sides;
+        return(-6.0 * (squared + 1.0) / (5.0 * (squared - 1.0) * numDice));
+    }
+
+    static Method chooseMethod(int numDice, int sides, double accuracy) {
+        if (sides <= 0) {
+            throw new IllegalArgumentException("The number of sides must be positive: " + sides);
+        }
+        if (sides == 1) {
+            return(Method.BATCHED);
+        }
+        double batchedCost = (double) numDice / new BoundedIntBatch(sides).getPerDraw();
+        if (batchedCost <= BATCHED_CHEAP_DRAWS) {
+            return(Method.BATCHED);
+        }
+        if (Math.abs(excessKurtosis(numDice, sides)) <= accuracy) {
+            return(Method.NORMAL);
+        }
+        if (BINOMIAL_COST * (sides - 1) < batchedCost) {
+            return(Method.MULTINOMIAL);
+        }
+        return(Method.BATCHED);
+    }
+
+    public Method getMethod() {
+        return(method);
+    }
+
+    public int getNumDice() {
+        return(numDice);
+    }
+
+    public int getNumSides() {
+        return(sides);
+    }
+
+    /** Draw the total of rolling the dice.
+     *
+     * @param source The random source to draw from
+     * @return The total, from numDice through numDice * sides.
+     */
+    public long sum(RandomSource source) {
+        if (numDice <= 0) {
+            return(0L);
+        }
+        switch (method) {
+        case MULTINOMIAL:
+            return(multinomial(source));
+        case NORMAL:
+            return(normal(source));
+        default:
+            // Each die is 1 more than a value in [0, sides).
+            return(batch.sum(source, numDice) + numDice);
+        }
+    }
+
+    /** Draw the totals of several rolls of the dice into part of an array.
+     * For a handful of dice, all the rolls' dice are drawn together, so no
+     * part of a random number is wasted between one roll and the next: 3d6
+     * takes a random number for every seven rolls rather than one each.
+     *
+     * @param source The random source to draw from
+     * @param out The array to fill
+     * @param off The first index in <tt>out</tt> to fill
+     * @param len The number of rolls
+     */
+    public void fill(RandomSource source, int[] out, int off, int len) {
+        if ((method != Method.BATCHED) || (numDice <= 0) || (numDice > batch.getPerDraw())) {
+            for (int i = off; i < off + len; ++i) {
+                out[i] = (int) sum(source);
+            }
+            return;
+        }
+        if (numDice == 1) {
+            batch.fill(source, out, off, len);
+            for (int i = off; i < off + len; ++i) {
+                ++out[i];
+            }
+            return;
+        }
+        int rollsPerChunk = Math.max(1, FILL_CHUNK / numDice);
+        int[] faces = new int[Math.min(len, rollsPerChunk) * numDice];
+        int end = off + len;
+        while (off < end) {
+            int rolls = Math.min(end - off, rollsPerChunk);
+            batch.fill(source, faces, 0, rolls * numDice);
+            int face = 0;
+            for (int i = 0; i < rolls; ++i) {
+                int total = numDice;
+                for (int j = 0; j < numDice; ++j) {
+                    total += faces[face++];
+                }
+                out[off + i] = total;
+            }
+            off += rolls;
+        }
+    }
+
+    /** Work through the faces, drawing how many of the dice not yet placed
+     * show each one. Each of those dice is equally likely to show any of the
+     * faces left, which makes the count binomial.
+     */
+    private long multinomial(RandomSource source) {
+        long remaining = numDice;
+        long total = 0L;
+        for (int face = 1; (face < sides) && (remaining > 0); ++face) {
+            long count = BinomialSampler.sample(source, remaining, 1.0 / (sides - face + 1));
+            total += face * count;
+            remaining -= count;
+        }
+        return(total + (long) sides * remaining);
+    }
+
+    private long normal(RandomSource source) {
+        long min = numDice;
+        long max = (long) numDice * sides;
+        while (true) {
+            double z = source.nextGaussian();
+            // Cornish-Fisher: adjust the quantile for the kurtosis
+            z += kurtosisCorrection * (z * z * z - 3.0 * z);
+            long total = Math.round(mean + standardDeviation * z);
+            if ((total >= min) && (total <= max)) {
+                return(total);
+            }
+        }
+    }
+}
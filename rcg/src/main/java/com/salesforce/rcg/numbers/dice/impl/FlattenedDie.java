@@ -0,0 +1,251 @@
+package com.salesforce.rcg.numbers.dice.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.salesforce.rcg.numbers.dice.DiceDistribution;
+import com.salesforce.rcg.numbers.dice.DiceExpression;
+import com.salesforce.rcg.numbers.dice.DiceHistogram;
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.random.impl.JavaRandomSource;
+
+/** A frozen {@link CompositeDie}: the same dice, flattened into arrays.
+ *
+ * A composite die is built up one die at a time, and can contain other
+ * composites, so rolling it walks a synchronized list and calls each die in
+ * turn. Once it's built, it can be {@link CompositeDie#freeze() frozen}
+ * into one of these instead. Every {@link SimpleDie} in it, however deeply
+ * nested, becomes a term - number of dice, sides, adder, multiplier,
+ * chance and the rest of its modifiers - in a set of parallel arrays, and rolling is a single loop over
+ * them, with no locks and nothing allocated.
+ *
+ * Flattened dice are immutable, and threadsafe as long as their random
+ * source is. Changing the dice they were frozen from doesn't change them.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public final class FlattenedDie implements DiceExpression {
+    private final int[] numDice;
+    private final int[] sides;
+    private final int[] adders;
+    private final int[] multipliers;
+    private final double[] chances;
+    /** The sampler for each term's dice, or null if it has none. */
+    private final DiceSumSampler[] samplers;
+    /** The sampler for each term's dice if they're loaded, or null if they aren't. */
+    private final LoadedDiceSampler[] loadedSamplers;
+    /** The sampler for each term's dice if they're kept or exploding, or null if they aren't. */
+    private final DicePoolSampler[] poolSamplers;
+
+    /** Copies of the dice, as they were when they were frozen. These are
+     * only used to describe the dice and work out their statistics, never
+     * to roll them.
+     */
+    private final CompositeDie frozen;
+    private final String description;
+    private final RandomSource rng;
+
+    private FlattenedDie(List<SimpleDie> terms, String description, RandomSource rng) {
+        int count = terms.size();
+        numDice = new int[count];
+        sides = new int[count];
+        adders = new int[count];
+        multipliers = new int[count];
+        chances = new double[count];
+        samplers = new DiceSumSampler[count];
+        loadedSamplers = new LoadedDiceSampler[count];
+        poolSamplers = new DicePoolSampler[count];
+        frozen = new CompositeDie();
+        for (int i = 0; i < count; ++i) {
+            SimpleDie term = terms.get(i);
+            numDice[i] = term.getNumDice();
+            sides[i] = term.getNumSides();
+            adders[i] = term.getAdder();
+            multipliers[i] = term.getMultiplier();
+            chances[i] = term.getChance();
+            if ((sides[i] != 0) && (numDice[i] > 0)) {
+                if (term.isPooled()) {
+                    poolSamplers[i] = term.createPoolSampler();
+                } else if (term.isLoaded()) {
+                    loadedSamplers[i] = new LoadedDiceSampler(numDice[i], term.getFaceWeights());
+                } else {
+                    samplers[i] = new DiceSumSampler(numDice[i], sides[i], term.getAccuracy());
+                }
+            }
+
+            SimpleDie copy = new SimpleDie(numDice[i], sides[i], adders[i]);
+            copy.setMultiplier(multipliers[i]);
+            copy.setChance(chances[i]);
+            copy.setAccuracy(term.getAccuracy());
+            copy.copyModifiers(term);
+            frozen.addDie(copy);
+        }
+        this.description = description;
+        checkRandomSource(rng);
+        this.rng = rng;
+    }
+
+    private FlattenedDie(FlattenedDie other, RandomSource rng) {
+        this.numDice = other.numDice;
+        this.sides = other.sides;
+        this.adders = other.adders;
+        this.multipliers = other.multipliers;
+        this.chances = other.chances;
+        this.samplers = other.samplers;
+        this.loadedSamplers = other.loadedSamplers;
+        this.poolSamplers = other.poolSamplers;
+        this.frozen = other.frozen;
+        this.description = other.description;
+        checkRandomSource(rng);
+        this.rng = rng;
+    }
+
+    private static void checkRandomSource(RandomSource rng) {
+        if (null == rng) {
+            throw new IllegalArgumentException("The random source must not be null");
+        }
+    }
+
+    /** Flatten a dice expression, with its own java.util.Random.
+     *
+     * @see #flatten(DiceExpression, RandomSource)
+     */
+    public static FlattenedDie flatten(DiceExpression expression) {
+        return(flatten(expression, new JavaRandomSource(new Random())));
+    }
+
+    /** Flatten a dice expression: a {@link SimpleDie}, or a
+     * {@link CompositeDie} made of simple dice and other composites.
+     *
+     * @param expression The expression to flatten
+     * @param source The random source to roll all the dice with
+     * @return The flattened dice.
+     * @throws IllegalArgumentException If the expression contains anything
+     *     other than simple and composite dice, or dice with a negative
+     *     number of sides.
+     */
+    public static FlattenedDie flatten(DiceExpression expression, RandomSource source) {
+        if (null == expression) {
+            throw new IllegalArgumentException("Can't flatten a null expression");
+        }
+        if (expression instanceof FlattenedDie) {
+            return(((FlattenedDie) expression).withRandomSource(source));
+        }
+        List<SimpleDie> terms = new ArrayList<>();
+        addTerms(expression, terms);
+        for (SimpleDie term: terms) {
+            if (term.getNumSides() < 0) {
+                throw new IllegalArgumentException("Can't flatten dice with a negative number of sides: " + term);
+            }
+        }
+        return(new FlattenedDie(terms, expression.toString(), source));
+    }
+
+    private static void addTerms(DiceExpression expression, List<SimpleDie> terms) {
+        if (expression instanceof SimpleDie) {
+            terms.add((SimpleDie) expression);
+        } else if (expression instanceof CompositeDie) {
+            for (DiceExpression die: ((CompositeDie) expression).snapshot) {
+                addTerms(die, terms);
+            }
+        } else if (expression instanceof FlattenedDie) {
+            addTerms(((FlattenedDie) expression).frozen, terms);
+        } else {
+            throw new IllegalArgumentException("Can't flatten " + expression.getClass().getName() + " expressions");
+        }
+    }
+
+    /** Get flattened dice that roll just like these, with their own random
+     * source. Nothing is copied.
+     */
+    public FlattenedDie withRandomSource(RandomSource source) {
+        return(new FlattenedDie(this, source));
+    }
+
+    @Override
+    public RandomSource getRandomSource() {
+        return(rng);
+    }
+
+    /** Get the number of terms: the number of simple dice flattened into this. */
+    public int size() {
+        return(numDice.length);
+    }
+
+    @Override
+    public int roll() {
+        return(roll(rng));
+    }
+
+    /** Roll every term, the same way {@link SimpleDie#roll(RandomSource)}
+     * would, and add them up.
+     */
+    @Override
+    public int roll(RandomSource random) {
+        int total = 0;
+        for (int i = 0; i < numDice.length; ++i) {
+            if ((chances[i] < 1.0) && (random.nextDouble() >= chances[i])) {
+                continue;
+            }
+            int sum = adders[i];
+            if (samplers[i] != null) {
+                sum += (int) samplers[i].sum(random);
+            } else if (loadedSamplers[i] != null) {
+                sum += (int) loadedSamplers[i].sum(random);
+            } else if (poolSamplers[i] != null) {
+                sum += (int) poolSamplers[i].sum(random);
+            }
+            total += sum * multipliers[i];
+        }
+        return(total);
+    }
+
+    @Override
+    public void roll(int[] out, int off, int len) {
+        DiceExpression.checkRange(out, off, len);
+        RandomSource source = rng;
+        for (int i = off; i < off + len; ++i) {
+            out[i] = roll(source);
+        }
+    }
+
+    @Override
+    public DiceHistogram rollHistogram(long n) {
+        return(DiceHistogram.roll(this, n, rng));
+    }
+
+    @Override
+    public DiceDistribution getDistribution(int maxSupport) {
+        return(frozen.getDistribution(maxSupport));
+    }
+
+    @Override
+    public int getMin() {
+        return(frozen.getMin());
+    }
+
+    @Override
+    public int getMax() {
+        return(frozen.getMax());
+    }
+
+    @Override
+    public double getMean() {
+        return(frozen.getMean());
+    }
+
+    @Override
+    public double getVariance() {
+        return(frozen.getVariance());
+    }
+
+    /** Flattened dice describe themselves the way the dice they were frozen
+     * from did.
+     */
+    @Override
+    public String toString() {
+        return(description);
+    }
+}
@@ -0,0 +1,232 @@
+package com.salesforce.rcg.numbers.dice.impl;
+
+import com.salesforce.rcg.numbers.dice.CompiledDice;
+import com.salesforce.rcg.numbers.dice.DiceDistribution;
+import com.salesforce.rcg.random.BinomialSampler;
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.util.AliasTable;
+
+/** Draws the total of rolling a number of identical loaded dice: dice whose
+ * faces aren't all equally likely.
+ *
+ * Everything is worked out when the sampler is created, so that rolling is
+ * as cheap as for fair dice:
+ * <ul>
+ * <li>{@link Method#TABLE}: the exact distribution of the total is built,
+ *     and the total is drawn from an alias table over it - one random number
+ *     however many dice there are. This is used whenever the total has no
+ *     more than {@link CompiledDice#DEFAULT_MAX_SUPPORT} possible values.</li>
+ * <li>{@link Method#PER_DIE}: each die is drawn from an alias table over
+ *     its faces.</li>
+ * <li>{@link Method#MULTINOMIAL}: draw how many dice show each face, one
+ *     binomial draw per face, as {@link DiceSumSampler} does for fair dice.</li>
+ * </ul>
+ * The last two are for totals too large for a table, whichever is cheaper;
+ * either way, a single die is one lookup. All three are exact.
+ *
+ * Samplers are immutable and threadsafe.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public final class LoadedDiceSampler {
+    /** How the total is drawn. */
+    public enum Method {
+        /** Draw the total from a table of its exact distribution. */
+        TABLE,
+        /** Draw each die from a table of its faces. */
+        PER_DIE,
+        /** Draw the number of dice showing each face. */
+        MULTINOMIAL
+    }
+
+    /** The rough cost of a binomial draw, in random numbers. */
+    private static final double BINOMIAL_COST = 8.0;
+
+    private final int numDice;
+    private final Method method;
+    private final double[] weights;
+    private final DiceDistribution faceDistribution;
+    /** The distribution of the total, if it's small enough to build. */
+    private final DiceDistribution totalDistribution;
+
+    /** The values the table picks from: totals for TABLE, faces for PER_DIE.
+     * Values with no chance of coming up are left out, so rounding in the
+     * table can't produce them.
+     */
+    private final int[] values;
+    private final AliasTable table;
+
+    /** For MULTINOMIAL, the chance of each face, and of that face or any
+     * higher one.
+     */
+    private final double[] faceProbabilities;
+    private final double[] atLeast;
+
+    /** Create a sampler.
+     *
+     * @param numDice The number of dice. Zero or fewer always total 0.
+     * @param weights The relative chance of each face, from 1 up. They must
+     *     not be negative, and at least one must be positive.
+     */
+    public LoadedDiceSampler(int numDice, double[] weights) {
+        if ((null == weights) || (weights.length == 0)) {
+            throw new IllegalArgumentException("A loaded die must have at least one face");
+        }
+        this.numDice = numDice;
+        this.weights = weights.clone();
+        this.faceDistribution = DiceDistribution.fromWeights(1, this.weights);
+        this.totalDistribution = faceDistribution.sumOf(numDice, CompiledDice.DEFAULT_MAX_SUPPORT);
+
+        DiceDistribution tableDistribution;
+        if (totalDistribution != null) {
+            method = Method.TABLE;
+            tableDistribution = totalDistribution;
+        } else if (numDice <= BINOMIAL_COST * (weights.length - 1)) {
+            method = Method.PER_DIE;
+            tableDistribution = faceDistribution;
+        } else {
+            method = Method.MULTINOMIAL;
+            tableDistribution = null;
+        }
+
+        if (tableDistribution != null) {
+            double[] probabilities = tableDistribution.getProbabilities();
+            int count = 0;
+            for (double p: probabilities) {
+                if (p > 0.0) {
+                    ++count;
+                }
+            }
+            values = new int[count];
+            double[] tableWeights = new double[count];
+            count = 0;
+            for (int i = 0; i < probabilities.length; ++i) {
+                if (probabilities[i] > 0.0) {
+                    values[count] = tableDistribution.getMin() + i;
+                    tableWeights[count] = probabilities[i];
+                    ++count;
+                }
+            }
+            table = new AliasTable(tableWeights);
+            faceProbabilities = null;
+            atLeast = null;
+        } else {
+            values = null;
+            table = null;
+            faceProbabilities = faceDistribution.getProbabilities();
+            atLeast = new double[faceProbabilities.length];
+            double sum = 0.0;
+            for (int i = faceProbabilities.length - 1; i >= 0; --i) {
+                sum += faceProbabilities[i];
+                atLeast[i] = sum;
+            }
+        }
+    }
+
+    public Method getMethod() {
+        return(method);
+    }
+
+    public int getNumDice() {
+        return(numDice);
+    }
+
+    public int getNumSides() {
+        return(weights.length);
+    }
+
+    /** Get the relative chance of each face. */
+    public double[] getWeights() {
+        return(weights.clone());
+    }
+
+    /** Get the distribution of a single die. */
+    public DiceDistribution getFaceDistribution() {
+        return(faceDistribution);
+    }
+
+    /** Get the distribution of the total.
+     *
+     * @param maxSupport The most possible values it may have
+     * @return The distribution, or null if it's too large.
+     */
+    public DiceDistribution getDistribution(int maxSupport) {
+        if ((totalDistribution != null) && (totalDistribution.getSupportSize() <= maxSupport)) {
+            return(totalDistribution);
+        }
+        if ((long) (weights.length - 1) * Math.max(numDice, 0) + 1 <= CompiledDice.DEFAULT_MAX_SUPPORT) {
+            // It would have been built if it fitted
+            return(null);
+        }
+        return(faceDistribution.sumOf(numDice, maxSupport));
+    }
+
+    /** Draw the total of rolling the dice.
+     *
+     * @param source The random source to draw from
+     * @return The total, from numDice through numDice * sides.
+     */
+    public long sum(RandomSource source) {
+        if (numDice <= 0) {
+            return(0L);
+        }
+        switch (method) {
+        case TABLE:
+            return(draw(source));
+        case PER_DIE:
+            long total = 0L;
+            for (int i = 0; i < numDice; ++i) {
+                total += draw(source);
+            }
+            return(total);
+        default:
+            return(multinomial(source));
+        }
+    }
+
+    /** Draw the totals of several rolls of the dice into part of an array.
+     *
+     * @param source The random source to draw from
+     * @param out The array to fill
+     * @param off The first index in <tt>out</tt> to fill
+     * @param len The number of rolls
+     */
+    public void fill(RandomSource source, int[] out, int off, int len) {
+        if ((method == Method.TABLE) && (numDice > 0)) {
+            for (int i = off; i < off + len; ++i) {
+                out[i] = draw(source);
+            }
+            return;
+        }
+        for (int i = off; i < off + len; ++i) {
+            out[i] = (int) sum(source);
+        }
+    }
+
+    private int draw(RandomSource source) {
+        if (values.length == 1) {
+            return(values[0]);
+        }
+        return(values[table.sample(source.nextDouble())]);
+    }
+
+    private long multinomial(RandomSource source) {
+        long remaining = numDice;
+        long total = 0L;
+        for (int i = 0; (i < faceProbabilities.length) && (remaining > 0); ++i) {
+            if (faceProbabilities[i] <= 0.0) {
+                continue;
+            }
+            long count;
+            if (faceProbabilities[i] >= atLeast[i]) {
+                count = remaining;
+            } else {
+                count = BinomialSampler.sample(source, remaining, faceProbabilities[i] / atLeast[i]);
+            }
+            total += (i + 1) * count;
+            remaining -= count;
+        }
+        return(total);
+    }
+}
@@ -0,0 +1,128 @@
+package com.salesforce.rcg.numbers.dice.impl;
+
+import com.salesforce.rcg.metrics.GeneratorMetrics;
+import com.salesforce.rcg.numbers.dice.DiceDistribution;
+import com.salesforce.rcg.numbers.dice.DiceExpression;
+import com.salesforce.rcg.numbers.dice.DiceHistogram;
+import com.salesforce.rcg.random.RandomSource;
+
+/** A dice expression that counts its rolls: it rolls another expression,
+ * and adds each roll to a set of {@link GeneratorMetrics}. This is what a
+ * {@link com.salesforce.rcg.numbers.dice.DiceFactory DiceFactory} hands out
+ * when its metrics are turned on. Dice created with metrics off aren't
+ * wrapped at all, so they pay nothing for them.
+ *
+ * Everything but rolling goes straight to the wrapped expression, so a
+ * metered die describes itself, and has the same distribution, as the
+ * expression it wraps. It's threadsafe if that expression is.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public final class MeteredDie implements DiceExpression {
+    private final DiceExpression expression;
+    private final GeneratorMetrics metrics;
+
+    /** Wrap an expression.
+     *
+     * @param expression The expression to roll
+     * @param metrics The metrics to count its rolls in. Many dice can share
+     *     one set of metrics.
+     */
+    public MeteredDie(DiceExpression expression, GeneratorMetrics metrics) {
+        if (null == expression) {
+            throw new IllegalArgumentException("The expression must not be null");
+        }
+        if (null == metrics) {
+            throw new IllegalArgumentException("The metrics must not be null");
+        }
+        this.expression = expression;
+        this.metrics = metrics;
+    }
+
+    /** Get the expression this rolls. */
+    public DiceExpression getExpression() {
+        return(expression);
+    }
+
+    @Override
+    public GeneratorMetrics getMetrics() {
+        return(metrics);
+    }
+
+    @Override
+    public RandomSource getRandomSource() {
+        return(expression.getRandomSource());
+    }
+
+    @Override
+    public int roll() {
+        long start = metrics.startTimer();
+        int result = expression.roll();
+        metrics.addGenerated(1L);
+        metrics.stopTimer(start);
+        return(result);
+    }
+
+    @Override
+    public int roll(RandomSource random) {
+        long start = metrics.startTimer();
+        int result = expression.roll(random);
+        metrics.addGenerated(1L);
+        metrics.stopTimer(start);
+        return(result);
+    }
+
+    @Override
+    public void roll(int[] out, int off, int len) {
+        expression.roll(out, off, len);
+        metrics.addGenerated(len);
+    }
+
+    @Override
+    public DiceHistogram rollHistogram(long n) {
+        DiceHistogram result = expression.rollHistogram(n);
+        metrics.addGenerated(n);
+        return(result);
+    }
+
+    @Override
+    public DiceDistribution getDistribution(int maxSupport) {
+        return(expression.getDistribution(maxSupport));
+    }
+
+    @Override
+    public int getMin() {
+        return(expression.getMin());
+    }
+
+    @Override
+    public int getMax() {
+        return(expression.getMax());
+    }
+
+    @Override
+    public double getMean() {
+        return(expression.getMean());
+    }
+
+    @Override
+    public double getVariance() {
+        return(expression.getVariance());
+    }
+
+    @Override
+    public double probabilityOf(int value) {
+        return(expression.probabilityOf(value));
+    }
+
+    @Override
+    public double cdf(int value) {
+        return(expression.cdf(value));
+    }
+
+    @Override
+    public String toString() {
+        return(expression.toString());
+    }
+}
@@ -0,0 +1,444 @@
+package com.salesforce.rcg.numbers.dice.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.salesforce.rcg.numbers.dice.DiceExpression;
+import com.salesforce.rcg.numbers.dice.DiceModifiers.Loading;
+import com.salesforce.rcg.numbers.dice.DiceModifiers.Selection;
+import com.salesforce.rcg.random.RandomSourceType;
+
+/** A hand-written parser for dice expressions, covering the same grammar as
+ * <tt>Dice.g4</tt>:
+ * <pre>
+ *   expression      : singleDie (AND singleDie)* EOF
+ *   singleDie       : dicePrefix? basicExpression
+ *   dicePrefix      : CHANCE COLON INTEGER PERCENT COMMA
+ *   basicExpression : (frpExpression | minMaxExpression | constantExpression) (TIMES INTEGER)?
+ *   frpExpression   : INTEGER? die INTEGER EXPLODE? selection? (PLUS INTEGER | MINUS INTEGER | INTEGER)?
+ *   die             : 'd' | 'dh' | 'dl'
+ *   selection       : KEEP HIGHEST? INTEGER | KEEP LOWEST INTEGER | KEEP_HIGHEST INTEGER
+ *                   | KEEP_LOWEST INTEGER | DROP (LOWEST | HIGHEST) INTEGER?
+ *   minMaxExpression: INTEGER MINUS INTEGER | INTEGER INTEGER
+ *   constantExpression: INTEGER
+ * </pre>
+ *
+ * It splits the input into tokens exactly as the ANTLR lexer does (so "1-6"
+ * is the two integers 1 and -6, and "007" is three zeros and a 7), and
+ * builds exactly the dice {@link DiceConstructingWalker} does. Unlike the
+ * ANTLR parser, it doesn't skip over input it can't make sense of: anything
+ * that isn't a complete expression is an IllegalArgumentException.
+ *
+ * It needs nothing but the JDK, and loads and warms up far faster than the
+ * ANTLR runtime.
+ *
+ * The result of parsing is a {@link ParsedExpression}, which can build as
+ * many sets of dice as are needed without parsing again.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public class RecursiveDescentDiceParser {
+    /** The kinds of token; the same ones the ANTLR lexer produces. */
+    enum TokenType {
+        INTEGER, DIE, AND, CHANCE, KEEP, KEEP_HIGHEST, KEEP_LOWEST, DROP, HIGHEST, LOWEST,
+        PLUS, MINUS, TIMES, COLON, PERCENT, COMMA, PERIOD, EXPLODE, EOF
+    }
+
+    protected final String source;
+    protected final List<TokenType> types = new ArrayList<>();
+    protected final List<String> texts = new ArrayList<>();
+    protected int position = 0;
+
+    protected RecursiveDescentDiceParser(String source) {
+        this.source = source;
+        tokenize();
+    }
+
+    /** Parse a dice expression.
+     *
+     * @param source The expression, such as "3d6 + 2"
+     * @return The parsed expression
+     * @throws IllegalArgumentException If the expression can't be parsed.
+     */
+    public static ParsedExpression parse(String source) {
+        if (null == source) {
+            throw new IllegalArgumentException("Can't parse a null dice expression");
+        }
+        return(new RecursiveDescentDiceParser(source).expression());
+    }
+
+    //
+    // Lexical analysis
+    //
+
+    private void tokenize() {
+        int length = source.length();
+        int i = 0;
+        while (i < length) {
+            char c = source.charAt(i);
+            if ((c == ' ') || (c == '\t') || (c == '\r') || (c == '\n')) {
+                ++i;
+            } else if (c == '0') {
+                // Zero is always an integer on its own
+                addToken(TokenType.INTEGER, "0");
+                ++i;
+            } else if (isNonZeroDigit(c) || ((c == '-') && (i + 1 < length) && isNonZeroDigit(source.charAt(i + 1)))) {
+                int start = i;
+                ++i;
+                while ((i < length) && isDigit(source.charAt(i))) {
+                    ++i;
+                }
+                addToken(TokenType.INTEGER, source.substring(start, i));
+            } else if (matchesKeyword(i, "drop")) {
+                addToken(TokenType.DROP, "drop");
+                i += 4;
+            } else if ((c == 'd') || (c == 'D')) {
+                // A loaded die is one token, as it is for the ANTLR lexer
+                char next = (i + 1 < length) ? Character.toLowerCase(source.charAt(i + 1)) : ' ';
+                if ((next == 'h') || (next == 'l')) {
+                    addToken(TokenType.DIE, "d" + next);
+                    i += 2;
+                } else {
+                    addToken(TokenType.DIE, "d");
+                    ++i;
+                }
+            } else if (matchesKeyword(i, "and")) {
+                addToken(TokenType.AND, "and");
+                i += 3;
+            } else if (matchesKeyword(i, "chance")) {
+                addToken(TokenType.CHANCE, "chance");
+                i += 6;
+            } else if (matchesKeyword(i, "keep")) {
+                addToken(TokenType.KEEP, "keep");
+                i += 4;
+            } else if (matchesKeyword(i, "kh")) {
+                addToken(TokenType.KEEP_HIGHEST, "kh");
+                i += 2;
+            } else if (matchesKeyword(i, "kl")) {
+                addToken(TokenType.KEEP_LOWEST, "kl");
+                i += 2;
+            } else if ((c == 'k') || (c == 'K')) {
+                addToken(TokenType.KEEP, "k");
+                ++i;
+            } else if (matchesKeyword(i, "highest")) {
+                addToken(TokenType.HIGHEST, "highest");
+                i += 7;
+            } else if (matchesKeyword(i, "lowest")) {
+                addToken(TokenType.LOWEST, "lowest");
+                i += 6;
+            } else {
+                TokenType type;
+                switch (c) {
+                case '&': type = TokenType.AND; break;
+                case '+': type = TokenType.PLUS; break;
+                case '-': type = TokenType.MINUS; break;
+                case '*': type = TokenType.TIMES; break;
+                case ':': type = TokenType.COLON; break;
+                case '%': type = TokenType.PERCENT; break;
+                case ',': type = TokenType.COMMA; break;
+                case '.': type = TokenType.PERIOD; break;
+                case '!': type = TokenType.EXPLODE; break;
+                default:
+                    throw new IllegalArgumentException("Unexpected character '" + c + "' at position " + i
+                            + " in dice expression '" + source + "'");
+                }
+                addToken(type, String.valueOf(c));
+                ++i;
+            }
+        }
+        addToken(TokenType.EOF, "<end>");
+    }
+
+    private void addToken(TokenType type, String text) {
+        types.add(type);
+        texts.add(text);
+    }
+
+    private boolean matchesKeyword(int start, String keyword) {
+        return(source.regionMatches(true, start, keyword, 0, keyword.length()));
+    }
+
+    private static boolean isDigit(char c) {
+        return((c >= '0') && (c <= '9'));
+    }
+
+    private static boolean isNonZeroDigit(char c) {
+        return((c >= '1') && (c <= '9'));
+    }
+
+    //
+    // Parsing
+    //
+
+    private TokenType peek(int ahead) {
+        int index = Math.min(position + ahead, types.size() - 1);
+        return(types.get(index));
+    }
+
+    private String expect(TokenType type) {
+        if (peek(0) != type) {
+            throw error("expected " + type + " but found '" + texts.get(position) + "'");
+        }
+        return(texts.get(position++));
+    }
+
+    private boolean accept(TokenType type) {
+        if (peek(0) == type) {
+            ++position;
+            return(true);
+        }
+        return(false);
+    }
+
+    private int expectInteger() {
+        return(Integer.parseInt(expect(TokenType.INTEGER)));
+    }
+
+    private IllegalArgumentException error(String message) {
+        return(new IllegalArgumentException("Can't parse dice expression '" + source + "': " + message));
+    }
+
+    /** expression : singleDie (AND singleDie)* EOF */
+    protected ParsedExpression expression() {
+        List<ParsedDie> dice = new ArrayList<>();
+        dice.add(singleDie());
+        while (accept(TokenType.AND)) {
+            dice.add(singleDie());
+        }
+        expect(TokenType.EOF);
+        return(new ParsedExpression(dice));
+    }
+
+    /** singleDie : dicePrefix? basicExpression */
+    protected ParsedDie singleDie() {
+        double chance = 1.0;
+        boolean hasChance = false;
+        if (accept(TokenType.CHANCE)) {
+            expect(TokenType.COLON);
+            chance = Double.parseDouble(expect(TokenType.INTEGER)) / 100.0;
+            expect(TokenType.PERCENT);
+            expect(TokenType.COMMA);
+            hasChance = true;
+        }
+        ParsedDie result = basicExpression();
+        if (hasChance) {
+            result = result.withChance(chance);
+        }
+        return(result);
+    }
+
+    /** basicExpression : (frpExpression | minMaxExpression | constantExpression) multiplier? */
+    protected ParsedDie basicExpression() {
+        ParsedDie result;
+        if (peek(0) == TokenType.DIE) {
+            result = frpExpression(1);
+        } else if (peek(0) == TokenType.INTEGER) {
+            TokenType next = peek(1);
+            if (next == TokenType.DIE) {
+                result = frpExpression(expectInteger());
+            } else if ((next == TokenType.INTEGER)
+                    || ((next == TokenType.MINUS) && (peek(2) == TokenType.INTEGER))) {
+                result = minMaxExpression();
+            } else {
+                result = ParsedDie.constant(expectInteger());
+            }
+        } else {
+            throw error("expected a number or 'd' but found '" + texts.get(position) + "'");
+        }
+
+        if (accept(TokenType.TIMES)) {
+            result = result.withMultiplier(expectInteger());
+        }
+        return(result);
+    }
+
+    /** frpExpression : INTEGER? die INTEGER add_or_subtract? */
+    protected ParsedDie frpExpression(int numDice) {
+        String die = texts.get(position);
+        expect(TokenType.DIE);
+        Loading loading = Loading.UNLOADED;
+        if (die.equals("dh")) {
+            loading = Loading.LOADED_HIGH;
+        } else if (die.equals("dl")) {
+            loading = Loading.LOADED_LOW;
+        }
+        int sides = expectInteger();
+        boolean exploding = accept(TokenType.EXPLODE);
+        Selection selection = Selection.ALL;
+        int count = 0;
+        if (accept(TokenType.KEEP)) {
+            selection = accept(TokenType.LOWEST) ? Selection.KEEP_LOWEST : Selection.KEEP_HIGHEST;
+            if (selection == Selection.KEEP_HIGHEST) {
+                accept(TokenType.HIGHEST);
+            }
+            count = expectInteger();
+        } else if (accept(TokenType.KEEP_HIGHEST)) {
+            selection = Selection.KEEP_HIGHEST;
+            count = expectInteger();
+        } else if (accept(TokenType.KEEP_LOWEST)) {
+            selection = Selection.KEEP_LOWEST;
+            count = expectInteger();
+        } else if (accept(TokenType.DROP)) {
+            if (accept(TokenType.HIGHEST)) {
+                selection = Selection.DROP_HIGHEST;
+            } else {
+                expect(TokenType.LOWEST);
+                selection = Selection.DROP_LOWEST;
+            }
+            // Dropping drops one die unless it says otherwise
+            count = (peek(0) == TokenType.INTEGER) ? expectInteger() : 1;
+        }
+        int adder = 0;
+        if (accept(TokenType.PLUS)) {
+            adder = expectInteger();
+        } else if ((peek(0) == TokenType.MINUS) && (peek(1) == TokenType.INTEGER)) {
+            ++position;
+            adder = -expectInteger();
+        } else if (peek(0) == TokenType.INTEGER) {
+            // "3d6-2" lexes as 3 d 6 -2, the adder being a negative integer
+            adder = expectInteger();
+        }
+        return(ParsedDie.frp(numDice, sides, adder, loading).withPool(exploding, selection, count));
+    }
+
+    /** minMaxExpression : INTEGER MINUS INTEGER | INTEGER INTEGER */
+    protected ParsedDie minMaxExpression() {
+        int min = expectInteger();
+        boolean dash = accept(TokenType.MINUS);
+        int max = expectInteger();
+        if (!dash) {
+            // "1-6" is 1 and -6, as far as the lexer's concerned; the minus
+            // sign is really the dash between the numbers.
+            max = -max;
+        }
+        return(ParsedDie.range(min, max));
+    }
+
+    /** One die (or set of dice) in a parsed expression. Immutable. */
+    public static final class ParsedDie {
+        enum Form { FRP, RANGE, CONSTANT }
+
+        final Form form;
+        /** For FRP dice, the number of dice, sides, and adder; for ranges,
+         * the min and max; for constants, the value.
+         */
+        final int first;
+        final int second;
+        final int third;
+        final int multiplier;
+        final double chance;
+        final boolean hasChance;
+        final Loading loading;
+        final boolean exploding;
+        final Selection selection;
+        final int selectionCount;
+
+        private ParsedDie(Form form, int first, int second, int third, int multiplier,
+                double chance, boolean hasChance, Loading loading, boolean exploding,
+                Selection selection, int selectionCount) {
+            this.form = form;
+            this.first = first;
+            this.second = second;
+            this.third = third;
+            this.multiplier = multiplier;
+            this.chance = chance;
+            this.hasChance = hasChance;
+            this.loading = loading;
+            this.exploding = exploding;
+            this.selection = selection;
+            this.selectionCount = selectionCount;
+        }
+
+        static ParsedDie frp(int numDice, int sides, int adder, Loading loading) {
+            return(new ParsedDie(Form.FRP, numDice, sides, adder, 1, 1.0, false, loading, false, Selection.ALL, 0));
+        }
+
+        static ParsedDie range(int min, int max) {
+            return(new ParsedDie(Form.RANGE, min, max, 0, 1, 1.0, false, Loading.UNLOADED, false, Selection.ALL, 0));
+        }
+
+        static ParsedDie constant(int value) {
+            return(new ParsedDie(Form.CONSTANT, value, 0, 0, 1, 1.0, false, Loading.UNLOADED, false, Selection.ALL, 0));
+        }
+
+        ParsedDie withMultiplier(int newMultiplier) {
+            return(new ParsedDie(form, first, second, third, newMultiplier, chance, hasChance, loading,
+                    exploding, selection, selectionCount));
+        }
+
+        ParsedDie withPool(boolean newExploding, Selection newSelection, int newCount) {
+            return(new ParsedDie(form, first, second, third, multiplier, chance, hasChance, loading,
+                    newExploding, newSelection, newCount));
+        }
+
+        ParsedDie withChance(double newChance) {
+            return(new ParsedDie(form, first, second, third, multiplier, newChance, true, loading,
+                    exploding, selection, selectionCount));
+        }
+
+        /** Build the die, the same way DiceConstructingWalker does. */
+        SimpleDie build(RandomSourceType randomSourceType, double accuracy) {
+            SimpleDie result;
+            switch (form) {
+            case FRP:
+                result = new SimpleDie(first, second, third);
+                result.setLoading(loading);
+                result.setExploding(exploding);
+                result.setSelection(selection, selectionCount);
+                break;
+            case RANGE:
+                result = SimpleDie.buildFromRange(first, second);
+                break;
+            default:
+                result = new SimpleDie();
+                result.setAdder(first);
+                break;
+            }
+            result.setMultiplier(multiplier);
+            if (hasChance) {
+                result.setChance(chance);
+            }
+            if (randomSourceType != null) {
+                result.setRandomSource(randomSourceType.create());
+            }
+            result.setAccuracy(accuracy);
+            return(result);
+        }
+    }
+
+    /** A parsed dice expression: one or more dice, added together. Immutable,
+     * so one can be cached and built from by many threads.
+     */
+    public static final class ParsedExpression {
+        final List<ParsedDie> dice;
+
+        ParsedExpression(List<ParsedDie> dice) {
+            this.dice = Collections.unmodifiableList(new ArrayList<>(dice));
+        }
+
+        /** Build the dice for this expression: a {@link SimpleDie} for a
+         * single die, or a {@link CompositeDie} of them.
+         *
+         * @param randomSourceType The kind of random source to give each die,
+         *     or null to leave them with the default
+         * @param accuracy The accuracy threshold for huge numbers of dice
+         * @return The new dice.
+         */
+        public DiceExpression build(RandomSourceType randomSourceType, double accuracy) {
+            if (dice.size() == 1) {
+                return(dice.get(0).build(randomSourceType, accuracy));
+            }
+            List<SimpleDie> built = new ArrayList<>(dice.size());
+            for (ParsedDie die: dice) {
+                built.add(die.build(randomSourceType, accuracy));
+            }
+            return(new CompositeDie(built));
+        }
+
+        public int size() {
+            return(dice.size());
+        }
+    }
+}
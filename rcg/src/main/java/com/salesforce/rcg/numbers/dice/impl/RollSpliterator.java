@@ -0,0 +1,84 @@
+package com.salesforce.rcg.numbers.dice.impl;
+
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+import com.salesforce.rcg.numbers.dice.DiceExpression;
+import com.salesforce.rcg.random.RandomSource;
+
+/** A Spliterator over rolls of a dice expression, backing
+ * {@link DiceExpression#rolls()}.
+ *
+ * Each spliterator has its own random source, and splitting it gives the
+ * new spliterator a new, independent one, so the parts of a parallel stream
+ * don't share a Random. Like the spliterators behind
+ * java.util.Random.ints(), it covers a range of positions [index, fence) and
+ * splits that range in half.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public class RollSpliterator implements Spliterator.OfInt {
+    protected final DiceExpression dice;
+    protected final RandomSource rng;
+    protected long index;
+    protected final long fence;
+
+    public RollSpliterator(DiceExpression dice, RandomSource rng, long index, long fence) {
+        this.dice = dice;
+        this.rng = rng;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    @Override
+    public RollSpliterator trySplit() {
+        long i = index;
+        long middle = (i + fence) >>> 1;
+        if (middle <= i) {
+            return(null);
+        }
+        index = middle;
+        return(new RollSpliterator(dice, rng.split(), i, middle));
+    }
+
+    @Override
+    public boolean tryAdvance(IntConsumer action) {
+        if (null == action) {
+            throw new NullPointerException();
+        }
+        if (index < fence) {
+            action.accept(dice.roll(rng));
+            ++index;
+            return(true);
+        }
+        return(false);
+    }
+
+    @Override
+    public void forEachRemaining(IntConsumer action) {
+        if (null == action) {
+            throw new NullPointerException();
+        }
+        long i = index;
+        long end = fence;
+        index = end;
+        for (; i < end; ++i) {
+            action.accept(dice.roll(rng));
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return(fence - index);
+    }
+
+    /** Rolls have no meaningful order, so this leaves out ORDERED; that lets
+     * limit() on a parallel stream stop early.
+     */
+    @Override
+    public int characteristics() {
+        return(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+}
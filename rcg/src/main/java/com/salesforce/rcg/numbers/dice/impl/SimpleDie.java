@@ -1,9 +1,17 @@
 package com.salesforce.rcg.numbers.dice.impl;
 
 import java.text.DecimalFormat;
+import java.util.Arrays;
 import java.util.Random;
 
+import com.salesforce.rcg.numbers.dice.DiceDistribution;
 import com.salesforce.rcg.numbers.dice.DiceExpression;
+import com.salesforce.rcg.numbers.dice.DiceHistogram;
+import com.salesforce.rcg.numbers.dice.DiceModifiers;
+import com.salesforce.rcg.numbers.dice.DiceModifiers.Loading;
+import com.salesforce.rcg.numbers.dice.DiceModifiers.Selection;
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.random.impl.JavaRandomSource;
 
 public class SimpleDie implements DiceExpression {
     protected int numDice = 1;
@@ -12,7 +20,31 @@ public class SimpleDie implements DiceExpression {
     protected int multiplier = 1;
     protected double chance = 1.0;
     protected DecimalFormat df = null;
-    /* package-private */ Random rng;
+    /* package-private */ RandomSource rng;
+    /** How approximate the total of a huge number of dice may be; see {@link DiceSumSampler}. */
+    protected double accuracy = DiceSumSampler.DEFAULT_ACCURACY;
+    /** Draws the total of the dice; rebuilt if the dice change. */
+    private DiceSumSampler sampler;
+    /** The last distribution worked out; rebuilt if the dice change. */
+    private volatile CachedDistribution cachedDistribution;
+    /** How the dice are loaded, if they aren't given face weights. */
+    protected Loading loading = Loading.UNLOADED;
+    protected double loadingStrength = DiceModifiers.DEFAULT_LOADING_STRENGTH;
+    /** The relative chance of each face, for dice loaded some other way; null if they aren't. */
+    protected double[] faceWeights = null;
+    /** Which dice count towards the total, and how many to keep or drop. */
+    protected Selection selection = Selection.ALL;
+    protected int selectionCount = 0;
+    /** Whether a die that rolls its highest face is rolled again and added on. */
+    protected boolean exploding = false;
+    /** Counts changes to the loading, selection and exploding, so the
+     * samplers and distribution can tell they're out of date.
+     */
+    protected volatile int modifierVersion = 0;
+    /** Draws the total of loaded dice; rebuilt if the dice change. */
+    private volatile SamplerEntry<LoadedDiceSampler> loadedSampler;
+    /** Draws the total of kept or exploding dice; rebuilt if the dice change. */
+    private volatile SamplerEntry<DicePoolSampler> poolSampler;
     
     public SimpleDie(int sides) {
         this();
@@ -21,7 +53,12 @@ public class SimpleDie implements DiceExpression {
     
     public SimpleDie(int sides, Random rng) {
         this.sides = sides;
-        this.rng = rng;
+        this.rng = new JavaRandomSource(rng);
+    }
+    
+    public SimpleDie(int sides, RandomSource rng) {
+        this.sides = sides;
+        setRandomSource(rng);
     }
     
     public SimpleDie(int numDice, int sides) {
@@ -38,19 +75,42 @@ public class SimpleDie implements DiceExpression {
     }
     
     public SimpleDie() {
-        rng = new Random();
+        rng = new JavaRandomSource(new Random());
     }
     
     public void setRng(Random rng) {
-        this.rng = rng;
+        this.rng = new JavaRandomSource(rng);
     }
     
     public Random getRng() {
+        return(rng.asRandom());
+    }
+    
+    /** Set the source of random numbers for this die. This is the more
+     * general form of {@link #setRng <tt>setRng</tt>}.
+     * 
+     * @param source The new source. Unless the source is threadsafe, the die
+     *     must then only be rolled from one thread at a time.
+     */
+    public void setRandomSource(RandomSource source) {
+        if (null == source) {
+            throw new IllegalArgumentException("The random source must not be null");
+        }
+        this.rng = source;
+    }
+    
+    @Override
+    public RandomSource getRandomSource() {
         return(rng);
     }
 
     @Override
     public int roll() {
+        return(roll(rng));
+    }
+
+    @Override
+    public int roll(RandomSource rng) {
         if (chance < 1.0) {
             double rolledChance = rng.nextDouble();
             if (rolledChance >= chance) {
@@ -58,20 +118,311 @@ public class SimpleDie implements DiceExpression {
             }
         }
         int sum = adder;
-        if (sides != 0) {
-            for (int i = 0; i < numDice; ++i) {
-                sum += (rng.nextInt(sides) + 1);
+        if ((sides != 0) && (numDice > 0)) {
+            if (isPooled()) {
+                sum += (int) getPoolSampler().sum(rng);
+            } else if (isLoaded()) {
+                sum += (int) getLoadedSampler().sum(rng);
+            } else {
+                sum += (int) getSampler().sum(rng);
             }
         }
         return(sum * multiplier);
     }
     
+    /** Roll many times at once. The dice are drawn several to a random
+     * number across all the rolls (see {@link DiceSumSampler#fill}), and
+     * the die's settings are only read once.
+     */
+    @Override
+    public void roll(int[] out, int off, int len) {
+        DiceExpression.checkRange(out, off, len);
+        RandomSource source = rng;
+        int currentAdder = adder;
+        int currentMultiplier = multiplier;
+        double currentChance = chance;
+        if ((sides != 0) && (numDice > 0)) {
+            if (isPooled()) {
+                getPoolSampler().fill(source, out, off, len);
+            } else if (isLoaded()) {
+                getLoadedSampler().fill(source, out, off, len);
+            } else {
+                getSampler().fill(source, out, off, len);
+            }
+            for (int i = off; i < off + len; ++i) {
+                out[i] = (out[i] + currentAdder) * currentMultiplier;
+            }
+        } else {
+            Arrays.fill(out, off, off + len, currentAdder * currentMultiplier);
+        }
+        if (currentChance < 1.0) {
+            for (int i = off; i < off + len; ++i) {
+                if (source.nextDouble() >= currentChance) {
+                    out[i] = 0;
+                }
+            }
+        }
+    }
+    
+    /** Roll many times and count the results, using this die's own random
+     * source.
+     */
+    @Override
+    public DiceHistogram rollHistogram(long n) {
+        return(DiceHistogram.roll(this, n, rng));
+    }
+    
+    /** The distribution is kept until the die changes, so asking the same
+     * questions about it again is just a lookup.
+     */
+    @Override
+    public DiceDistribution getDistribution(int maxSupport) {
+        CachedDistribution cached = cachedDistribution;
+        if ((cached != null) && cached.matches(this)) {
+            if (cached.distribution != null) {
+                return((cached.distribution.getSupportSize() <= maxSupport) ? cached.distribution : null);
+            }
+            if (maxSupport <= cached.maxSupport) {
+                return(null);
+            }
+        }
+        CachedDistribution computed = new CachedDistribution(this, maxSupport);
+        computed.distribution = computeDistribution(maxSupport);
+        cachedDistribution = computed;
+        return(computed.distribution);
+    }
+    
+    private DiceDistribution computeDistribution(int maxSupport) {
+        if (sides < 0) {
+            // Rolling this fails, so there's no distribution to speak of
+            return(null);
+        }
+        // Build it up in the same order roll() works: the dice, the adder,
+        // the multiplier, and then the chance of rolling anything at all.
+        DiceDistribution result;
+        if (isPooled() && (sides != 0) && (numDice > 0)) {
+            result = getPoolSampler().getDistribution(maxSupport);
+        } else if (isLoaded() && (sides != 0) && (numDice > 0)) {
+            result = getLoadedSampler().getDistribution(maxSupport);
+        } else {
+            result = DiceDistribution.sumOfDice(numDice, sides, maxSupport);
+        }
+        if (result != null) {
+            result = result.plus(adder);
+        }
+        if (result != null) {
+            result = result.times(multiplier, maxSupport);
+        }
+        if ((result != null) && (chance < 1.0)) {
+            result = result.withChance(chance, maxSupport);
+        }
+        return(result);
+    }
+    
+    /** The lowest roll, worked out from the dice rather than the distribution. */
+    @Override
+    public int getMin() {
+        long[] range = range();
+        return((int) range[0]);
+    }
+    
+    /** The highest roll, worked out from the dice rather than the
+     * distribution. Exploding dice have no highest roll; for them, this is
+     * Integer.MAX_VALUE (or the lowest roll is Integer.MIN_VALUE, if the
+     * multiplier is negative).
+     */
+    @Override
+    public int getMax() {
+        long[] range = range();
+        return((int) range[1]);
+    }
+    
+    private long[] range() {
+        long low = adder;
+        long high = adder;
+        boolean unbounded = false;
+        if ((sides > 0) && (numDice > 0) && isPooled()) {
+            DicePoolSampler pool = getPoolSampler();
+            low += pool.getMinTotal();
+            if (pool.isExploding()) {
+                unbounded = true;
+                high = low;
+            } else {
+                high += pool.getMaxTotal();
+            }
+        } else if ((sides > 0) && (numDice > 0)) {
+            int lowFace = 1;
+            int highFace = sides;
+            if (isLoaded()) {
+                // Faces with no weight at all can't come up
+                double[] weights = getFaceWeights();
+                while (weights[lowFace - 1] <= 0.0) {
+                    ++lowFace;
+                }
+                while (weights[highFace - 1] <= 0.0) {
+                    --highFace;
+                }
+            }
+            low += (long) numDice * lowFace;
+            high += (long) numDice * highFace;
+        }
+        low *= multiplier;
+        high *= multiplier;
+        if (low > high) {
+            long temp = low;
+            low = high;
+            high = temp;
+        }
+        if (unbounded && (multiplier > 0)) {
+            high = Integer.MAX_VALUE;
+        } else if (unbounded && (multiplier < 0)) {
+            low = Integer.MIN_VALUE;
+        }
+        if (chance <= 0.0) {
+            return(new long[] { 0L, 0L });
+        } else if (chance < 1.0) {
+            low = Math.min(low, 0L);
+            high = Math.max(high, 0L);
+        }
+        return(new long[] { low, high });
+    }
+    
+    /** The exact average, from the closed form for fair dice (or from a
+     * single die's distribution, for loaded dice), so it's just as quick for
+     * 100000d20 as for 1d20. Dice that are kept or dropped take it from
+     * their distribution.
+     * 
+     * @throws UnsupportedOperationException If some dice are kept or
+     *     dropped, and the distribution is too large to work it out from.
+     */
+    @Override
+    public double getMean() {
+        double effectiveChance = Math.max(0.0, Math.min(chance, 1.0));
+        return(effectiveChance * rolledMean());
+    }
+    
+    /** The exact variance, from the closed form for fair dice. The chance
+     * prefix adds the spread between rolling something and rolling 0.
+     * 
+     * @throws UnsupportedOperationException If some dice are kept or
+     *     dropped, and the distribution is too large to work it out from.
+     */
+    @Override
+    public double getVariance() {
+        double effectiveChance = Math.max(0.0, Math.min(chance, 1.0));
+        double diceVariance = 0.0;
+        if ((sides > 0) && (numDice > 0)) {
+            if (isPooled()) {
+                diceVariance = getPoolSampler().getVariance();
+            } else if (isLoaded()) {
+                diceVariance = numDice * getLoadedSampler().getFaceDistribution().getVariance();
+            } else {
+                diceVariance = numDice * ((double) sides * sides - 1.0) / 12.0;
+            }
+        }
+        double rolledVariance = (double) multiplier * multiplier * diceVariance;
+        double mean = rolledMean();
+        return(effectiveChance * rolledVariance + effectiveChance * (1.0 - effectiveChance) * mean * mean);
+    }
+    
+    /** The average roll, leaving out the chance prefix. */
+    private double rolledMean() {
+        double diceMean = 0.0;
+        if ((sides > 0) && (numDice > 0)) {
+            if (isPooled()) {
+                diceMean = getPoolSampler().getMean();
+            } else if (isLoaded()) {
+                diceMean = numDice * getLoadedSampler().getFaceDistribution().getMean();
+            } else {
+                diceMean = numDice * (sides + 1.0) / 2.0;
+            }
+        }
+        return(multiplier * (diceMean + adder));
+    }
+    
+    /** Get the sampler for the current dice. The dice can be changed after
+     * construction, so this checks the cached one still fits; racing
+     * threads at worst build one each.
+     */
+    private DiceSumSampler getSampler() {
+        DiceSumSampler result = sampler;
+        if ((null == result) || (result.getNumSides() != sides) || (result.getNumDice() != numDice)) {
+            result = new DiceSumSampler(numDice, sides, accuracy);
+            sampler = result;
+        }
+        return(result);
+    }
+    
+    /** Get the sampler for the current loaded dice, building it if the dice
+     * or their loading have changed.
+     */
+    private LoadedDiceSampler getLoadedSampler() {
+        SamplerEntry<LoadedDiceSampler> entry = loadedSampler;
+        int version = modifierVersion;
+        if ((null == entry) || !entry.matches(this, version)) {
+            entry = new SamplerEntry<>(this, version, new LoadedDiceSampler(numDice, getFaceWeights()));
+            loadedSampler = entry;
+        }
+        return(entry.sampler);
+    }
+    
+    /** Get the sampler for the current kept or exploding dice, building it
+     * if the dice have changed.
+     */
+    private DicePoolSampler getPoolSampler() {
+        SamplerEntry<DicePoolSampler> entry = poolSampler;
+        int version = modifierVersion;
+        if ((null == entry) || !entry.matches(this, version)) {
+            entry = new SamplerEntry<>(this, version, createPoolSampler());
+            poolSampler = entry;
+        }
+        return(entry.sampler);
+    }
+    
+    /** Build a new sampler for these kept or exploding dice. */
+    DicePoolSampler createPoolSampler() {
+        return(new DicePoolSampler(numDice, sides, getFaceWeights(), getKeptDice(), 
+                selection.keepsHighest(), exploding));
+    }
+    
+    /** Get the method used to total up the dice, which depends on the
+     * number of dice and sides and the accuracy threshold.
+     * 
+     * @return The method, or null for loaded dice, which are drawn by a
+     *     {@link LoadedDiceSampler} instead, and for kept or exploding
+     *     dice, which are drawn by a {@link DicePoolSampler}.
+     */
+    public DiceSumSampler.Method getSamplingMethod() {
+        if ((isLoaded() || isPooled()) && (sides > 0)) {
+            return(null);
+        }
+        if (sides <= 0) {
+            return(DiceSumSampler.Method.BATCHED);
+        }
+        return(getSampler().getMethod());
+    }
+    
     @Override
     public synchronized String toString() {
         StringBuilder result = new StringBuilder();
         result.append(numDice);
         result.append("d");
         result.append(sides);
+        if (faceWeights != null) {
+            result.append(" loaded");
+        } else if (loading != Loading.UNLOADED) {
+            result.append(" loaded ");
+            result.append(loading.getName());
+        }
+        if (exploding) {
+            result.append(" exploding");
+        }
+        if (selection != Selection.ALL) {
+            result.append(" ");
+            result.append(selection.getName());
+            result.append(" ");
+            result.append(selectionCount);
+        }
         if (adder < 0) {
             result.append(" - ");
             result.append(-adder);
@@ -181,6 +532,179 @@ public class SimpleDie implements DiceExpression {
         throw new IllegalStateException("Can't find a die combination that works for the range " + min + "-" + max + "!");
     }
 
+    public double getAccuracy() {
+        return accuracy;
+    }
+
+    /** Set how approximate the total of a huge number of dice may be.
+     * 
+     * @param accuracy The largest excess kurtosis at which the total may be
+     *     drawn from a normal approximation; 0 to always roll exactly.
+     *     See {@link DiceSumSampler}.
+     */
+    public void setAccuracy(double accuracy) {
+        if (!(accuracy >= 0.0)) {
+            throw new IllegalArgumentException("The accuracy must not be negative: " + accuracy);
+        }
+        this.accuracy = accuracy;
+        sampler = null;
+    }
+
+    /** Load the dice, so they favor high or low faces, by the default
+     * strength.
+     * 
+     * @param loading The way to load them; UNLOADED makes them fair again
+     */
+    public void setLoading(Loading loading) {
+        setLoading(loading, DiceModifiers.DEFAULT_LOADING_STRENGTH);
+    }
+    
+    /** Load the dice, so they favor high or low faces. See
+     * {@link Loading#getFaceWeights} for just how they favor them. The
+     * chance of each total is worked out up front, so loaded dice roll
+     * about as quickly as fair ones.
+     * 
+     * @param loading The way to load them; UNLOADED makes them fair again
+     * @param strength How many times as likely the favorite face is as the
+     *     least favorite. It must be at least 1.
+     */
+    public synchronized void setLoading(Loading loading, double strength) {
+        if (null == loading) {
+            throw new IllegalArgumentException("The loading must not be null");
+        }
+        // Check the strength
+        loading.getFaceWeights(1, strength);
+        this.loading = loading;
+        this.loadingStrength = strength;
+        this.faceWeights = null;
+        ++modifierVersion;
+    }
+    
+    /** Load the dice with any weights at all.
+     * 
+     * @param weights The relative chance of each face, from 1 up; there
+     *     must be one for each side. None may be negative, and at least one
+     *     must be positive. Null makes the dice fair again.
+     */
+    public synchronized void setFaceWeights(double[] weights) {
+        if (weights != null) {
+            // Check the weights
+            DiceDistribution.fromWeights(1, weights);
+            if (weights.length != sides) {
+                throw new IllegalArgumentException("There must be a weight for each of the " + sides 
+                        + " sides, not " + weights.length);
+            }
+            this.faceWeights = weights.clone();
+        } else {
+            this.faceWeights = null;
+        }
+        this.loading = Loading.UNLOADED;
+        this.loadingStrength = DiceModifiers.DEFAULT_LOADING_STRENGTH;
+        ++modifierVersion;
+    }
+    
+    public Loading getLoading() {
+        return(loading);
+    }
+    
+    public double getLoadingStrength() {
+        return(loadingStrength);
+    }
+    
+    public boolean isLoaded() {
+        return((faceWeights != null) || (loading != Loading.UNLOADED));
+    }
+    
+    /** Get the relative chance of each face.
+     * 
+     * @return The weights of faces 1 through the number of sides, or null
+     *     if the dice are fair.
+     * @throws IllegalStateException If the dice were given face weights,
+     *     and then a different number of sides.
+     */
+    public double[] getFaceWeights() {
+        double[] weights = faceWeights;
+        if (weights != null) {
+            if (weights.length != sides) {
+                throw new IllegalStateException("The dice have " + sides + " sides, but weights for " 
+                        + weights.length);
+            }
+            return(weights.clone());
+        }
+        if ((loading == Loading.UNLOADED) || (sides <= 0)) {
+            return(null);
+        }
+        return(loading.getFaceWeights(sides, loadingStrength));
+    }
+    
+    /** Choose which dice count towards the total: "4d6 keep 3" is
+     * <tt>setSelection(Selection.KEEP_HIGHEST, 3)</tt>, and "4d6 drop
+     * lowest" is <tt>setSelection(Selection.DROP_LOWEST, 1)</tt>. Small
+     * enough sets of dice have the chance of each total worked out up front,
+     * so rolling them is a single table lookup; others roll every die and
+     * pick out the ones kept, without sorting them.
+     * 
+     * @param selection Which dice to keep; ALL keeps every one
+     * @param count The number of dice to keep or drop. It must not be
+     *     negative. Keeping more dice than there are keeps them all, and
+     *     dropping more drops them all.
+     */
+    public synchronized void setSelection(Selection selection, int count) {
+        if (null == selection) {
+            throw new IllegalArgumentException("The selection must not be null");
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("Can't keep or drop a negative number of dice: " + count);
+        }
+        this.selection = selection;
+        this.selectionCount = (selection == Selection.ALL) ? 0 : count;
+        ++modifierVersion;
+    }
+    
+    public Selection getSelection() {
+        return(selection);
+    }
+    
+    public int getSelectionCount() {
+        return(selectionCount);
+    }
+    
+    /** Get the number of dice that count towards the total. */
+    public int getKeptDice() {
+        return(selection.getKept(numDice, selectionCount));
+    }
+    
+    /** Make the dice explode: a die that rolls its highest face is rolled
+     * again, and the new roll added on, for as long as it keeps rolling its
+     * highest face. Exploding dice need at least two faces that can come up.
+     */
+    public synchronized void setExploding(boolean exploding) {
+        this.exploding = exploding;
+        ++modifierVersion;
+    }
+    
+    public boolean isExploding() {
+        return(exploding);
+    }
+    
+    /** Get whether the total is anything other than the sum of every die:
+     * some dice are kept or dropped, or the dice explode.
+     */
+    public boolean isPooled() {
+        return(exploding || (getKeptDice() < Math.max(numDice, 0)));
+    }
+    
+    /** Load, keep and explode these dice the same way as others. */
+    void copyModifiers(SimpleDie other) {
+        if (other.faceWeights != null) {
+            setFaceWeights(other.faceWeights);
+        } else {
+            setLoading(other.loading, other.loadingStrength);
+        }
+        setSelection(other.selection, other.selectionCount);
+        setExploding(other.exploding);
+    }
+    
     public double getChance() {
         return chance;
     }
@@ -189,5 +713,52 @@ public class SimpleDie implements DiceExpression {
         this.chance = chance;
     }
 
-
+    /** A distribution, and the settings of the die it was worked out for. */
+    private static final class CachedDistribution {
+        final int numDice;
+        final int sides;
+        final int adder;
+        final int multiplier;
+        final double chance;
+        final int modifierVersion;
+        /** The size limit it was worked out with. */
+        final int maxSupport;
+        /** The distribution, or null if it was too large. */
+        DiceDistribution distribution;
+        
+        CachedDistribution(SimpleDie die, int maxSupport) {
+            this.numDice = die.numDice;
+            this.sides = die.sides;
+            this.adder = die.adder;
+            this.multiplier = die.multiplier;
+            this.chance = die.chance;
+            this.modifierVersion = die.modifierVersion;
+            this.maxSupport = maxSupport;
+        }
+        
+        boolean matches(SimpleDie die) {
+            return((numDice == die.numDice) && (sides == die.sides) && (adder == die.adder)
+                    && (multiplier == die.multiplier) && (chance == die.chance)
+                    && (modifierVersion == die.modifierVersion));
+        }
+    }
+    
+    /** A sampler, and the dice and version of the modifiers it was built for. */
+    private static final class SamplerEntry<T> {
+        final int numDice;
+        final int sides;
+        final int version;
+        final T sampler;
+        
+        SamplerEntry(SimpleDie die, int version, T sampler) {
+            this.numDice = die.numDice;
+            this.sides = die.sides;
+            this.version = version;
+            this.sampler = sampler;
+        }
+        
+        boolean matches(SimpleDie die, int currentVersion) {
+            return((numDice == die.numDice) && (sides == die.sides) && (version == currentVersion));
+        }
+    }
 }
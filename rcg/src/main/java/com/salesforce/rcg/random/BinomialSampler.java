@@ -0,0 +1,183 @@
+package com.salesforce.rcg.random;
+
+/** Draws binomially distributed random numbers: the number of successes in
+ * <tt>n</tt> independent trials that each succeed with probability <tt>p</tt>.
+ *
+ * This is exact, and takes (on average) a small, constant number of random
+ * numbers however large <tt>n</tt> is, which is what makes it useful for
+ * rolling huge numbers of dice: the number of dice showing each face can be
+ * drawn directly instead of rolling every die.
+ *
+ * When <tt>n * p</tt> is small this simply inverts the distribution
+ * function. Otherwise it uses Hormann's BTRD algorithm (W. Hormann, "The
+ * generation of binomial random variates", Journal of Statistical
+ * Computation and Simulation 46, 1993), a transformed-rejection method with
+ * a squeeze, which needs just over one uniform number per result.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public final class BinomialSampler {
+    /** Below this mean, inversion is faster than BTRD (and BTRD's setup assumes at least this). */
+    private static final double INVERSION_LIMIT = 10.0;
+
+    /** The error of Stirling's approximation to log(k!), for k = 0 to 9. */
+    private static final double[] STIRLING_TAIL = {
+        0.08106146679532726, 0.04134069595540929, 0.02767792568499834,
+        0.02079067210376509, 0.01664469118982119, 0.01387612882307075,
+        0.01189670994589177, 0.01041126526197209, 0.009255462182712733,
+        0.008330563433362871,
+    };
+
+    private BinomialSampler() {
+        // Not to be instantiated
+    }
+
+    /** Draw a binomially distributed number.
+     *
+     * @param source The random source to draw from
+     * @param n The number of trials. It must not be negative.
+     * @param p The chance of each trial succeeding, from 0 to 1.
+     * @return The number of successes, from 0 through n.
+     */
+    public static long sample(RandomSource source, long n, double p) {
+        if (n < 0) {
+            throw new IllegalArgumentException("The number of trials must not be negative: " + n);
+        }
+        if (!(p >= 0.0 && p <= 1.0)) {
+            throw new IllegalArgumentException("The probability must be from 0 to 1: " + p);
+        }
+        if ((n == 0) || (p == 0.0)) {
+            return(0L);
+        }
+        if (p == 1.0) {
+            return(n);
+        }
+        // Both methods work with the smaller of p and 1 - p.
+        if (p > 0.5) {
+            return(n - sample(source, n, 1.0 - p));
+        }
+        if (n * p < INVERSION_LIMIT) {
+            return(inversion(source, n, p));
+        }
+        return(btrd(source, n, p));
+    }
+
+    /** Walk up the distribution function from 0 until it passes a uniform
+     * random number. The mean is small, so this takes only a few steps.
+     */
+    private static long inversion(RandomSource source, long n, double p) {
+        double q = 1.0 - p;
+        double s = p / q;
+        double a = (n + 1) * s;
+        // q^n, without the rounding error in q itself: for tiny p and huge n,
+        // that error alone can leave the probabilities summing to well
+        // short of 1.
+        double start = Math.exp(n * Math.log1p(-p));
+        while (true) {
+            double r = start;
+            double u = source.nextDouble();
+            long x = 0;
+            while (u > r) {
+                u -= r;
+                ++x;
+                if ((x > n) || (r == 0.0)) {
+                    // Only rounding error can get us here; try again
+                    x = n + 1;
+                    break;
+                }
+                r *= (a / x - s);
+            }
+            if (x <= n) {
+                return(x);
+            }
+        }
+    }
+
+    private static long btrd(RandomSource source, long n, double p) {
+        double q = 1.0 - p;
+        long m = (long) Math.floor((n + 1) * p);
+        double r = p / q;
+        double nr = (n + 1) * r;
+        double npq = n * p * q;
+        double sqrtNpq = Math.sqrt(npq);
+        double b = 1.15 + 2.53 * sqrtNpq;
+        double a = -0.0873 + 0.0248 * b + 0.01 * p;
+        double c = n * p + 0.5;
+        double alpha = (2.83 + 5.1 / b) * sqrtNpq;
+        double vr = 0.92 - 4.2 / b;
+        double urvr = 0.86 * vr;
+
+        while (true) {
+            double v = source.nextDouble();
+            double u;
+            if (v <= urvr) {
+                // The triangle in the middle: accepted without further ado
+                u = v / vr - 0.43;
+                return((long) Math.floor((2.0 * a / (0.5 - Math.abs(u)) + b) * u + c));
+            }
+            if (v >= vr) {
+                u = source.nextDouble() - 0.5;
+            } else {
+                u = v / vr - 0.93;
+                u = Math.signum(u) * 0.5 - u;
+                v = source.nextDouble() * vr;
+            }
+
+            double us = 0.5 - Math.abs(u);
+            long k = (long) Math.floor((2.0 * a / us + b) * u + c);
+            if ((k < 0) || (k > n)) {
+                continue;
+            }
+            v = v * alpha / (a / (us * us) + b);
+            long km = Math.abs(k - m);
+            if (km <= 15) {
+                // Close to the mode: compare against the ratio of the
+                // probabilities of k and m, built up term by term.
+                double f = 1.0;
+                if (m < k) {
+                    for (long i = m + 1; i <= k; ++i) {
+                        f *= (nr / i - r);
+                    }
+                } else if (m > k) {
+                    for (long i = k + 1; i <= m; ++i) {
+                        v *= (nr / i - r);
+                    }
+                }
+                if (v <= f) {
+                    return(k);
+                }
+                continue;
+            }
+
+            // Further out: try the squeeze first, and only work out the
+            // probabilities in full if that's inconclusive.
+            v = Math.log(v);
+            double rho = (km / npq) * (((km / 3.0 + 0.625) * km + 1.0 / 6.0) / npq + 0.5);
+            double t = -(double) km * km / (2.0 * npq);
+            if (v < t - rho) {
+                return(k);
+            }
+            if (v > t + rho) {
+                continue;
+            }
+            double nm = n - m + 1;
+            double h = (m + 0.5) * Math.log((m + 1) / (r * nm)) + stirlingTail(m) + stirlingTail(n - m);
+            double nk = n - k + 1;
+            if (v <= h + (n + 1) * Math.log(nm / nk) + (k + 0.5) * Math.log(nk * r / (k + 1))
+                    - stirlingTail(k) - stirlingTail(n - k)) {
+                return(k);
+            }
+        }
+    }
+
+    /** log(k!) minus Stirling's approximation to it. */
+    private static double stirlingTail(long k) {
+        if (k < STIRLING_TAIL.length) {
+            return(STIRLING_TAIL[(int) k]);
+        }
+        double kp1 = k + 1.0;
+        double kp1Squared = kp1 * kp1;
+        return((1.0 / 12 - (1.0 / 360 - 1.0 / 1260 / kp1Squared) / kp1Squared) / kp1);
+    }
+}
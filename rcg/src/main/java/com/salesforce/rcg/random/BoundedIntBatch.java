@@ -0,0 +1,192 @@
+package com.salesforce.rcg.random;
+
+/** Draws many uniformly random ints in the range [0, bound) from as few
+ * 64-bit random numbers as possible.
+ *
+ * Rolling 100d6 one die at a time takes 100 random numbers, but a 64-bit
+ * random number has enough bits in it for many six-sided dice. This uses the
+ * batched form of Lemire's multiply-shift method (Brackett-Rozinsky and
+ * Lemire, "Batched Ranged Random Integer Generation"): multiplying a random
+ * 64-bit fraction by the bound gives one value in the high bits and a new
+ * fraction in the low bits, which can be multiplied by the bound again for
+ * the next value, and so on. After <tt>k</tt> values the low bits tell us
+ * whether the batch landed in the small, biased part of the range, in which
+ * case the whole batch is drawn again.
+ *
+ * The batch size is chosen so that bound^k is at most 2^56, which keeps the
+ * chance of drawing a batch again under 1 in 256. For example, six-sided dice
+ * come 21 to a draw, so 100d6 takes five random numbers (rarely six). Bounds
+ * that are powers of two never need a second draw, so they use all 64 bits.
+ *
+ * Instances are immutable and threadsafe; the random source needn't be.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public final class BoundedIntBatch {
+    /** Batches of more than one value keep their product of bounds under this
+     * many bits, to keep rejections rare.
+     */
+    static final int PRODUCT_BITS = 56;
+
+    private final int bound;
+
+    /** How many values one 64-bit draw gives. */
+    private final int perDraw;
+
+    /** thresholds[j] is 2^64 mod bound^j, as an unsigned number: a batch of j
+     * values is drawn again if its leftover low bits are below this.
+     */
+    private final long[] thresholds;
+
+    /** Create a batch sampler for a bound.
+     *
+     * @param bound The upper bound (exclusive) for the values. It must be positive.
+     */
+    public BoundedIntBatch(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("The bound must be positive: " + bound);
+        }
+        this.bound = bound;
+
+        if (bound == 1) {
+            // Every value is zero; we never need to draw anything.
+            perDraw = Integer.MAX_VALUE;
+            thresholds = null;
+        } else if ((bound & (bound - 1)) == 0) {
+            // A power of two divides 2^64 evenly, so nothing is ever rejected.
+            perDraw = 64 / Integer.numberOfTrailingZeros(bound);
+            thresholds = new long[perDraw + 1];
+        } else {
+            long limit = 1L << PRODUCT_BITS;
+            int count = 1;
+            long product = bound;
+            while (product <= limit / bound) {
+                product *= bound;
+                ++count;
+            }
+            perDraw = count;
+            thresholds = new long[perDraw + 1];
+            product = 1L;
+            for (int j = 1; j <= perDraw; ++j) {
+                product *= bound;
+                // 2^64 mod product, which is the same as (2^64 - product) mod product
+                thresholds[j] = Long.remainderUnsigned(-product, product);
+            }
+        }
+    }
+
+    public int getBound() {
+        return(bound);
+    }
+
+    /** Get the number of values one 64-bit draw gives. */
+    public int getPerDraw() {
+        return(perDraw);
+    }
+
+    /** Draw <tt>count</tt> values and add them up.
+     *
+     * @param source The random source to draw from
+     * @param count The number of values to draw
+     * @return The sum of the values, each of which is in the range [0, bound).
+     */
+    public long sum(RandomSource source, int count) {
+        if (thresholds == null) {
+            return(0L);
+        }
+        long total = 0L;
+        while (count > 0) {
+            int batch = Math.min(count, perDraw);
+            long threshold = thresholds[batch];
+            long batchTotal;
+            long low;
+            do {
+                low = source.nextLong();
+                batchTotal = 0L;
+                for (int i = 0; i < batch; ++i) {
+                    batchTotal += multiplyHigh(low, bound);
+                    low *= bound;
+                }
+            } while (Long.compareUnsigned(low, threshold) < 0);
+            total += batchTotal;
+            count -= batch;
+        }
+        return(total);
+    }
+
+    /** Draw values into part of an array.
+     *
+     * @param source The random source to draw from
+     * @param out The array to fill
+     * @param off The first index in <tt>out</tt> to fill
+     * @param len The number of values to draw
+     */
+    public void fill(RandomSource source, int[] out, int off, int len) {
+        if (null == out) {
+            throw new IllegalArgumentException("The output array must not be null");
+        }
+        checkRange(out.length, off, len);
+        if (thresholds == null) {
+            java.util.Arrays.fill(out, off, off + len, 0);
+            return;
+        }
+        int end = off + len;
+        while (off < end) {
+            int batch = Math.min(end - off, perDraw);
+            long threshold = thresholds[batch];
+            long low;
+            do {
+                low = source.nextLong();
+                for (int i = 0; i < batch; ++i) {
+                    out[off + i] = (int) multiplyHigh(low, bound);
+                    low *= bound;
+                }
+            } while (Long.compareUnsigned(low, threshold) < 0);
+            off += batch;
+        }
+    }
+
+    private static void checkRange(int length, int off, int len) {
+        if ((off < 0) || (len < 0) || (len > length - off)) {
+            throw new IndexOutOfBoundsException("Range [" + off + ", " + off + " + " + len
+                    + ") is out of bounds for an array of length " + length);
+        }
+    }
+
+    /** The high 64 bits of the 128-bit product of an unsigned 64-bit number
+     * and a positive int. (Math.multiplyHigh isn't available before Java 9,
+     * and it's signed anyway; with a 31-bit factor this is just two
+     * multiplies.)
+     */
+    static long multiplyHigh(long x, int y) {
+        long lowProduct = (x & 0xffffffffL) * y;
+        return(((x >>> 32) * y + (lowProduct >>> 32)) >>> 32);
+    }
+
+    /** Get a uniformly random int in [0, bound) using Lemire's nearly
+     * divisionless method on 32 random bits: the random number times the
+     * bound, divided by 2^32, is the result, unless the low half of the
+     * product shows it's in the biased part of the range. A division is only
+     * needed when the result is close to that part, which is rare.
+     *
+     * @param source The random source to draw from
+     * @param bound The upper bound (exclusive). It must be positive.
+     * @return A value from 0 through bound - 1.
+     */
+    public static int nextInt(RandomSource source, int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("The bound must be positive: " + bound);
+        }
+        long product = (source.nextInt() & 0xffffffffL) * bound;
+        long low = product & 0xffffffffL;
+        if (low < bound) {
+            long threshold = (0x100000000L - bound) % bound;
+            while (low < threshold) {
+                product = (source.nextInt() & 0xffffffffL) * bound;
+                low = product & 0xffffffffL;
+            }
+        }
+        return((int) (product >>> 32));
+    }
+}
@@ -0,0 +1,98 @@
+package com.salesforce.rcg.random;
+
+import java.util.Random;
+
+import com.salesforce.rcg.random.impl.RandomSourceAdapter;
+
+/** A RandomSource is where word generators and dice get their random numbers.
+ *
+ * It plays the same part java.util.Random used to play, but it's an interface,
+ * so faster (and statistically stronger) generators can be plugged in. The
+ * only thing an implementation has to supply is {@link #nextLong()}; all the
+ * other methods are built from it, though implementations can override them
+ * with faster versions.
+ *
+ * Unless an implementation says otherwise, a RandomSource is <em>not</em>
+ * threadsafe. Use {@link #split()} to get an independent source for each
+ * thread.
+ *
+ * @see RandomSourceType
+ * @author mpreslermarshall
+ *
+ */
+public interface RandomSource {
+    /** Get 64 uniformly random bits.
+     *
+     * @return A pseudo-random long.
+     */
+    public long nextLong();
+
+    /** Get 32 uniformly random bits. This default takes the high half of
+     * {@link #nextLong()}, since those are the better bits for most generators.
+     *
+     * @return A pseudo-random int.
+     */
+    public default int nextInt() {
+        return((int) (nextLong() >>> 32));
+    }
+
+    /** Get a uniformly random int in the range [0, bound). This default uses
+     * Lemire's multiply-shift method, which (unlike java.util.Random's) almost
+     * never needs a division; see {@link BoundedIntBatch#nextInt(RandomSource, int)}.
+     * To draw many values with the same bound, a {@link BoundedIntBatch} is
+     * faster still.
+     *
+     * @param bound The upper bound (exclusive). It must be positive.
+     * @return A pseudo-random value from 0 through bound - 1.
+     */
+    public default int nextInt(int bound) {
+        return(BoundedIntBatch.nextInt(this, bound));
+    }
+
+    /** Get a uniformly random double in the range [0, 1).
+     *
+     * @return A pseudo-random double, from the top 53 bits of {@link #nextLong()}.
+     */
+    public default double nextDouble() {
+        return((nextLong() >>> 11) * 0x1.0p-53);
+    }
+
+    /** Get a normally distributed random double, with mean 0 and standard
+     * deviation 1. This default uses the Box-Muller transform on two
+     * uniform doubles, and throws away the second value it could have
+     * given, since a source has nowhere to keep it.
+     *
+     * @return A pseudo-random, Gaussian-distributed double.
+     */
+    public default double nextGaussian() {
+        // 1 - u is in (0, 1], so the log is finite
+        double radius = Math.sqrt(-2.0 * Math.log(1.0 - nextDouble()));
+        return(radius * Math.cos(2.0 * Math.PI * nextDouble()));
+    }
+
+    /** Get a random boolean.
+     *
+     * @return true or false, with equal probability.
+     */
+    public default boolean nextBoolean() {
+        return(nextLong() < 0L);
+    }
+
+    /** Create a new source that shares no state with this one, for use by
+     * another thread or another part of a parallel stream. The new source is
+     * seeded from this one, so a seeded source splits the same way every time.
+     *
+     * @return The new source.
+     */
+    public RandomSource split();
+
+    /** Get a java.util.Random that draws its numbers from this source, for
+     * code that needs a Random. Sources that are built on a Random return
+     * that Random.
+     *
+     * @return A Random backed by this source.
+     */
+    public default Random asRandom() {
+        return(new RandomSourceAdapter(this));
+    }
+}
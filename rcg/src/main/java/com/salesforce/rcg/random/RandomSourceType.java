@@ -0,0 +1,137 @@
+package com.salesforce.rcg.random;
+
+import java.util.Random;
+
+import com.salesforce.rcg.random.impl.JavaRandomSource;
+import com.salesforce.rcg.random.impl.Pcg32Source;
+import com.salesforce.rcg.random.impl.SplitMix64Source;
+import com.salesforce.rcg.random.impl.SplittableRandomSource;
+import com.salesforce.rcg.random.impl.ThreadLocalRandomSource;
+import com.salesforce.rcg.random.impl.Xoshiro256StarStarSource;
+
+/** The kinds of random sources available, by name.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public enum RandomSourceType {
+    /** xoshiro256** by Blackman and Vigna: 256 bits of state, fast, and
+     * statistically strong. This is the recommended source.
+     * Reference implementation: {@link com.salesforce.rcg.random.impl.Xoshiro256StarStarSource
+     * <tt>com.salesforce.rcg.random.impl.Xoshiro256StarStarSource</tt>}.
+     */
+    XOSHIRO256("xoshiro256**"),
+
+    /** SplitMix64: 64 bits of state and about as fast as a generator gets.
+     * Reference implementation: {@link com.salesforce.rcg.random.impl.SplitMix64Source
+     * <tt>com.salesforce.rcg.random.impl.SplitMix64Source</tt>}.
+     */
+    SPLITMIX64("splitmix64"),
+
+    /** PCG-XSH-RR, with 64 bits of state and 32 bits of output per step.
+     * Reference implementation: {@link com.salesforce.rcg.random.impl.Pcg32Source
+     * <tt>com.salesforce.rcg.random.impl.Pcg32Source</tt>}.
+     */
+    PCG32("pcg32"),
+
+    /** A java.util.Random. This is threadsafe, but threads sharing one contend
+     * on its seed.
+     * Reference implementation: {@link com.salesforce.rcg.random.impl.JavaRandomSource
+     * <tt>com.salesforce.rcg.random.impl.JavaRandomSource</tt>}.
+     */
+    JAVA_UTIL_RANDOM("java-util-random"),
+
+    /** The calling thread's ThreadLocalRandom. This is threadsafe without any
+     * contention, but it can't be seeded.
+     * Reference implementation: {@link com.salesforce.rcg.random.impl.ThreadLocalRandomSource
+     * <tt>com.salesforce.rcg.random.impl.ThreadLocalRandomSource</tt>}.
+     */
+    THREAD_LOCAL("thread-local"),
+
+    /** A java.util.SplittableRandom.
+     * Reference implementation: {@link com.salesforce.rcg.random.impl.SplittableRandomSource
+     * <tt>com.salesforce.rcg.random.impl.SplittableRandomSource</tt>}.
+     */
+    SPLITTABLE("splittable");
+
+    protected final String name;
+
+    private RandomSourceType(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return(name);
+    }
+
+    /** Can sources of this type be created from a seed, to get a repeatable
+     * sequence of numbers?
+     */
+    public boolean isSeedable() {
+        return(this != THREAD_LOCAL);
+    }
+
+    /** Can one source of this type be used by many threads at once? */
+    public boolean isThreadSafe() {
+        return((this == JAVA_UTIL_RANDOM) || (this == THREAD_LOCAL));
+    }
+
+    public static RandomSourceType from(String source) {
+        for (RandomSourceType type: RandomSourceType.values()) {
+            if (type.getName().equalsIgnoreCase(source)) {
+                return(type);
+            }
+        }
+
+        throw new IllegalArgumentException("Unrecognized random source type: " + source);
+    }
+
+    /** Create a new source of this type, with an arbitrary seed.
+     *
+     * @return The new source.
+     */
+    public RandomSource create() {
+        switch (this) {
+        case XOSHIRO256:
+            return(new Xoshiro256StarStarSource());
+        case SPLITMIX64:
+            return(new SplitMix64Source());
+        case PCG32:
+            return(new Pcg32Source());
+        case JAVA_UTIL_RANDOM:
+            return(new JavaRandomSource(new Random()));
+        case THREAD_LOCAL:
+            return(ThreadLocalRandomSource.INSTANCE);
+        case SPLITTABLE:
+            return(new SplittableRandomSource());
+        default:
+            throw new IllegalStateException("The create() method needs to be extended to recognize type " + this + "!");
+        }
+    }
+
+    /** Create a new source of this type from a seed. Sources created from the
+     * same seed generate the same numbers.
+     *
+     * @param seed The seed
+     * @return The new source.
+     * @throws UnsupportedOperationException if this type of source can't be seeded.
+     */
+    public RandomSource create(long seed) {
+        switch (this) {
+        case XOSHIRO256:
+            return(new Xoshiro256StarStarSource(seed));
+        case SPLITMIX64:
+            return(new SplitMix64Source(seed));
+        case PCG32:
+            return(new Pcg32Source(seed));
+        case JAVA_UTIL_RANDOM:
+            return(new JavaRandomSource(new Random(seed)));
+        case SPLITTABLE:
+            return(new SplittableRandomSource(seed));
+        case THREAD_LOCAL:
+            throw new UnsupportedOperationException("A " + name + " random source can't be seeded");
+        default:
+            throw new IllegalStateException("The create() method needs to be extended to recognize type " + this + "!");
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.salesforce.rcg.random.impl;
+
+import java.util.Random;
+
+import com.salesforce.rcg.random.RandomSource;
+
+/** A RandomSource that gets its numbers from a java.util.Random (or any
+ * subclass of it). This is what the word generators and dice use by default,
+ * and what they wrap a Random in when one is passed to <tt>setRng</tt>.
+ *
+ * This is as threadsafe as the Random it wraps; java.util.Random itself is.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public class JavaRandomSource implements RandomSource {
+    protected final Random random;
+
+    public JavaRandomSource(Random random) {
+        if (null == random) {
+            throw new IllegalArgumentException("The Random must not be null");
+        }
+        this.random = random;
+    }
+
+    @Override
+    public long nextLong() {
+        return(random.nextLong());
+    }
+
+    @Override
+    public int nextInt() {
+        return(random.nextInt());
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return(random.nextInt(bound));
+    }
+
+    @Override
+    public double nextDouble() {
+        return(random.nextDouble());
+    }
+
+    @Override
+    public double nextGaussian() {
+        return(random.nextGaussian());
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return(random.nextBoolean());
+    }
+
+    @Override
+    public JavaRandomSource split() {
+        return(new JavaRandomSource(new Random(random.nextLong())));
+    }
+
+    /** Get the Random this source wraps. */
+    @Override
+    public Random asRandom() {
+        return(random);
+    }
+}
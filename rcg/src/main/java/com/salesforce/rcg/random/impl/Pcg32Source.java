@@ -0,0 +1,69 @@
+package com.salesforce.rcg.random.impl;
+
+import com.salesforce.rcg.random.RandomSource;
+
+/** PCG-XSH-RR 64/32, by Melissa O'Neill: a 64-bit linear congruential
+ * generator whose output goes through a permutation (an xorshift, then a
+ * random rotation) that hides the LCG's weak low bits. Each step gives 32
+ * bits, so {@link #nextLong()} takes two steps.
+ *
+ * A PCG generator also has a stream selector (the LCG's increment), so two
+ * sources with the same seed but different streams give unrelated sequences.
+ *
+ * Not threadsafe.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public class Pcg32Source implements RandomSource {
+    protected static final long MULTIPLIER = 6364136223846793005L;
+
+    /** The default stream, from the PCG reference implementation. */
+    protected static final long DEFAULT_STREAM = 0xda3e39cb94b95bdbL;
+
+    protected long state;
+
+    /** The LCG's increment. This is always odd. */
+    protected final long increment;
+
+    public Pcg32Source() {
+        this(SplitMix64Source.newSeed(), SplitMix64Source.newSeed());
+    }
+
+    public Pcg32Source(long seed) {
+        this(seed, DEFAULT_STREAM);
+    }
+
+    /** Create a source from a seed and a stream selector, the same way the
+     * reference implementation's pcg32_srandom does.
+     *
+     * @param seed The starting state
+     * @param stream Which of the 2^63 streams to use
+     */
+    public Pcg32Source(long seed, long stream) {
+        increment = (stream << 1) | 1L;
+        state = 0L;
+        nextInt();
+        state += seed;
+        nextInt();
+    }
+
+    @Override
+    public int nextInt() {
+        long old = state;
+        state = old * MULTIPLIER + increment;
+        int xorShifted = (int) (((old >>> 18) ^ old) >>> 27);
+        int rotation = (int) (old >>> 59);
+        return(Integer.rotateRight(xorShifted, rotation));
+    }
+
+    @Override
+    public long nextLong() {
+        return(((long) nextInt() << 32) | (nextInt() & 0xffffffffL));
+    }
+
+    @Override
+    public Pcg32Source split() {
+        return(new Pcg32Source(nextLong(), nextLong()));
+    }
+}
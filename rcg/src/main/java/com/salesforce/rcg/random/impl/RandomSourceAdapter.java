@@ -0,0 +1,78 @@
+package com.salesforce.rcg.random.impl;
+
+import com.salesforce.rcg.random.RandomSource;
+
+/** A java.util.Random that gets its numbers from a RandomSource, for code
+ * that needs a Random. This is what {@link RandomSource#asRandom()} returns
+ * by default.
+ *
+ * It's exactly as threadsafe as the source behind it. A source can't
+ * generally be reseeded, so neither can this.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public class RandomSourceAdapter extends java.util.Random {
+    private static final long serialVersionUID = 1L;
+
+    protected final transient RandomSource source;
+
+    public RandomSourceAdapter(RandomSource source) {
+        if (null == source) {
+            throw new IllegalArgumentException("The source must not be null");
+        }
+        this.source = source;
+    }
+
+    public RandomSource getSource() {
+        return(source);
+    }
+
+    /** Not supported, other than the call the Random constructor makes before
+     * this object has a source.
+     */
+    @Override
+    public void setSeed(long seed) {
+        if (source != null) {
+            throw new UnsupportedOperationException("A RandomSourceAdapter can't be reseeded");
+        }
+    }
+
+    @Override
+    protected int next(int bits) {
+        return((int) (source.nextLong() >>> (64 - bits)));
+    }
+
+    // The rest of these go straight to the source, which may have faster
+    // versions than Random builds from next(int).
+
+    @Override
+    public int nextInt() {
+        return(source.nextInt());
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return(source.nextInt(bound));
+    }
+
+    @Override
+    public long nextLong() {
+        return(source.nextLong());
+    }
+
+    @Override
+    public double nextDouble() {
+        return(source.nextDouble());
+    }
+
+    @Override
+    public double nextGaussian() {
+        return(source.nextGaussian());
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return(source.nextBoolean());
+    }
+}
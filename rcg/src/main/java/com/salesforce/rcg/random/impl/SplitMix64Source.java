@@ -0,0 +1,69 @@
+package com.salesforce.rcg.random.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.salesforce.rcg.random.RandomSource;
+
+/** SplitMix64, the generator behind java.util.SplittableRandom (with a fixed
+ * gamma). Each step adds a constant to the state and scrambles the result, so
+ * it's very fast, and every 64-bit seed is a good one. That also makes it the
+ * standard way to turn one seed into the several words of state that bigger
+ * generators such as xoshiro256** need.
+ *
+ * Not threadsafe.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public class SplitMix64Source implements RandomSource {
+    /** The golden ratio, as a 64-bit fraction; the amount the state goes up by
+     * on each step.
+     */
+    protected static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /** Where seeds come from for sources created without one. */
+    private static final AtomicLong SEED_SEQUENCE =
+            new AtomicLong(mix(System.currentTimeMillis()) ^ mix(System.nanoTime()));
+
+    protected long state;
+
+    public SplitMix64Source() {
+        this(newSeed());
+    }
+
+    public SplitMix64Source(long seed) {
+        this.state = seed;
+    }
+
+    @Override
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return(mix(state));
+    }
+
+    @Override
+    public SplitMix64Source split() {
+        return(new SplitMix64Source(nextLong()));
+    }
+
+    /** The SplitMix64 output function: scramble 64 bits so that every input
+     * bit affects every output bit.
+     *
+     * @param z The value to scramble
+     * @return The scrambled value.
+     */
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return(z ^ (z >>> 31));
+    }
+
+    /** Get a seed for a new source that wasn't given one. Each call gives a
+     * different seed, even from different threads.
+     *
+     * @return A new seed.
+     */
+    public static long newSeed() {
+        return(mix(SEED_SEQUENCE.addAndGet(GOLDEN_GAMMA)) ^ mix(System.nanoTime()));
+    }
+}
@@ -0,0 +1,61 @@
+package com.salesforce.rcg.random.impl;
+
+import java.util.SplittableRandom;
+
+import com.salesforce.rcg.random.RandomSource;
+
+/** A RandomSource that gets its numbers from a java.util.SplittableRandom.
+ *
+ * Not threadsafe; split it to give each thread its own.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public class SplittableRandomSource implements RandomSource {
+    protected final SplittableRandom random;
+
+    public SplittableRandomSource() {
+        this(new SplittableRandom());
+    }
+
+    public SplittableRandomSource(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    public SplittableRandomSource(SplittableRandom random) {
+        if (null == random) {
+            throw new IllegalArgumentException("The SplittableRandom must not be null");
+        }
+        this.random = random;
+    }
+
+    @Override
+    public long nextLong() {
+        return(random.nextLong());
+    }
+
+    @Override
+    public int nextInt() {
+        return(random.nextInt());
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return(random.nextInt(bound));
+    }
+
+    @Override
+    public double nextDouble() {
+        return(random.nextDouble());
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return(random.nextBoolean());
+    }
+
+    @Override
+    public SplittableRandomSource split() {
+        return(new SplittableRandomSource(random.split()));
+    }
+}
@@ -0,0 +1,76 @@
+package com.salesforce.rcg.random.impl;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.salesforce.rcg.random.RandomSource;
+
+/** A RandomSource that uses the calling thread's ThreadLocalRandom. One
+ * instance serves every thread, and the threads never contend with each
+ * other, since each of them is really using its own generator. The price is
+ * that it can't be seeded.
+ *
+ * This class is threadsafe.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public final class ThreadLocalRandomSource implements RandomSource {
+    /** The only instance; there's no state, so there's no need for more. */
+    public static final ThreadLocalRandomSource INSTANCE = new ThreadLocalRandomSource();
+
+    private ThreadLocalRandomSource() {
+    }
+
+    @Override
+    public long nextLong() {
+        return(ThreadLocalRandom.current().nextLong());
+    }
+
+    @Override
+    public int nextInt() {
+        return(ThreadLocalRandom.current().nextInt());
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return(ThreadLocalRandom.current().nextInt(bound));
+    }
+
+    @Override
+    public double nextDouble() {
+        return(ThreadLocalRandom.current().nextDouble());
+    }
+
+    @Override
+    public double nextGaussian() {
+        return(ThreadLocalRandom.current().nextGaussian());
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return(ThreadLocalRandom.current().nextBoolean());
+    }
+
+    /** There's nothing to split, since every thread already has its own
+     * generator. But a split source may be handed to a single thread that
+     * wants to run fast without a thread-local lookup per call, so this gives
+     * it a xoshiro256** seeded from the calling thread's generator.
+     */
+    @Override
+    public RandomSource split() {
+        return(new Xoshiro256StarStarSource(ThreadLocalRandom.current().nextLong()));
+    }
+
+    /** Get the calling thread's ThreadLocalRandom. Like the generator itself,
+     * it must only be used by the calling thread.
+     */
+    @Override
+    public Random asRandom() {
+        return(ThreadLocalRandom.current());
+    }
+
+    public String toString() {
+        return("ThreadLocalRandomSource");
+    }
+}
@@ -0,0 +1,55 @@
+package com.salesforce.rcg.random.impl;
+
+import com.salesforce.rcg.random.RandomSource;
+
+/** xoshiro256**, by David Blackman and Sebastiano Vigna. It has 256 bits of
+ * state, a period of 2^256 - 1, passes all the usual statistical tests, and
+ * each step is a handful of shifts, xors and two multiplies.
+ *
+ * The state is seeded from a single long by running SplitMix64 over it, as
+ * the authors recommend; that also guarantees the state isn't all zeroes.
+ *
+ * Not threadsafe.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public class Xoshiro256StarStarSource implements RandomSource {
+    protected long s0;
+    protected long s1;
+    protected long s2;
+    protected long s3;
+
+    public Xoshiro256StarStarSource() {
+        this(SplitMix64Source.newSeed());
+    }
+
+    public Xoshiro256StarStarSource(long seed) {
+        SplitMix64Source seeder = new SplitMix64Source(seed);
+        s0 = seeder.nextLong();
+        s1 = seeder.nextLong();
+        s2 = seeder.nextLong();
+        s3 = seeder.nextLong();
+    }
+
+    @Override
+    public long nextLong() {
+        long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        long t = s1 << 17;
+
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+
+        return(result);
+    }
+
+    @Override
+    public Xoshiro256StarStarSource split() {
+        return(new Xoshiro256StarStarSource(nextLong()));
+    }
+}
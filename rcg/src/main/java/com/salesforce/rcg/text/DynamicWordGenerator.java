@@ -0,0 +1,34 @@
+package com.salesforce.rcg.text;
+
+/** A word generator whose words can be reweighted or removed after they've
+ * been added, not just added.
+ *
+ * Unlike {@link ExtensibleWordGenerator}, words in a dynamic word generator are
+ * identified by their text: adding a word that's already present adds to its
+ * weight rather than creating a second entry.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public interface DynamicWordGenerator extends ExtensibleWordGenerator {
+    /** Set the weight of a word, adding the word if it isn't already present.
+     *
+     * @param text The word to set the weight for
+     * @param weight The new weight. It must be zero or positive.
+     */
+    public void setWeight(String text, double weight);
+
+    /** Get the current weight of a word.
+     *
+     * @param text The word to look up
+     * @return The word's weight, or 0 if the word isn't in this generator.
+     */
+    public double getWeight(String text);
+
+    /** Remove a word from this generator.
+     *
+     * @param text The word to remove
+     * @return true if the word was present (and has been removed), false otherwise.
+     */
+    public boolean removeWord(String text);
+}
@@ -0,0 +1,46 @@
+package com.salesforce.rcg.text;
+
+/** Sampling modes specify how a weighted word generator picks a word once
+ * its weights have been compiled.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public enum WeightedSamplingMode {
+    /** Use an alias table: every word costs one random draw and one table
+     * lookup, regardless of how many words the generator holds.
+     */
+    ALIAS("alias"),
+
+    /** Binary search over the cumulative weights of the words. Each word
+     * costs O(log n) probes, but there's no table to build beyond the
+     * cumulative weights themselves.
+     */
+    BINARY_SEARCH("binary-search");
+
+    public static final WeightedSamplingMode DEFAULT_SAMPLING_MODE = ALIAS;
+
+    protected final String name;
+
+    private WeightedSamplingMode(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return(name);
+    }
+
+    public static WeightedSamplingMode from(String source) {
+        if (null == source) {
+            return(DEFAULT_SAMPLING_MODE);
+        }
+
+        for (WeightedSamplingMode mode: WeightedSamplingMode.values()) {
+            if (mode.getName().equalsIgnoreCase(source)) {
+                return(mode);
+            }
+        }
+
+        throw new IllegalArgumentException("Unrecognized weighted sampling mode: " + source);
+    }
+}
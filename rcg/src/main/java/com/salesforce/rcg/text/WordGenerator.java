@@ -1,6 +1,13 @@
 package com.salesforce.rcg.text;
 
 import java.util.Random;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.salesforce.rcg.metrics.GeneratorMetrics;
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.random.impl.Xoshiro256StarStarSource;
+import com.salesforce.rcg.text.impl.WordSpliterator;
 
 /** A word generator creates random words based on some algorithm. The details
  * of the words it'll generate and the underlying algorithm are entirely up to
@@ -17,13 +24,141 @@ import java.util.Random;
 public interface WordGenerator {
     public String generateWord();
     
+    /** Generate a word using the given random number generator, rather than
+     * this generator's own. The word streams use this so that each part of a
+     * parallel stream can have its own random number generator. Generators
+     * that don't use randomness can ignore <tt>random</tt>, which is what this
+     * default does.
+     * 
+     * @param random The random number generator to use
+     * @return The generated word.
+     */
+    public default String generateWord(RandomSource random) {
+        return(generateWord());
+    }
+    
+    /** Generate a batch of words, filling part of an array. This gives the same
+     * results as calling {@link #generateWord()} <tt>len</tt> times, but
+     * generators can override it to do their per-call setup just once for the
+     * whole batch.
+     * 
+     * @param out The array to fill
+     * @param off The first index in <tt>out</tt> to fill
+     * @param len The number of words to generate
+     * @throws IndexOutOfBoundsException if <tt>off</tt> and <tt>len</tt> don't
+     *     describe a range within <tt>out</tt>
+     */
+    public default void generateWords(String[] out, int off, int len) {
+        checkRange(out, off, len);
+        for (int i = off; i < off + len; ++i) {
+            out[i] = generateWord();
+        }
+    }
+    
+    /** Generate a batch of words.
+     * 
+     * @param n The number of words to generate
+     * @return A new array holding the words.
+     */
+    public default String[] generateWords(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Can't generate a negative number of words: " + n);
+        }
+        String[] result = new String[n];
+        generateWords(result, 0, n);
+        return(result);
+    }
+    
+    /** Get an effectively unlimited stream of words from this generator.
+     * 
+     * @see #words(long)
+     */
+    public default Stream<String> words() {
+        return(words(Long.MAX_VALUE));
+    }
+    
+    /** Get a stream of words from this generator. This is meant to be the way
+     * to generate large numbers of words quickly: the stream can be made
+     * parallel, and each part of a parallel stream gets its own independent
+     * random number generator, so the threads never contend on one Random.
+     * The stream's generators are seeded from this generator's random source,
+     * so a sequential stream from a generator with a seeded source is repeatable.
+     * 
+     * The words have no particular order, so <tt>limit</tt> on a parallel
+     * stream just stops once enough words have been generated.
+     * 
+     * @param streamSize The number of words in the stream
+     * @return The stream.
+     */
+    public default Stream<String> words(long streamSize) {
+        if (streamSize < 0L) {
+            throw new IllegalArgumentException("The stream size must not be negative: " + streamSize);
+        }
+        RandomSource own = getRandomSource();
+        RandomSource random = (null == own) 
+                ? new Xoshiro256StarStarSource() 
+                : new Xoshiro256StarStarSource(own.nextLong());
+        return(StreamSupport.stream(new WordSpliterator(this, random, 0L, streamSize), false));
+    }
+    
+    /** Check that an offset and length describe a range within an array, for
+     * the batch generation methods.
+     */
+    public static void checkRange(String[] out, int off, int len) {
+        if (null == out) {
+            throw new IllegalArgumentException("The output array must not be null");
+        }
+        if ((off < 0) || (len < 0) || (len > out.length - off)) {
+            throw new IndexOutOfBoundsException("Range [" + off + ", " + off + " + " + len 
+                    + ") is out of bounds for an array of length " + out.length);
+        }
+    }
+    
     public String getName();
     
     public Random getRng();
     
     public WordGenerator setRng(Random rng);
     
+    /** Get the source of random numbers this generator uses. Generators that
+     * don't use randomness return null.
+     */
+    public RandomSource getRandomSource();
+    
+    /** Set the source of random numbers this generator uses. This is the
+     * more general form of {@link #setRng(Random)}: <tt>setRng(r)</tt> is the
+     * same as setting a source that wraps <tt>r</tt>.
+     * 
+     * @param source The new source. Unless the source is threadsafe, the
+     *     generator must then only be used from one thread at a time.
+     * @return This generator
+     */
+    public WordGenerator setRandomSource(RandomSource source);
+    
     public WordGeneratorType getType();
     
+    /** Get the metrics this generator keeps: the words it has generated, and
+     * so on.
+     * 
+     * @return The metrics, or null if they're turned off or this generator
+     *     doesn't keep any.
+     */
+    public default GeneratorMetrics getMetrics() {
+        return(null);
+    }
+    
+    /** Turn this generator's metrics on or off. Turning them on when they're
+     * off starts them from zero; while they're off, the generator doesn't
+     * count anything.
+     * Generators that don't keep metrics ignore this, which is what this
+     * default does.
+     * 
+     * @param enabled Whether to keep metrics
+     * @return This generator
+     */
+    public default WordGenerator setMetricsEnabled(boolean enabled) {
+        return(this);
+    }
+    
     // TBD: what other metadata can word generators publish?
 }
@@ -0,0 +1,59 @@
+package com.salesforce.rcg.text;
+
+/** The JMX view of a word generator, as published by
+ * {@link WordGeneratorRegistry#registerMBeans(String)}.
+ *
+ * The counts of words generated come from the generator's metrics, so they
+ * are all 0 while metrics are off; they can be turned on from here.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public interface WordGeneratorMXBean {
+    public String getName();
+
+    /** Get the generator's type, by name; see {@link WordGeneratorType}. */
+    public String getType();
+
+    /** Get the number of words the generator can generate. */
+    public long getNumWords();
+
+    /** Get a rough estimate of the heap the generator's words and tables
+     * take, in bytes, or -1 if it isn't known. This walks every word, so it
+     * takes time in proportion to the number of words.
+     */
+    public long getMemoryEstimate();
+
+    public boolean isMetricsEnabled();
+
+    public void setMetricsEnabled(boolean enabled);
+
+    public long getWordsGenerated();
+
+    public long getProbes();
+
+    public long getRecompiles();
+
+    /** Get the rate words have been generated since the last time this was
+     * read, or since the MBean was published.
+     */
+    public double getWordsPerSecond();
+
+    /** Get the median latency of generating a word, in nanoseconds, to
+     * within a factor of two.
+     */
+    public long getLatencyMedianNanos();
+
+    /** Get the 99th percentile latency of generating a word, in nanoseconds,
+     * to within a factor of two.
+     */
+    public long getLatency99thPercentileNanos();
+
+    /** Get when the generator last compiled its weights, in milliseconds
+     * since the epoch, or 0 if it never has.
+     */
+    public long getLastCompileTime();
+
+    /** Get how long the last compile took, in nanoseconds. */
+    public long getLastCompileNanos();
+}
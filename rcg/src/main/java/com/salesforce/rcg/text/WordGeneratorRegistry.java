@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -13,15 +14,29 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.UnaryOperator;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.json.JSONString;
 
+import com.salesforce.rcg.metrics.GeneratorMetrics;
+import com.salesforce.rcg.metrics.MetricsSnapshot;
+import com.salesforce.rcg.metrics.impl.JfrEvents;
+import com.salesforce.rcg.random.RandomSourceType;
 import com.salesforce.rcg.text.impl.SingleWordGenerator;
 import com.salesforce.rcg.text.impl.UnweightedWordGenerator;
 import com.salesforce.rcg.text.impl.WeightedWordGenerator;
+import com.salesforce.rcg.text.impl.WordGeneratorMonitor;
 import com.salesforce.rcg.util.IoUtils;
 import com.salesforce.rcg.util.JSONUtils;
 import com.salesforce.rcg.util.Pair;
@@ -39,6 +54,19 @@ import com.salesforce.rcg.util.StringUtils;
  * is:
  * TODO: Proper syntax definition.
  * 
+ * Each generator can say which kind of random source it uses, with a
+ * "random-source" property naming a {@link RandomSourceType}; for example,
+ * "random-source": "thread-local" makes a generator use each calling thread's
+ * ThreadLocalRandom, so that a generator shared by many threads doesn't have
+ * them all contending on one Random. {@link #setRandomSourceType} sets the
+ * kind of source for the whole registry.
+ * 
+ * {@link #setMetricsEnabled} turns on metrics for every generator in the
+ * registry, and {@link #getMetricsSnapshot} reads them all at once.
+ * {@link #registerMBeans} publishes the registry and its generators over
+ * JMX, and reading word files emits JFR events (see {@link JfrEvents}), so
+ * both can be watched with the standard JDK tools.
+ * 
  * @author mpreslermarshall
  *
  */
@@ -49,6 +77,26 @@ public class WordGeneratorRegistry {
     
     protected boolean debug = false;
     
+    /** The kind of random source given to the generators in this registry,
+     * or null to leave each generator with its default.
+     */
+    protected volatile RandomSourceType randomSourceType = null;
+    
+    /** Whether the generators in this registry keep metrics. */
+    protected volatile boolean metricsEnabled = false;
+    
+    /** The name this registry's MBeans are published under, or null if they
+     * aren't published.
+     */
+    protected volatile String mbeanName = null;
+    
+    /** The word files this registry has read, for its MBean. */
+    protected final AtomicLong filesLoaded = new AtomicLong();
+    protected final AtomicLong linesLoaded = new AtomicLong();
+    protected final AtomicLong charactersLoaded = new AtomicLong();
+    protected volatile long lastLoadTime = 0L;
+    protected volatile long lastLoadNanos = 0L;
+    
     /** Create a new, empty word generator registry.
      * 
      */
@@ -152,6 +200,10 @@ public class WordGeneratorRegistry {
 
         // Create the word generator
         WordGenerator generator = createGenerator(type, generatorName);
+        String randomSource = JSONUtils.extractString(generatorJson, "random-source", null);
+        if (randomSource != null) {
+            generator.setRandomSource(RandomSourceType.from(randomSource).create());
+        }
 
         // Now we have to load words into the generator. How we do this depends on the
         // type of generator and what info the source JSON gives us.
@@ -171,6 +223,7 @@ public class WordGeneratorRegistry {
 
         case UNWEIGHTED:
         case WEIGHTED: 
+        case DYNAMIC:
             {
                 ExtensibleWordGenerator ewg = (ExtensibleWordGenerator) generator;
 
@@ -414,8 +467,14 @@ public class WordGeneratorRegistry {
         if (debug) System.out.println("Text casing: " + textCasing);
         
         // Read the content and load it into the generator.
+        Object event = JfrEvents.beginFileLoad();
+        long start = System.nanoTime();
+        long lines = 0L;
+        long characters = 0L;
         String line;
         while ((line = reader.readLine()) != null) {
+            ++lines;
+            characters += line.length() + 1;
             if (!StringUtils.isBlank(line)) {
                 // OK, we have a line of input. Process it based on the reading mode.
                 switch(parsedProcessingMode) {
@@ -438,6 +497,13 @@ public class WordGeneratorRegistry {
                 }
             }
         }
+        
+        lastLoadNanos = System.nanoTime() - start;
+        lastLoadTime = System.currentTimeMillis();
+        filesLoaded.incrementAndGet();
+        linesLoaded.addAndGet(lines);
+        charactersLoaded.addAndGet(characters);
+        JfrEvents.commitFileLoad(event, generator.getName(), sourceName, characters, lines);
     }
     
     private void processCsvLine(ExtensibleWordGenerator generator, 
@@ -589,13 +655,263 @@ public class WordGeneratorRegistry {
     	
         // Create the word generator
         WordGenerator generator = WordGeneratorType.create(type, name);
+        RandomSourceType sourceType = randomSourceType;
+        if (sourceType != null) {
+            generator.setRandomSource(sourceType.create());
+        }
+        if (metricsEnabled) {
+            generator.setMetricsEnabled(true);
+        }
         // Store it in the lookup table
         generators.put(name, generator);
+        String currentMBeanName = mbeanName;
+        if (currentMBeanName != null) {
+            registerGenerator(currentMBeanName, generator);
+        }
         
         return generator;
     }    	
     
     
+    public RandomSourceType getRandomSourceType() {
+        return(randomSourceType);
+    }
+    
+    /** Choose the kind of random source for every generator in this registry:
+     * the ones already loaded, and the ones loaded from now on (unless their
+     * JSON names a source of their own). Each generator gets its own source.
+     * 
+     * {@link RandomSourceType#THREAD_LOCAL} is the per-thread mode: every
+     * thread generates words with its own ThreadLocalRandom, so generators
+     * shared by many threads scale with the number of threads. The other
+     * threadsafe choice is {@link RandomSourceType#JAVA_UTIL_RANDOM}; with any
+     * other kind, each generator must only be used from one thread at a time.
+     * 
+     * @param type The kind of random source, or null to leave generators loaded
+     *     from now on with their default source
+     * @return This registry
+     */
+    public synchronized WordGeneratorRegistry setRandomSourceType(RandomSourceType type) {
+        randomSourceType = type;
+        if (type != null) {
+            for (WordGenerator generator: generators.values()) {
+                generator.setRandomSource(type.create());
+            }
+        }
+        return(this);
+    }
+    
+    public boolean isMetricsEnabled() {
+        return(metricsEnabled);
+    }
+    
+    /** Turn metrics on or off for every generator in this registry: the ones
+     * already loaded, and the ones loaded from now on. While they're off,
+     * generators don't count anything, so generating words costs nothing extra.
+     * 
+     * @param enabled Whether the generators keep metrics
+     * @return This registry
+     * @see #getMetricsSnapshot()
+     */
+    public synchronized WordGeneratorRegistry setMetricsEnabled(boolean enabled) {
+        metricsEnabled = enabled;
+        for (WordGenerator generator: generators.values()) {
+            generator.setMetricsEnabled(enabled);
+        }
+        return(this);
+    }
+    
+    /** Get the metrics of every generator in this registry that keeps them.
+     * 
+     * @return The metrics of each generator, by name, in order of name.
+     *     Generators without metrics are left out.
+     */
+    public synchronized Map<String, MetricsSnapshot> getMetricsSnapshot() {
+        Map<String, MetricsSnapshot> result = new TreeMap<>();
+        for (Map.Entry<String, WordGenerator> entry: generators.entrySet()) {
+            GeneratorMetrics metrics = entry.getValue().getMetrics();
+            if (metrics != null) {
+                result.put(entry.getKey(), metrics.snapshot());
+            }
+        }
+        return(Collections.unmodifiableMap(result));
+    }
+    
+    //
+    // JMX: the registry and each of its generators can be published as MBeans.
+    //
+    
+    /** The JMX domain this registry's MBeans are published in. */
+    public static final String MBEAN_DOMAIN = "com.salesforce.rcg";
+    
+    /** Publish MBeans for this registry and each of its generators, in the
+     * platform MBean server, so that they can be watched with JConsole,
+     * VisualVM, and so on. Generators loaded from now on are published too.
+     * The registry is published as
+     * <tt>com.salesforce.rcg:type=WordGeneratorRegistry,name=<i>name</i></tt>,
+     * and each generator as
+     * <tt>com.salesforce.rcg:type=WordGenerator,registry=<i>name</i>,name=<i>generator</i></tt>.
+     * 
+     * The MBeans only read the generators when JMX asks them to, so
+     * publishing them costs nothing while nobody's looking. The counts of
+     * words generated need metrics, though; see {@link #setMetricsEnabled}.
+     * 
+     * @param name The name to publish the registry under. It must not be
+     *     used by another published registry.
+     * @return This registry
+     * @throws IllegalStateException If the MBeans can't be registered.
+     */
+    public synchronized WordGeneratorRegistry registerMBeans(String name) {
+        if (null == name) {
+            throw new IllegalArgumentException("The registry's MBean name must not be null");
+        }
+        if (mbeanName != null) {
+            unregisterMBeans();
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new StandardMBean(new Monitor(name), WordGeneratorRegistryMXBean.class, true),
+                    registryObjectName(name));
+        } catch (JMException e) {
+            throw new IllegalStateException("Couldn't register the MBean for registry " + name, e);
+        }
+        mbeanName = name;
+        for (WordGenerator generator: generators.values()) {
+            registerGenerator(name, generator);
+        }
+        return(this);
+    }
+    
+    /** Remove the MBeans published by {@link #registerMBeans(String)}. This
+     * does nothing if they aren't published.
+     */
+    public synchronized void unregisterMBeans() {
+        String name = mbeanName;
+        if (null == name) {
+            return;
+        }
+        mbeanName = null;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            unregister(server, registryObjectName(name));
+            for (String generatorName: generators.keySet()) {
+                unregister(server, generatorObjectName(name, generatorName));
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Couldn't unregister the MBeans for registry " + name, e);
+        }
+    }
+    
+    /** Get the name this registry's MBeans are published under, or null if
+     * they aren't.
+     */
+    public String getMBeanName() {
+        return(mbeanName);
+    }
+    
+    /** Get the JMX name of a published registry's MBean. */
+    public static ObjectName registryObjectName(String name) throws MalformedObjectNameException {
+        return(new ObjectName(MBEAN_DOMAIN + ":type=WordGeneratorRegistry,name=" + ObjectName.quote(name)));
+    }
+    
+    /** Get the JMX name of the MBean for a generator in a published registry. */
+    public static ObjectName generatorObjectName(String registryName, String generatorName) 
+            throws MalformedObjectNameException {
+        return(new ObjectName(MBEAN_DOMAIN + ":type=WordGenerator,registry=" + ObjectName.quote(registryName)
+                + ",name=" + ObjectName.quote(generatorName)));
+    }
+    
+    /** Publish the MBean for one generator, replacing any generator that had
+     * the same name.
+     */
+    private void registerGenerator(String registryName, WordGenerator generator) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = generatorObjectName(registryName, generator.getName());
+            unregister(server, objectName);
+            server.registerMBean(new StandardMBean(new WordGeneratorMonitor(generator), WordGeneratorMXBean.class, true),
+                    objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Couldn't register the MBean for generator " + generator.getName(), e);
+        }
+    }
+    
+    private static void unregister(MBeanServer server, ObjectName objectName) throws JMException {
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+    }
+    
+    /** The registry's MBean. */
+    protected class Monitor implements WordGeneratorRegistryMXBean {
+        private final String registryName;
+        
+        Monitor(String registryName) {
+            this.registryName = registryName;
+        }
+        
+        @Override
+        public String getRegistryName() {
+            return(registryName);
+        }
+        
+        @Override
+        public int getNumGenerators() {
+            return(WordGeneratorRegistry.this.getNumGenerators());
+        }
+        
+        @Override
+        public String[] getGeneratorNames() {
+            synchronized (WordGeneratorRegistry.this) {
+                return(new TreeSet<>(generators.keySet()).toArray(new String[0]));
+            }
+        }
+        
+        @Override
+        public long getTotalWordsGenerated() {
+            long total = 0L;
+            for (MetricsSnapshot snapshot: getMetricsSnapshot().values()) {
+                total += snapshot.getGenerated();
+            }
+            return(total);
+        }
+        
+        @Override
+        public boolean isMetricsEnabled() {
+            return(metricsEnabled);
+        }
+        
+        @Override
+        public void setMetricsEnabled(boolean enabled) {
+            WordGeneratorRegistry.this.setMetricsEnabled(enabled);
+        }
+        
+        @Override
+        public long getFilesLoaded() {
+            return(filesLoaded.get());
+        }
+        
+        @Override
+        public long getLinesLoaded() {
+            return(linesLoaded.get());
+        }
+        
+        @Override
+        public long getCharactersLoaded() {
+            return(charactersLoaded.get());
+        }
+        
+        @Override
+        public long getLastLoadTime() {
+            return(lastLoadTime);
+        }
+        
+        @Override
+        public double getLastLoadMillis() {
+            return(lastLoadNanos / 1e6);
+        }
+    }
+    
     /** Get the number of word generators contained in this registry.
      * 
      * @return The number of generators
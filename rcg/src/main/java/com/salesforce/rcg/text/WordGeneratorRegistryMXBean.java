@@ -0,0 +1,46 @@
+package com.salesforce.rcg.text;
+
+/** The JMX view of a {@link WordGeneratorRegistry}, as published by
+ * {@link WordGeneratorRegistry#registerMBeans(String)}.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public interface WordGeneratorRegistryMXBean {
+    /** Get the name the registry was published under. */
+    public String getRegistryName();
+
+    public int getNumGenerators();
+
+    /** Get the names of the registry's generators, in order. */
+    public String[] getGeneratorNames();
+
+    /** Get the total number of words generated by the registry's generators
+     * that keep metrics.
+     */
+    public long getTotalWordsGenerated();
+
+    public boolean isMetricsEnabled();
+
+    /** Turn metrics on or off for every generator in the registry. */
+    public void setMetricsEnabled(boolean enabled);
+
+    /** Get the number of word files and resources the registry has read. */
+    public long getFilesLoaded();
+
+    /** Get the number of lines read from word files and resources. */
+    public long getLinesLoaded();
+
+    /** Get the number of characters read from word files and resources,
+     * counting line ends; for ASCII word lists, that's the number of bytes.
+     */
+    public long getCharactersLoaded();
+
+    /** Get when the registry last finished reading a word file, in
+     * milliseconds since the epoch, or 0 if it never has.
+     */
+    public long getLastLoadTime();
+
+    /** Get how long reading the last word file took, in milliseconds. */
+    public double getLastLoadMillis();
+}
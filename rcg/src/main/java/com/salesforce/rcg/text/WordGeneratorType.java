@@ -1,5 +1,6 @@
 package com.salesforce.rcg.text;
 
+import com.salesforce.rcg.text.impl.DynamicWeightedWordGenerator;
 import com.salesforce.rcg.text.impl.SingleWordGenerator;
 import com.salesforce.rcg.text.impl.UnweightedWordGenerator;
 import com.salesforce.rcg.text.impl.WeightedWordGenerator;
@@ -11,7 +12,13 @@ public enum WordGeneratorType {
      */
     SINGLE_WORD("single-word"),
     UNWEIGHTED("unweighted"),
-    WEIGHTED("weighted");
+    WEIGHTED("weighted"),
+    /** A weighted word generator whose weights can be changed, and words removed,
+     * after they've been added.
+     * Reference implementation: {@link com.salesforce.rcg.text.impl.DynamicWeightedWordGenerator 
+     * <tt>com.salesforce.rcg.text.impl.DynamicWeightedWordGenerator</tt>}.
+     */
+    DYNAMIC("dynamic");
     
     protected final String name;
     
@@ -56,6 +63,8 @@ public enum WordGeneratorType {
             return new UnweightedWordGenerator(name);
         } else if (type == WEIGHTED) {
             return new WeightedWordGenerator(name);
+        } else if (type == DYNAMIC) {
+            return new DynamicWeightedWordGenerator(name);
         } else if (type == SINGLE_WORD) {
             return new SingleWordGenerator(name);
         } else {
@@ -2,27 +2,46 @@ package com.salesforce.rcg.text.impl;
 
 import java.util.Random;
 
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.random.impl.JavaRandomSource;
+
 public abstract class AbstractRandomWordGenerator extends AbstractWordGenerator {
-    protected Random rng;
+    protected RandomSource rng;
     
     public AbstractRandomWordGenerator(String name) {
         super(name);
-        rng = new Random();
+        rng = new JavaRandomSource(new Random());
     }
     
     public AbstractRandomWordGenerator(String name, Random rng) {
         super(name);
-        this.rng = rng;
+        this.rng = new JavaRandomSource(rng);
+    }
+    
+    public AbstractRandomWordGenerator(String name, RandomSource rng) {
+        super(name);
+        setRandomSource(rng);
     }
     
     public Random getRng() {
-        return(rng);
+        return(rng.asRandom());
     }
     
     public AbstractRandomWordGenerator setRng(Random rng) {
-        this.rng = rng;
+        this.rng = new JavaRandomSource(rng);
         return(this);
     }
 
+    public RandomSource getRandomSource() {
+        return(rng);
+    }
+    
+    public AbstractRandomWordGenerator setRandomSource(RandomSource source) {
+        if (null == source) {
+            throw new IllegalArgumentException("The random source must not be null");
+        }
+        this.rng = source;
+        return(this);
+    }
 
 }
@@ -1,10 +1,16 @@
 package com.salesforce.rcg.text.impl;
 
+import com.salesforce.rcg.metrics.GeneratorMetrics;
 import com.salesforce.rcg.text.WordGenerator;
 
 public abstract class AbstractWordGenerator implements WordGenerator {
     protected final String name;
     
+    /** This generator's metrics, or null if they're turned off. Generators
+     * read this once per call into a local, and skip all counting if it's null.
+     */
+    protected volatile GeneratorMetrics metrics = null;
+    
     public AbstractWordGenerator(String name) {
         this.name = name;
     }
@@ -13,5 +19,17 @@ public abstract class AbstractWordGenerator implements WordGenerator {
         return(name);
     }
     
+    public GeneratorMetrics getMetrics() {
+        return(metrics);
+    }
+    
+    public AbstractWordGenerator setMetricsEnabled(boolean enabled) {
+        if (!enabled) {
+            metrics = null;
+        } else if (null == metrics) {
+            metrics = new GeneratorMetrics(name);
+        }
+        return(this);
+    }
 
 }
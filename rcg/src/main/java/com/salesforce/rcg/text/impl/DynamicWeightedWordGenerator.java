@@ -0,0 +1,372 @@
+package com.salesforce.rcg.text.impl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.StampedLock;
+
+import com.salesforce.rcg.metrics.GeneratorMetrics;
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.text.DynamicWordGenerator;
+import com.salesforce.rcg.text.WordGeneratorType;
+
+/** A weighted word generator whose weights can change cheaply after the
+ * words have been added.
+ *
+ * A {@link WeightedWordGenerator} recompiles all of its cumulative weights,
+ * in O(n) time, after any change. This generator keeps its weights in a
+ * Fenwick tree (binary indexed tree) instead, so adding, reweighting, or
+ * removing a word costs O(log n), and so does generating a word. That makes
+ * it the better choice for vocabularies whose weights change constantly;
+ * for a fixed vocabulary, the WeightedWordGenerator's alias table is faster.
+ *
+ * This class is threadsafe. Changes take a write lock. Generating a word uses
+ * an optimistic read, which takes no lock at all unless a change happened
+ * during the read, in which case the read is retried under a read lock.
+ *
+ * With metrics turned on, the probes counted for each word are the levels of
+ * the tree walked down, and the recompiles are the rebuilds of the tree.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public class DynamicWeightedWordGenerator
+        extends AbstractRandomWordGenerator
+        implements DynamicWordGenerator {
+    /** The initial number of slots for words. This must be a power of two. */
+    protected static final int INITIAL_CAPACITY = 16;
+
+    /** Each change adjusts the tree by the difference between the old and new
+     * weights, so floating-point rounding slowly builds up. Once this many
+     * changes have been made (or the capacity, if that's larger) the tree is
+     * rebuilt from the exact weights. That's O(n), but only once every n changes.
+     */
+    protected static final int MIN_CHANGES_BEFORE_REBUILD = 1024;
+
+    /** The word in each slot, or null for an unused slot. */
+    protected String[] words = new String[INITIAL_CAPACITY];
+
+    /** The weight of the word in each slot. Unused slots have a weight of 0. */
+    protected double[] weights = new double[INITIAL_CAPACITY];
+
+    /** The Fenwick tree over <tt>weights</tt>. It's 1-based: entry i holds the
+     * total weight of slots (i - lowbit(i)) through (i - 1). Since the capacity
+     * is always a power of two, the last entry holds the total of all weights.
+     */
+    protected double[] tree = new double[INITIAL_CAPACITY + 1];
+
+    /** The number of slots that have ever been used; slots past this are free. */
+    protected int numSlots = 0;
+
+    /** Slots that were used by words that have since been removed. */
+    protected int[] freeSlots = new int[INITIAL_CAPACITY];
+    protected int numFreeSlots = 0;
+
+    /** The slot holding each word. */
+    protected final Map<String, Integer> slotsByWord = new HashMap<>();
+
+    /** The number of changes since the tree was last rebuilt. */
+    protected int changesSinceRebuild = 0;
+
+    protected final StampedLock lock = new StampedLock();
+
+    /** When the tree was last rebuilt, in milliseconds since the epoch, or 0
+     * if it hasn't been; and how many nanoseconds that took. These are only
+     * for monitoring.
+     */
+    protected volatile long lastCompileTime = 0L;
+    protected volatile long lastCompileNanos = 0L;
+
+    public DynamicWeightedWordGenerator() {
+        super("anonymous");
+    }
+
+    public DynamicWeightedWordGenerator(String name) {
+        super(name);
+    }
+
+    public DynamicWeightedWordGenerator(String name, Random rng) {
+        super(name, rng);
+    }
+
+    public DynamicWeightedWordGenerator(String name, RandomSource rng) {
+        super(name, rng);
+    }
+
+    public String toString() {
+        return "[DynamicWeightedWordGenerator name=" + name + ", words=" + getNumWords() + "]";
+    }
+
+    public WordGeneratorType getType() {
+        return(WordGeneratorType.DYNAMIC);
+    }
+
+    /** Add a word to this generator with the default weight (1). If the word
+     * is already present, its weight goes up by 1.
+     *
+     * @param word The word to add
+     */
+    public void addWord(String word) {
+        addWord(word, 1.0);
+    }
+
+    /** Add a word to this generator. If the word is already present, the weight
+     * given is added to its current weight.
+     *
+     * @param word The word to add
+     * @param weight The weight to add for this word. It must be zero or positive,
+     *   and finite, as must the word's new weight.
+     */
+    public void addWord(String word, double weight) {
+        checkWeight(weight);
+        long stamp = lock.writeLock();
+        try {
+            int slot = findOrAddSlot(word);
+            double sum = weights[slot] + weight;
+            checkWeight(sum);
+            updateWeight(slot, sum);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void setWeight(String word, double weight) {
+        checkWeight(weight);
+        long stamp = lock.writeLock();
+        try {
+            updateWeight(findOrAddSlot(word), weight);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public double getWeight(String word) {
+        long stamp = lock.readLock();
+        try {
+            Integer slot = slotsByWord.get(word);
+            return((slot == null) ? 0.0 : weights[slot]);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean removeWord(String word) {
+        long stamp = lock.writeLock();
+        try {
+            Integer slot = slotsByWord.remove(word);
+            if (slot == null) {
+                return(false);
+            }
+            updateWeight(slot, 0.0);
+            words[slot] = null;
+            if (numFreeSlots == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+            }
+            freeSlots[numFreeSlots++] = slot;
+            return(true);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Generate a random word, in proportion to the current weights.
+     *
+     * @return A word, or null if there are no words with a positive weight.
+     */
+    @Override
+    public String generateWord() {
+        return(generateWord(rng));
+    }
+
+    @Override
+    public String generateWord(RandomSource random) {
+        GeneratorMetrics currentMetrics = metrics;
+        if (null == currentMetrics) {
+            return(generateWord(random.nextDouble()));
+        }
+
+        long start = currentMetrics.startTimer();
+        String word = generateWord(random.nextDouble());
+        currentMetrics.addGenerated(1L);
+        currentMetrics.addProbes(Integer.numberOfTrailingZeros(tree.length - 1));
+        currentMetrics.stopTimer(start);
+        return(word);
+    }
+
+    /** Generate the word for a given random value, retrying under a read
+     * lock if the weights changed while we were looking.
+     */
+    private String generateWord(double u) {
+        long stamp = lock.tryOptimisticRead();
+        String word = pick(u);
+        if (!lock.validate(stamp)) {
+            // Somebody changed the weights while we were looking. Try again,
+            // this time keeping them out.
+            stamp = lock.readLock();
+            try {
+                word = pick(u);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return(word);
+    }
+
+    /** Pick the word for a given random value. This may be called without any
+     * lock held, in which case the fields may be changing underneath us. The
+     * result is thrown away in that case, but it must not throw an exception,
+     * so every array index is checked against the array it's used on.
+     *
+     * @param u A random number in the range [0, 1)
+     * @return The chosen word, or null if there's nothing to choose.
+     */
+    private String pick(double u) {
+        double[] currentTree = tree;
+        String[] currentWords = words;
+        double[] currentWeights = weights;
+        int capacity = currentTree.length - 1;
+
+        double totalWeight = currentTree[capacity];
+        if (!(totalWeight > 0.0)) {
+            return(null);
+        }
+
+        // Walk down the tree, looking for the first slot whose cumulative
+        // weight is above the roll. Zero-weight slots are skipped because
+        // their cumulative weight equals the slot before them.
+        double remaining = u * totalWeight;
+        int slot = 0;
+        for (int step = capacity >>> 1; step > 0; step >>>= 1) {
+            int next = slot + step;
+            if (currentTree[next] <= remaining) {
+                slot = next;
+                remaining -= currentTree[next];
+            }
+        }
+
+        if ((slot >= currentWords.length) || (slot >= currentWeights.length)
+                || !(currentWeights[slot] > 0.0)) {
+            // Rounding error carried us past the last word; settle for the
+            // last word that can be generated.
+            slot = Math.min(Math.min(currentWords.length, currentWeights.length), numSlots) - 1;
+            while ((slot >= 0) && !(currentWeights[slot] > 0.0)) {
+                --slot;
+            }
+            if (slot < 0) {
+                return(null);
+            }
+        }
+        return(currentWords[slot]);
+    }
+
+    /** Find the slot for a word, giving it a new (zero-weight) slot if it
+     * isn't present. Callers must hold the write lock.
+     */
+    private int findOrAddSlot(String word) {
+        Integer existing = slotsByWord.get(word);
+        if (existing != null) {
+            return(existing);
+        }
+
+        int slot;
+        if (numFreeSlots > 0) {
+            slot = freeSlots[--numFreeSlots];
+        } else {
+            if (numSlots == words.length) {
+                grow();
+            }
+            slot = numSlots++;
+        }
+        words[slot] = word;
+        slotsByWord.put(word, slot);
+        return(slot);
+    }
+
+    /** Change the weight in a slot and adjust the tree to match. Callers must
+     * hold the write lock.
+     */
+    private void updateWeight(int slot, double weight) {
+        double delta = weight - weights[slot];
+        weights[slot] = weight;
+
+        if (++changesSinceRebuild > Math.max(MIN_CHANGES_BEFORE_REBUILD, weights.length)) {
+            rebuildTree();
+        } else if (delta != 0.0) {
+            double[] currentTree = tree;
+            for (int i = slot + 1; i < currentTree.length; i += (i & -i)) {
+                currentTree[i] += delta;
+            }
+        }
+    }
+
+    /** Double the number of slots. Callers must hold the write lock. */
+    private void grow() {
+        int newCapacity = words.length * 2;
+        words = Arrays.copyOf(words, newCapacity);
+        weights = Arrays.copyOf(weights, newCapacity);
+        rebuildTree();
+    }
+
+    /** Rebuild the tree from the exact weights. Callers must hold the write lock. */
+    private void rebuildTree() {
+        long start = System.nanoTime();
+        tree = buildTree(weights);
+        lastCompileNanos = System.nanoTime() - start;
+        lastCompileTime = System.currentTimeMillis();
+        changesSinceRebuild = 0;
+        GeneratorMetrics currentMetrics = metrics;
+        if (currentMetrics != null) {
+            currentMetrics.addRecompile();
+        }
+    }
+
+    /** Build a Fenwick tree from a set of weights in O(n) time.
+     *
+     * @param source The weights. The length must be a power of two.
+     * @return The tree.
+     */
+    private static double[] buildTree(double[] source) {
+        double[] result = new double[source.length + 1];
+        for (int i = 1; i < result.length; ++i) {
+            result[i] += source[i - 1];
+            int parent = i + (i & -i);
+            if (parent < result.length) {
+                result[parent] += result[i];
+            }
+        }
+        return(result);
+    }
+
+    private static void checkWeight(double weight) {
+        if (!(weight >= 0.0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Weights must be finite and not negative: " + weight);
+        }
+    }
+
+    /** Get the number of words in this generator, including words with a weight
+     * of zero.
+     */
+    public int getNumWords() {
+        long stamp = lock.readLock();
+        try {
+            return(slotsByWord.size());
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Get the total weight of all the words in this generator. */
+    public double getTotalWeight() {
+        long stamp = lock.readLock();
+        try {
+            return(tree[tree.length - 1]);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+}
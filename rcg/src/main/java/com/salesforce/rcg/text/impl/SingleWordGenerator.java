@@ -2,6 +2,8 @@ package com.salesforce.rcg.text.impl;
 
 import java.util.Random;
 
+import com.salesforce.rcg.metrics.GeneratorMetrics;
+import com.salesforce.rcg.random.RandomSource;
 import com.salesforce.rcg.text.WordGeneratorType;
 
 /** The SingleWordGenerator is a trivial implementation of the
@@ -35,6 +37,10 @@ public class SingleWordGenerator extends AbstractWordGenerator {
 
     @Override
     public String generateWord() {
+        GeneratorMetrics currentMetrics = metrics;
+        if (currentMetrics != null) {
+            currentMetrics.addGenerated(1L);
+        }
         return(word);        
     }
     
@@ -49,6 +55,17 @@ public class SingleWordGenerator extends AbstractWordGenerator {
     public SingleWordGenerator setRng(Random rng) {
         return(this);
     }
+    
+    public RandomSource getRandomSource() {
+        return(null);
+    }
+    
+    /** Set the source of random numbers used by this word generator. Like
+     * {@link #setRng <tt>setRng</tt>}, this does nothing.
+     */
+    public SingleWordGenerator setRandomSource(RandomSource source) {
+        return(this);
+    }
 
     /** Set the word to be generated by this generator. This can only be used on
      * instances that were created without a source word. If the source word has
@@ -65,7 +82,7 @@ public class SingleWordGenerator extends AbstractWordGenerator {
     }
     
     public String toString() {
-        return "[SingleWordGenerator '" + getName() + "' returning '" + generateWord() + "']";
+        return "[SingleWordGenerator '" + getName() + "' returning '" + word + "']";
     }
 
 }
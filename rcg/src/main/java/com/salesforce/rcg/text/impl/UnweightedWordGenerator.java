@@ -1,17 +1,41 @@
 package com.salesforce.rcg.text.impl;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Random;
 
+import com.salesforce.rcg.metrics.GeneratorMetrics;
+import com.salesforce.rcg.random.RandomSource;
 import com.salesforce.rcg.text.ExtensibleWordGenerator;
+import com.salesforce.rcg.text.WordGenerator;
 import com.salesforce.rcg.text.WordGeneratorType;
 
+/** A word generator where every word has the same chance of being generated.
+ * 
+ * This class is threadsafe, and words may be added while other threads are
+ * generating words. Writers are synchronized with each other and append to an
+ * array that is never modified below the point already published; each write
+ * publishes a new immutable {@link Snapshot}. Readers never lock - they just
+ * read the current snapshot.
+ * 
+ * @author mpreslermarshall
+ *
+ */
 public class UnweightedWordGenerator 
         extends AbstractRandomWordGenerator 
         implements ExtensibleWordGenerator {
-    /** All of the words in this generator. */
-    protected List<String> items = new ArrayList<>();
+    /** The initial capacity of the word array. */
+    protected static final int INITIAL_CAPACITY = 16;
+    
+    /** All of the words in this generator. Only the first numWords entries are used.
+     * Guarded by <tt>this</tt>; readers only see it through a Snapshot.
+     */
+    protected String[] items = new String[INITIAL_CAPACITY];
+    
+    /** The number of words in this generator. */
+    protected int numWords = 0;
+    
+    /** The most recently published view of the words in this generator. */
+    protected volatile Snapshot snapshot = new Snapshot(items, 0);
     
     public UnweightedWordGenerator() {
         super("anonymous");
@@ -24,6 +48,10 @@ public class UnweightedWordGenerator
     public UnweightedWordGenerator(String name, Random rng) {
         super(name, rng);
     }
+
+    public UnweightedWordGenerator(String name, RandomSource rng) {
+        super(name, rng);
+    }
     
     public String toString() {
         return "UnweightedWordGenerator '" + name + "'";
@@ -38,7 +66,14 @@ public class UnweightedWordGenerator
      * @param word The word to add
      */
     public synchronized void addWord(String word) {
-        items.add(word);
+        if (numWords == items.length) {
+            // Readers may still be using the old array through an older snapshot,
+            // so grow by copying rather than touching it.
+            items = Arrays.copyOf(items, items.length * 2);
+        }
+        items[numWords] = word;
+        ++numWords;
+        snapshot = new Snapshot(items, numWords);
     }
     
     /** Add a word to this generator. The specified weight will be ignored, as
@@ -54,14 +89,79 @@ public class UnweightedWordGenerator
      */
     @Override
     public String generateWord() {
+        return(generateWord(rng));
+    }
+    
+    @Override
+    public String generateWord(RandomSource random) {
+        GeneratorMetrics currentMetrics = metrics;
+        if (null == currentMetrics) {
+            return(pick(snapshot, random));
+        }
+        
+        long start = currentMetrics.startTimer();
+        String word = pick(snapshot, random);
+        currentMetrics.addGenerated(1L);
+        currentMetrics.addProbes(1L);
+        currentMetrics.stopTimer(start);
+        return(word);
+    }
+    
+    private static String pick(Snapshot current, RandomSource random) {
         // Check boundary conditions
-        if (items.size() == 0) {
+        if (current.numWords == 0) {
             return(null);
         }
         
-        int roll = rng.nextInt(items.size());
+        int roll = random.nextInt(current.numWords);
         
-        return(items.get(roll));
+        return(current.words[roll]);
+    }
+    
+    /** Generate a batch of words. The snapshot is read once for the whole
+     * batch, so words added by other threads part way through the batch
+     * won't be generated until the next call.
+     */
+    @Override
+    public void generateWords(String[] out, int off, int len) {
+        WordGenerator.checkRange(out, off, len);
+        Snapshot current = snapshot;
+        int end = off + len;
+        GeneratorMetrics currentMetrics = metrics;
+        if (currentMetrics != null) {
+            currentMetrics.addGenerated(len);
+            currentMetrics.addProbes(len);
+        }
+        
+        if (current.numWords == 0) {
+            Arrays.fill(out, off, end, null);
+            return;
+        }
+        
+        RandomSource random = rng;
+        String[] words = current.words;
+        int bound = current.numWords;
+        for (int i = off; i < end; ++i) {
+            out[i] = words[random.nextInt(bound)];
+        }
+    }
+    
+    int getNumWords() {
+        return snapshot.numWords;
+    }
+    
+    /** An immutable view of the words in this generator. The array is shared
+     * with the writers, but writers only ever append past <tt>numWords</tt>,
+     * so the entries a snapshot covers never change.
+     */
+    protected static final class Snapshot {
+        final String[] words;
+        final int numWords;
+        
+        Snapshot(String[] words, int numWords) {
+            this.words = words;
+            this.numWords = numWords;
+        }
     }
     
 }
@@ -1,65 +1,142 @@
 package com.salesforce.rcg.text.impl;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Random;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
+import com.salesforce.rcg.metrics.GeneratorMetrics;
+import com.salesforce.rcg.metrics.impl.JfrEvents;
+import com.salesforce.rcg.random.RandomSource;
 import com.salesforce.rcg.text.ExtensibleWordGenerator;
+import com.salesforce.rcg.text.WeightedSamplingMode;
+import com.salesforce.rcg.text.WordGenerator;
 import com.salesforce.rcg.text.WordGeneratorType;
+import com.salesforce.rcg.util.AliasTable;
 
-public class WeightedWordGenerator 
-        extends AbstractRandomWordGenerator 
+/** A word generator where each word has its own weight, and words are
+ * generated in proportion to their weights.
+ *
+ * The words and weights are held in parallel arrays rather than as one object
+ * per word. When the weights are compiled, the cumulative weights are stored
+ * as a <tt>long[]</tt> of exact counts if every weight is a whole number (as
+ * in the census name files), or as a <tt>double[]</tt> otherwise.
+ *
+ * This class is threadsafe, and words may be added while other threads are
+ * generating words. Writers (addWord and friends) are synchronized with each
+ * other, and append to arrays that are never modified below the point they've
+ * already published. Each write publishes an immutable {@link Pending} view
+ * of the words added so far. Readers (generateWord) never lock: they use the
+ * current compiled {@link Snapshot}, and if it's older than the latest
+ * published words, they compile a new one themselves and swap it in. Many
+ * words added in a row cost only a single compile.
+ *
+ * When metrics are turned on (see {@link #setMetricsEnabled(boolean)}), the
+ * generator counts the words it generates, the entries it looks at to pick
+ * them, and the times it compiles its weights. The search loops count their
+ * probes in a local and add them to the metrics once, after the loop; with
+ * metrics off, nothing is added anywhere.
+ * Each compile is also timed for the generator's MBean, and emitted as a JFR
+ * event when a recording wants it.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public class WeightedWordGenerator
+        extends AbstractRandomWordGenerator
         implements ExtensibleWordGenerator {
-    /** All of the words in this generator. */
-    protected List<WeightedItem<String>> items = new ArrayList<>();
-    
-    /** The total weight of all our items.
-     * This is lazy-evaluated - every call to generate a word will see if the
-     * weights need to be recompiled, and do so if needed.
-     */
-    protected double totalWeight = 0.0;
-    
-    protected AtomicBoolean weightsCompiled = new AtomicBoolean(false);
-    
-    // Statistics about the number of words generated and the number of
-    // searches done while trying to find the right word.
-    // Note that these counters are not threadsafe, so in any multithreaded
-    // use of this class, they will be wrong to some degree. Their purpose is
-    // for testing, and the tests that check these aren't multithreaded.
-    protected long numWordsGenerated = 0L;
-    protected long numProbes = 0L;
-    
+    /** The initial capacity of the word and weight arrays. */
+    protected static final int INITIAL_CAPACITY = 16;
+
+    /** Weights up to this value (2^53) can be held exactly in a double, so
+     * whole-number weights whose total stays below this can use exact counts.
+     */
+    protected static final double MAX_EXACT_WEIGHT = 9007199254740992.0;
+
+    /** All of the words in this generator. Only the first numWords entries are used.
+     * Guarded by <tt>this</tt>; readers only see it through a Pending.
+     */
+    protected String[] words = new String[INITIAL_CAPACITY];
+
+    /** The weight of each word, parallel to <tt>words</tt>. */
+    protected double[] weights = new double[INITIAL_CAPACITY];
+
+    /** The number of words in this generator. */
+    protected int numWords = 0;
+
+    /** How we pick a word once the weights are compiled. */
+    protected WeightedSamplingMode samplingMode = WeightedSamplingMode.DEFAULT_SAMPLING_MODE;
+
+    /** The most recently published view of the words added by writers. */
+    protected volatile Pending pending = new Pending(words, weights, 0, samplingMode);
+
+    /** The compiled form of the weights. This is swapped out as a whole - never
+     * modified in place - when the weights are recompiled.
+     */
+    protected final AtomicReference<Snapshot> snapshot = new AtomicReference<>(compile(pending));
+
+    /** When the weights were last compiled by {@link #checkIfDirty()}, in
+     * milliseconds since the epoch, or 0 if they haven't been; and how many
+     * nanoseconds that took. These are only for monitoring.
+     */
+    protected volatile long lastCompileTime = 0L;
+    protected volatile long lastCompileNanos = 0L;
+
     public WeightedWordGenerator() {
         super("anonymous");
     }
-    
+
     public WeightedWordGenerator(String name) {
         super(name);
     }
-    
+
     public WeightedWordGenerator(String name, Random rng) {
         super(name, rng);
     }
-    
+
+    public WeightedWordGenerator(String name, RandomSource rng) {
+        super(name, rng);
+    }
+
     public String toString() {
-        return "[WeightedWordGenerator name=" + name + ", compiled=" + weightsCompiled.get() + "]";
+        Pending latest = pending;
+        return "[WeightedWordGenerator name=" + name
+                + ", mode=" + latest.samplingMode.getName()
+                + ", compiled=" + (snapshot.get().source == latest) + "]";
+    }
+
+    public WeightedSamplingMode getSamplingMode() {
+        return(pending.samplingMode);
     }
-    
+
+    /** Choose how this generator picks words. Changing the mode will cause the
+     * weights to be recompiled on the next call to generateWord.
+     *
+     * @param mode The sampling mode to use
+     * @return This generator
+     */
+    public synchronized WeightedWordGenerator setSamplingMode(WeightedSamplingMode mode) {
+        if (null == mode) {
+            throw new IllegalArgumentException("The sampling mode must not be null");
+        }
+        samplingMode = mode;
+        setDirty();
+        return(this);
+    }
+
     public WordGeneratorType getType() {
         return(WordGeneratorType.WEIGHTED);
     }
 
     /** Add a word to this generator with the default weight (1).
-     * 
+     *
      * @param word The word to add
      */
     public void addWord(String word) {
         addWord(word, 1.0);
     }
-    
+
     /** Add a word to this generator, specifying the weight for this word.
-     * 
+     *
      * @param word The word to add
      * @param weight The weight for this word. It must be zero or positive.
      *     Zero-weight words are allowed, though they will never be generated
@@ -69,130 +146,376 @@ public class WeightedWordGenerator
         if (weight < 0.0) {
             throw new IllegalArgumentException("Weights must be non-negative");
         }
-        addItem(new WeightedItem<String>(word, weight));
+        addItem(word, weight);
     }
-    
+
     /** The actual implementation of adding an item to a word generator.
-     * 
-     * @param item The WeightedItem containing the string to add
-     *     and its weight.
+     *
+     * @param word The string to add
+     * @param weight Its weight
      */
-    private synchronized void addItem(WeightedItem<String> item) {
-        items.add(item);
+    private synchronized void addItem(String word, double weight) {
+        if (numWords == words.length) {
+            // Readers may still be using the old arrays through an older Pending,
+            // so grow by copying rather than touching them.
+            int newCapacity = words.length * 2;
+            words = Arrays.copyOf(words, newCapacity);
+            weights = Arrays.copyOf(weights, newCapacity);
+        }
+        words[numWords] = word;
+        weights[numWords] = weight;
+        ++numWords;
         setDirty();
     }
-    
+
 
     /** Mark the word generator as 'dirty' - needing to recompile the weights
-     * on the items in the generator.
+     * on the items in the generator. This publishes the writers' current state
+     * for readers to compile. Callers must hold the lock on <tt>this</tt>.
      */
     protected void setDirty() {
-        weightsCompiled.set(false);
+        pending = new Pending(words, weights, numWords, samplingMode);
+    }
+
+    /** Compile the weights now, rather than waiting for the next call to
+     * generateWord. A loader can call this after adding a batch of words, so
+     * that the compiled snapshot is already in place when readers need it.
+     */
+    public void compile() {
+        checkIfDirty();
     }
 
     /** Check if the weights are dirty (out of date). If they are, recompile
      * them so that they can be used. That will also recompute the total
-     * weight in the generator.    
-     */
-    protected void checkIfDirty() {
-        if (!weightsCompiled.get()) {
-            // Our weights need to be recompiled. Probably.
-            synchronized(this) {                
-                if (!weightsCompiled.get()) {
-                    // Yep, they really need to get recompiled. Let's do so.
-                    double cumulativeWeight = 0.0;
-                    
-                    for (WeightedItem<String> item: items) {
-                        item.setCumulativeWeightLow(cumulativeWeight);
-                        cumulativeWeight += item.getWeight();
-                        //item.setCumulativeWeightHigh(cumulativeWeight);
-                    }
-                    
-                    totalWeight = cumulativeWeight;
-                    
-                    // OK, we're done now.
-                    weightsCompiled.set(true);
-                }
+     * weight in the generator, and rebuild the alias table if we're using one.
+     *
+     * This never blocks. If several threads find the weights out of date at
+     * the same time, they may each compile a snapshot; only one of them gets
+     * published, but every one of them is correct.
+     *
+     * @return A snapshot that includes every word published before this call.
+     */
+    protected Snapshot checkIfDirty() {
+        Snapshot current = snapshot.get();
+        Pending latest = pending;
+        if (current.source == latest) {
+            return(current);
+        }
+
+        // Our weights need to be recompiled.
+        GeneratorMetrics currentMetrics = metrics;
+        if (currentMetrics != null) {
+            currentMetrics.addRecompile();
+        }
+        Object event = JfrEvents.beginRecompile();
+        long start = System.nanoTime();
+        Snapshot compiled = compile(latest);
+        lastCompileNanos = System.nanoTime() - start;
+        lastCompileTime = System.currentTimeMillis();
+        JfrEvents.commitRecompile(event, name, compiled.numWords, latest.samplingMode.getName(),
+                compiled.cumulativeCounts != null);
+        snapshot.compareAndSet(current, compiled);
+        return(compiled);
+    }
+
+    /** Build a compiled snapshot of a set of published words.
+     *
+     * @param source The words and weights to compile
+     * @return The compiled snapshot.
+     */
+    protected static Snapshot compile(Pending source) {
+        int count = source.numWords;
+        double[] sourceWeights = source.weights;
+
+        // First, can we use exact counts? Only if every weight is a whole
+        // number, and the total is small enough to hold exactly.
+        boolean integral = true;
+        double cumulativeWeight = 0.0;
+        for (int i = 0; i < count; ++i) {
+            double weight = sourceWeights[i];
+            if (weight != Math.rint(weight)) {
+                integral = false;
             }
+            cumulativeWeight += weight;
+        }
+        if (cumulativeWeight > MAX_EXACT_WEIGHT) {
+            integral = false;
+        }
+
+        long[] cumulativeCounts = null;
+        double[] cumulativeWeights = null;
+        double totalWeight;
+        if (integral) {
+            long cumulativeCount = 0L;
+            cumulativeCounts = new long[count];
+            for (int i = 0; i < count; ++i) {
+                cumulativeCount += (long) sourceWeights[i];
+                cumulativeCounts[i] = cumulativeCount;
+            }
+            totalWeight = (double) cumulativeCount;
+        } else {
+            cumulativeWeight = 0.0;
+            cumulativeWeights = new double[count];
+            for (int i = 0; i < count; ++i) {
+                cumulativeWeight += sourceWeights[i];
+                cumulativeWeights[i] = cumulativeWeight;
+            }
+            totalWeight = cumulativeWeight;
+        }
+
+        AliasTable aliasTable = null;
+        if ((source.samplingMode == WeightedSamplingMode.ALIAS) && (totalWeight > 0.0)) {
+            aliasTable = new AliasTable(sourceWeights, count);
         }
+
+        return(new Snapshot(source, cumulativeWeights, cumulativeCounts, totalWeight, aliasTable));
     }
 
     /** Generate a random word from our list.
-     * 
+     *
      */
     @Override
     public String generateWord() {
-        ++numWordsGenerated;
-        
-        // Recompile weights if needed
-        checkIfDirty();
-        
+        return(generateWord(rng));
+    }
+
+    @Override
+    public String generateWord(RandomSource random) {
+        GeneratorMetrics currentMetrics = metrics;
+        if (null == currentMetrics) {
+            return(pick(checkIfDirty(), random, null));
+        }
+
+        long start = currentMetrics.startTimer();
+        String word = pick(checkIfDirty(), random, currentMetrics);
+        currentMetrics.addGenerated(1L);
+        currentMetrics.stopTimer(start);
+        return(word);
+    }
+
+    /** Pick a word from a compiled snapshot.
+     *
+     * @param current The snapshot to pick from
+     * @param random The random source to draw with
+     * @param metrics Where to count the probes, or null not to count them
+     * @return The word, or null if there are no words with a positive weight.
+     */
+    private String pick(Snapshot current, RandomSource random, GeneratorMetrics metrics) {
         // Check boundary conditions
-        if ((items.size() == 0) || (totalWeight == 0.0)) {
+        if ((current.numWords == 0) || (current.totalWeight == 0.0)) {
             return(null);
         }
-        
-        double roll = rng.nextDouble() * totalWeight;
-        
-        return(binarySearch(roll));
+
+        if (current.aliasTable != null) {
+            if (metrics != null) {
+                metrics.addProbes(1L);
+            }
+            return(current.words[current.aliasTable.sample(random.nextDouble())]);
+        }
+
+        // The multiplication below can round up to exactly the total weight,
+        // which is just past the last word. Pull it back inside the range.
+        double roll = random.nextDouble() * current.totalWeight;
+        if (roll >= current.totalWeight) {
+            roll = Math.nextDown(current.totalWeight);
+        }
+
+        if (current.cumulativeCounts != null) {
+            return(current.words[binarySearch(current.cumulativeCounts, current.numWords, (long) roll,
+                    metrics)]);
+        }
+
+        return(current.words[binarySearch(current.cumulativeWeights, current.numWords, roll, metrics)]);
     }
-    
-    /** Find the word based on the random number "roll". This implements a binary search to quickly find
-     * the "right" word based on the roll.
-     * 
-     * @param roll A random number in the range 0 - {total weight of all items in the word generator}
-     * @return The corresponding string from our table of items. 
+
+    /** Generate a batch of words. The weights are checked (and recompiled, if
+     * needed) once for the whole batch, and the sampling mode is picked once,
+     * so the loop for each mode does nothing but draw and look up. With metrics
+     * on, each word goes through the same counting pick as generateWord.
      */
-    private String binarySearch(double roll) {
-        assert roll >= 0.0;
-        assert roll <= totalWeight;
-
-        // Start at the middle of the list. This may be nowhere near the middle
-        // of the frequency distribution, but that's OK, we'll still get to the
-        // right place.
-        int index = (items.size() / 2);
-        // The 'distance' is how far we will move (up or down) on the next search
-        // of the table.
-        int distance = index / 2;
-        if (distance < 1) {
-            distance = 1;
-        }
-        
-        while (true) {
-            ++numProbes;
-            // Is the current item the one we want? If so, we're done.
-            WeightedItem<String> item = items.get(index);
-            if ((roll >= item.getCumulativeWeightLow()) &&
-                (roll <= item.getCumulativeWeightHigh())) {
-                    return(item.getItem());
+    @Override
+    public void generateWords(String[] out, int off, int len) {
+        WordGenerator.checkRange(out, off, len);
+
+        Snapshot current = checkIfDirty();
+        GeneratorMetrics currentMetrics = metrics;
+        int end = off + len;
+
+        if ((current.numWords == 0) || (current.totalWeight == 0.0)) {
+            if (currentMetrics != null) {
+                currentMetrics.addGenerated(len);
+            }
+            Arrays.fill(out, off, end, null);
+            return;
+        }
+
+        RandomSource random = rng;
+        if (currentMetrics != null) {
+            for (int i = off; i < end; ++i) {
+                out[i] = pick(current, random, currentMetrics);
             }
-            
-            // Nope, this isn't the one we want. If we're below the current item,
-            // move down. Otherwise move up.
-            if (roll < item.getCumulativeWeightLow()) {
-                index = index - distance;
-            } else {
-                index = index + distance;
+            currentMetrics.addGenerated(len);
+            return;
+        }
+
+        String[] currentWords = current.words;
+        if (current.aliasTable != null) {
+            AliasTable aliasTable = current.aliasTable;
+            for (int i = off; i < end; ++i) {
+                out[i] = currentWords[aliasTable.sample(random.nextDouble())];
             }
-            // The distance we move on each probe gets cut in half each time - but
-            // never less than 1 space.
-            distance /= 2;
-            if (distance < 1) {
-                distance = 1;
+            return;
+        }
+
+        double totalWeight = current.totalWeight;
+        double maxRoll = Math.nextDown(totalWeight);
+        int count = current.numWords;
+        if (current.cumulativeCounts != null) {
+            long[] cumulativeCounts = current.cumulativeCounts;
+            for (int i = off; i < end; ++i) {
+                double roll = Math.min(random.nextDouble() * totalWeight, maxRoll);
+                out[i] = currentWords[binarySearch(cumulativeCounts, count, (long) roll, null)];
             }
+        } else {
+            double[] cumulativeWeights = current.cumulativeWeights;
+            for (int i = off; i < end; ++i) {
+                double roll = Math.min(random.nextDouble() * totalWeight, maxRoll);
+                out[i] = currentWords[binarySearch(cumulativeWeights, count, roll, null)];
+            }
+        }
+    }
+
+    /** Find the word based on the random number "roll". This implements a binary search
+     * to quickly find the "right" word based on the roll: the first word whose
+     * cumulative weight is above the roll. Zero-weight words share their
+     * cumulative weight with the word before them, so they are never picked.
+     *
+     * The loop always runs the same number of times for a given table size, and
+     * the only decision in it is which half to keep, so the JIT can turn it into
+     * a conditional move rather than a hard-to-predict branch. The probes are
+     * counted in a local, and only added to the metrics after the loop.
+     *
+     * @param cumulative The cumulative weights to search
+     * @param count The number of entries in <tt>cumulative</tt>
+     * @param roll A random number in the range 0 - {total weight of all items in the word generator}
+     * @param metrics Where to count the probes, or null not to count them
+     * @return The index of the corresponding word in our table of items.
+     */
+    private int binarySearch(double[] cumulative, int count, double roll, GeneratorMetrics metrics) {
+        assert roll >= 0.0;
+        assert roll < cumulative[count - 1];
+
+        int base = 0;
+        int length = count;
+        int probes = 1;
+        while (length > 1) {
+            int half = length >>> 1;
+            base = (cumulative[base + half - 1] <= roll) ? base + half : base;
+            length -= half;
+            ++probes;
+        }
+        if (metrics != null) {
+            metrics.addProbes(probes);
+        }
+        return(base);
+    }
+
+    /** The exact-count version of
+     * {@link #binarySearch(double[], int, double, GeneratorMetrics)}.
+     *
+     * @param cumulative The cumulative counts to search
+     * @param count The number of entries in <tt>cumulative</tt>
+     * @param roll A random number in the range 0 - {total count of all items in the word generator}
+     * @param metrics Where to count the probes, or null not to count them
+     * @return The index of the corresponding word in our table of items.
+     */
+    private int binarySearch(long[] cumulative, int count, long roll, GeneratorMetrics metrics) {
+        assert roll >= 0L;
+        assert roll < cumulative[count - 1];
+
+        int base = 0;
+        int length = count;
+        int probes = 1;
+        while (length > 1) {
+            int half = length >>> 1;
+            base = (cumulative[base + half - 1] <= roll) ? base + half : base;
+            length -= half;
+            ++probes;
         }
+        if (metrics != null) {
+            metrics.addProbes(probes);
+        }
+        return(base);
     }
-    
+
+    /** Get the number of words generated, if metrics are on; 0 if they're off. */
     long getNumWordsGenerated() {
-        return numWordsGenerated;
+        GeneratorMetrics currentMetrics = metrics;
+        return((null == currentMetrics) ? 0L : currentMetrics.getGenerated());
     }
-    
+
+    /** Get the number of entries looked at to generate them, if metrics are on. */
     long getNumProbes() {
-        return numProbes;
+        GeneratorMetrics currentMetrics = metrics;
+        return((null == currentMetrics) ? 0L : currentMetrics.getProbes());
     }
-    
+
     int getNumWords() {
-        return items.size();
+        return pending.numWords;
+    }
+
+    /** Are the compiled weights held as exact whole-number counts? This compiles
+     * the weights if needed.
+     */
+    boolean hasExactCounts() {
+        return(checkIfDirty().cumulativeCounts != null);
+    }
+
+    /** An immutable view of the words and weights that writers have published.
+     * The arrays are shared with the writers, but writers only ever append past
+     * <tt>numWords</tt>, so the entries a Pending covers never change.
+     */
+    protected static final class Pending {
+        final String[] words;
+        final double[] weights;
+        final int numWords;
+        final WeightedSamplingMode samplingMode;
+
+        Pending(String[] words, double[] weights, int numWords, WeightedSamplingMode samplingMode) {
+            this.words = words;
+            this.weights = weights;
+            this.numWords = numWords;
+            this.samplingMode = samplingMode;
+        }
+    }
+
+    /** The compiled, immutable form of a Pending. Exactly one of
+     * <tt>cumulativeWeights</tt> and <tt>cumulativeCounts</tt> is non-null.
+     * <tt>aliasTable</tt> is non-null when the ALIAS sampling mode is in use and
+     * there is something to sample.
+     */
+    protected static final class Snapshot {
+        final Pending source;
+        final String[] words;
+        final int numWords;
+        final double[] cumulativeWeights;
+        final long[] cumulativeCounts;
+        final double totalWeight;
+        final AliasTable aliasTable;
+
+        Snapshot(Pending source,
+                double[] cumulativeWeights,
+                long[] cumulativeCounts,
+                double totalWeight,
+                AliasTable aliasTable) {
+            this.source = source;
+            this.words = source.words;
+            this.numWords = source.numWords;
+            this.cumulativeWeights = cumulativeWeights;
+            this.cumulativeCounts = cumulativeCounts;
+            this.totalWeight = totalWeight;
+            this.aliasTable = aliasTable;
+        }
     }
 
 }
@@ -0,0 +1,217 @@
+package com.salesforce.rcg.text.impl;
+
+import com.salesforce.rcg.metrics.GeneratorMetrics;
+import com.salesforce.rcg.metrics.MetricsSnapshot;
+import com.salesforce.rcg.text.WordGenerator;
+import com.salesforce.rcg.text.WordGeneratorMXBean;
+
+/** The MBean for a word generator: reads its metrics and sizes for JMX.
+ *
+ * Everything here is read when JMX asks for it, so a generator costs nothing
+ * more for having an MBean. The sizes are read from the generators' own
+ * fields, which is why this lives alongside them.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public class WordGeneratorMonitor implements WordGeneratorMXBean {
+    /** Rough sizes for the memory estimate, assuming compressed references
+     * and Java 8 strings (a String object, and a char[] of its characters).
+     */
+    static final long ARRAY_HEADER = 16L;
+    static final long REFERENCE = 4L;
+    static final long STRING_OVERHEAD = 24L + ARRAY_HEADER;
+    static final long MAP_ENTRY = 48L;
+
+    protected final WordGenerator generator;
+
+    /** The time and count when the rate was last read. Guarded by <tt>this</tt>. */
+    private long rateTime;
+    private long rateCount;
+
+    public WordGeneratorMonitor(WordGenerator generator) {
+        if (null == generator) {
+            throw new IllegalArgumentException("The generator must not be null");
+        }
+        this.generator = generator;
+        this.rateTime = System.nanoTime();
+        this.rateCount = getWordsGenerated();
+    }
+
+    public WordGenerator getGenerator() {
+        return(generator);
+    }
+
+    @Override
+    public String getName() {
+        return(generator.getName());
+    }
+
+    @Override
+    public String getType() {
+        return(generator.getType().getName());
+    }
+
+    @Override
+    public long getNumWords() {
+        if (generator instanceof WeightedWordGenerator) {
+            return(((WeightedWordGenerator) generator).getNumWords());
+        } else if (generator instanceof UnweightedWordGenerator) {
+            return(((UnweightedWordGenerator) generator).getNumWords());
+        } else if (generator instanceof DynamicWeightedWordGenerator) {
+            return(((DynamicWeightedWordGenerator) generator).getNumWords());
+        } else if (generator instanceof SingleWordGenerator) {
+            return((((SingleWordGenerator) generator).word != null) ? 1L : 0L);
+        }
+        return(-1L);
+    }
+
+    @Override
+    public long getMemoryEstimate() {
+        if (generator instanceof WeightedWordGenerator) {
+            return(estimate((WeightedWordGenerator) generator));
+        } else if (generator instanceof UnweightedWordGenerator) {
+            UnweightedWordGenerator.Snapshot current = ((UnweightedWordGenerator) generator).snapshot;
+            return(referenceArray(current.words.length) + strings(current.words, current.numWords));
+        } else if (generator instanceof DynamicWeightedWordGenerator) {
+            return(estimate((DynamicWeightedWordGenerator) generator));
+        } else if (generator instanceof SingleWordGenerator) {
+            String word = ((SingleWordGenerator) generator).word;
+            return((word != null) ? string(word) : 0L);
+        }
+        return(-1L);
+    }
+
+    private static long estimate(WeightedWordGenerator weighted) {
+        WeightedWordGenerator.Snapshot current = weighted.snapshot.get();
+        long result;
+        synchronized (weighted) {
+            result = referenceArray(weighted.words.length) + primitiveArray(weighted.weights.length, 8)
+                    + strings(weighted.words, weighted.numWords);
+        }
+        if (current.cumulativeCounts != null) {
+            result += primitiveArray(current.cumulativeCounts.length, 8);
+        }
+        if (current.cumulativeWeights != null) {
+            result += primitiveArray(current.cumulativeWeights.length, 8);
+        }
+        if (current.aliasTable != null) {
+            // A double and an int for each entry
+            result += primitiveArray(current.aliasTable.size(), 8) + primitiveArray(current.aliasTable.size(), 4);
+        }
+        return(result);
+    }
+
+    private static long estimate(DynamicWeightedWordGenerator dynamic) {
+        long stamp = dynamic.lock.readLock();
+        try {
+            return(referenceArray(dynamic.words.length) + primitiveArray(dynamic.weights.length, 8)
+                    + primitiveArray(dynamic.tree.length, 8) + primitiveArray(dynamic.freeSlots.length, 4)
+                    + MAP_ENTRY * dynamic.slotsByWord.size()
+                    + strings(dynamic.words, dynamic.numSlots));
+        } finally {
+            dynamic.lock.unlockRead(stamp);
+        }
+    }
+
+    static long referenceArray(int length) {
+        return(ARRAY_HEADER + REFERENCE * length);
+    }
+
+    static long primitiveArray(int length, int size) {
+        return(ARRAY_HEADER + (long) size * length);
+    }
+
+    static long string(String word) {
+        return(STRING_OVERHEAD + 2L * word.length());
+    }
+
+    static long strings(String[] words, int count) {
+        long result = 0L;
+        for (int i = 0; i < count; ++i) {
+            if (words[i] != null) {
+                result += string(words[i]);
+            }
+        }
+        return(result);
+    }
+
+    @Override
+    public boolean isMetricsEnabled() {
+        return(generator.getMetrics() != null);
+    }
+
+    @Override
+    public void setMetricsEnabled(boolean enabled) {
+        generator.setMetricsEnabled(enabled);
+    }
+
+    @Override
+    public long getWordsGenerated() {
+        GeneratorMetrics metrics = generator.getMetrics();
+        return((null == metrics) ? 0L : metrics.getGenerated());
+    }
+
+    @Override
+    public long getProbes() {
+        GeneratorMetrics metrics = generator.getMetrics();
+        return((null == metrics) ? 0L : metrics.getProbes());
+    }
+
+    @Override
+    public long getRecompiles() {
+        GeneratorMetrics metrics = generator.getMetrics();
+        return((null == metrics) ? 0L : metrics.getRecompiles());
+    }
+
+    @Override
+    public synchronized double getWordsPerSecond() {
+        long now = System.nanoTime();
+        long count = getWordsGenerated();
+        long elapsed = now - rateTime;
+        // Metrics turned off and on again start from zero
+        long generated = Math.max(0L, count - rateCount);
+        rateTime = now;
+        rateCount = count;
+        return((elapsed > 0L) ? generated * 1e9 / elapsed : 0.0);
+    }
+
+    @Override
+    public long getLatencyMedianNanos() {
+        return(latencyPercentile(50.0));
+    }
+
+    @Override
+    public long getLatency99thPercentileNanos() {
+        return(latencyPercentile(99.0));
+    }
+
+    private long latencyPercentile(double percent) {
+        GeneratorMetrics metrics = generator.getMetrics();
+        if (null == metrics) {
+            return(0L);
+        }
+        MetricsSnapshot snapshot = metrics.snapshot();
+        return(snapshot.getLatencyPercentile(percent));
+    }
+
+    @Override
+    public long getLastCompileTime() {
+        if (generator instanceof WeightedWordGenerator) {
+            return(((WeightedWordGenerator) generator).lastCompileTime);
+        } else if (generator instanceof DynamicWeightedWordGenerator) {
+            return(((DynamicWeightedWordGenerator) generator).lastCompileTime);
+        }
+        return(0L);
+    }
+
+    @Override
+    public long getLastCompileNanos() {
+        if (generator instanceof WeightedWordGenerator) {
+            return(((WeightedWordGenerator) generator).lastCompileNanos);
+        } else if (generator instanceof DynamicWeightedWordGenerator) {
+            return(((DynamicWeightedWordGenerator) generator).lastCompileNanos);
+        }
+        return(0L);
+    }
+}
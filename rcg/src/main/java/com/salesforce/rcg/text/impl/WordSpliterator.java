@@ -0,0 +1,88 @@
+package com.salesforce.rcg.text.impl;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.text.WordGenerator;
+
+/** A Spliterator over words from a word generator, backing
+ * {@link WordGenerator#words()}.
+ *
+ * Each spliterator has its own random source, and splitting it gives the
+ * new spliterator a new, independent one. So the parts of a parallel
+ * stream each generate words with their own generator, instead of all of them
+ * sharing the word generator's Random.
+ *
+ * This is modelled on the spliterators behind java.util.Random.ints(): it
+ * covers a range of positions [index, fence), and splits that range in half.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public class WordSpliterator implements Spliterator<String> {
+    protected final WordGenerator generator;
+    protected final RandomSource rng;
+    protected long index;
+    protected final long fence;
+
+    public WordSpliterator(WordGenerator generator, RandomSource rng, long index, long fence) {
+        this.generator = generator;
+        this.rng = rng;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    @Override
+    public WordSpliterator trySplit() {
+        long i = index;
+        long middle = (i + fence) >>> 1;
+        if (middle <= i) {
+            return(null);
+        }
+        index = middle;
+        return(new WordSpliterator(generator, rng.split(), i, middle));
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super String> action) {
+        if (null == action) {
+            throw new NullPointerException();
+        }
+        if (index < fence) {
+            action.accept(generator.generateWord(rng));
+            ++index;
+            return(true);
+        }
+        return(false);
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super String> action) {
+        if (null == action) {
+            throw new NullPointerException();
+        }
+        long i = index;
+        long end = fence;
+        index = end;
+        for (; i < end; ++i) {
+            action.accept(generator.generateWord(rng));
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return(fence - index);
+    }
+
+    /** Words may be null (an empty generator generates nothing but nulls), and
+     * there's no meaningful order, so this is sized and immutable but neither
+     * NONNULL nor ORDERED. Leaving out ORDERED lets limit() on a parallel
+     * stream stop early, without keeping track of which words came first.
+     */
+    @Override
+    public int characteristics() {
+        return(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE);
+    }
+
+}
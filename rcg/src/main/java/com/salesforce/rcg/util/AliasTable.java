@@ -0,0 +1,141 @@
+package com.salesforce.rcg.util;
+
+/** An alias table (Walker's alias method, using Vose's construction) for
+ * sampling from a discrete distribution in constant time.
+ *
+ * The table is built once from a set of non-negative weights. After that,
+ * each sample takes one uniform random value and a single table lookup,
+ * no matter how many outcomes the table holds. That makes it a good fit for
+ * large distributions that are sampled many more times than they change,
+ * such as a weighted word list built from census data.
+ *
+ * Instances are immutable once constructed, and so are threadsafe.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public class AliasTable {
+    /** For each column, the chance that the column's own outcome is picked
+     * rather than its alias.
+     */
+    protected final double[] probability;
+
+    /** For each column, the outcome to use when the column's own outcome
+     * is not picked.
+     */
+    protected final int[] alias;
+
+    /** Build an alias table from a set of weights. The weights are relative to
+     * each other - they don't need to add up to 1.
+     *
+     * @param weights The weight of each outcome. Outcome <tt>i</tt> will be
+     *     sampled with probability <tt>weights[i] / (sum of all weights)</tt>.
+     *     Every weight must be non-negative, and at least one must be positive.
+     */
+    public AliasTable(double[] weights) {
+        this(weights, weights.length);
+    }
+
+    /** Build an alias table from the first <tt>count</tt> entries of an
+     * array of weights.
+     *
+     * @param weights The weight of each outcome. See {@link #AliasTable(double[])}.
+     * @param count The number of entries in <tt>weights</tt> to use.
+     */
+    public AliasTable(double[] weights, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("An alias table needs at least one outcome");
+        }
+
+        double total = 0.0;
+        for (int i = 0; i < count; ++i) {
+            if (weights[i] < 0.0) {
+                throw new IllegalArgumentException("Weights must be non-negative");
+            }
+            total += weights[i];
+        }
+        if (total <= 0.0) {
+            throw new IllegalArgumentException("At least one weight must be positive");
+        }
+
+        probability = new double[count];
+        alias = new int[count];
+
+        // Scale the weights so that the average weight is exactly 1. Columns
+        // with a scaled weight below 1 ("small") get topped up from columns
+        // with a scaled weight above 1 ("large").
+        double[] scaled = new double[count];
+        int[] small = new int[count];
+        int[] large = new int[count];
+        int numSmall = 0;
+        int numLarge = 0;
+        for (int i = 0; i < count; ++i) {
+            scaled[i] = weights[i] * count / total;
+            alias[i] = i;
+            if (scaled[i] < 1.0) {
+                small[numSmall++] = i;
+            } else {
+                large[numLarge++] = i;
+            }
+        }
+
+        while ((numSmall > 0) && (numLarge > 0)) {
+            int s = small[--numSmall];
+            int l = large[--numLarge];
+
+            probability[s] = scaled[s];
+            alias[s] = l;
+
+            // The large column donated (1 - scaled[s]) of its weight to fill
+            // up the small column. What's left may make it a small column itself.
+            scaled[l] = (scaled[l] + scaled[s]) - 1.0;
+            if (scaled[l] < 1.0) {
+                small[numSmall++] = l;
+            } else {
+                large[numLarge++] = l;
+            }
+        }
+
+        // Whatever is left over is (up to rounding error) exactly full.
+        while (numLarge > 0) {
+            probability[large[--numLarge]] = 1.0;
+        }
+        while (numSmall > 0) {
+            probability[small[--numSmall]] = 1.0;
+        }
+    }
+
+    /** Pick an outcome from the table.
+     *
+     * A single uniform value supplies both the column and the biased coin flip
+     * within that column: the integer part of <tt>u * size</tt> picks the
+     * column and the fractional part is the coin.
+     *
+     * @param u A uniformly-distributed random value in the range [0, 1).
+     * @return The index of the chosen outcome, in the range 0 - (size - 1).
+     */
+    public int sample(double u) {
+        double scaledU = u * probability.length;
+        int column = (int) scaledU;
+        if (column >= probability.length) {
+            // Only possible if u is (or rounds to) 1.0
+            column = probability.length - 1;
+        }
+        double coin = scaledU - column;
+
+        if (coin < probability[column]) {
+            return(column);
+        } else {
+            return(alias[column]);
+        }
+    }
+
+    /** Get the number of outcomes in this table.
+     *
+     * @return The number of outcomes
+     */
+    public int size() {
+        return(probability.length);
+    }
+
+}
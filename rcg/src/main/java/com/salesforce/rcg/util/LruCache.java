@@ -0,0 +1,87 @@
+package com.salesforce.rcg.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** A small, bounded cache that throws out the least recently used entry
+ * when it's full, and counts its hits and misses.
+ *
+ * This is threadsafe. Every operation takes the cache's lock, so it's meant
+ * for caching things that are much more expensive to compute than a lock
+ * is to take, such as parsed expressions.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public class LruCache<K, V> {
+    protected final int capacity;
+    protected final LinkedHashMap<K, V> entries;
+    protected long hits = 0;
+    protected long misses = 0;
+
+    /** Create a cache.
+     *
+     * @param capacity The most entries to keep. A capacity of 0 makes a
+     *     cache that never keeps anything.
+     */
+    public LruCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("The capacity must not be negative: " + capacity);
+        }
+        this.capacity = capacity;
+        // Access order, so iteration starts with the least recently used.
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return(size() > LruCache.this.capacity);
+            }
+        };
+    }
+
+    /** Look up an entry, counting a hit or a miss.
+     *
+     * @param key The key to look up
+     * @return The value, or null if it isn't in the cache.
+     */
+    public synchronized V get(K key) {
+        V result = entries.get(key);
+        if (null == result) {
+            ++misses;
+        } else {
+            ++hits;
+        }
+        return(result);
+    }
+
+    /** Add an entry, throwing out the least recently used entry if the
+     * cache is full.
+     */
+    public synchronized void put(K key, V value) {
+        if (null == value) {
+            throw new IllegalArgumentException("Can't cache a null value");
+        }
+        entries.put(key, value);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return(entries.size());
+    }
+
+    public int getCapacity() {
+        return(capacity);
+    }
+
+    public synchronized long getHits() {
+        return(hits);
+    }
+
+    public synchronized long getMisses() {
+        return(misses);
+    }
+}
@@ -0,0 +1,102 @@
+package com.salesforce.rcg.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class GeneratorMetricsTest {
+    @Test
+    public void bucketTest() {
+        assertEquals(0, LatencyHistogram.bucketOf(-5L));
+        assertEquals(0, LatencyHistogram.bucketOf(0L));
+        assertEquals(1, LatencyHistogram.bucketOf(1L));
+        assertEquals(2, LatencyHistogram.bucketOf(2L));
+        assertEquals(2, LatencyHistogram.bucketOf(3L));
+        assertEquals(11, LatencyHistogram.bucketOf(1024L));
+        assertEquals(LatencyHistogram.NUM_BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+        for (long nanos = 1L; nanos < 100_000L; nanos = nanos * 3 + 1) {
+            int bucket = LatencyHistogram.bucketOf(nanos);
+            assertTrue(nanos <= LatencyHistogram.getBucketLimit(bucket));
+            assertTrue(nanos > LatencyHistogram.getBucketLimit(bucket - 1));
+        }
+    }
+
+    @Test
+    public void percentileTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; ++i) {
+            histogram.record(100L);
+        }
+        for (int i = 0; i < 10; ++i) {
+            histogram.record(1_000_000L);
+        }
+        MetricsSnapshot snapshot = new MetricsSnapshot("test", 0L, 0L, 0L, histogram.getCounts());
+        assertEquals(100L, snapshot.getNumLatencies());
+        // 100ns is in the bucket up to 127ns, and 1ms the one up to 2^20 - 1
+        assertEquals(127L, snapshot.getLatencyPercentile(50.0));
+        assertEquals(127L, snapshot.getLatencyPercentile(90.0));
+        assertEquals((1L << 20) - 1L, snapshot.getLatencyPercentile(99.0));
+
+        // Every call timed, and the time really measured
+        GeneratorMetrics metrics = new GeneratorMetrics("timed", 1);
+        metrics.stopTimer(metrics.startTimer() - 1_000_000L);
+        assertEquals(1L, metrics.snapshot().getNumLatencies());
+        assertTrue(metrics.snapshot().getLatencyPercentile(100.0) >= 1_000_000L);
+
+        assertEquals(0L, new GeneratorMetrics("empty").snapshot().getLatencyPercentile(99.0));
+    }
+
+    /** Only about one call in the sample interval is timed. */
+    @Test
+    public void samplingTest() {
+        GeneratorMetrics metrics = new GeneratorMetrics("sampled", 64);
+        final int CALLS = 640_000;
+        for (int i = 0; i < CALLS; ++i) {
+            long start = metrics.startTimer();
+            metrics.addGenerated(1L);
+            metrics.stopTimer(start);
+        }
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(CALLS, snapshot.getGenerated());
+        assertEquals(10_000.0, snapshot.getNumLatencies(), 500.0);
+    }
+
+    /** Counts from many threads all arrive. */
+    @Test
+    public void threadedTest() throws Exception {
+        final int NUM_THREADS = 8;
+        final int PER_THREAD = 100_000;
+        GeneratorMetrics metrics = new GeneratorMetrics("threaded");
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int t = 0; t < NUM_THREADS; ++t) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < PER_THREAD; ++i) {
+                    metrics.addGenerated(1L);
+                    metrics.addProbes(3L);
+                }
+                metrics.addRecompile();
+            });
+            threads[t].start();
+        }
+        for (Thread thread: threads) {
+            thread.join();
+        }
+        assertEquals((long) NUM_THREADS * PER_THREAD, metrics.getGenerated());
+        assertEquals(3L * NUM_THREADS * PER_THREAD, metrics.getProbes());
+        assertEquals(NUM_THREADS, metrics.getRecompiles());
+
+        metrics.reset();
+        assertEquals(new GeneratorMetrics("threaded").snapshot(), metrics.snapshot());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void sampleIntervalBad() {
+        new GeneratorMetrics("bad", 0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void percentileBad() {
+        new GeneratorMetrics("bad").snapshot().getLatencyPercentile(-1.0);
+    }
+}
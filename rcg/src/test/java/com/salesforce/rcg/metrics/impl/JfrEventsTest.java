@@ -0,0 +1,82 @@
+package com.salesforce.rcg.metrics.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.salesforce.rcg.numbers.dice.DiceFactory;
+import com.salesforce.rcg.text.WordGeneratorRegistry;
+import com.salesforce.rcg.text.impl.WeightedWordGenerator;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class JfrEventsTest {
+    /** Nothing is emitted, and nothing is allocated for it, unless a
+     * recording asks for the event.
+     */
+    @Test
+    public void notRecordingTest() {
+        assertEquals(null, JfrEvents.beginDiceParse());
+        JfrEvents.commitDiceParse(null, "3d6", "antlr");
+    }
+
+    /** Each kind of event turns up in a recording, with its details. */
+    @Test
+    public void recordingTest() throws Exception {
+        Assume.assumeTrue(JfrEvents.AVAILABLE);
+        Path file = Files.createTempFile("rcg-jfr", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable("com.salesforce.rcg.WordFileLoad");
+                recording.enable("com.salesforce.rcg.WeightRecompile");
+                recording.enable("com.salesforce.rcg.DiceParse");
+                recording.start();
+
+                WordGeneratorRegistry registry = new WordGeneratorRegistry();
+                registry.loadUnweightedWordGeneratorFromResource("jfr", "data/wordlists/Wordlist-Unweighted.csv",
+                        null, true, null);
+                WeightedWordGenerator weighted = new WeightedWordGenerator("jfrWeighted");
+                weighted.addWord("one", 1.0);
+                weighted.addWord("two", 2.0);
+                weighted.generateWord();
+                new DiceFactory().setCacheSize(0).create("3d6 + 2");
+
+                recording.stop();
+                recording.dump(file);
+            }
+
+            Map<String, RecordedEvent> events = new HashMap<>();
+            List<RecordedEvent> recorded = RecordingFile.readAllEvents(file);
+            for (RecordedEvent event: recorded) {
+                events.put(event.getEventType().getName(), event);
+            }
+
+            RecordedEvent load = events.get("com.salesforce.rcg.WordFileLoad");
+            assertEquals("jfr", load.getString("generator"));
+            assertEquals("data/wordlists/Wordlist-Unweighted.csv", load.getString("source"));
+            assertEquals(7L, load.getLong("lines"));
+            assertEquals(156L, load.getLong("characters"));
+
+            RecordedEvent recompile = events.get("com.salesforce.rcg.WeightRecompile");
+            assertEquals("jfrWeighted", recompile.getString("generator"));
+            assertEquals(2, recompile.getInt("words"));
+            assertTrue(recompile.getBoolean("exactCounts"));
+
+            RecordedEvent parse = events.get("com.salesforce.rcg.DiceParse");
+            assertEquals("3d6 + 2", parse.getString("expression"));
+            assertTrue(parse.getDuration().toNanos() > 0L);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.salesforce.rcg.numbers.dice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.salesforce.rcg.numbers.dice.impl.CompositeDie;
+import com.salesforce.rcg.numbers.dice.impl.SimpleDie;
+
+public class DiceDistributionTest {
+    private static final double EPSILON = 1e-12;
+
+    /** The total probability, and the average value, of a distribution. */
+    private static double[] totalAndMean(DiceDistribution distribution) {
+        double total = 0.0;
+        double mean = 0.0;
+        for (int value = distribution.getMin(); value <= distribution.getMax(); ++value) {
+            total += distribution.probability(value);
+            mean += value * distribution.probability(value);
+        }
+        return(new double[] { total, mean });
+    }
+
+    @Test
+    public void twoD6Test() {
+        DiceDistribution distribution = DiceDistribution.sumOfDice(2, 6, 100);
+        assertEquals(2, distribution.getMin());
+        assertEquals(12, distribution.getMax());
+        int[] ways = { 1, 2, 3, 4, 5, 6, 5, 4, 3, 2, 1 };
+        for (int i = 0; i < ways.length; ++i) {
+            assertEquals(ways[i] / 36.0, distribution.probability(i + 2), EPSILON);
+        }
+        assertEquals(0.0, distribution.probability(1), 0.0);
+        assertEquals(0.0, distribution.probability(13), 0.0);
+    }
+
+    /** 3d6 (odd length) and 4d6 (even length) against counts of the ways
+     * to roll each total.
+     */
+    @Test
+    public void manyDiceTest() {
+        DiceDistribution threeD6 = DiceDistribution.sumOfDice(3, 6, 100);
+        int[] ways = { 1, 3, 6, 10, 15, 21, 25, 27, 27, 25, 21, 15, 10, 6, 3, 1 };
+        for (int i = 0; i < ways.length; ++i) {
+            assertEquals(ways[i] / 216.0, threeD6.probability(i + 3), EPSILON);
+        }
+        DiceDistribution fourD6 = DiceDistribution.sumOfDice(4, 6, 100);
+        assertEquals(146 / 1296.0, fourD6.probability(14), EPSILON);
+        assertEquals(1 / 1296.0, fourD6.probability(24), EPSILON);
+
+        DiceDistribution big = DiceDistribution.sumOfDice(1000, 6, 1 << 16);
+        double[] totalAndMean = totalAndMean(big);
+        assertEquals(1.0, totalAndMean[0], 1e-9);
+        assertEquals(3500.0, totalAndMean[1], 1e-6);
+        assertEquals(big.probability(1001), big.probability(5999), 0.0);
+        
+        // The tails are tiny, but not lost
+        DiceDistribution hundred = DiceDistribution.sumOfDice(100, 6, 1000);
+        double tail = Math.pow(6.0, -100.0);
+        assertEquals(tail, hundred.probability(100), tail * 1e-9);
+        assertEquals(100 * tail, hundred.probability(599), tail * 1e-7);
+    }
+
+    @Test
+    public void tooLargeTest() {
+        assertNull(DiceDistribution.sumOfDice(1000, 6, 1000));
+        assertNotNull(DiceDistribution.sumOfDice(1000, 6, 5001));
+        assertNull(DiceDistribution.sumOfDice(100000, 20, 1 << 16));
+        assertNull(DiceDistribution.sumOfDice(3, 6, 100).times(100, 100));
+    }
+
+    @Test
+    public void modifiersTest() {
+        // (1d4 + 1) * 3 with a 50% chance
+        DiceDistribution distribution = DiceDistribution.sumOfDice(1, 4, 100)
+                .plus(1).times(3, 100).withChance(0.5, 100);
+        assertEquals(0, distribution.getMin());
+        assertEquals(15, distribution.getMax());
+        assertEquals(0.5, distribution.probability(0), EPSILON);
+        assertEquals(0.125, distribution.probability(6), EPSILON);
+        assertEquals(0.0, distribution.probability(7), 0.0);
+        assertEquals(0.125, distribution.probability(15), EPSILON);
+
+        DiceDistribution negative = DiceDistribution.sumOfDice(1, 6, 100).times(-2, 100);
+        assertEquals(-12, negative.getMin());
+        assertEquals(-2, negative.getMax());
+        assertEquals(1 / 6.0, negative.probability(-4), EPSILON);
+    }
+
+    @Test
+    public void expressionTest() {
+        SimpleDie simple = new SimpleDie(3, 8, -2);
+        simple.setMultiplier(2);
+        simple.setChance(0.25);
+        DiceDistribution distribution = simple.getDistribution(1000);
+        double[] totalAndMean = totalAndMean(distribution);
+        assertEquals(1.0, totalAndMean[0], EPSILON);
+        assertEquals(0.25 * 2 * (13.5 - 2), totalAndMean[1], EPSILON);
+
+        CompositeDie composite = new CompositeDie(new SimpleDie(1, 6), new SimpleDie(1, 8));
+        DiceDistribution sum = composite.getDistribution(1000);
+        assertEquals(2, sum.getMin());
+        assertEquals(14, sum.getMax());
+        assertEquals(6 / 48.0, sum.probability(8), EPSILON);
+        assertEquals(8.0, totalAndMean(sum)[1], EPSILON);
+
+        assertNull(composite.getDistribution(10));
+    }
+
+    @Test
+    public void statisticsTest() {
+        DiceDistribution twoD6 = DiceDistribution.sumOfDice(2, 6, 100);
+        assertEquals(7.0, twoD6.getMean(), 1e-12);
+        assertEquals(35.0 / 6.0, twoD6.getVariance(), 1e-12);
+        assertEquals(0.0, twoD6.cdf(1), 0.0);
+        assertEquals(1.0 / 36.0, twoD6.cdf(2), 1e-12);
+        assertEquals(21.0 / 36.0, twoD6.cdf(7), 1e-12);
+        assertEquals(1.0, twoD6.cdf(12), 1e-12);
+        assertEquals(1.0, twoD6.cdf(Integer.MAX_VALUE), 0.0);
+        assertEquals(0.0, twoD6.cdf(Integer.MIN_VALUE), 0.0);
+        
+        DiceDistribution constant = DiceDistribution.constant(-4);
+        assertEquals(-4.0, constant.getMean(), 0.0);
+        assertEquals(0.0, constant.getVariance(), 0.0);
+    }
+    
+    /** Expressions can be asked about through their distributions, up to a
+     * limit.
+     */
+    @Test
+    public void ofTest() {
+        SimpleDie die = new SimpleDie(3, 6);
+        assertSame(die.getDistribution(1000), DiceDistribution.of(die));
+        assertEquals(1.0 / 216.0, die.probabilityOf(3), 1e-15);
+        assertEquals(0.5, die.cdf(10), 1e-12);
+    }
+    
+    @Test(expected=UnsupportedOperationException.class)
+    public void ofTooLargeBad() {
+        DiceDistribution.of(new SimpleDie(1, DiceDistribution.MAX_ANALYZED_SUPPORT + 1));
+    }
+    
+    @Test(expected=UnsupportedOperationException.class)
+    public void ofUnknownBad() {
+        DiceExpression unknown = () -> 4;
+        unknown.probabilityOf(4);
+    }
+
+}
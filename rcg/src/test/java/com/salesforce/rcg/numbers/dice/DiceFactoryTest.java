@@ -1,9 +1,24 @@
 package com.salesforce.rcg.numbers.dice;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
 import org.junit.Test;
 
+import com.salesforce.rcg.metrics.MetricsSnapshot;
+import com.salesforce.rcg.numbers.dice.impl.CompiledDie;
+import com.salesforce.rcg.numbers.dice.impl.MeteredDie;
+import com.salesforce.rcg.numbers.dice.impl.SimpleDie;
+
 import com.salesforce.rcg.numbers.dice.testutils.DiceTestUtils;
 import com.salesforce.rcg.numbers.dice.testutils.ExpectedDiceResult;
+import com.salesforce.rcg.random.RandomSourceType;
+import com.salesforce.rcg.random.impl.JavaRandomSource;
+import com.salesforce.rcg.random.impl.ThreadLocalRandomSource;
 
 /**
  * A table-driven test for the DiceFactory. 
@@ -83,6 +98,22 @@ public class DiceFactoryTest {
         // The 'd' in FRP dice expressions is case-insensitive.
         "1D5/1,5,3,1d5",
         "D8/1,8,4.5,1d8",
+        
+        // Loaded dice: 'dh' favors high faces, 'dl' low ones
+        "dh2/1,2,1.6666666666666667,1d2 loaded high",
+        "2dl2/2,4,2.6666666666666665,2d2 loaded low",
+        "3DH6 + 1/4,19,12.698864954995074,3d6 loaded high + 1",
+        "1dl6 & 1dh6/2,12,7.0,1d6 loaded low and 1d6 loaded high",
+        
+        // Keeping and dropping dice
+        "4d6 keep 3/3,18,12.244598765432098,4d6 keep highest 3",
+        "4d6k3/3,18,12.244598765432098,4d6 keep highest 3",
+        "4d6 drop lowest/3,18,12.244598765432098,4d6 drop lowest 1",
+        "2d20 kh1/1,20,13.825,2d20 keep highest 1",
+        "2d20 keep lowest 1/1,20,7.175,2d20 keep lowest 1",
+        "2d20 KL 1/1,20,7.175,2d20 keep lowest 1",
+        "4d6 drop highest + 1/4,19,9.755401234567902,4d6 drop highest 1 + 1",
+        "5d6 drop lowest 2 * 2/6,36,26.86033950617284,5d6 drop lowest 2 * 2",
 
         // The "chance of generating a result" prefix
         "chance: 25%, 1d8/0,8,1.125,1d8 with a 25% chance of generating a non-zero result",
@@ -134,4 +165,229 @@ public class DiceFactoryTest {
         System.out.println("Table-driven dice factory test ran " + GOOD_TEST_VALUES.length + " values successfully.");
     }
 
+    /** A factory can give its dice the per-thread random source, or any other
+     * kind; every die in a composite gets one. The dice still roll correctly.
+     */
+    @Test
+    public void randomSourceTypeTest() throws Exception {
+        DiceFactory factory = new DiceFactory(RandomSourceType.THREAD_LOCAL);
+        assertEquals(RandomSourceType.THREAD_LOCAL, factory.getRandomSourceType());
+        
+        SimpleDie single = (SimpleDie) factory.create("3d6");
+        assertSame(ThreadLocalRandomSource.INSTANCE, single.getRandomSource());
+        DiceTestUtils.testRolls(single, 3, 18, 10.5);
+        
+        factory.setRandomSourceType(RandomSourceType.PCG32);
+        DiceExpression composite = factory.create("1d4 & 1d6 and 1d8");
+        DiceTestUtils.testRolls(composite, 3, 18, 10.5);
+        
+        factory.setRandomSourceType(null);
+        assertTrue(((SimpleDie) factory.create("1d20")).getRandomSource() instanceof JavaRandomSource);
+        
+        // Every expression in the table works in the per-thread mode, too.
+        factory.setRandomSourceType(RandomSourceType.THREAD_LOCAL);
+        for (String testValue: GOOD_TEST_VALUES) {
+            String components[] = testValue.split("/");
+            DiceTestUtils.testRolls(factory.create(components[0]), components[0], 
+                    new ExpectedDiceResult(components[1]));
+        }
+    }
+
+    /** A compiling factory compiles every expression in the table, and the
+     * compiled expressions roll just like the originals. Their exact
+     * distributions have exactly the expected averages.
+     */
+    @Test
+    public void compilingTest() throws Exception {
+        DiceFactory factory = new DiceFactory().setCompiling(true);
+        assertTrue(factory.isCompiling());
+        for (String testValue: GOOD_TEST_VALUES) {
+            String components[] = testValue.split("/");
+            ExpectedDiceResult expected = new ExpectedDiceResult(components[1]);
+            DiceExpression expression = factory.create(components[0]);
+            assertTrue(components[0], expression instanceof CompiledDie);
+            DiceTestUtils.testRolls(expression, components[0], expected);
+            
+            DiceDistribution distribution = expression.getDistribution(CompiledDice.DEFAULT_MAX_SUPPORT);
+            double mean = 0.0;
+            for (int value = distribution.getMin(); value <= distribution.getMax(); ++value) {
+                mean += value * distribution.probability(value);
+            }
+            assertEquals(components[0], expected.average, mean, 1e-9);
+        }
+        
+        // Too large to compile
+        assertTrue(factory.create("100000d20") instanceof SimpleDie);
+    }
+
+    @Test
+    public void canonicalizeTest() {
+        assertEquals("3d6+2", DiceFactory.canonicalize("  3D6 + 2 "));
+        assertEquals("1d6 and 1d8", DiceFactory.canonicalize("1d6   AND\t1D8"));
+        assertEquals("chance:25%,1d8", DiceFactory.canonicalize("Chance: 25%, 1d8"));
+        // Spaces that change the meaning are kept
+        assertEquals("1 2", DiceFactory.canonicalize("1  2"));
+        assertEquals("1- 6", DiceFactory.canonicalize("1 - 6"));
+        assertEquals("1-6", DiceFactory.canonicalize("1 -6"));
+        
+        // Every expression in the table means the same thing in canonical form
+        DiceFactory factory = new DiceFactory();
+        for (String testValue: GOOD_TEST_VALUES) {
+            String components[] = testValue.split("/");
+            String canonical = DiceFactory.canonicalize(components[0]);
+            DiceTestUtils.testRolls(factory.create(canonical), canonical, new ExpectedDiceResult(components[1]));
+        }
+    }
+    
+    /** Repeated expressions come from the cache, as new dice unless sharing
+     * is turned on.
+     */
+    @Test
+    public void cacheTest() {
+        DiceFactory factory = new DiceFactory();
+        assertEquals(DiceFactory.DEFAULT_CACHE_SIZE, factory.getCacheSize());
+        DiceExpression first = factory.create("3d6 + 2");
+        DiceExpression second = factory.create("3D6+2");
+        assertEquals(1L, factory.getCacheMisses());
+        assertEquals(1L, factory.getCacheHits());
+        assertNotSame(first, second);
+        assertNotSame(((SimpleDie) first).getRandomSource(), ((SimpleDie) second).getRandomSource());
+        DiceTestUtils.testRolls(second, 5, 20, 12.5);
+        
+        ((SimpleDie) first).setAdder(1000);
+        factory.setSharingCachedDice(true);
+        assertTrue(factory.isSharingCachedDice());
+        DiceExpression shared = factory.create("3d6 + 2");
+        assertSame(shared, factory.create(" 3d6 +2"));
+        // Dice handed out before sharing was turned on are still their caller's own
+        assertNotSame(first, shared);
+        assertNotSame(second, shared);
+        DiceTestUtils.testRolls(shared, 5, 20, 12.5);
+        
+        // Changing the settings empties the cache
+        factory.setCompiling(true);
+        DiceExpression compiled = factory.create("3d6 + 2");
+        assertTrue(compiled instanceof CompiledDie);
+        assertSame(compiled, factory.create("3d6 + 2"));
+        factory.setSharingCachedDice(false);
+        DiceExpression copy = factory.create("3d6 + 2");
+        assertTrue(copy instanceof CompiledDie);
+        assertNotSame(compiled, copy);
+        DiceTestUtils.testRolls(copy, 5, 20, 12.5);
+        
+        // No cache at all
+        factory.setCacheSize(0);
+        assertNotSame(factory.create("1d4"), factory.create("1d4"));
+        assertEquals(0L, factory.getCacheHits());
+        assertEquals(2L, factory.getCacheMisses());
+    }
+    
+    /** The least recently used expression is the one thrown out. */
+    @Test
+    public void cacheEvictionTest() {
+        DiceFactory factory = new DiceFactory().setCacheSize(2).setSharingCachedDice(true);
+        DiceExpression d4 = factory.create("1d4");
+        DiceExpression d6 = factory.create("1d6");
+        assertSame(d4, factory.create("1d4"));
+        factory.create("1d8");
+        assertSame(d4, factory.create("1d4"));
+        assertNotSame(d6, factory.create("1d6"));
+    }
+    
+    @Test(expected=IllegalStateException.class)
+    public void sharingUnsafeSourceBad() {
+        new DiceFactory(RandomSourceType.PCG32).setSharingCachedDice(true).create("1d6");
+    }
+    
+    /** Shared dice can be rolled from many threads at once. */
+    @Test
+    public void sharedDiceThreadsTest() throws Exception {
+        DiceFactory factory = new DiceFactory(RandomSourceType.THREAD_LOCAL).setSharingCachedDice(true);
+        final int THREADS = 4;
+        Thread[] threads = new Thread[THREADS];
+        Throwable[] failures = new Throwable[THREADS];
+        for (int t = 0; t < THREADS; ++t) {
+            final int index = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 2000; ++i) {
+                        String expression = (i % 3) + 1 + "d6 and 1d4";
+                        int value = factory.create(expression).roll();
+                        int numDice = (i % 3) + 1;
+                        assertTrue(value >= numDice + 1 && value <= numDice * 6 + 4);
+                    }
+                } catch (Throwable failure) {
+                    failures[index] = failure;
+                }
+            });
+            threads[t].start();
+        }
+        for (int t = 0; t < THREADS; ++t) {
+            threads[t].join();
+            if (failures[t] != null) {
+                throw new AssertionError("Thread " + t + " failed", failures[t]);
+            }
+        }
+        // Threads racing to parse the same expression may each miss
+        long misses = factory.getCacheMisses();
+        assertTrue("Misses: " + misses, (misses >= 3) && (misses <= 3 * THREADS));
+    }
+
+    /** Every expression in the table has exactly the expected lowest,
+     * highest, and average rolls, worked out without rolling anything.
+     */
+    @Test
+    public void statisticsTest() {
+        DiceFactory factory = new DiceFactory();
+        for (String testValue: GOOD_TEST_VALUES) {
+            String components[] = testValue.split("/");
+            ExpectedDiceResult expected = new ExpectedDiceResult(components[1]);
+            DiceExpression expression = factory.create(components[0]);
+            assertEquals(components[0], expected.minValue, expression.getMin());
+            assertEquals(components[0], expected.maxValue, expression.getMax());
+            assertEquals(components[0], expected.average, expression.getMean(), 1e-9);
+            
+            DiceDistribution distribution = DiceDistribution.of(expression);
+            assertEquals(components[0], distribution.getVariance(), expression.getVariance(), 1e-9);
+            assertEquals(components[0], 1.0, expression.cdf(expected.maxValue), 1e-12);
+        }
+    }
+
+    /** Dice created with metrics on count their rolls, in metrics shared by
+     * every die created from the same expression; dice created with them off
+     * aren't touched.
+     */
+    @Test
+    public void metricsTest() {
+        DiceFactory factory = new DiceFactory();
+        DiceExpression plain = factory.create("3d6 + 2");
+        assertEquals(null, plain.getMetrics());
+        assertTrue(plain instanceof SimpleDie);
+        
+        factory.setMetricsEnabled(true);
+        DiceExpression first = factory.create("3d6 + 2");
+        DiceExpression second = factory.create("3D6+2");
+        assertTrue(first instanceof MeteredDie);
+        assertSame(first.getMetrics(), second.getMetrics());
+        assertEquals("3d6 + 2", first.toString());
+        assertEquals(12.5, first.getMean(), 1e-12);
+        
+        for (int i = 0; i < 100; ++i) {
+            int roll = first.roll();
+            assertTrue((roll >= 5) && (roll <= 20));
+        }
+        second.roll(new int[50], 0, 50);
+        first.rollHistogram(1000L);
+        plain.roll();
+        factory.create("1d20").roll();
+        
+        Map<String, MetricsSnapshot> snapshot = factory.getMetricsSnapshot();
+        assertEquals(2, snapshot.size());
+        assertEquals(1150L, snapshot.get(DiceFactory.canonicalize("3d6 + 2")).getGenerated());
+        assertEquals(1L, snapshot.get("1d20").getGenerated());
+        
+        factory.setMetricsEnabled(false);
+        assertEquals(null, factory.create("3d6 + 2").getMetrics());
+    }
+
 }
@@ -0,0 +1,146 @@
+package com.salesforce.rcg.numbers.dice;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.salesforce.rcg.numbers.dice.impl.CompositeDie;
+import com.salesforce.rcg.numbers.dice.impl.SimpleDie;
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.random.impl.Xoshiro256StarStarSource;
+
+public class DiceHistogramTest {
+    /** Check a histogram's counts against a distribution: within 5 standard
+     * deviations of the expected count, plus a little for the rarest values.
+     */
+    private static void checkCounts(DiceHistogram histogram, DiceDistribution distribution, long n) {
+        assertEquals(n, histogram.getTotal());
+        for (int value = distribution.getMin(); value <= distribution.getMax(); ++value) {
+            double p = distribution.probability(value);
+            double expected = p * n;
+            assertEquals("Count of " + value, expected, histogram.getCount(value),
+                    5.0 * Math.sqrt(expected * (1.0 - p)) + 2.0);
+        }
+        assertEquals(0L, histogram.getCount(distribution.getMin() - 1));
+        assertEquals(0L, histogram.getCount(distribution.getMax() + 1));
+    }
+
+    @Test
+    public void sampleTest() {
+        RandomSource source = new Xoshiro256StarStarSource(5150L);
+        DiceDistribution distribution = DiceDistribution.sumOfDice(2, 6, 1000);
+        DiceHistogram histogram = DiceHistogram.sample(distribution, 1_000_000L, source);
+        checkCounts(histogram, distribution, 1_000_000L);
+        assertEquals(11, histogram.size());
+        assertEquals(2, histogram.getMin());
+        assertEquals(12, histogram.getMax());
+        assertEquals(7.0, histogram.getMean(), 0.01);
+        assertArrayEquals(new int[] { 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 }, histogram.getValues());
+    }
+
+    /** Drawing the counts takes the same time however many rolls there are. */
+    @Test
+    public void hugeCountTest() {
+        SimpleDie die = new SimpleDie(3, 6);
+        long n = 1L << 50;
+        DiceHistogram histogram = die.rollHistogram(n);
+        checkCounts(histogram, die.getDistribution(1000), n);
+
+        DiceExpression composite = new CompositeDie(new SimpleDie(1, 4), new SimpleDie(2, 10, -1));
+        histogram = composite.rollHistogram(n);
+        checkCounts(histogram, composite.getDistribution(1000), n);
+
+        DiceExpression compiled = CompiledDice.compile(new SimpleDie(20, 20));
+        histogram = compiled.rollHistogram(n);
+        checkCounts(histogram, compiled.getDistribution(1000), n);
+    }
+
+    /** Values with no chance of coming up never do. */
+    @Test
+    public void gapsTest() {
+        SimpleDie die = new SimpleDie(1, 4);
+        die.setMultiplier(10);
+        die.setChance(0.5);
+        DiceHistogram histogram = die.rollHistogram(100000L);
+        assertArrayEquals(new int[] { 0, 10, 20, 30, 40 }, histogram.getValues());
+        checkCounts(histogram, die.getDistribution(1000), 100000L);
+    }
+
+    /** Expressions without a small distribution are rolled one at a time. */
+    @Test
+    public void rolledTest() {
+        SimpleDie huge = new SimpleDie(100000, 20);
+        DiceHistogram histogram = huge.rollHistogram(5000L);
+        assertEquals(5000L, histogram.getTotal());
+        assertTrue(histogram.getMin() >= 100000);
+        assertTrue(histogram.getMax() <= 2000000);
+        assertEquals(1050000.0, histogram.getMean(), 5.0 * Math.sqrt(100000 * 399.0 / 12.0 / 5000));
+
+        long sum = 0L;
+        for (long count: histogram.getCounts()) {
+            sum += count;
+        }
+        assertEquals(5000L, sum);
+    }
+
+    @Test
+    public void plusTest() {
+        DiceHistogram first = DiceHistogram.fromCounts(1, new long[] { 2L, 0L, 3L });
+        DiceHistogram second = DiceHistogram.fromCounts(2, new long[] { 1L, 4L, 0L, 5L });
+        DiceHistogram sum = first.plus(second);
+        assertArrayEquals(new int[] { 1, 2, 3, 5 }, sum.getValues());
+        assertArrayEquals(new long[] { 2L, 1L, 7L, 5L }, sum.getCounts());
+        assertEquals(15L, sum.getTotal());
+        assertArrayEquals(sum.getCounts(), second.plus(first).getCounts());
+        assertEquals(5L, first.plus(DiceHistogram.fromCounts(0, new long[0])).getTotal());
+    }
+
+    @Test
+    public void percentileTest() {
+        // 1 through 10, once each
+        long[] ones = new long[10];
+        Arrays.fill(ones, 1L);
+        DiceHistogram histogram = DiceHistogram.fromCounts(1, ones);
+        assertEquals(1, histogram.getPercentile(0.0));
+        assertEquals(1, histogram.getPercentile(10.0));
+        assertEquals(2, histogram.getPercentile(10.5));
+        assertEquals(5, histogram.getPercentile(50.0));
+        assertEquals(10, histogram.getPercentile(100.0));
+        assertEquals(5.5, histogram.getMean(), 1e-12);
+        assertEquals(8.25, histogram.getVariance(), 1e-12);
+
+        RandomSource source = new Xoshiro256StarStarSource(4242L);
+        DiceDistribution distribution = DiceDistribution.sumOfDice(3, 6, 1000);
+        histogram = DiceHistogram.sample(distribution, 1_000_000L, source);
+        assertEquals(8, histogram.getPercentile(25.0));
+        assertEquals(13, histogram.getPercentile(75.0));
+        assertEquals(distribution.getVariance(), histogram.getVariance(), 0.05);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void percentileBad() {
+        new SimpleDie(6).rollHistogram(10L).getPercentile(100.5);
+    }
+
+    @Test
+    public void emptyTest() {
+        DiceHistogram histogram = new SimpleDie(6).rollHistogram(0L);
+        assertEquals(0L, histogram.getTotal());
+        assertEquals(0, histogram.size());
+        assertEquals("DiceHistogram[]", histogram.toString());
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void emptyMinBad() {
+        new SimpleDie(6).rollHistogram(0L).getMin();
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void negativeCountBad() {
+        new SimpleDie(6).rollHistogram(-1L);
+    }
+}
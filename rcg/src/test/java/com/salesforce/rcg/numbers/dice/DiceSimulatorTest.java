@@ -0,0 +1,129 @@
+package com.salesforce.rcg.numbers.dice;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.salesforce.rcg.numbers.dice.impl.SimpleDie;
+
+public class DiceSimulatorTest {
+    /** The same seed gets the same results, however many threads roll. */
+    @Test
+    public void reproducibleTest() {
+        SimpleDie die = new SimpleDie(3, 6);
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool several = new ForkJoinPool(4);
+        try {
+            for (boolean sampling: new boolean[] { true, false }) {
+                DiceHistogram first = new DiceSimulator(1234L).setPool(single).setTaskSize(1000L)
+                        .setSampling(sampling).simulate(die, 100_001L);
+                DiceHistogram second = new DiceSimulator(1234L).setPool(several).setTaskSize(1000L)
+                        .setSampling(sampling).simulate(die, 100_001L);
+                assertEquals(100_001L, first.getTotal());
+                assertArrayEquals(first.getValues(), second.getValues());
+                assertArrayEquals(first.getCounts(), second.getCounts());
+
+                DiceHistogram other = new DiceSimulator(4321L).setPool(several).setTaskSize(1000L)
+                        .setSampling(sampling).simulate(die, 100_001L);
+                assertFalse(Arrays.equals(first.getCounts(), other.getCounts()));
+            }
+        } finally {
+            single.shutdown();
+            several.shutdown();
+        }
+    }
+
+    /** Rolling and sampling both match the exact distribution. */
+    @Test
+    public void distributionTest() {
+        SimpleDie die = new SimpleDie(3, 6);
+        for (boolean sampling: new boolean[] { true, false }) {
+            DiceHistogram histogram = new DiceSimulator(99L).setTaskSize(50_000L).setSampling(sampling)
+                    .simulate(die, 1_000_000L);
+            assertEquals(1_000_000L, histogram.getTotal());
+            assertEquals(3, histogram.getMin());
+            assertEquals(18, histogram.getMax());
+            assertEquals(10.5, histogram.getMean(), 0.02);
+            assertEquals(8.75, histogram.getVariance(), 0.1);
+            assertEquals(8, histogram.getPercentile(25.0));
+            assertEquals(13, histogram.getPercentile(75.0));
+        }
+    }
+
+    /** Expressions with no end to their range are counted too. */
+    @Test
+    public void explodingTest() {
+        SimpleDie die = new SimpleDie(2, 6);
+        die.setExploding(true);
+        DiceHistogram histogram = new DiceSimulator(7L).setTaskSize(100_000L).simulate(die, 1_000_000L);
+        assertEquals(1_000_000L, histogram.getTotal());
+        assertEquals(2, histogram.getMin());
+        assertTrue(histogram.getMax() > 30);
+        assertEquals(8.4, histogram.getMean(), 0.05);
+    }
+
+    /** Each expression gets random numbers of its own. */
+    @Test
+    public void severalTest() {
+        SimpleDie die = new SimpleDie(3, 6);
+        List<DiceHistogram> histograms = new DiceSimulator(5L).simulate(Arrays.asList(die, die, new SimpleDie(20)),
+                100_000L);
+        assertEquals(3, histograms.size());
+        assertFalse(Arrays.equals(histograms.get(0).getCounts(), histograms.get(1).getCounts()));
+        assertArrayEquals(histograms.get(0).getCounts(), new DiceSimulator(5L).simulate(die, 100_000L).getCounts());
+        assertEquals(20, histograms.get(2).size());
+    }
+
+    @Test
+    public void compareTest() {
+        DiceSimulator simulator = new DiceSimulator(2718L).setTaskSize(100_000L);
+        DiceComparison comparison = simulator.compare(new SimpleDie(20), new SimpleDie(20), 1_000_000L);
+        assertEquals(1_000_000L, comparison.getTotal());
+        assertEquals(0.475, comparison.getProbabilityGreater(), 0.003);
+        assertEquals(0.05, comparison.getProbabilityEqual(), 0.002);
+        assertEquals(0.475, comparison.getProbabilityLess(), 0.003);
+
+        comparison = simulator.compare(new SimpleDie(2, 6), new SimpleDie(12), 1_000_000L);
+        assertEquals(0.5, comparison.getProbabilityGreater(), 0.003);
+        assertEquals(1.0 / 12.0, comparison.getProbabilityEqual(), 0.002);
+        assertEquals(5.0 / 12.0, comparison.getProbabilityLess(), 0.003);
+
+        DiceComparison again = new DiceSimulator(2718L).setTaskSize(100_000L)
+                .compare(new SimpleDie(2, 6), new SimpleDie(12), 1_000_000L);
+        assertEquals(comparison.toString(), again.toString());
+    }
+
+    @Test
+    public void emptyTest() {
+        DiceSimulator simulator = new DiceSimulator(1L);
+        assertEquals(0L, simulator.simulate(new SimpleDie(6), 0L).getTotal());
+        assertEquals(0L, simulator.compare(new SimpleDie(6), new SimpleDie(6), 0L).getTotal());
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void emptyComparisonBad() {
+        new DiceSimulator(1L).compare(new SimpleDie(6), new SimpleDie(6), 0L).getProbabilityGreater();
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void negativeCountBad() {
+        new DiceSimulator(1L).simulate(new SimpleDie(6), -1L);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void taskSizeBad() {
+        new DiceSimulator(1L).setTaskSize(0L);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void nullExpressionBad() {
+        new DiceSimulator(1L).compare(new SimpleDie(6), null, 10L);
+    }
+}
@@ -0,0 +1,103 @@
+package com.salesforce.rcg.numbers.dice.impl;
+
+import static com.salesforce.rcg.numbers.dice.testutils.DiceTestUtils.testRolls;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.salesforce.rcg.numbers.dice.CompiledDice;
+import com.salesforce.rcg.numbers.dice.DiceExpression;
+import com.salesforce.rcg.numbers.dice.testutils.DiceTestUtils;
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.random.impl.Xoshiro256StarStarSource;
+
+public class CompiledDieTest {
+    @Test
+    public void compileTest() {
+        DiceExpression compiled = CompiledDice.compile(new SimpleDie(1000, 6));
+        assertTrue(compiled instanceof CompiledDie);
+        assertEquals("1000d6", compiled.toString());
+        testRolls(compiled, 1000, 6000, 3500.0);
+
+        // Compiling twice does nothing more
+        assertSame(compiled, CompiledDice.compile(compiled));
+
+        CompositeDie composite = new CompositeDie(new SimpleDie(2, 4), new SimpleDie(1, 12));
+        DiceExpression compiledComposite = CompiledDice.compile(composite);
+        assertTrue(compiledComposite instanceof CompiledDie);
+        assertEquals("2d4 and 1d12", compiledComposite.toString());
+        testRolls(compiledComposite, 3, 20, 11.5);
+    }
+
+    /** Values with no chance of being rolled never are. */
+    @Test
+    public void gapsTest() {
+        SimpleDie die = new SimpleDie(2, 6, 1);
+        die.setMultiplier(10);
+        die.setChance(0.5);
+        DiceExpression compiled = CompiledDice.compile(die);
+        assertTrue(compiled instanceof CompiledDie);
+        for (int i = 0; i < 10000; ++i) {
+            int value = compiled.roll();
+            assertTrue("Rolled " + value, (value == 0) || ((value % 10 == 0) && (value >= 30) && (value <= 130)));
+        }
+    }
+
+    /** Expressions too large to compile are left alone. */
+    @Test
+    public void tooLargeTest() {
+        SimpleDie huge = new SimpleDie(100000, 20);
+        assertSame(huge, CompiledDice.compile(huge));
+        SimpleDie small = new SimpleDie(10, 10);
+        assertSame(small, CompiledDice.compile(small, 50, new Xoshiro256StarStarSource()));
+    }
+
+    /** However many dice, a roll takes one random number. */
+    @Test
+    public void oneDrawTest() {
+        long[] draws = new long[1];
+        RandomSource xoshiro = new Xoshiro256StarStarSource(99L);
+        RandomSource counting = new RandomSource() {
+            @Override
+            public long nextLong() {
+                ++draws[0];
+                return(xoshiro.nextLong());
+            }
+
+            @Override
+            public RandomSource split() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        DiceExpression compiled = CompiledDice.compile(new SimpleDie(500, 12), 1 << 16, counting);
+        for (int i = 0; i < 1000; ++i) {
+            compiled.roll();
+        }
+        assertEquals(1000L, draws[0]);
+
+        // A constant needs no random numbers at all
+        DiceExpression constant = CompiledDice.compile(new SimpleDie(0, 0, 7), 1 << 16, counting);
+        assertEquals(7, constant.roll());
+        assertEquals(1000L, draws[0]);
+    }
+
+    /** A seeded compiled die rolls the same every time. */
+    @Test
+    public void seededTest() {
+        DiceExpression first = CompiledDice.compile(new SimpleDie(3, 6), 1000, new Xoshiro256StarStarSource(5L));
+        DiceExpression second = CompiledDice.compile(new SimpleDie(3, 6), 1000, new Xoshiro256StarStarSource(5L));
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(first.roll(), second.roll());
+        }
+    }
+
+    @Test
+    public void bulkRollTest() {
+        DiceTestUtils.testBulkRolls(CompiledDice.compile(new SimpleDie(10, 6)), 60000);
+        DiceTestUtils.testBulkRolls(CompiledDice.compile(new CompositeDie(new SimpleDie(2, 4), new SimpleDie(1, 12))), 60000);
+        DiceTestUtils.testBulkRolls(CompiledDice.compile(new SimpleDie(0, 0, 7)), 100);
+    }
+
+}
@@ -4,12 +4,22 @@ import static com.salesforce.rcg.numbers.dice.testutils.DiceTestUtils.testRolls;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
 
+import com.salesforce.rcg.numbers.dice.CompiledDice;
+import com.salesforce.rcg.numbers.dice.DiceDistribution;
+import com.salesforce.rcg.numbers.dice.DiceExpression;
+import com.salesforce.rcg.numbers.dice.testutils.DiceTestUtils;
+import com.salesforce.rcg.random.impl.Xoshiro256StarStarSource;
+import com.salesforce.rcg.util.AllocationTestUtils;
+
 public class CompositeDieTest {
     
     /** A ComositeDie that is created without any underlying dice should be empty!
@@ -123,4 +133,80 @@ public class CompositeDieTest {
         assertNotEquals(-1, stringForm.indexOf("2d8"));
     }
 
+    @Test
+    public void bulkRollTest() {
+        SimpleDie withChance = new SimpleDie(1, 8);
+        withChance.setChance(0.25);
+        CompositeDie cd = new CompositeDie(new SimpleDie(2, 4), new SimpleDie(1, 12, 1), withChance);
+        DiceTestUtils.testBulkRolls(cd, 60000);
+        DiceTestUtils.testBulkRolls(new CompositeDie(new SimpleDie(3, 6)), 60000);
+        
+        int[] rolls = { 5, 5, 5 };
+        new CompositeDie().roll(rolls, 1, 2);
+        assertEquals(5, rolls[0]);
+        assertEquals(0, rolls[1]);
+        assertEquals(0, rolls[2]);
+    }
+
+    /** Roll streams and histograms are seeded from the dice's own random
+     * source, so dice with the same seed give the same ones.
+     */
+    @Test
+    public void seededStreamsTest() {
+        DiceExpression[] dice = new DiceExpression[2];
+        for (int i = 0; i < dice.length; ++i) {
+            SimpleDie first = new SimpleDie(2, 4);
+            first.setRandomSource(new Xoshiro256StarStarSource(2112L));
+            SimpleDie second = new SimpleDie(1, 12);
+            second.setRandomSource(new Xoshiro256StarStarSource(5150L));
+            dice[i] = new CompositeDie(first, second);
+        }
+        assertSame(((CompositeDie) dice[0]).snapshot[0].getRandomSource(), dice[0].getRandomSource());
+        assertTrue(Arrays.equals(dice[0].rolls(1000).toArray(), dice[1].rolls(1000).toArray()));
+        assertEquals(dice[0].rollHistogram(1000).toString(), dice[1].rollHistogram(1000).toString());
+        
+        FlattenedDie[] flattened = { ((CompositeDie) dice[0]).freeze(new Xoshiro256StarStarSource(1984L)),
+                ((CompositeDie) dice[1]).freeze(new Xoshiro256StarStarSource(1984L)) };
+        assertTrue(Arrays.equals(flattened[0].rolls(1000).toArray(), flattened[1].rolls(1000).toArray()));
+        assertNull(new CompositeDie().getRandomSource());
+    }
+
+    /** The statistics of the total are sums of the dice's, and the
+     * distribution is kept until one of the dice changes.
+     */
+    @Test
+    public void statisticsTest() {
+        SimpleDie d4 = new SimpleDie(2, 4);
+        CompositeDie cd = new CompositeDie(d4, new SimpleDie(1, 12, -1));
+        assertEquals(2, cd.getMin());
+        assertEquals(19, cd.getMax());
+        assertEquals(10.5, cd.getMean(), 1e-12);
+        assertEquals(2.5 + 143.0 / 12.0, cd.getVariance(), 1e-12);
+        assertEquals(1.0 / 192.0, cd.probabilityOf(2), 1e-15);
+        assertEquals(1.0, cd.cdf(19), 1e-12);
+        
+        DiceDistribution distribution = cd.getDistribution(1000);
+        assertEquals(distribution.getVariance(), cd.getVariance(), 1e-9);
+        assertSame(distribution, cd.getDistribution(1000));
+        d4.setNumDice(3);
+        assertEquals(3, cd.getDistribution(1000).getMin());
+        
+        // Sums work even where the distribution would be far too large
+        CompositeDie huge = new CompositeDie(new SimpleDie(1000000, 100), new SimpleDie(1000000, 100));
+        assertEquals(101000000.0, huge.getMean(), 1e-6);
+        assertEquals(2000000, huge.getMin());
+    }
+
+    /** Rolling a composite die allocates nothing, and nor do the compiled
+     * and frozen forms of it.
+     */
+    @Test
+    public void allocationFreeTest() {
+        CompositeDie cd = new CompositeDie(new SimpleDie(2, 6), new SimpleDie(1, 8), new SimpleDie(3, 4, 1));
+        AllocationTestUtils.assertIntAllocationFree("CompositeDie.roll", cd::roll);
+        DiceExpression compiled = CompiledDice.compile(cd);
+        assertTrue(compiled instanceof CompiledDie);
+        AllocationTestUtils.assertIntAllocationFree("CompiledDie.roll", compiled::roll);
+        AllocationTestUtils.assertIntAllocationFree("FlattenedDie.roll", cd.freeze()::roll);
+    }
 }
@@ -0,0 +1,132 @@
+package com.salesforce.rcg.numbers.dice.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.salesforce.rcg.numbers.dice.CompiledDice;
+import com.salesforce.rcg.numbers.dice.DiceDistribution;
+import com.salesforce.rcg.numbers.dice.DiceExpression;
+import com.salesforce.rcg.numbers.dice.DiceFactory;
+import com.salesforce.rcg.numbers.dice.DiceFactoryTest;
+import com.salesforce.rcg.numbers.dice.testutils.DiceTestUtils;
+import com.salesforce.rcg.numbers.dice.testutils.ExpectedDiceResult;
+import com.salesforce.rcg.random.RandomSource;
+
+public class DiceOptimizerTest {
+    private static final DiceFactory PLAIN = new DiceFactory();
+    private static final DiceFactory OPTIMIZING = new DiceFactory().setOptimizing(true);
+    
+    /** Optimize an expression, check that it rolls exactly the same way as
+     * before, and return its new description.
+     */
+    private static String optimized(String source) {
+        DiceExpression original = PLAIN.create(source);
+        DiceExpression optimized = OPTIMIZING.create(source);
+        DiceDistribution expected = original.getDistribution(100000);
+        DiceDistribution actual = optimized.getDistribution(100000);
+        assertEquals(source, expected.getMin(), actual.getMin());
+        assertArrayEquals(source, expected.getProbabilities(), actual.getProbabilities(), 1e-12);
+        return(optimized.toString());
+    }
+    
+    @Test
+    public void mergeTest() {
+        assertEquals("5d6 + 5", optimized("2d6 & 3d6 & 5"));
+        assertEquals("2d4 and 1d6", optimized("1d4 & 1d6 & 1d4"));
+        assertEquals("4d8 - 1", optimized("1d8+1 & 3d8 - 2"));
+        // Multipliers have to match, and constants only fold in if they divide evenly
+        assertEquals("2d6 + 2 * 2", optimized("1d6*2 & 1d6*2 & 4"));
+        assertEquals("1d0 + 3 and 2d6 * 2", optimized("1d6*2 & 1d6*2 & 3"));
+        assertEquals("1d6 * 2 and 1d6 + 1 * 3", optimized("1d6*2 & 1d6*3 & 3"));
+        // So does the loading
+        assertEquals("5d6 loaded high + 1 and 1d6", optimized("2dh6 & 1d6 & 3dh6 & 1"));
+        assertEquals("1d6 loaded high and 1d6 loaded low", optimized("1dh6 & 1dl6"));
+        // Kept and exploding dice aren't merged, but constants can still fold into them
+        assertEquals("4d6 keep highest 3 + 2 and 4d6 keep highest 3", optimized("4d6k3 & 4d6k3 & 2"));
+        assertEquals("1d6 exploding and 1d6", OPTIMIZING.create("1d6! & 1d6").toString());
+        // Nothing to do
+        assertEquals("3d6", optimized("3d6"));
+        assertEquals("1d6 and 1d8", optimized("1d6 & 1d8"));
+    }
+    
+    @Test
+    public void constantTest() {
+        assertEquals("1d0 + 17", optimized("3 & 4 & 2*5"));
+        assertEquals("1d0 + 5", optimized("3d1 + 2"));
+        assertEquals("1d0", optimized("2d20 * 0"));
+        assertEquals("1d0", optimized("chance: 0%, 3d6"));
+        assertEquals("3d6 + 4", optimized("4-4 & 3d6"));
+        
+        // Constants never touch the random source
+        RandomSource failing = new RandomSource() {
+            @Override
+            public long nextLong() {
+                throw new AssertionError("Constant dice used their random source");
+            }
+            
+            @Override
+            public RandomSource split() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        SimpleDie constant = (SimpleDie) DiceOptimizer.optimize(
+                new CompositeDie(new SimpleDie(5, 1, 2), new SimpleDie(0, 0, 3)));
+        constant.setRandomSource(failing);
+        assertEquals(10, constant.roll());
+        int[] rolls = new int[10];
+        constant.roll(rolls, 0, rolls.length);
+        assertEquals(10, rolls[9]);
+    }
+    
+    @Test
+    public void chanceTest() {
+        assertEquals("2d3", optimized("chance: 100%, 2d3"));
+        assertEquals("5d6", optimized("chance: 150%, 2d6 & 3d6"));
+        // Dice with a chance prefix can't merge
+        assertEquals("1d8 with a 25% chance of generating a non-zero result and 1d8", 
+                optimized("chance: 25%, 1d8 & 1d8"));
+        assertEquals("1d0 + 2 and 1d4 with a 50% chance of generating a non-zero result", 
+                optimized("2 & chance: 50%, 1d4"));
+    }
+    
+    /** Composites inside composites are flattened, and anything that isn't
+     * simple or composite dice is left alone.
+     */
+    @Test
+    public void structureTest() {
+        SimpleDie d6 = new SimpleDie(1, 6);
+        DiceExpression compiled = CompiledDice.compile(new SimpleDie(2, 4));
+        CompositeDie nested = new CompositeDie(d6, new CompositeDie(new SimpleDie(2, 6), compiled));
+        DiceExpression optimized = DiceOptimizer.optimize(nested);
+        assertEquals("3d6 and 2d4", optimized.toString());
+        assertSame(compiled, ((CompositeDie) optimized).dice.get(1));
+        // The original isn't changed
+        assertEquals(1, d6.getNumDice());
+        assertSame(d6.getRandomSource(), ((SimpleDie) ((CompositeDie) optimized).dice.get(0)).getRandomSource());
+        
+        assertSame(compiled, DiceOptimizer.optimize(compiled));
+        assertEquals("1d0", DiceOptimizer.optimize(new CompositeDie()).toString());
+    }
+    
+    /** Every expression in the factory's table rolls the same way optimized. */
+    @Test
+    public void tableTest() {
+        for (String testValue: DiceFactoryTest.GOOD_TEST_VALUES) {
+            String components[] = testValue.split("/");
+            optimized(components[0]);
+            ExpectedDiceResult expected = new ExpectedDiceResult(components[1]);
+            DiceExpression expression = OPTIMIZING.create(components[0]);
+            assertTrue(expression instanceof SimpleDie || expression instanceof CompositeDie);
+            DiceTestUtils.testRolls(expression, expected.minValue, expected.maxValue, expected.average);
+        }
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void nullBad() {
+        DiceOptimizer.optimize(null);
+    }
+}
@@ -0,0 +1,191 @@
+package com.salesforce.rcg.numbers.dice.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.salesforce.rcg.numbers.dice.DiceDistribution;
+import com.salesforce.rcg.numbers.dice.DiceModifiers.Loading;
+import com.salesforce.rcg.numbers.dice.impl.DicePoolSampler.Method;
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.random.impl.Xoshiro256StarStarSource;
+
+public class DicePoolSamplerTest {
+    /** Selection puts the right value in place, with nothing larger before
+     * it and nothing smaller after it, whatever the values look like.
+     */
+    @Test
+    public void selectTest() {
+        RandomSource source = new Xoshiro256StarStarSource(314159L);
+        for (int trial = 0; trial < 2000; ++trial) {
+            int count = 1 + source.nextInt(60);
+            int range = 1 + source.nextInt((trial % 2 == 0) ? 6 : 1000);
+            int[] values = new int[count + 5];
+            for (int i = 0; i < count; ++i) {
+                values[i] = source.nextInt(range);
+            }
+            int[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            int k = source.nextInt(count);
+            DicePoolSampler.select(values, count, k);
+            assertEquals(sorted[k], values[k]);
+            for (int i = 0; i < count; ++i) {
+                assertTrue((i < k) ? (values[i] <= values[k]) : (values[i] >= values[k]));
+            }
+            int[] after = Arrays.copyOf(values, count);
+            Arrays.sort(after);
+            assertArrayEquals(sorted, after);
+        }
+    }
+
+    /** The exact distribution matches every roll of the dice, listed out. */
+    @Test
+    public void distributionTest() {
+        checkDistribution(new DicePoolSampler(4, 6, null, 3, true, false), null);
+        checkDistribution(new DicePoolSampler(4, 6, null, 1, false, false), null);
+        checkDistribution(new DicePoolSampler(3, 5, null, 0, true, false), null);
+        double[] weights = Loading.LOADED_HIGH.getFaceWeights(4, 3.0);
+        checkDistribution(new DicePoolSampler(5, 4, weights, 2, false, false), weights);
+        checkDistribution(new DicePoolSampler(5, 4, weights, 3, true, false), weights);
+
+        DicePoolSampler sampler = new DicePoolSampler(4, 6, null, 3, true, false);
+        assertEquals(15869.0 / 1296.0, sampler.getMean(), 1e-12);
+    }
+
+    /** Faces that never come up don't upset the distribution, even when
+     * they're the worst ones.
+     */
+    @Test
+    public void zeroWeightFacesTest() {
+        double[] lowNever = {0.0, 0.0, 1.0, 1.0, 1.0, 1.0};
+        double[] highNever = {1.0, 1.0, 1.0, 1.0, 0.0, 0.0};
+        checkDistribution(new DicePoolSampler(4, 6, lowNever, 2, true, false), lowNever);
+        checkDistribution(new DicePoolSampler(4, 6, lowNever, 2, false, false), lowNever);
+        checkDistribution(new DicePoolSampler(4, 6, highNever, 2, false, false), highNever);
+        checkDistribution(new DicePoolSampler(4, 6, highNever, 2, true, false), highNever);
+
+        DiceDistribution distribution = new DicePoolSampler(4, 6, lowNever, 3, true, false).getDistribution(1000);
+        assertEquals(9, distribution.getMin());
+        assertEquals(18, distribution.getMax());
+    }
+
+    private static void checkDistribution(DicePoolSampler sampler, double[] weights) {
+        int numDice = sampler.getNumDice();
+        int sides = sampler.getNumSides();
+        double[] probabilities = new double[sides];
+        for (int face = 0; face < sides; ++face) {
+            probabilities[face] = (weights != null) ? weights[face] : 1.0;
+        }
+        double total = 0.0;
+        for (double p: probabilities) {
+            total += p;
+        }
+        double[] expected = new double[numDice * sides + 1];
+        int[] dice = new int[numDice];
+        int combinations = (int) Math.pow(sides, numDice);
+        for (int combination = 0; combination < combinations; ++combination) {
+            double p = 1.0;
+            int remaining = combination;
+            for (int i = 0; i < numDice; ++i) {
+                dice[i] = remaining % sides + 1;
+                remaining /= sides;
+                p *= probabilities[dice[i] - 1] / total;
+            }
+            Arrays.sort(dice);
+            int sum = 0;
+            for (int i = 0; i < sampler.getKept(); ++i) {
+                sum += sampler.isKeepingHighest() ? dice[numDice - 1 - i] : dice[i];
+            }
+            expected[sum] += p;
+        }
+        DiceDistribution distribution = sampler.getDistribution(1000);
+        for (int sum = 0; sum < expected.length; ++sum) {
+            assertEquals("Chance of " + sum, expected[sum], distribution.probability(sum), 1e-12);
+        }
+    }
+
+    @Test
+    public void chooseMethodTest() {
+        assertEquals(Method.TABLE, new DicePoolSampler(4, 6, null, 3, true, false).getMethod());
+        assertEquals(Method.TABLE, new DicePoolSampler(10, 10, null, 5, true, false).getMethod());
+        // Too much work to list out
+        assertEquals(Method.ROLL, new DicePoolSampler(300, 6, null, 150, true, false).getMethod());
+        // No end of totals
+        assertEquals(Method.ROLL, new DicePoolSampler(1, 6, null, 1, true, true).getMethod());
+    }
+
+    /** Rolling the dice one at a time keeps the right ones: the highest and
+     * lowest halves of the same dice add up to the total of them all.
+     */
+    @Test
+    public void rollTest() {
+        RandomSource source = new Xoshiro256StarStarSource(1999L);
+        DicePoolSampler highest = new DicePoolSampler(300, 6, null, 150, true, false);
+        DicePoolSampler lowest = new DicePoolSampler(300, 6, null, 150, false, false);
+        final int SAMPLES = 2000;
+        double highSum = 0.0;
+        double lowSum = 0.0;
+        for (int i = 0; i < SAMPLES; ++i) {
+            long high = highest.sum(source);
+            long low = lowest.sum(source);
+            assertTrue((high >= 150) && (high <= 900));
+            assertTrue((low >= 150) && (low <= 900));
+            highSum += high;
+            lowSum += low;
+        }
+        assertTrue(highSum > lowSum);
+        // The total of 300d6 has a standard deviation of about 30
+        assertEquals(1050.0, (highSum + lowSum) / SAMPLES, 3.0);
+    }
+
+    /** Exploding dice match the closed forms for their average and spread. */
+    @Test
+    public void explodingTest() {
+        RandomSource source = new Xoshiro256StarStarSource(8128L);
+        DicePoolSampler sampler = new DicePoolSampler(2, 6, null, 2, true, true);
+        assertEquals(8.4, sampler.getMean(), 1e-12);
+        assertEquals(Long.MAX_VALUE, sampler.getMaxTotal());
+        assertEquals(null, sampler.getDistribution(1000000));
+        final int SAMPLES = 200000;
+        int[] totals = new int[SAMPLES];
+        sampler.fill(source, totals, 0, SAMPLES);
+        double sum = 0.0;
+        double sumOfSquares = 0.0;
+        int max = 0;
+        for (int total: totals) {
+            sum += total;
+            sumOfSquares += (double) total * total;
+            max = Math.max(max, total);
+        }
+        double mean = sum / SAMPLES;
+        double variance = sumOfSquares / SAMPLES - mean * mean;
+        assertEquals(sampler.getMean(), mean, 5.0 * Math.sqrt(sampler.getVariance() / SAMPLES));
+        assertEquals(sampler.getVariance(), variance, 0.05 * sampler.getVariance());
+        assertTrue(max > 12);
+        
+        // A single die never stops on a 6: it's always rolled again
+        DicePoolSampler single = new DicePoolSampler(1, 6, null, 1, true, true);
+        for (int i = 0; i < 10000; ++i) {
+            assertTrue(single.sum(source) % 6 != 0);
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void explodeForeverBad() {
+        new DicePoolSampler(1, 1, null, 1, true, true);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void keepTooManyBad() {
+        new DicePoolSampler(3, 6, null, 4, true, false);
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void tooLargeMeanBad() {
+        new DicePoolSampler(300, 6, null, 150, true, false).getMean();
+    }
+}
@@ -0,0 +1,111 @@
+package com.salesforce.rcg.numbers.dice.impl;
+
+import static com.salesforce.rcg.numbers.dice.testutils.DiceTestUtils.testRollSpread;
+import static com.salesforce.rcg.numbers.dice.testutils.DiceTestUtils.testRolls;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.salesforce.rcg.numbers.dice.DiceFactory;
+import com.salesforce.rcg.numbers.dice.impl.DiceSumSampler.Method;
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.random.impl.Xoshiro256StarStarSource;
+
+public class DiceSumSamplerTest {
+    private static double variance(int numDice, int sides) {
+        return(numDice * ((double) sides * sides - 1.0) / 12.0);
+    }
+
+    @Test
+    public void chooseMethodTest() {
+        double accuracy = DiceSumSampler.DEFAULT_ACCURACY;
+        assertEquals(Method.BATCHED, DiceSumSampler.chooseMethod(3, 6, accuracy));
+        assertEquals(Method.BATCHED, DiceSumSampler.chooseMethod(300, 6, accuracy));
+        assertEquals(Method.BATCHED, DiceSumSampler.chooseMethod(1000000, 1, accuracy));
+        assertEquals(Method.MULTINOMIAL, DiceSumSampler.chooseMethod(5000, 6, accuracy));
+        assertEquals(Method.NORMAL, DiceSumSampler.chooseMethod(100000, 20, accuracy));
+        // Exact only
+        assertEquals(Method.MULTINOMIAL, DiceSumSampler.chooseMethod(100000, 20, 0.0));
+        // Many sides, too few dice for the approximation, too many sides for multinomial
+        assertEquals(Method.BATCHED, DiceSumSampler.chooseMethod(1000, 1000, accuracy));
+    }
+
+    @Test
+    public void kurtosisTest() {
+        // A single d2 is as flat as it gets: -2
+        assertEquals(-2.0, DiceSumSampler.excessKurtosis(1, 2), 1e-12);
+        assertEquals(-1.2 * 37 / 35 / 10, DiceSumSampler.excessKurtosis(10, 6), 1e-12);
+    }
+
+    /** Every method gives totals in range, even where it would never be
+     * chosen, and the right average and spread wherever it's meant to be
+     * accurate. (The normal approximation is no good for a few dice.)
+     */
+    @Test
+    public void everyMethodTest() {
+        RandomSource source = new Xoshiro256StarStarSource(8675309L);
+        int[][] diceList = { { 1, 6 }, { 2, 6 }, { 40, 6 }, { 7, 2 }, { 1000, 13 } };
+        for (Method method: Method.values()) {
+            for (int[] dice: diceList) {
+                int numDice = dice[0];
+                int sides = dice[1];
+                DiceSumSampler sampler = new DiceSumSampler(numDice, sides, method);
+                String label = method + " " + numDice + "d" + sides;
+                double sum = 0.0;
+                double sumOfSquares = 0.0;
+                final int SAMPLES = 20000;
+                for (int i = 0; i < SAMPLES; ++i) {
+                    long total = sampler.sum(source);
+                    if ((total < numDice) || (total > (long) numDice * sides)) {
+                        throw new AssertionError(label + " rolled " + total);
+                    }
+                    double offset = total - numDice * (sides + 1) / 2.0;
+                    sum += offset;
+                    sumOfSquares += offset * offset;
+                }
+                if ((method == Method.NORMAL) && (numDice < 40)) {
+                    continue;
+                }
+                double variance = variance(numDice, sides);
+                assertEquals(label, 0.0, sum / SAMPLES, 5.0 * Math.sqrt(variance / SAMPLES));
+                assertEquals(label, variance, sumOfSquares / SAMPLES, variance * 0.1);
+            }
+        }
+    }
+
+    /** Huge numbers of dice roll in range, through a die and a factory. */
+    @Test
+    public void hugeDiceTest() {
+        SimpleDie huge = new SimpleDie(100000, 20);
+        assertEquals(Method.NORMAL, huge.getSamplingMethod());
+        testRolls(huge, 100000, 2000000, 1050000.0);
+        testRollSpread(huge, 100000, 2000000, 1050000.0, variance(100000, 20), 20000);
+
+        huge.setAccuracy(0.0);
+        assertEquals(Method.MULTINOMIAL, huge.getSamplingMethod());
+        testRollSpread(huge, 100000, 2000000, 1050000.0, variance(100000, 20), 20000);
+
+        DiceFactory factory = new DiceFactory();
+        SimpleDie fromFactory = (SimpleDie) factory.create("200000d100 + 5");
+        assertEquals(Method.NORMAL, fromFactory.getSamplingMethod());
+        testRollSpread(fromFactory, 200005, 20000005, 10100005.0, variance(200000, 100), 20000);
+
+        fromFactory = (SimpleDie) factory.setAccuracy(0.0).create("200000d100 + 5");
+        assertEquals(0.0, fromFactory.getAccuracy(), 0.0);
+        assertEquals(Method.MULTINOMIAL, fromFactory.getSamplingMethod());
+        testRollSpread(fromFactory, 200005, 20000005, 10100005.0, variance(200000, 100), 2000);
+    }
+
+    /** A sampler forced to approximate a couple of dice still stays in range. */
+    @Test
+    public void normalBoundsTest() {
+        RandomSource source = new Xoshiro256StarStarSource(3L);
+        DiceSumSampler sampler = new DiceSumSampler(2, 3, Method.NORMAL);
+        for (int i = 0; i < 100000; ++i) {
+            long total = sampler.sum(source);
+            if ((total < 2) || (total > 6)) {
+                throw new AssertionError("Rolled " + total);
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.salesforce.rcg.numbers.dice.impl;
+
+import static com.salesforce.rcg.numbers.dice.testutils.DiceTestUtils.testRolls;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.salesforce.rcg.numbers.dice.CompiledDice;
+import com.salesforce.rcg.numbers.dice.DiceFactory;
+import com.salesforce.rcg.numbers.dice.DiceModifiers.Loading;
+import com.salesforce.rcg.numbers.dice.testutils.DiceTestUtils;
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.random.impl.Xoshiro256StarStarSource;
+
+public class FlattenedDieTest {
+    /** Flattened dice roll, and describe themselves, just like the
+     * composite they were frozen from, nested composites and all.
+     */
+    @Test
+    public void freezeTest() {
+        SimpleDie withChance = new SimpleDie(1, 8);
+        withChance.setChance(0.25);
+        SimpleDie multiplied = new SimpleDie(2, 5, -1);
+        multiplied.setMultiplier(3);
+        CompositeDie inner = new CompositeDie(multiplied, SimpleDie.buildFromRange(4, 4));
+        CompositeDie composite = new CompositeDie(new SimpleDie(2, 4), withChance, inner);
+        
+        FlattenedDie flattened = composite.freeze();
+        assertEquals(4, flattened.size());
+        assertEquals(composite.toString(), flattened.toString());
+        assertEquals(composite.getMin(), flattened.getMin());
+        assertEquals(composite.getMax(), flattened.getMax());
+        assertEquals(composite.getMean(), flattened.getMean(), 1e-12);
+        assertEquals(composite.getVariance(), flattened.getVariance(), 1e-12);
+        assertArrayEquals(composite.getDistribution(1000).getProbabilities(), 
+                flattened.getDistribution(1000).getProbabilities(), 1e-15);
+        testRolls(flattened, composite.getMin(), composite.getMax(), composite.getMean());
+        DiceTestUtils.testBulkRolls(flattened, 60000);
+    }
+    
+    /** Changing the dice after freezing them doesn't change the frozen copy. */
+    @Test
+    public void immutableTest() {
+        SimpleDie die = new SimpleDie(3, 6);
+        FlattenedDie flattened = new CompositeDie(die).freeze();
+        die.setNumDice(10);
+        die.setAdder(5);
+        assertEquals("3d6", flattened.toString());
+        testRolls(flattened, 3, 18, 10.5);
+    }
+    
+    /** Flattening draws from the one random source exactly as the simple
+     * dice would, one after another.
+     */
+    @Test
+    public void sameRollsTest() {
+        SimpleDie loaded = new SimpleDie(4, 8);
+        loaded.setLoading(Loading.LOADED_LOW);
+        CompositeDie composite = new CompositeDie(new SimpleDie(3, 6, 2), new SimpleDie(100000, 20), loaded);
+        FlattenedDie flattened = composite.freeze(new Xoshiro256StarStarSource(1L));
+        RandomSource expected = new Xoshiro256StarStarSource(99L);
+        RandomSource actual = new Xoshiro256StarStarSource(99L);
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(composite.roll(expected), flattened.roll(actual));
+        }
+    }
+    
+    @Test
+    public void flattenTest() {
+        FlattenedDie single = FlattenedDie.flatten(new SimpleDie(2, 10));
+        assertEquals(1, single.size());
+        testRolls(single, 2, 20, 11.0);
+        
+        // Flattening flattened dice just gives them a new random source
+        RandomSource source = new Xoshiro256StarStarSource(3L);
+        FlattenedDie again = FlattenedDie.flatten(single, source);
+        assertSame(source, again.getRandomSource());
+        assertEquals("2d10", again.toString());
+        
+        // And they can be nested in composites and frozen again
+        FlattenedDie nested = new CompositeDie(single, new SimpleDie(1, 4)).freeze();
+        assertEquals(2, nested.size());
+        testRolls(nested, 3, 24, 13.5);
+        
+        assertEquals(0, new CompositeDie().freeze().roll());
+        
+        FlattenedDie fromFactory = FlattenedDie.flatten(new DiceFactory().create("chance:50%, 1d6 & 2d4 + 1"));
+        assertEquals("1d6 with a 50% chance of generating a non-zero result and 2d4 + 1", fromFactory.toString());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void compiledBad() {
+        new CompositeDie(CompiledDice.compile(new SimpleDie(3, 6))).freeze();
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void negativeSidesBad() {
+        FlattenedDie.flatten(new SimpleDie(1, -4));
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void nullSourceBad() {
+        new CompositeDie(new SimpleDie(6)).freeze(null);
+    }
+}
@@ -0,0 +1,111 @@
+package com.salesforce.rcg.numbers.dice.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.salesforce.rcg.numbers.dice.DiceDistribution;
+import com.salesforce.rcg.numbers.dice.DiceModifiers.Loading;
+import com.salesforce.rcg.numbers.dice.impl.LoadedDiceSampler.Method;
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.random.impl.Xoshiro256StarStarSource;
+
+public class LoadedDiceSamplerTest {
+    private static final double[] HIGH_D6 = Loading.LOADED_HIGH.getFaceWeights(6, 2.0);
+
+    @Test
+    public void chooseMethodTest() {
+        assertEquals(Method.TABLE, new LoadedDiceSampler(1, HIGH_D6).getMethod());
+        assertEquals(Method.TABLE, new LoadedDiceSampler(3, HIGH_D6).getMethod());
+        assertEquals(Method.TABLE, new LoadedDiceSampler(1, Loading.LOADED_LOW.getFaceWeights(1000, 2.0)).getMethod());
+        // One die is one lookup either way
+        assertEquals(Method.PER_DIE, new LoadedDiceSampler(1, Loading.LOADED_LOW.getFaceWeights(100000, 2.0)).getMethod());
+        // Too many totals for a table, and more faces than dice
+        assertEquals(Method.PER_DIE, new LoadedDiceSampler(100, Loading.LOADED_HIGH.getFaceWeights(1000, 2.0)).getMethod());
+        // Too many dice to draw one at a time
+        assertEquals(Method.MULTINOMIAL, new LoadedDiceSampler(20000, HIGH_D6).getMethod());
+    }
+
+    /** Counts of each total match the exact distribution. */
+    @Test
+    public void tableTest() {
+        RandomSource source = new Xoshiro256StarStarSource(1701L);
+        LoadedDiceSampler sampler = new LoadedDiceSampler(2, HIGH_D6);
+        DiceDistribution distribution = sampler.getDistribution(1000);
+        assertNotNull(distribution);
+        final int SAMPLES = 200000;
+        long[] counts = new long[13];
+        for (int i = 0; i < SAMPLES; ++i) {
+            counts[(int) sampler.sum(source)]++;
+        }
+        assertEquals(0L, counts[0] + counts[1]);
+        for (int total = 2; total <= 12; ++total) {
+            double p = distribution.probability(total);
+            double expected = p * SAMPLES;
+            assertEquals("Count of " + total, expected, counts[total], 5.0 * Math.sqrt(expected * (1.0 - p)));
+        }
+        // Sixes are twice as likely as ones
+        assertEquals(4.0, distribution.probability(12) / distribution.probability(2), 1e-9);
+    }
+
+    /** The methods for large totals get the average and spread right. */
+    @Test
+    public void largeTest() {
+        RandomSource source = new Xoshiro256StarStarSource(42L);
+        LoadedDiceSampler[] samplers = {
+            new LoadedDiceSampler(100, Loading.LOADED_HIGH.getFaceWeights(1000, 3.0)),
+            new LoadedDiceSampler(20000, HIGH_D6),
+        };
+        for (LoadedDiceSampler sampler: samplers) {
+            DiceDistribution face = sampler.getFaceDistribution();
+            int numDice = sampler.getNumDice();
+            double mean = numDice * face.getMean();
+            double variance = numDice * face.getVariance();
+            final int SAMPLES = 20000;
+            double sum = 0.0;
+            double sumOfSquares = 0.0;
+            int[] totals = new int[SAMPLES];
+            sampler.fill(source, totals, 0, SAMPLES);
+            for (int total: totals) {
+                assertTrue(total >= numDice);
+                assertTrue(total <= numDice * sampler.getNumSides());
+                sum += total;
+                sumOfSquares += (double) total * total;
+            }
+            double sampleMean = sum / SAMPLES;
+            double sampleVariance = sumOfSquares / SAMPLES - sampleMean * sampleMean;
+            String label = sampler.getMethod() + " " + numDice + "d" + sampler.getNumSides();
+            assertEquals(label, mean, sampleMean, 5.0 * Math.sqrt(variance / SAMPLES));
+            assertEquals(label, variance, sampleVariance, 0.05 * variance);
+        }
+    }
+
+    /** Faces with no weight never come up. */
+    @Test
+    public void zeroWeightTest() {
+        RandomSource source = new Xoshiro256StarStarSource(7L);
+        double[] weights = { 0.0, 1.0, 0.0, 3.0 };
+        for (int numDice: new int[] { 1, 5, 20000 }) {
+            LoadedDiceSampler sampler = new LoadedDiceSampler(numDice, weights);
+            for (int i = 0; i < 1000; ++i) {
+                long total = sampler.sum(source);
+                // Every die is a 2 or a 4, so the total is even
+                assertEquals(0L, total % 2);
+                assertTrue(total >= 2L * numDice);
+                assertTrue(total <= 4L * numDice);
+            }
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void negativeWeightBad() {
+        new LoadedDiceSampler(1, new double[] { 1.0, -1.0 });
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void noWeightsBad() {
+        new LoadedDiceSampler(1, new double[0]);
+    }
+}
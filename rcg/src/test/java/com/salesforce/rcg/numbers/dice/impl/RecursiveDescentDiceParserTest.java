@@ -0,0 +1,93 @@
+package com.salesforce.rcg.numbers.dice.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.salesforce.rcg.numbers.dice.DiceDistribution;
+import com.salesforce.rcg.numbers.dice.DiceExpression;
+import com.salesforce.rcg.numbers.dice.DiceFactory;
+import com.salesforce.rcg.numbers.dice.DiceFactoryTest;
+import com.salesforce.rcg.numbers.dice.DiceParserType;
+import com.salesforce.rcg.numbers.dice.testutils.DiceTestUtils;
+import com.salesforce.rcg.numbers.dice.testutils.ExpectedDiceResult;
+
+public class RecursiveDescentDiceParserTest {
+    /** Both parsers build the same dice for every expression in the
+     * factory's table: the same kinds of dice, described the same way, with
+     * the same exact distributions.
+     */
+    @Test
+    public void sameAsAntlrTest() throws Exception {
+        DiceFactory antlr = new DiceFactory().setParserType(DiceParserType.ANTLR);
+        DiceFactory handWritten = new DiceFactory().setParserType(DiceParserType.RECURSIVE_DESCENT);
+        for (String testValue: DiceFactoryTest.GOOD_TEST_VALUES) {
+            String components[] = testValue.split("/");
+            String source = components[0];
+            DiceExpression expected = antlr.create(source);
+            DiceExpression actual = handWritten.create(source);
+            assertEquals(source, expected.getClass(), actual.getClass());
+            assertEquals(source, expected.toString(), actual.toString());
+            if (expected instanceof SimpleDie) {
+                SimpleDie expectedDie = (SimpleDie) expected;
+                SimpleDie actualDie = (SimpleDie) actual;
+                assertEquals(source, expectedDie.getNumDice(), actualDie.getNumDice());
+                assertEquals(source, expectedDie.getNumSides(), actualDie.getNumSides());
+                assertEquals(source, expectedDie.getAdder(), actualDie.getAdder());
+                assertEquals(source, expectedDie.getMultiplier(), actualDie.getMultiplier());
+                assertEquals(source, expectedDie.getChance(), actualDie.getChance(), 0.0);
+            } else {
+                assertEquals(source, ((CompositeDie) expected).size(), ((CompositeDie) actual).size());
+            }
+            DiceDistribution expectedDistribution = expected.getDistribution(10000);
+            DiceDistribution actualDistribution = actual.getDistribution(10000);
+            assertEquals(source, expectedDistribution.getMin(), actualDistribution.getMin());
+            assertArrayEquals(source, expectedDistribution.getProbabilities(), 
+                    actualDistribution.getProbabilities(), 0.0);
+            
+            DiceTestUtils.testRolls(actual, source, new ExpectedDiceResult(components[1]));
+        }
+    }
+    
+    @Test
+    public void parseTest() {
+        assertEquals(1, RecursiveDescentDiceParser.parse("3d6").size());
+        assertEquals(3, RecursiveDescentDiceParser.parse("chance: 5%, 1-4 & 7 AND d8 * 2").size());
+        
+        // Built dice are new each time
+        RecursiveDescentDiceParser.ParsedExpression parsed = RecursiveDescentDiceParser.parse("2d4 + 1");
+        DiceExpression first = parsed.build(null, DiceSumSampler.DEFAULT_ACCURACY);
+        DiceExpression second = parsed.build(null, DiceSumSampler.DEFAULT_ACCURACY);
+        assertTrue(first != second);
+        assertEquals("2d4 + 1", second.toString());
+    }
+    
+    /** The ANTLR parser quietly ignores what it can't parse; this one
+     * doesn't.
+     */
+    @Test
+    public void badExpressionsTest() {
+        String[] bad = { "", "   ", "3d", "d", "3d6 +", "3d6 7 8", "3d6 &", "& 3d6", "chance: 5%", 
+                "chance: 5%, ", "chance 5%, 1d6", "1d6 * ", "3d6 x", "1d6 $", "1 - - 6", "3.5" };
+        for (String source: bad) {
+            try {
+                RecursiveDescentDiceParser.parse(source);
+                throw new AssertionError("Parsed '" + source + "'");
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void factoryBad() {
+        new DiceFactory().setParserType(DiceParserType.RECURSIVE_DESCENT).create("3d6 blah");
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void nullBad() {
+        RecursiveDescentDiceParser.parse(null);
+    }
+}
@@ -3,11 +3,24 @@ package com.salesforce.rcg.numbers.dice.impl;
 import static com.salesforce.rcg.numbers.dice.testutils.DiceTestUtils.testRolls;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Random;
 
 import org.junit.Test;
 
+import com.salesforce.rcg.numbers.dice.DiceDistribution;
+import com.salesforce.rcg.numbers.dice.DiceModifiers.Loading;
+import com.salesforce.rcg.numbers.dice.DiceModifiers.Selection;
+import com.salesforce.rcg.numbers.dice.testutils.DiceTestUtils;
+
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.random.RandomSourceType;
+import com.salesforce.rcg.random.impl.Xoshiro256StarStarSource;
+import com.salesforce.rcg.util.AllocationTestUtils;
+
 
 public class SimpleDieTest {
 
@@ -29,7 +42,7 @@ public class SimpleDieTest {
         Random rng = new Random();
         SimpleDie instance2 = new SimpleDie(12, rng);
         assertEquals(12, instance2.getNumSides());
-        assertEquals(rng, instance2.rng);
+        assertEquals(rng, instance2.getRng());
         assertEquals("1d12", instance2.toString());
         testRolls(instance2, 1, 12, (1.0 + 12.0) / 2.0);
     }
@@ -104,4 +117,322 @@ public class SimpleDieTest {
         testRolls(instance, 25, 115, 70.0);
     }
     
+    /** Dice can use any RandomSource, and dice with identically-seeded
+     * sources roll the same values.
+     */
+    @Test
+    public void randomSourceTest() {
+        for (RandomSourceType type: RandomSourceType.values()) {
+            SimpleDie instance = new SimpleDie(3, 6);
+            RandomSource source = type.create();
+            instance.setRandomSource(source);
+            assertSame(source, instance.getRandomSource());
+            testRolls(instance, 3, 18, 10.5);
+            
+            if (type.isSeedable()) {
+                SimpleDie first = new SimpleDie(20, type.create(77L));
+                SimpleDie second = new SimpleDie(20, type.create(77L));
+                for (int i = 0; i < 100; ++i) {
+                    assertEquals(type.getName(), first.roll(), second.roll());
+                }
+            }
+        }
+    }
+    
+    /** Many dice are drawn from a few random numbers, not one per die. */
+    @Test
+    public void manyDiceDrawCountTest() {
+        long[] draws = new long[1];
+        RandomSource xoshiro = new Xoshiro256StarStarSource(2024L);
+        RandomSource counting = new RandomSource() {
+            @Override
+            public long nextLong() {
+                ++draws[0];
+                return(xoshiro.nextLong());
+            }
+            
+            @Override
+            public RandomSource split() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        SimpleDie instance = new SimpleDie(100, 6);
+        instance.setRandomSource(counting);
+        testRolls(instance, 100, 600, 350.0);
+        
+        draws[0] = 0;
+        for (int i = 0; i < 1000; ++i) {
+            instance.roll();
+        }
+        assertTrue("100d6 took " + draws[0] + " draws for 1000 rolls", draws[0] < 5200);
+        
+        // Changing the number of sides must not keep using the old batch size
+        instance.setNumSides(2);
+        testRolls(instance, 100, 200, 150.0);
+    }
+
+    /** Bulk rolls have the right distribution, for a single die, a few
+     * dice drawn together across rolls, dice too many to draw together, an
+     * adder and multiplier, a chance prefix, and no dice at all.
+     */
+    @Test
+    public void bulkRollTest() {
+        DiceTestUtils.testBulkRolls(new SimpleDie(1, 6), 60000);
+        DiceTestUtils.testBulkRolls(new SimpleDie(3, 6, 2), 60000);
+        DiceTestUtils.testBulkRolls(new SimpleDie(40, 6), 60000);
+        SimpleDie die = new SimpleDie(2, 7, -3);
+        die.setMultiplier(3);
+        DiceTestUtils.testBulkRolls(die, 60000);
+        die.setChance(0.3);
+        DiceTestUtils.testBulkRolls(die, 60000);
+        DiceTestUtils.testBulkRolls(SimpleDie.buildFromRange(4, 4), 100);
+        
+        // Huge numbers of dice have no distribution to check against, but
+        // still fill the array.
+        SimpleDie huge = new SimpleDie(100000, 20);
+        int[] rolls = new int[1000];
+        huge.roll(rolls, 0, rolls.length);
+        for (int roll: rolls) {
+            assertTrue(roll >= 100000 && roll <= 2000000);
+        }
+    }
+    
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void bulkRollRangeBad() {
+        new SimpleDie(6).roll(new int[10], 5, 6);
+    }
+
+    /** The statistics come from closed forms, and match the exact
+     * distribution wherever there is one.
+     */
+    @Test
+    public void statisticsTest() {
+        SimpleDie die = new SimpleDie(3, 6, 2);
+        assertEquals(5, die.getMin());
+        assertEquals(20, die.getMax());
+        assertEquals(12.5, die.getMean(), 1e-12);
+        assertEquals(8.75, die.getVariance(), 1e-12);
+        
+        die.setMultiplier(-2);
+        die.setChance(0.4);
+        assertEquals(-40, die.getMin());
+        assertEquals(0, die.getMax());
+        assertEquals(-10.0, die.getMean(), 1e-12);
+        DiceDistribution distribution = die.getDistribution(1000);
+        assertEquals(distribution.getMin(), die.getMin());
+        assertEquals(distribution.getMax(), die.getMax());
+        assertEquals(distribution.getMean(), die.getMean(), 1e-12);
+        assertEquals(distribution.getVariance(), die.getVariance(), 1e-9);
+        
+        // Far too many values for a distribution, but the closed forms don't care
+        SimpleDie huge = new SimpleDie(1000000, 100);
+        assertEquals(1000000, huge.getMin());
+        assertEquals(100000000, huge.getMax());
+        assertEquals(50500000.0, huge.getMean(), 1e-6);
+        assertEquals(1000000 * 9999.0 / 12.0, huge.getVariance(), 1e-3);
+        
+        SimpleDie constant = SimpleDie.buildFromRange(7, 7);
+        assertEquals(7.0, constant.getMean(), 0.0);
+        assertEquals(0.0, constant.getVariance(), 0.0);
+        assertEquals(1.0, constant.probabilityOf(7), 0.0);
+    }
+    
+    /** The distribution is only worked out again when the die changes. */
+    @Test
+    public void distributionCacheTest() {
+        SimpleDie die = new SimpleDie(4, 6);
+        DiceDistribution distribution = die.getDistribution(1000);
+        assertSame(distribution, die.getDistribution(1000));
+        assertSame(distribution, die.getDistribution(21));
+        assertEquals(null, die.getDistribution(20));
+        die.setAdder(1);
+        DiceDistribution changed = die.getDistribution(1000);
+        assertNotSame(distribution, changed);
+        assertEquals(5, changed.getMin());
+        
+        SimpleDie big = new SimpleDie(1, 5000);
+        assertEquals(null, big.getDistribution(100));
+        assertNotNull(big.getDistribution(5000));
+    }
+    
+    /** Loaded dice favor one end, and their statistics follow the face weights. */
+    @Test
+    public void loadedTest() {
+        SimpleDie die = new SimpleDie(3, 6);
+        die.setRandomSource(new Xoshiro256StarStarSource(1138L));
+        assertTrue(!die.isLoaded());
+        assertEquals(null, die.getFaceWeights());
+        
+        die.setLoading(Loading.LOADED_HIGH);
+        assertTrue(die.isLoaded());
+        assertEquals("3d6 loaded high", die.toString());
+        assertEquals(null, die.getSamplingMethod());
+        assertEquals(3, die.getMin());
+        assertEquals(18, die.getMax());
+        assertTrue(die.getMean() > 10.5);
+        DiceDistribution distribution = die.getDistribution(1000);
+        assertEquals(distribution.getMean(), die.getMean(), 1e-9);
+        assertEquals(distribution.getVariance(), die.getVariance(), 1e-9);
+        testRolls(die, 3, 18, die.getMean());
+        DiceTestUtils.testBulkRolls(die, 60000);
+        
+        // Stronger loading shifts the average further
+        double mean = die.getMean();
+        die.setLoading(Loading.LOADED_HIGH, 10.0);
+        assertEquals(10.0, die.getLoadingStrength(), 0.0);
+        assertTrue(die.getMean() > mean);
+        
+        die.setLoading(Loading.LOADED_LOW);
+        assertEquals("3d6 loaded low", die.toString());
+        assertEquals(21.0 - mean, die.getMean(), 1e-9);
+        
+        // Any weights at all
+        die.setFaceWeights(new double[] { 0.0, 0.0, 1.0, 1.0, 0.0, 0.0 });
+        assertEquals("3d6 loaded", die.toString());
+        assertEquals(9, die.getMin());
+        assertEquals(12, die.getMax());
+        assertEquals(10.5, die.getMean(), 1e-12);
+        testRolls(die, 9, 12, 10.5);
+        
+        die.setFaceWeights(null);
+        assertTrue(!die.isLoaded());
+        assertEquals("3d6", die.toString());
+        assertEquals(10.5, die.getMean(), 1e-12);
+    }
+    
+    /** Huge numbers of loaded dice roll without building a distribution. */
+    @Test
+    public void manyLoadedDiceTest() {
+        SimpleDie die = new SimpleDie(100000, 6);
+        die.setLoading(Loading.LOADED_LOW, 3.0);
+        die.setRandomSource(new Xoshiro256StarStarSource(2001L));
+        double sd = Math.sqrt(die.getVariance());
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(die.getMean(), die.roll(), 6.0 * sd);
+        }
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void faceWeightCountBad() {
+        new SimpleDie(6).setFaceWeights(new double[] { 1.0, 2.0 });
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void loadingStrengthBad() {
+        new SimpleDie(6).setLoading(Loading.LOADED_HIGH, 0.5);
+    }
+    
+    /** Kept dice add up only the dice kept, and know their exact statistics. */
+    @Test
+    public void keptTest() {
+        SimpleDie die = new SimpleDie(4, 6);
+        die.setRandomSource(new Xoshiro256StarStarSource(4242L));
+        assertTrue(!die.isPooled());
+        die.setSelection(Selection.KEEP_HIGHEST, 3);
+        assertTrue(die.isPooled());
+        assertEquals(3, die.getKeptDice());
+        assertEquals("4d6 keep highest 3", die.toString());
+        assertEquals(null, die.getSamplingMethod());
+        assertEquals(3, die.getMin());
+        assertEquals(18, die.getMax());
+        assertEquals(15869.0 / 1296.0, die.getMean(), 1e-12);
+        testRolls(die, 3, 18, die.getMean());
+        DiceTestUtils.testBulkRolls(die, 60000);
+        
+        // Dropping the lowest is the same thing
+        SimpleDie dropped = new SimpleDie(4, 6);
+        dropped.setSelection(Selection.DROP_LOWEST, 1);
+        assertEquals(die.getMean(), dropped.getMean(), 1e-12);
+        assertEquals(die.getVariance(), dropped.getVariance(), 1e-12);
+        
+        // Keeping every die, or more, is just rolling them
+        die.setSelection(Selection.KEEP_HIGHEST, 4);
+        assertTrue(!die.isPooled());
+        assertEquals(14.0, die.getMean(), 1e-12);
+        die.setSelection(Selection.DROP_HIGHEST, 10);
+        assertEquals(0, die.getKeptDice());
+        assertEquals(0, die.getMax());
+        assertEquals(0, die.roll());
+        
+        // The modifiers apply to the kept total
+        die.setSelection(Selection.KEEP_LOWEST, 2);
+        die.setAdder(1);
+        die.setMultiplier(2);
+        assertEquals(6, die.getMin());
+        assertEquals(26, die.getMax());
+        DiceDistribution distribution = die.getDistribution(1000);
+        assertEquals(distribution.getMean(), die.getMean(), 1e-12);
+        testRolls(die, 6, 26, die.getMean());
+        
+        die.setSelection(Selection.ALL, 3);
+        assertEquals(0, die.getSelectionCount());
+        assertEquals(4, die.getKeptDice());
+    }
+    
+    /** Kept dice can't come up on faces with no weight, even the worst ones. */
+    @Test
+    public void keptLoadedTest() {
+        SimpleDie die = new SimpleDie(4, 6);
+        die.setRandomSource(new Xoshiro256StarStarSource(1123L));
+        die.setFaceWeights(new double[] { 0.0, 0.0, 1.0, 1.0, 1.0, 1.0 });
+        die.setSelection(Selection.KEEP_HIGHEST, 3);
+        assertEquals(9, die.getMin());
+        assertEquals(18, die.getMax());
+        testRolls(die, 9, 18, die.getMean());
+        
+        die.setFaceWeights(new double[] { 1.0, 1.0, 1.0, 1.0, 0.0, 0.0 });
+        die.setSelection(Selection.KEEP_LOWEST, 3);
+        assertEquals(3, die.getMin());
+        assertEquals(12, die.getMax());
+        testRolls(die, 3, 12, die.getMean());
+    }
+    
+    /** Exploding dice have no highest roll, but a closed form for their average. */
+    @Test
+    public void explodingTest() {
+        SimpleDie die = new SimpleDie(3, 6, 1);
+        die.setRandomSource(new Xoshiro256StarStarSource(6174L));
+        die.setExploding(true);
+        assertEquals("3d6 exploding + 1", die.toString());
+        assertEquals(4, die.getMin());
+        assertEquals(Integer.MAX_VALUE, die.getMax());
+        assertEquals(3 * 4.2 + 1, die.getMean(), 1e-12);
+        assertEquals(null, die.getDistribution(1000000));
+        testRolls(die, 4, Integer.MAX_VALUE, die.getMean());
+        
+        die.setMultiplier(-1);
+        assertEquals(Integer.MIN_VALUE, die.getMin());
+        assertEquals(-4, die.getMax());
+        
+        // Exploding and kept dice have no exact statistics to speak of
+        die.setSelection(Selection.KEEP_HIGHEST, 2);
+        assertEquals("3d6 exploding keep highest 2 + 1 * -1", die.toString());
+        assertEquals(-3, die.getMax());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void negativeSelectionBad() {
+        new SimpleDie(4, 6).setSelection(Selection.KEEP_HIGHEST, -1);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void explodingForeverBad() {
+        SimpleDie die = new SimpleDie(2, 1);
+        die.setExploding(true);
+        die.roll();
+    }
+
+    /** Rolling allocates nothing, however the dice are drawn: one at a time,
+     * several to a random number, or by sampling the total.
+     */
+    @Test
+    public void allocationFreeTest() {
+        for (int numDice: new int[] {1, 3, 20, 1000}) {
+            SimpleDie die = new SimpleDie(numDice, 6, 2);
+            AllocationTestUtils.assertIntAllocationFree("SimpleDie.roll (" + die + ")", die::roll);
+        }
+        SimpleDie d20 = new SimpleDie(1, 20);
+        d20.setMultiplier(-1);
+        AllocationTestUtils.assertIntAllocationFree("SimpleDie.roll (" + d20 + ")", d20::roll);
+    }
 }
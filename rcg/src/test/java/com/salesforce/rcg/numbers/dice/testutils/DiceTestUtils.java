@@ -3,6 +3,10 @@ package com.salesforce.rcg.numbers.dice.testutils;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.IntSummaryStatistics;
+
+import com.salesforce.rcg.numbers.dice.CompiledDice;
+import com.salesforce.rcg.numbers.dice.DiceDistribution;
 import com.salesforce.rcg.numbers.dice.DiceExpression;
 
 /** Utilities for better automated testing of dice expressions.
@@ -102,6 +106,91 @@ public class DiceTestUtils {
             actualAverage,
             fuzz); // The actual average should be within 5% of the expected
         }
+        
+        // The same checks should hold for a parallel stream of rolls, where
+        // each part of the stream has its own random number generator.
+        IntSummaryStatistics streamed = testme.rolls(NUM_ROLLS).parallel().summaryStatistics();
+        assertEquals(NUM_ROLLS, streamed.getCount());
+        assertTrue("Streamed roll of " + testme + " should not be less than " + expectedMin,
+            streamed.getMin() >= expectedMin);
+        assertTrue("Streamed roll of " + testme + " should not be greater than " + expectedMax,
+            streamed.getMax() <= expectedMax);
+        double fuzz = (expectedMin >= 1) ? (expectedAverage * 0.05) : ((expectedMax - expectedMin) * 0.05);
+        assertEquals("Average streamed roll of " + testme, expectedAverage, streamed.getAverage(), fuzz);
+    }
+
+    /** Roll a die many times, and validate that every roll is in range and
+     * that the rolls are spread out as much as expected. This is meant for
+     * dice whose totals are drawn directly rather than rolled die by die,
+     * where a bad approximation could stray out of range or be too narrow
+     * or wide.
+     * 
+     * @param testme The die to test
+     * @param expectedMin The lowest value the die can roll
+     * @param expectedMax The highest value the die can roll
+     * @param expectedAverage The average roll
+     * @param expectedVariance The variance of the rolls
+     * @param numRolls How many times to roll
+     */
+    public static void testRollSpread(DiceExpression testme,
+            int expectedMin,
+            int expectedMax,
+            double expectedAverage,
+            double expectedVariance,
+            int numRolls) {
+        double sum = 0.0;
+        double sumOfSquares = 0.0;
+        for (int i = 0; i < numRolls; ++i) {
+            int value = testme.roll();
+            if ((value < expectedMin) || (value > expectedMax)) {
+                throw new AssertionError("Roll of " + testme + " gave " + value 
+                        + ", outside the range " + expectedMin + "-" + expectedMax);
+            }
+            double offset = value - expectedAverage;
+            sum += offset;
+            sumOfSquares += offset * offset;
+        }
+        double actualAverage = expectedAverage + sum / numRolls;
+        double actualVariance = sumOfSquares / numRolls - (sum / numRolls) * (sum / numRolls);
+        
+        // The average should be within 5 standard errors, and the variance
+        // within 10%.
+        double standardError = Math.sqrt(expectedVariance / numRolls);
+        assertEquals("Average roll of " + testme, expectedAverage, actualAverage, 5.0 * standardError + 1e-9);
+        assertEquals("Variance of rolls of " + testme, expectedVariance, actualVariance, expectedVariance * 0.1 + 1e-9);
     }
 
+    /** Test rolling a dice expression in bulk, with
+     * {@link DiceExpression#roll(int[], int, int)}: only the requested part
+     * of the array is filled, and the number of times each value comes up
+     * matches the expression's exact distribution (within 5 standard
+     * deviations, plus a little for the rarest values).
+     * 
+     * @param testme The expression to test. It must have a distribution.
+     * @param numRolls How many times to roll
+     */
+    public static void testBulkRolls(DiceExpression testme, int numRolls) {
+        DiceDistribution distribution = testme.getDistribution(CompiledDice.DEFAULT_MAX_SUPPORT);
+        int[] rolls = new int[numRolls + 2];
+        rolls[0] = Integer.MIN_VALUE;
+        rolls[numRolls + 1] = Integer.MIN_VALUE;
+        testme.roll(rolls, 1, numRolls);
+        assertEquals(Integer.MIN_VALUE, rolls[0]);
+        assertEquals(Integer.MIN_VALUE, rolls[numRolls + 1]);
+        
+        long[] counts = new long[distribution.getSupportSize()];
+        for (int i = 1; i <= numRolls; ++i) {
+            int value = rolls[i];
+            if ((value < distribution.getMin()) || (value > distribution.getMax())) {
+                throw new AssertionError("Bulk roll of " + testme + " gave " + value 
+                        + ", outside the range " + distribution.getMin() + "-" + distribution.getMax());
+            }
+            ++counts[value - distribution.getMin()];
+        }
+        for (int i = 0; i < counts.length; ++i) {
+            double expected = distribution.getProbabilities()[i] * numRolls;
+            assertEquals("Bulk rolls of " + testme + " giving " + (distribution.getMin() + i), 
+                    expected, counts[i], 5.0 * Math.sqrt(expected) + 2.0);
+        }
+    }
 }
@@ -0,0 +1,93 @@
+package com.salesforce.rcg.random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.salesforce.rcg.random.impl.Xoshiro256StarStarSource;
+
+public class BinomialSamplerTest {
+    @Test
+    public void edgeCasesTest() {
+        RandomSource source = new Xoshiro256StarStarSource(1L);
+        assertEquals(0L, BinomialSampler.sample(source, 0, 0.5));
+        assertEquals(0L, BinomialSampler.sample(source, 100, 0.0));
+        assertEquals(100L, BinomialSampler.sample(source, 100, 1.0));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void negativeTrialsBad() {
+        BinomialSampler.sample(new Xoshiro256StarStarSource(1L), -1, 0.5);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void probabilityBad() {
+        BinomialSampler.sample(new Xoshiro256StarStarSource(1L), 10, Double.NaN);
+    }
+
+    /** The mean and variance match n*p and n*p*(1-p), for both the
+     * inversion and BTRD ranges and for p on both sides of 1/2.
+     */
+    @Test
+    public void momentsTest() {
+        RandomSource source = new Xoshiro256StarStarSource(20240601L);
+        long[] trials = { 20, 100, 1000, 1000, 1_000_000, 1L << 40 };
+        double[] chances = { 0.1, 0.3, 0.9, 0.004, 0.05, 0.5 };
+        final int SAMPLES = 20000;
+        for (int t = 0; t < trials.length; ++t) {
+            long n = trials[t];
+            double p = chances[t];
+            double mean = n * p;
+            double variance = n * p * (1.0 - p);
+            double sum = 0.0;
+            double sumOfSquares = 0.0;
+            for (int i = 0; i < SAMPLES; ++i) {
+                long k = BinomialSampler.sample(source, n, p);
+                assertTrue(k >= 0 && k <= n);
+                double offset = k - mean;
+                sum += offset;
+                sumOfSquares += offset * offset;
+            }
+            String label = "n=" + n + ", p=" + p;
+            assertEquals(label, 0.0, sum / SAMPLES, 5.0 * Math.sqrt(variance / SAMPLES));
+            assertEquals(label, variance, sumOfSquares / SAMPLES, variance * 0.05);
+        }
+    }
+
+    /** Compare the counts of each result against the exact distribution. */
+    @Test
+    public void exactDistributionTest() {
+        RandomSource source = new Xoshiro256StarStarSource(77L);
+        int n = 40;
+        double p = 0.4;
+        final int SAMPLES = 200000;
+        long[] counts = new long[n + 1];
+        for (int i = 0; i < SAMPLES; ++i) {
+            ++counts[(int) BinomialSampler.sample(source, n, p)];
+        }
+        double probability = Math.pow(1.0 - p, n);
+        for (int k = 0; k <= n; ++k) {
+            double expected = probability * SAMPLES;
+            assertEquals("k=" + k, expected, counts[k], 5.0 * Math.sqrt(expected) + 2.0);
+            probability *= (double) (n - k) / (k + 1) * p / (1.0 - p);
+        }
+    }
+
+    /** Huge numbers of trials with tiny chances, where 1 - p can't be
+     * represented exactly, still give the right average, quickly.
+     */
+    @Test(timeout=10000)
+    public void tinyProbabilityTest() {
+        RandomSource source = new Xoshiro256StarStarSource(11L);
+        long n = 1L << 50;
+        double p = 3.0 / n;
+        final int SAMPLES = 20000;
+        double sum = 0.0;
+        for (int i = 0; i < SAMPLES; ++i) {
+            sum += BinomialSampler.sample(source, n, p);
+        }
+        assertEquals(3.0, sum / SAMPLES, 5.0 * Math.sqrt(3.0 / SAMPLES));
+        assertEquals(0L, BinomialSampler.sample(source, n, 1e-30));
+    }
+}
@@ -0,0 +1,137 @@
+package com.salesforce.rcg.random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.salesforce.rcg.random.impl.Xoshiro256StarStarSource;
+
+public class BoundedIntBatchTest {
+    /** A source that counts how many numbers are drawn from it. */
+    static class CountingSource implements RandomSource {
+        final RandomSource source;
+        long draws = 0;
+
+        CountingSource(RandomSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public long nextLong() {
+            ++draws;
+            return(source.nextLong());
+        }
+
+        @Override
+        public RandomSource split() {
+            return(new CountingSource(source.split()));
+        }
+    }
+
+    @Test
+    public void perDrawTest() {
+        assertEquals(21, new BoundedIntBatch(6).getPerDraw());
+        assertEquals(64, new BoundedIntBatch(2).getPerDraw());
+        assertEquals(10, new BoundedIntBatch(64).getPerDraw());
+        assertEquals(16, new BoundedIntBatch(10).getPerDraw());
+        assertEquals(1, new BoundedIntBatch(Integer.MAX_VALUE).getPerDraw());
+        assertEquals(2, new BoundedIntBatch(1 << 28).getPerDraw());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void zeroBoundBad() {
+        new BoundedIntBatch(0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void nextIntZeroBoundBad() {
+        BoundedIntBatch.nextInt(new Xoshiro256StarStarSource(1L), 0);
+    }
+
+    @Test
+    public void multiplyHighTest() {
+        assertEquals(0L, BoundedIntBatch.multiplyHigh(0x7fffffffffffffffL, 1));
+        assertEquals(5L, BoundedIntBatch.multiplyHigh(-1L, 6));
+        assertEquals(3L, BoundedIntBatch.multiplyHigh(0x8000000000000000L, 6));
+        assertEquals(0x7ffffffeL, BoundedIntBatch.multiplyHigh(-1L, Integer.MAX_VALUE));
+    }
+
+    /** Every value should be in range and they should be spread evenly,
+     * including at the edges of each batch.
+     */
+    @Test
+    public void fillDistributionTest() {
+        RandomSource source = new Xoshiro256StarStarSource(4242L);
+        for (int bound: new int[] { 1, 2, 3, 6, 7, 10, 16, 100, 1000003 }) {
+            BoundedIntBatch batch = new BoundedIntBatch(bound);
+            int buckets = Math.min(bound, 100);
+            int[] counts = new int[buckets];
+            int[] values = new int[1000];
+            int rounds = 200;
+            for (int round = 0; round < rounds; ++round) {
+                batch.fill(source, values, 0, values.length);
+                for (int value: values) {
+                    assertTrue(value >= 0 && value < bound);
+                    // Buckets of (nearly) equal size
+                    ++counts[(int) ((long) value * buckets / bound)];
+                }
+            }
+            double expected = rounds * values.length / (double) buckets;
+            for (int count: counts) {
+                assertEquals("bound " + bound, expected, count, 5.0 * Math.sqrt(expected) + 1.0);
+            }
+        }
+    }
+
+    @Test
+    public void fillRangeTest() {
+        BoundedIntBatch batch = new BoundedIntBatch(5);
+        int[] values = new int[10];
+        java.util.Arrays.fill(values, -1);
+        batch.fill(new Xoshiro256StarStarSource(1L), values, 3, 4);
+        for (int i = 0; i < values.length; ++i) {
+            assertEquals(i >= 3 && i < 7, values[i] >= 0);
+        }
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void fillRangeBad() {
+        new BoundedIntBatch(5).fill(new Xoshiro256StarStarSource(1L), new int[10], 8, 3);
+    }
+
+    /** 100d6 takes 5 random numbers, plus the occasional rejection. */
+    @Test
+    public void sumDrawCountTest() {
+        CountingSource source = new CountingSource(new Xoshiro256StarStarSource(31337L));
+        BoundedIntBatch batch = new BoundedIntBatch(6);
+        int rolls = 10000;
+        long total = 0;
+        for (int i = 0; i < rolls; ++i) {
+            long sum = batch.sum(source, 100);
+            assertTrue(sum >= 0 && sum <= 500);
+            total += sum;
+        }
+        assertTrue("Too many draws: " + source.draws, source.draws < rolls * 5.1);
+        // Each die averages 2.5 (zero-based)
+        assertEquals(250.0, total / (double) rolls, 0.5);
+    }
+
+    @Test
+    public void nextIntTest() {
+        RandomSource source = new Xoshiro256StarStarSource(77L);
+        int[] counts = new int[7];
+        for (int i = 0; i < 70000; ++i) {
+            ++counts[BoundedIntBatch.nextInt(source, 7)];
+        }
+        for (int count: counts) {
+            assertEquals(10000.0, count, 500.0);
+        }
+        // A bound so large that the slow check is often needed
+        int big = (1 << 30) + 1;
+        for (int i = 0; i < 1000; ++i) {
+            int value = BoundedIntBatch.nextInt(source, big);
+            assertTrue(value >= 0 && value < big);
+        }
+    }
+}
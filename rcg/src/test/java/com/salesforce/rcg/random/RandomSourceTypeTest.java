@@ -0,0 +1,102 @@
+package com.salesforce.rcg.random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RandomSourceTypeTest {
+    @Test
+    public void fromTest() {
+        for (RandomSourceType type: RandomSourceType.values()) {
+            assertSame(type, RandomSourceType.from(type.getName()));
+            assertSame(type, RandomSourceType.from(type.getName().toUpperCase()));
+        }
+        assertSame(RandomSourceType.XOSHIRO256, RandomSourceType.from("xoshiro256**"));
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void fromUnknownBad() {
+        RandomSourceType.from("dev-urandom");
+    }
+    
+    /** Sources created from the same seed give the same numbers. */
+    @Test
+    public void seededTest() {
+        for (RandomSourceType type: RandomSourceType.values()) {
+            if (!type.isSeedable()) {
+                continue;
+            }
+            RandomSource a = type.create(98765L);
+            RandomSource b = type.create(98765L);
+            RandomSource c = type.create(98766L);
+            boolean different = false;
+            for (int i = 0; i < 100; ++i) {
+                long fromA = a.nextLong();
+                assertEquals(type.getName(), fromA, b.nextLong());
+                different |= (fromA != c.nextLong());
+            }
+            assertTrue(type.getName() + " ignores its seed", different);
+        }
+    }
+    
+    @Test(expected=UnsupportedOperationException.class)
+    public void seededThreadLocalBad() {
+        assertFalse(RandomSourceType.THREAD_LOCAL.isSeedable());
+        RandomSourceType.THREAD_LOCAL.create(1L);
+    }
+    
+    /** Every kind of source should give values in range, spread evenly, from
+     * each of its methods - and so should a source split from it.
+     */
+    @Test
+    public void distributionTest() {
+        for (RandomSourceType type: RandomSourceType.values()) {
+            RandomSource source = type.create();
+            checkDistribution(type.getName(), source);
+            checkDistribution(type.getName() + " (split)", source.split());
+            assertNotNull(source.asRandom());
+        }
+    }
+    
+    private void checkDistribution(String name, RandomSource source) {
+        final int NUM_DRAWS = 60_000;
+        
+        // A bound that's a power of two and one that isn't
+        for (int bound: new int[] { 8, 6 }) {
+            int[] counts = new int[bound];
+            for (int i = 0; i < NUM_DRAWS; ++i) {
+                ++counts[source.nextInt(bound)];
+            }
+            for (int count: counts) {
+                assertEquals(name + " nextInt(" + bound + ")", 1.0 / bound, count / (double) NUM_DRAWS, 0.01);
+            }
+        }
+        
+        double sum = 0.0;
+        int trues = 0;
+        int highBits = 0;
+        for (int i = 0; i < NUM_DRAWS; ++i) {
+            double d = source.nextDouble();
+            assertTrue(name + " nextDouble out of range: " + d, (d >= 0.0) && (d < 1.0));
+            sum += d;
+            if (source.nextBoolean()) {
+                ++trues;
+            }
+            if (source.nextInt() < 0) {
+                ++highBits;
+            }
+        }
+        assertEquals(name + " nextDouble average", 0.5, sum / NUM_DRAWS, 0.01);
+        assertEquals(name + " nextBoolean", 0.5, trues / (double) NUM_DRAWS, 0.01);
+        assertEquals(name + " nextInt sign bit", 0.5, highBits / (double) NUM_DRAWS, 0.01);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void zeroBoundBad() {
+        RandomSourceType.XOSHIRO256.create().nextInt(0);
+    }
+}
@@ -0,0 +1,32 @@
+package com.salesforce.rcg.random.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+public class Pcg32SourceTest {
+    /** The first outputs for pcg32_srandom(42, 54), from the reference
+     * implementation's demo program.
+     */
+    @Test
+    public void referenceTest() {
+        Pcg32Source source = new Pcg32Source(42L, 54L);
+        assertEquals(0xa15c02b7, source.nextInt());
+        assertEquals(0x7b47f409, source.nextInt());
+        assertEquals(0xba1d3330, source.nextInt());
+    }
+    
+    /** A long is two outputs, high half first. */
+    @Test
+    public void nextLongTest() {
+        Pcg32Source source = new Pcg32Source(42L, 54L);
+        assertEquals(0xa15c02b77b47f409L, source.nextLong());
+    }
+    
+    /** The same seed on different streams gives different numbers. */
+    @Test
+    public void streamTest() {
+        assertNotEquals(new Pcg32Source(42L, 54L).nextLong(), new Pcg32Source(42L, 55L).nextLong());
+    }
+}
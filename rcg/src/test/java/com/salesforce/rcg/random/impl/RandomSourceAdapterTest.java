@@ -0,0 +1,49 @@
+package com.salesforce.rcg.random.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.salesforce.rcg.random.RandomSource;
+
+public class RandomSourceAdapterTest {
+    /** The adapter gives the same numbers as the source behind it. */
+    @Test
+    public void sameSequenceTest() {
+        RandomSource expected = new Xoshiro256StarStarSource(42L);
+        Random actual = new Xoshiro256StarStarSource(42L).asRandom();
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(expected.nextLong(), actual.nextLong());
+            assertEquals(expected.nextInt(17), actual.nextInt(17));
+            assertEquals(expected.nextDouble(), actual.nextDouble(), 0.0);
+        }
+    }
+    
+    /** Methods that Random builds from next(bits) still work. */
+    @Test
+    public void inheritedMethodsTest() {
+        Random rng = new RandomSourceAdapter(new SplitMix64Source(7L));
+        for (int i = 0; i < 1000; ++i) {
+            float f = rng.nextFloat();
+            assertTrue(f >= 0.0f && f < 1.0f);
+        }
+        byte[] bytes = new byte[64];
+        rng.nextBytes(bytes);
+    }
+    
+    /** Sources built on a Random hand back the Random itself. */
+    @Test
+    public void unwrapTest() {
+        Random random = new Random();
+        assertSame(random, new JavaRandomSource(random).asRandom());
+    }
+    
+    @Test(expected=UnsupportedOperationException.class)
+    public void setSeedBad() {
+        new RandomSourceAdapter(new SplitMix64Source()).setSeed(1L);
+    }
+}
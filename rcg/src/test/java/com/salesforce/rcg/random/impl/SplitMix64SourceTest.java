@@ -0,0 +1,23 @@
+package com.salesforce.rcg.random.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+public class SplitMix64SourceTest {
+    /** The first outputs for seed 1234567, from the reference implementation. */
+    @Test
+    public void referenceTest() {
+        SplitMix64Source source = new SplitMix64Source(1234567L);
+        assertEquals(6457827717110365317L, source.nextLong());
+        assertEquals(3203168211198807973L, source.nextLong());
+        assertEquals(0x883ebce5a3f27c77L, source.nextLong()); // 9817491932198370423
+    }
+    
+    @Test
+    public void newSeedTest() {
+        assertNotEquals(SplitMix64Source.newSeed(), SplitMix64Source.newSeed());
+        assertNotEquals(new SplitMix64Source().nextLong(), new SplitMix64Source().nextLong());
+    }
+}
@@ -0,0 +1,38 @@
+package com.salesforce.rcg.random.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+public class Xoshiro256StarStarSourceTest {
+    /** The first outputs from the state {1, 2, 3, 4}, from the reference
+     * implementation.
+     */
+    @Test
+    public void referenceTest() {
+        Xoshiro256StarStarSource source = new Xoshiro256StarStarSource(0L);
+        source.s0 = 1L;
+        source.s1 = 2L;
+        source.s2 = 3L;
+        source.s3 = 4L;
+        assertEquals(11520L, source.nextLong());
+        assertEquals(0L, source.nextLong());
+        assertEquals(1509978240L, source.nextLong());
+        assertEquals(1215971899390074240L, source.nextLong());
+    }
+    
+    /** Seeding goes through SplitMix64, so even a seed of zero gives a
+     * usable state.
+     */
+    @Test
+    public void zeroSeedTest() {
+        Xoshiro256StarStarSource source = new Xoshiro256StarStarSource(0L);
+        SplitMix64Source expected = new SplitMix64Source(0L);
+        assertEquals(expected.nextLong(), source.s0);
+        assertEquals(expected.nextLong(), source.s1);
+        assertEquals(expected.nextLong(), source.s2);
+        assertEquals(expected.nextLong(), source.s3);
+        assertNotEquals(source.nextLong(), source.nextLong());
+    }
+}
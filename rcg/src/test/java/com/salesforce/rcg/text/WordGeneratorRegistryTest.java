@@ -3,18 +3,30 @@ package com.salesforce.rcg.text;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.json.JSONObject;
 import org.junit.Test;
 
+import com.salesforce.rcg.metrics.MetricsSnapshot;
+import com.salesforce.rcg.random.RandomSourceType;
+import com.salesforce.rcg.random.impl.JavaRandomSource;
+import com.salesforce.rcg.random.impl.Pcg32Source;
+import com.salesforce.rcg.random.impl.ThreadLocalRandomSource;
 import com.salesforce.rcg.text.impl.WordGeneratorTestUtils;
 import com.salesforce.rcg.util.CounterMap;
 import com.salesforce.rcg.util.Pair;
@@ -769,4 +781,117 @@ public class WordGeneratorRegistryTest {
         assertFalse(WordGeneratorRegistry.isDisabled(disabledFalseB));
     }
 
+    
+    /** The registry can put every generator in the per-thread mode, and a
+     * generator's JSON can pick its own kind of random source.
+     */
+    @Test
+    public void randomSourceTypeTest() throws Exception {
+        WordGeneratorRegistry registry = new WordGeneratorRegistry();
+        assertNull(registry.getRandomSourceType());
+        registry.loadGeneratorsFromJson(SOURCE_MULTI_WG);
+        WordGenerator roadnames = registry.getGeneratorByName("roadnames");
+        assertTrue(roadnames.getRandomSource() instanceof JavaRandomSource);
+        
+        // Existing generators switch over...
+        registry.setRandomSourceType(RandomSourceType.THREAD_LOCAL);
+        assertSame(ThreadLocalRandomSource.INSTANCE, roadnames.getRandomSource());
+        
+        // ...and so do new ones, unless they ask for something else.
+        registry.loadUnweightedWordGeneratorFromList("colors", Arrays.asList("red", "green", "blue"));
+        assertSame(ThreadLocalRandomSource.INSTANCE, registry.getGeneratorByName("colors").getRandomSource());
+        registry.loadGeneratorsFromJson("{ \"generators\": [ { \"name\": \"pcg\", \"random-source\": \"pcg32\", "
+                + "\"weights\": \"unweighted\", \"wordlist\": [ \"one\", \"two\" ] } ] }");
+        WordGenerator pcg = registry.getGeneratorByName("pcg");
+        assertTrue(pcg.getRandomSource() instanceof Pcg32Source);
+        
+        WordGeneratorTestUtils.testUnweightedGenerator(registry.getGeneratorByName("colors"), 
+                TextCasing.UNMODIFIED, false, "red", "green", "blue");
+        WordGeneratorTestUtils.testUnweightedGenerator(pcg, TextCasing.UNMODIFIED, false, "one", "two");
+    }
+    
+    /** Metrics are off until the registry turns them on, for the generators
+     * it has and the ones it loads later; the snapshot has every generator
+     * that keeps them.
+     */
+    @Test
+    public void metricsTest() throws Exception {
+        WordGeneratorRegistry registry = new WordGeneratorRegistry();
+        registry.loadGeneratorsFromJson(SOURCE_MULTI_WG);
+        WordGenerator roadnames = registry.getGeneratorByName("roadnames");
+        roadnames.generateWord();
+        assertFalse(registry.isMetricsEnabled());
+        assertNull(roadnames.getMetrics());
+        assertTrue(registry.getMetricsSnapshot().isEmpty());
+        
+        registry.setMetricsEnabled(true);
+        registry.loadUnweightedWordGeneratorFromList("colors", Arrays.asList("red", "green", "blue"));
+        for (int i = 0; i < 1000; ++i) {
+            roadnames.generateWord();
+        }
+        registry.getGeneratorByName("colors").generateWords(new String[250], 0, 250);
+        registry.getGeneratorByName("single").generateWord();
+        
+        Map<String, MetricsSnapshot> snapshot = registry.getMetricsSnapshot();
+        assertEquals(Arrays.asList("colors", "roadnames", "single"), new ArrayList<>(snapshot.keySet()));
+        assertEquals(1000L, snapshot.get("roadnames").getGenerated());
+        assertTrue(snapshot.get("roadnames").getProbes() >= 1000L);
+        // Its weights were compiled before metrics were turned on
+        assertEquals(0L, snapshot.get("roadnames").getRecompiles());
+        assertEquals(250L, snapshot.get("colors").getGenerated());
+        assertEquals(1L, snapshot.get("single").getGenerated());
+        
+        registry.setMetricsEnabled(false);
+        assertNull(roadnames.getMetrics());
+        assertTrue(registry.getMetricsSnapshot().isEmpty());
+    }
+    
+    /** The registry and its generators are published over JMX, including
+     * generators loaded after publishing, and taken down again.
+     */
+    @Test
+    public void mbeanTest() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        WordGeneratorRegistry registry = new WordGeneratorRegistry();
+        registry.loadGeneratorsFromJson(SOURCE_MULTI_WG);
+        registry.registerMBeans("mbeanTest");
+        assertEquals("mbeanTest", registry.getMBeanName());
+        
+        ObjectName registryName = WordGeneratorRegistry.registryObjectName("mbeanTest");
+        ObjectName roadnamesName = WordGeneratorRegistry.generatorObjectName("mbeanTest", "roadnames");
+        try {
+            assertEquals(2, server.getAttribute(registryName, "NumGenerators"));
+            assertEquals(0L, server.getAttribute(registryName, "FilesLoaded"));
+            assertEquals("weighted", server.getAttribute(roadnamesName, "Type"));
+            assertEquals(10L, server.getAttribute(roadnamesName, "NumWords"));
+            assertTrue((Long) server.getAttribute(roadnamesName, "MemoryEstimate") > 10L * 40L);
+            
+            // Turn metrics on through JMX, and generate some words
+            server.setAttribute(registryName, new Attribute("MetricsEnabled", true));
+            WordGenerator roadnames = registry.getGeneratorByName("roadnames");
+            for (int i = 0; i < 500; ++i) {
+                roadnames.generateWord();
+            }
+            assertEquals(500L, server.getAttribute(roadnamesName, "WordsGenerated"));
+            assertTrue((Long) server.getAttribute(roadnamesName, "LastCompileTime") > 0L);
+            assertEquals(500L, server.getAttribute(registryName, "TotalWordsGenerated"));
+            
+            // Generators loaded later are published too
+            registry.loadUnweightedWordGeneratorFromResource("resource", "data/wordlists/Wordlist-Unweighted.csv",
+                    null, true, null);
+            ObjectName resourceName = WordGeneratorRegistry.generatorObjectName("mbeanTest", "resource");
+            assertTrue(server.isRegistered(resourceName));
+            assertEquals(6L, server.getAttribute(resourceName, "NumWords"));
+            assertEquals(1L, server.getAttribute(registryName, "FilesLoaded"));
+            assertEquals(7L, server.getAttribute(registryName, "LinesLoaded"));
+            assertEquals(156L, server.getAttribute(registryName, "CharactersLoaded"));
+            assertEquals(Arrays.asList("resource", "roadnames", "single"), 
+                    Arrays.asList((String[]) server.getAttribute(registryName, "GeneratorNames")));
+        } finally {
+            registry.unregisterMBeans();
+        }
+        assertFalse(server.isRegistered(registryName));
+        assertFalse(server.isRegistered(roadnamesName));
+        assertNull(registry.getMBeanName());
+    }
 }
@@ -0,0 +1,203 @@
+package com.salesforce.rcg.text.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.salesforce.rcg.text.WordGeneratorType;
+import com.salesforce.rcg.util.CounterMap;
+
+public class DynamicWeightedWordGeneratorTest {
+
+    @Test
+    public void emptyTest() {
+        WordGeneratorTestUtils.testEmpty(new DynamicWeightedWordGenerator("emptyTest"), "emptyTest");
+    }
+
+    @Test
+    public void setRngTest() {
+        WordGeneratorTestUtils.testSetRng(new DynamicWeightedWordGenerator("rngTest"));
+    }
+
+    @Test
+    public void typeTest() {
+        assertEquals(WordGeneratorType.DYNAMIC, new DynamicWeightedWordGenerator().getType());
+    }
+
+    /** If the total weight of items in the generator is zero, generateWord
+     * should return null.
+     */
+    @Test
+    public void weightZeroTest() {
+        DynamicWeightedWordGenerator testMe = new DynamicWeightedWordGenerator("weightZeroTest");
+        testMe.addWord("zero", 0.0);
+        testMe.addWord("zip", 0.0);
+        assertEquals(2, testMe.getNumWords());
+        assertNull(testMe.generateWord());
+    }
+
+    @Test(expected=java.lang.IllegalArgumentException.class)
+    public void negativeWeightsBad() {
+        new DynamicWeightedWordGenerator("negativeWeightsBad").setWeight("impossible", -1.0);
+    }
+
+    @Test(expected=java.lang.IllegalArgumentException.class)
+    public void infiniteWeightsBad() {
+        new DynamicWeightedWordGenerator("infiniteWeightsBad").setWeight("impossible", Double.POSITIVE_INFINITY);
+    }
+
+    /** Adding to a word's weight can't make it infinite, and a rejected
+     * weight leaves the generator as it was.
+     */
+    @Test
+    public void infiniteSumTest() {
+        DynamicWeightedWordGenerator testMe = new DynamicWeightedWordGenerator("infiniteSum");
+        testMe.setWeight("a", 1.0);
+        testMe.setWeight("b", Double.MAX_VALUE);
+        try {
+            testMe.addWord("b", Double.MAX_VALUE);
+            fail("Adding to a weight can't make it infinite");
+        } catch (IllegalArgumentException expected) {
+            // Good
+        }
+        try {
+            testMe.setWeight("a", Double.POSITIVE_INFINITY);
+            fail("Weights can't be infinite");
+        } catch (IllegalArgumentException expected) {
+            // Good
+        }
+        assertEquals(1.0, testMe.getWeight("a"), 0.0);
+        assertEquals(Double.MAX_VALUE, testMe.getWeight("b"), 0.0);
+        assertEquals(Double.MAX_VALUE, testMe.getTotalWeight(), 0.0);
+        assertTrue(testMe.generateWord() != null);
+    }
+
+    @Test
+    public void threeItemTest() {
+        DynamicWeightedWordGenerator testMe = new DynamicWeightedWordGenerator("threeItemTest");
+        testMe.addWord("low", 5.0);
+        testMe.addWord("medium", 25.0);
+        testMe.addWord("high", 70.0);
+
+        CounterMap<String> expected = new CounterMap<>();
+        expected.add("low", 5);
+        expected.add("medium", 25);
+        expected.add("high", 70);
+
+        WordGeneratorTestUtils.testWeightedGenerator(testMe, expected);
+    }
+
+    /** Adding a word that's already present adds to its weight. */
+    @Test
+    public void addExistingWordTest() {
+        DynamicWeightedWordGenerator testMe = new DynamicWeightedWordGenerator("addExisting");
+        testMe.addWord("one");
+        testMe.addWord("three");
+        testMe.addWord("three", 2.0);
+        assertEquals(2, testMe.getNumWords());
+        assertEquals(3.0, testMe.getWeight("three"), 0.0);
+        assertEquals(4.0, testMe.getTotalWeight(), 0.0);
+
+        CounterMap<String> expected = new CounterMap<>();
+        expected.add("one", 1);
+        expected.add("three", 3);
+        WordGeneratorTestUtils.testWeightedGenerator(testMe, expected);
+    }
+
+    /** Reweighting and removing words changes what gets generated. */
+    @Test
+    public void reweightAndRemoveTest() {
+        DynamicWeightedWordGenerator testMe = new DynamicWeightedWordGenerator("reweight");
+        testMe.addWord("a", 10.0);
+        testMe.addWord("b", 10.0);
+        testMe.addWord("c", 10.0);
+
+        testMe.setWeight("a", 30.0);
+        testMe.setWeight("c", 0.0);
+        // Setting the weight of a new word adds it.
+        testMe.setWeight("d", 20.0);
+        assertEquals(0.0, testMe.getWeight("c"), 0.0);
+        assertEquals(4, testMe.getNumWords());
+
+        CounterMap<String> expected = new CounterMap<>();
+        expected.add("a", 3);
+        expected.add("b", 1);
+        expected.add("d", 2);
+        WordGeneratorTestUtils.testWeightedGenerator(testMe, expected);
+
+        assertTrue(testMe.removeWord("a"));
+        assertFalse(testMe.removeWord("a"));
+        assertFalse(testMe.removeWord("never-added"));
+        assertEquals(0.0, testMe.getWeight("a"), 0.0);
+        assertEquals(3, testMe.getNumWords());
+
+        // The slot "a" used gets reused by the next new word.
+        testMe.addWord("e", 10.0);
+
+        expected = new CounterMap<>();
+        expected.add("b", 1);
+        expected.add("d", 2);
+        expected.add("e", 1);
+        WordGeneratorTestUtils.testWeightedGenerator(testMe, expected);
+    }
+
+    /** Lots of changes, enough to grow the tree several times and rebuild it
+     * more than once, should leave the tree in agreement with the weights.
+     */
+    @Test
+    public void manyUpdatesTest() {
+        DynamicWeightedWordGenerator testMe = new DynamicWeightedWordGenerator("manyUpdates");
+        for (int i = 0; i < 5000; ++i) {
+            testMe.addWord("word-" + i, 0.1 * (i % 7));
+        }
+        for (int round = 0; round < 5; ++round) {
+            for (int i = 0; i < 5000; ++i) {
+                testMe.setWeight("word-" + i, 0.3 * ((i + round) % 11));
+            }
+        }
+        for (int i = 10; i < 5000; ++i) {
+            testMe.removeWord("word-" + i);
+        }
+
+        // What's left are words 0-9, with weights 0.3 * ((i + 4) % 11)
+        CounterMap<String> expected = new CounterMap<>();
+        double total = 0.0;
+        for (int i = 0; i < 10; ++i) {
+            int weight = (i + 4) % 11;
+            total += 0.3 * weight;
+            if (weight > 0) {
+                expected.add("word-" + i, weight);
+            }
+        }
+        assertEquals(total, testMe.getTotalWeight(), 1e-9);
+        WordGeneratorTestUtils.testWeightedGenerator(testMe, expected);
+    }
+
+    /** Words can be added while other threads generate words. */
+    @Test
+    public void concurrentAddTest() throws InterruptedException {
+        DynamicWeightedWordGenerator testMe = new DynamicWeightedWordGenerator("concurrentAdd");
+        WordGeneratorTestUtils.testConcurrentAdds(testMe, 20_000);
+        assertEquals(20_000, testMe.getNumWords());
+    }
+
+
+    @Test
+    public void streamTest() {
+        DynamicWeightedWordGenerator testMe = new DynamicWeightedWordGenerator("stream");
+        Set<String> words = new HashSet<>();
+        for (int i = 0; i < 50; ++i) {
+            testMe.addWord("word-" + i, 1 + (i % 3));
+            words.add("word-" + i);
+        }
+        WordGeneratorTestUtils.testWordStream(testMe, words);
+    }
+
+}
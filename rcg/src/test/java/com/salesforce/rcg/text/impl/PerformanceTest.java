@@ -5,14 +5,27 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.LongStream;
 
+import org.junit.Assume;
 import org.junit.Test;
 
+import com.salesforce.rcg.numbers.dice.DiceExpression;
+import com.salesforce.rcg.numbers.dice.impl.SimpleDie;
 import com.salesforce.rcg.text.ExtensibleWordGenerator;
+import com.salesforce.rcg.text.WeightedSamplingMode;
 
 /** Performance tests for word generators. These tests are experimental and will 
  * not cause unit test failures.
  * 
+ * They're quick looks, printed for a developer to read. Timings belong in
+ * the JMH benchmarks of the rcg-benchmarks module, and the check against
+ * performance regressions is its <tt>regression</tt> profile, which compares
+ * them against a checked-in baseline; see <tt>docs/index.md</tt>. The stream
+ * scaling and heap footprint tests only run when asked for, with
+ * <tt>-Drcg.perfTests=true</tt>.
+ * 
  * @author mpreslermarshall
  *
  */
@@ -25,9 +38,17 @@ public class PerformanceTest {
     /** Number of words we'll seed each word generator with. */
     public static final int NUM_WORDS = 20_000;
     
+    /** Number of words used for the heap footprint comparison - roughly the
+     * size of the 2010 census surname list.
+     */
+    public static final int FOOTPRINT_WORDS = 160_000;
+    
     static final DecimalFormat df0 = new DecimalFormat("#,##0");
     static final DecimalFormat df1 = new DecimalFormat("#,##0.0");
     static final DecimalFormat dfp = new DecimalFormat("0.0%");
+    
+    /** Whether to run the slower tests, which only print their results. */
+    static final boolean RUN_PERF_TESTS = Boolean.getBoolean("rcg.perfTests");
 
 
     /** Performance test: weighted generator vs. unweighted generator (why do I
@@ -42,6 +63,8 @@ public class PerformanceTest {
      * the host system when this build is happening - so the results might be badly 
      * skewed by that other activity. Instead we print results to stdout, and
      * let the developer see, when they choose to check, what the difference is. 
+     * The regression gate in rcg-benchmarks covers the same comparison with
+     * warmup, forking and a baseline.
      * 
      */
     @Test
@@ -149,4 +172,138 @@ public class PerformanceTest {
             return(true);
         }
     }
+    
+    /** Scaling test: how does the throughput of a parallel word stream, and a
+     * parallel stream of dice rolls, change with the number of threads? Each
+     * part of a parallel stream has its own random number generator, so this
+     * ought to scale with the number of cores. For comparison, the same number
+     * of threads each call generateWord on a generator that shares one Random.
+     * As with the other tests here, this only reports the results.
+     */
+    @Test
+    public void streamScalingPerfTest() throws Exception {
+        Assume.assumeTrue(RUN_PERF_TESTS);
+        final long NUM_GENERATED = 4_000_000L;
+        
+        WeightedWordGenerator generator = new WeightedWordGenerator("scaling");
+        for (int i = 0; i < NUM_WORDS; ++i) {
+            generator.addWord("word-" + i, 1 + (i % 10));
+        }
+        DiceExpression dice = new SimpleDie(3, 6, 2);
+        
+        System.out.println("*** Stream scaling performance test: " + df0.format(NUM_GENERATED) 
+                + " words (or rolls) per run, millions per second:");
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                // Warm up, then time
+                double wordRate = 0.0;
+                double rollRate = 0.0;
+                double sharedRate = 0.0;
+                for (int run = 0; run < 2; ++run) {
+                    long start = System.nanoTime();
+                    pool.submit(() -> generator.words().parallel().limit(NUM_GENERATED)
+                            .mapToInt(String::length).sum()).get();
+                    long middle = System.nanoTime();
+                    pool.submit(() -> dice.rolls().parallel().limit(NUM_GENERATED).sum()).get();
+                    long end = System.nanoTime();
+                    pool.submit(() -> LongStream.range(0L, NUM_GENERATED).parallel()
+                            .map(i -> generator.generateWord().length()).sum()).get();
+                    long shared = System.nanoTime();
+                    
+                    wordRate = NUM_GENERATED * 1_000.0 / (middle - start);
+                    rollRate = NUM_GENERATED * 1_000.0 / (end - middle);
+                    sharedRate = NUM_GENERATED * 1_000.0 / (shared - end);
+                }
+                System.out.println("    " + threads + " thread(s): words() " + df1.format(wordRate)
+                        + ", rolls() " + df1.format(rollRate)
+                        + ", shared Random " + df1.format(sharedRate) + ".");
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+    
+    /** Heap footprint test: how much memory does a weighted word list take in
+     * the old one-object-per-word layout (a List of WeightedItems), compared
+     * to the compiled WeightedWordGenerator, which keeps parallel primitive arrays?
+     * The generator is measured with both sampling modes, since the alias table
+     * is extra data on top of the cumulative weights.
+     * 
+     * As with the timing tests above, this only reports the numbers. Heap
+     * measurements taken from inside the JVM are approximate at best.
+     */
+    @Test
+    public void weightedWordGeneratorFootprintTest() {
+        Assume.assumeTrue(RUN_PERF_TESTS);
+        // The words themselves are shared by all the layouts, so build them
+        // first and leave them out of the comparison.
+        String[] words = new String[FOOTPRINT_WORDS];
+        for (int i = 0; i < FOOTPRINT_WORDS; ++i) {
+            words[i] = "word-" + i;
+        }
+        
+        long before = usedHeap();
+        List<WeightedItem<String>> items = new ArrayList<>();
+        double cumulative = 0.0;
+        for (int i = 0; i < FOOTPRINT_WORDS; ++i) {
+            WeightedItem<String> item = new WeightedItem<>(words[i], 1 + (i % 100));
+            item.setCumulativeWeightLow(cumulative);
+            cumulative += item.getWeight();
+            items.add(item);
+        }
+        long itemBytes = usedHeap() - before;
+        
+        before = usedHeap();
+        WeightedWordGenerator search = buildFootprintGenerator(words, WeightedSamplingMode.BINARY_SEARCH);
+        long searchBytes = usedHeap() - before;
+        
+        before = usedHeap();
+        WeightedWordGenerator alias = buildFootprintGenerator(words, WeightedSamplingMode.ALIAS);
+        long aliasBytes = usedHeap() - before;
+        
+        System.out.println("*** Weighted word list heap footprint, " + df0.format(FOOTPRINT_WORDS) + " words (excluding the strings):");
+        reportFootprint("List<WeightedItem>:             ", itemBytes);
+        reportFootprint("WeightedWordGenerator (search): ", searchBytes);
+        reportFootprint("WeightedWordGenerator (alias):  ", aliasBytes);
+        
+        // Keep everything reachable until we've measured it.
+        if (items.size() + search.getNumWords() + alias.getNumWords() + words.length == 0) {
+            System.out.println("Unreachable");
+        }
+    }
+    
+    private WeightedWordGenerator buildFootprintGenerator(String[] words, WeightedSamplingMode mode) {
+        WeightedWordGenerator generator = new WeightedWordGenerator("footprint").setSamplingMode(mode);
+        for (int i = 0; i < words.length; ++i) {
+            generator.addWord(words[i], 1 + (i % 100));
+        }
+        // Compile the weights
+        generator.generateWord();
+        return(generator);
+    }
+    
+    private void reportFootprint(String label, long bytes) {
+        System.out.println("    " + label + df0.format(bytes) + " bytes ("
+                + df1.format(bytes / (double) FOOTPRINT_WORDS) + " per word).");
+    }
+    
+    /** Get the approximate amount of heap in use. This keeps asking for a GC
+     * until the number stops going down, so that garbage left behind by other
+     * tests doesn't get counted.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; ++i) {
+            System.gc();
+            long current = runtime.totalMemory() - runtime.freeMemory();
+            if (current >= used) {
+                break;
+            }
+            used = current;
+        }
+        return(used);
+    }
 }
@@ -5,6 +5,8 @@ import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
+import com.salesforce.rcg.util.AllocationTestUtils;
+
 public class SingleWordGeneratorTest {
     @Test
     public void basicTest() {
@@ -46,4 +48,10 @@ public class SingleWordGeneratorTest {
         // Trying to set the word will fail with some kind of exception
         example.setWord("Speak clearly");
     }
+
+    @Test
+    public void allocationFreeTest() {
+        SingleWordGenerator example = new SingleWordGenerator("allocationFree", "Mumble");
+        AllocationTestUtils.assertAllocationFree("SingleWordGenerator.generateWord", example::generateWord);
+    }
 }
@@ -1,7 +1,14 @@
 package com.salesforce.rcg.text.impl;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashSet;
+import java.util.Set;
+
 import org.junit.Test;
 
+import com.salesforce.rcg.util.AllocationTestUtils;
 import com.salesforce.rcg.util.CounterMap;
 
 public class UnweightedWordGeneratorTest {
@@ -41,6 +48,59 @@ public class UnweightedWordGeneratorTest {
             WordGeneratorTestUtils.testWeightedGenerator(generator, expected);
         }
     }
+    
+    /** Words can be added while other threads generate words. */
+    @Test
+    public void concurrentAddTest() throws InterruptedException {
+        UnweightedWordGenerator testMe = new UnweightedWordGenerator("concurrentAdd");
+        WordGeneratorTestUtils.testConcurrentAdds(testMe, 20_000);
+        assertEquals(20_000, testMe.getNumWords());
+    }
+    
+    /** Generating a word never waits for the writers' lock, even when there are
+     * new words that haven't been generated from yet.
+     */
+    @Test
+    public void readerDoesNotLockTest() throws InterruptedException {
+        UnweightedWordGenerator testMe = new UnweightedWordGenerator("readerDoesNotLock");
+        testMe.addWord("first");
+        testMe.generateWord();
+        testMe.addWord("second");
+        WordGeneratorTestUtils.testReaderDoesNotLock(testMe);
+    }
+    
+    /** Generating a batch of words gives the same words as generating them
+     * one at a time.
+     */
+    @Test
+    public void batchTest() {
+        UnweightedWordGenerator testMe = new UnweightedWordGenerator("batch");
+        String[] empty = testMe.generateWords(3);
+        assertArrayEquals(new String[3], empty);
+        
+        for (int i = 0; i < 100; ++i) {
+            testMe.addWord("word-" + i);
+        }
+        WordGeneratorTestUtils.testBatchGeneration(testMe);
+    }
+    
+    @Test
+    public void streamTest() {
+        UnweightedWordGenerator testMe = new UnweightedWordGenerator("stream");
+        Set<String> words = new HashSet<>();
+        for (int i = 0; i < 50; ++i) {
+            testMe.addWord("word-" + i);
+            words.add("word-" + i);
+        }
+        WordGeneratorTestUtils.testWordStream(testMe, words);
+    }
 
-
+    @Test
+    public void allocationFreeTest() {
+        UnweightedWordGenerator testMe = new UnweightedWordGenerator("allocationFree");
+        for (int i = 0; i < 1000; ++i) {
+            testMe.addWord("word-" + i);
+        }
+        AllocationTestUtils.assertAllocationFree("UnweightedWordGenerator.generateWord", testMe::generateWord);
+    }
 }
@@ -1,13 +1,22 @@
 package com.salesforce.rcg.text.impl;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Random;
+import java.util.Set;
 
 import org.junit.Test;
 
+import com.salesforce.rcg.metrics.MetricsSnapshot;
+import com.salesforce.rcg.random.impl.ThreadLocalRandomSource;
+import com.salesforce.rcg.text.WeightedSamplingMode;
+import com.salesforce.rcg.util.AllocationTestUtils;
 import com.salesforce.rcg.util.CounterMap;
 
 public class WeightedWordGeneratorTest {
@@ -154,4 +163,257 @@ public class WeightedWordGeneratorTest {
         WordGeneratorTestUtils.testWeightedGenerator(generator, expected);
     }
     
+    /** The binary search is still available as a fallback, and should produce
+     * the same distribution as the (default) alias table.
+     */
+    @Test
+    public void binarySearchModeTest() {
+        WeightedWordGenerator testMe = new WeightedWordGenerator("binarySearchMode");
+        assertEquals(WeightedSamplingMode.ALIAS, testMe.getSamplingMode());
+        testMe.setSamplingMode(WeightedSamplingMode.BINARY_SEARCH);
+        assertEquals(WeightedSamplingMode.BINARY_SEARCH, testMe.getSamplingMode());
+        
+        testMe.addWord("low", 5.0);
+        testMe.addWord("medium", 25.0);
+        testMe.addWord("high", 70.0);   
+        
+        CounterMap<String> expected = new CounterMap<>();
+        expected.add("low", 5);
+        expected.add("medium", 25);
+        expected.add("high", 70);
+        
+        WordGeneratorTestUtils.testWeightedGenerator(testMe, expected);
+    }
+    
+    /** Generating a batch of words gives the same words as generating them
+     * one at a time, in every sampling mode and with either kind of weights.
+     */
+    @Test
+    public void batchTest() {
+        for (WeightedSamplingMode mode: WeightedSamplingMode.values()) {
+            WeightedWordGenerator whole = new WeightedWordGenerator("batch-whole").setSamplingMode(mode);
+            WeightedWordGenerator fractional = new WeightedWordGenerator("batch-fractional").setSamplingMode(mode);
+            assertArrayEquals(new String[2], whole.generateWords(2));
+            for (int i = 0; i < 100; ++i) {
+                whole.addWord("word-" + i, 1 + (i % 7));
+                fractional.addWord("word-" + i, 0.5 + (i % 7));
+            }
+            assertTrue(whole.hasExactCounts());
+            assertFalse(fractional.hasExactCounts());
+            WordGeneratorTestUtils.testBatchGeneration(whole);
+            WordGeneratorTestUtils.testBatchGeneration(fractional);
+        }
+    }
+    
+    /** With an alias table, every word takes exactly one probe, no matter how
+     * many words are in the generator. The binary search needs more probes as
+     * the generator grows.
+     */
+    @Test
+    public void constantTimeProbesTest() {
+        final int NUM_WORDS = 100_000;
+        final int NUM_GENERATED = 10_000;
+        
+        WeightedWordGenerator alias = new WeightedWordGenerator("alias");
+        WeightedWordGenerator search = new WeightedWordGenerator("search")
+                .setSamplingMode(WeightedSamplingMode.BINARY_SEARCH);
+        alias.setMetricsEnabled(true);
+        search.setMetricsEnabled(true);
+        for (int i = 0; i < NUM_WORDS; ++i) {
+            alias.addWord("word-" + i, 1 + (i % 17));
+            search.addWord("word-" + i, 1 + (i % 17));
+        }
+        
+        for (int i = 0; i < NUM_GENERATED; ++i) {
+            alias.generateWord();
+            search.generateWord();
+        }
+        
+        assertEquals(NUM_GENERATED, alias.getNumWordsGenerated());
+        assertEquals(NUM_GENERATED, alias.getNumProbes());
+        
+        // A binary search halves the range ceil(log2(100,000)) = 17 times,
+        // and looks at one entry each time plus the one it ends on.
+        assertEquals(NUM_GENERATED, search.getNumWordsGenerated());
+        assertEquals(18L * NUM_GENERATED, search.getNumProbes());
+    }
+    
+    /** The probes counted for a search are one per halving of the range,
+     * plus one, whichever way the search goes, and batches count the same
+     * as single words.
+     */
+    @Test
+    public void searchProbesTest() {
+        int[] sizes = { 1, 2, 3, 4, 5, 1000, 1024, 1025 };
+        int[] expected = { 1, 2, 3, 3, 4, 11, 11, 12 };
+        for (int i = 0; i < sizes.length; ++i) {
+            WeightedWordGenerator exact = new WeightedWordGenerator("exact")
+                    .setSamplingMode(WeightedSamplingMode.BINARY_SEARCH);
+            WeightedWordGenerator fractional = new WeightedWordGenerator("fractional")
+                    .setSamplingMode(WeightedSamplingMode.BINARY_SEARCH);
+            for (int w = 0; w < sizes[i]; ++w) {
+                exact.addWord("word-" + w, 1 + (w % 7));
+                fractional.addWord("word-" + w, 0.5 + (w % 7));
+            }
+            for (WeightedWordGenerator generator: Arrays.asList(exact, fractional)) {
+                generator.setMetricsEnabled(true);
+                for (int n = 0; n < 100; ++n) {
+                    generator.generateWord();
+                }
+                generator.generateWords(100);
+                assertEquals(generator.getName() + " with " + sizes[i] + " words",
+                        200L * expected[i], generator.getNumProbes());
+                assertEquals(200L, generator.getNumWordsGenerated());
+            }
+        }
+    }
+    
+    /** Metrics count from many threads at once without losing any, which
+     * the plain counters they replaced couldn't do.
+     */
+    @Test
+    public void threadedMetricsTest() throws Exception {
+        final int NUM_THREADS = 4;
+        final int PER_THREAD = 50_000;
+        WeightedWordGenerator testMe = new WeightedWordGenerator("threaded", ThreadLocalRandomSource.INSTANCE);
+        for (int i = 0; i < 1000; ++i) {
+            testMe.addWord("word-" + i, 1 + (i % 7));
+        }
+        testMe.compile();
+        assertEquals(0L, testMe.getNumWordsGenerated());
+        testMe.setMetricsEnabled(true);
+        
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int t = 0; t < NUM_THREADS; ++t) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < PER_THREAD; ++i) {
+                    testMe.generateWord();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread: threads) {
+            thread.join();
+        }
+        
+        MetricsSnapshot snapshot = testMe.getMetrics().snapshot();
+        assertEquals((long) NUM_THREADS * PER_THREAD, snapshot.getGenerated());
+        assertEquals((long) NUM_THREADS * PER_THREAD, snapshot.getProbes());
+        assertEquals(0L, snapshot.getRecompiles());
+        assertTrue(snapshot.getNumLatencies() > 0L);
+        assertTrue(snapshot.getNumLatencies() < snapshot.getGenerated());
+    }
+    
+    /** Switching modes after words have been added, and adding words after
+     * the table has been built, both take effect on the next word generated.
+     */
+    @Test
+    public void recompileTest() {
+        WeightedWordGenerator testMe = new WeightedWordGenerator("recompile");
+        testMe.addWord("only", 50);
+        assertEquals("only", testMe.generateWord());
+        
+        testMe.setSamplingMode(WeightedSamplingMode.BINARY_SEARCH);
+        assertEquals("only", testMe.generateWord());
+        
+        testMe.setSamplingMode(WeightedSamplingMode.ALIAS);
+        testMe.addWord("zero", 0.0);
+        testMe.addWord("other", 50.0);
+        
+        // Big weights, so that enough words are generated to tell 50/50
+        // from anything else
+        CounterMap<String> expected = new CounterMap<>();
+        expected.add("only", 50);
+        expected.add("other", 50);
+        WordGeneratorTestUtils.testWeightedGenerator(testMe, expected);
+    }
+    
+    /** Whole-number weights are compiled as exact counts; anything else falls
+     * back to doubles. Either way the distribution should be the same.
+     */
+    @Test
+    public void exactCountsTest() {
+        WeightedWordGenerator counts = new WeightedWordGenerator("counts")
+                .setSamplingMode(WeightedSamplingMode.BINARY_SEARCH);
+        counts.addWord("low", 5.0);
+        counts.addWord("nope", 0.0);
+        counts.addWord("medium", 25.0);
+        counts.addWord("high", 70.0);
+        assertTrue(counts.hasExactCounts());
+        
+        WeightedWordGenerator fractions = new WeightedWordGenerator("fractions")
+                .setSamplingMode(WeightedSamplingMode.BINARY_SEARCH);
+        fractions.addWord("low", 0.5);
+        fractions.addWord("nope", 0.0);
+        fractions.addWord("medium", 2.5);
+        fractions.addWord("high", 7.0);
+        assertFalse(fractions.hasExactCounts());
+        
+        CounterMap<String> expected = new CounterMap<>();
+        expected.add("low", 5);
+        expected.add("medium", 25);
+        expected.add("high", 70);
+        WordGeneratorTestUtils.testWeightedGenerator(counts, expected);
+        WordGeneratorTestUtils.testWeightedGenerator(fractions, expected);
+        
+        // Adding a fractional weight switches the compiled form over.
+        counts.addWord("fraction", 0.25);
+        assertFalse(counts.hasExactCounts());
+    }
+    
+    /** Words can be added while other threads generate words. */
+    @Test
+    public void concurrentAddTest() throws InterruptedException {
+        WeightedWordGenerator testMe = new WeightedWordGenerator("concurrentAdd");
+        WordGeneratorTestUtils.testConcurrentAdds(testMe, 20_000);
+        assertEquals(20_000, testMe.getNumWords());
+    }
+    
+    /** Generating a word never waits for the writers' lock, even when there are
+     * new words that haven't been generated from yet.
+     */
+    @Test
+    public void readerDoesNotLockTest() throws InterruptedException {
+        WeightedWordGenerator testMe = new WeightedWordGenerator("readerDoesNotLock");
+        testMe.addWord("first");
+        testMe.generateWord();
+        testMe.addWord("second");
+        WordGeneratorTestUtils.testReaderDoesNotLock(testMe);
+    }
+
+    @Test
+    public void streamTest() {
+        for (WeightedSamplingMode mode: WeightedSamplingMode.values()) {
+            WeightedWordGenerator testMe = new WeightedWordGenerator("stream").setSamplingMode(mode);
+            Set<String> words = new HashSet<>();
+            for (int i = 0; i < 50; ++i) {
+                testMe.addWord("word-" + i, 1 + (i % 3));
+                words.add("word-" + i);
+            }
+            testMe.addWord("never", 0.0);
+            WordGeneratorTestUtils.testWordStream(testMe, words);
+        }
+    }
+
+    /** Once the weights are compiled, generating a word allocates nothing,
+     * whichever way the generator samples, and whether the weights are
+     * whole numbers or not.
+     */
+    @Test
+    public void allocationFreeTest() {
+        for (WeightedSamplingMode mode: WeightedSamplingMode.values()) {
+            WeightedWordGenerator counts = new WeightedWordGenerator("counts").setSamplingMode(mode);
+            WeightedWordGenerator fractions = new WeightedWordGenerator("fractions").setSamplingMode(mode);
+            for (int i = 0; i < 1000; ++i) {
+                counts.addWord("word-" + i, 1 + (i % 7));
+                fractions.addWord("word-" + i, 1.0 / (i + 1));
+            }
+            counts.compile();
+            fractions.compile();
+            AllocationTestUtils.assertAllocationFree("WeightedWordGenerator.generateWord (" + mode.getName()
+                    + ", counts)", counts::generateWord);
+            AllocationTestUtils.assertAllocationFree("WeightedWordGenerator.generateWord (" + mode.getName()
+                    + ", fractions)", fractions::generateWord);
+        }
+    }
 }
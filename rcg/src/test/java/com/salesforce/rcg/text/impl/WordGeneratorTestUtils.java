@@ -1,14 +1,28 @@
 package com.salesforce.rcg.text.impl;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 import java.text.DecimalFormat;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
+import com.salesforce.rcg.random.RandomSource;
+import com.salesforce.rcg.random.impl.Xoshiro256StarStarSource;
+import com.salesforce.rcg.text.ExtensibleWordGenerator;
 import com.salesforce.rcg.text.TextCasing;
 import com.salesforce.rcg.text.WordGenerator;
 import com.salesforce.rcg.text.WordGeneratorType;
@@ -68,7 +82,7 @@ public class WordGeneratorTestUtils {
             assertEquals("Weight for word '" + expectedWord + "'", expectedRelativeWeight, actualRelativeWeight, 0.01);            
         }
         
-        if (generator instanceof WeightedWordGenerator) {
+        if ((generator instanceof WeightedWordGenerator) && (generator.getMetrics() != null)) {
             WeightedWordGenerator wwg = (WeightedWordGenerator) generator;
             double probesPerWord = ((double) wwg.getNumProbes() / (double) wwg.getNumWordsGenerated());
             DecimalFormat df2 = new DecimalFormat("0.00");
@@ -175,6 +189,139 @@ public class WordGeneratorTestUtils {
         Random r = new Random();
         testMe.setRng(r);
         assertEquals(r, testMe.getRng());
+        
+        RandomSource source = new Xoshiro256StarStarSource(5L);
+        testMe.setRandomSource(source);
+        assertSame(source, testMe.getRandomSource());
+        assertNotNull(testMe.getRng());
+    }
+
+    /** Add words to a generator while several other threads are generating
+     * words from it. Every word generated must be one that was added - never
+     * null, and never garbage from a half-built table.
+     * 
+     * @param testMe The generator to test. It should be empty.
+     * @param numWords The number of words to add while the readers are running.
+     */
+    public static void testConcurrentAdds(ExtensibleWordGenerator testMe, int numWords) 
+            throws InterruptedException {
+        final int NUM_READERS = 8;
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        
+        testMe.addWord("word-0");
+        Thread[] readers = new Thread[NUM_READERS];
+        for (int i = 0; i < NUM_READERS; ++i) {
+            readers[i] = new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        String word = testMe.generateWord();
+                        if ((word == null) || !word.startsWith("word-")
+                                || (Integer.parseInt(word.substring(5)) >= numWords)) {
+                            failure.compareAndSet(null, "Generated an unexpected word: " + word);
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, "Generating a word threw " + t);
+                }
+            });
+            readers[i].start();
+        }
+        
+        for (int i = 1; i < numWords; ++i) {
+            testMe.addWord("word-" + i, 1 + (i % 5));
+        }
+        done.set(true);
+        for (Thread reader: readers) {
+            reader.join();
+        }
+        
+        assertNull(failure.get());
+    }
+    
+    /** Verify that generating a word doesn't need the lock that writers use.
+     * This holds the generator's monitor while another thread generates a word.
+     * 
+     * @param testMe The generator to test. Words should have been added to it
+     *     since the last word was generated, so that it has to deal with that.
+     */
+    public static void testReaderDoesNotLock(WordGenerator testMe) throws InterruptedException {
+        final AtomicReference<String> result = new AtomicReference<>();
+        Thread reader = new Thread(() -> result.set(testMe.generateWord()));
+        
+        synchronized(testMe) {
+            reader.start();
+            reader.join(10_000L);
+            assertFalse("generateWord blocked on the generator's lock", reader.isAlive());
+        }
+        assertNotNull(result.get());
+    }
+
+    /** Verify that generating words in a batch gives exactly the same words as
+     * generating them one at a time with the same random number generator.
+     * 
+     * @param testMe The generator to test. It should have some words in it.
+     */
+    public static void testBatchGeneration(WordGenerator testMe) {
+        final int NUM_WORDS = 10_000;
+        final long SEED = 20180417L;
+        
+        testMe.setRng(new Random(SEED));
+        String[] expected = new String[NUM_WORDS];
+        for (int i = 0; i < NUM_WORDS; ++i) {
+            expected[i] = testMe.generateWord();
+        }
+        
+        testMe.setRng(new Random(SEED));
+        assertArrayEquals(expected, testMe.generateWords(NUM_WORDS));
+        
+        // Filling part of an array must leave the rest alone
+        testMe.setRng(new Random(SEED));
+        String[] partial = new String[NUM_WORDS + 2];
+        partial[0] = "before";
+        partial[NUM_WORDS + 1] = "after";
+        testMe.generateWords(partial, 1, NUM_WORDS);
+        assertEquals("before", partial[0]);
+        assertEquals("after", partial[NUM_WORDS + 1]);
+        assertArrayEquals(expected, Arrays.copyOfRange(partial, 1, NUM_WORDS + 1));
+        
+        assertEquals(0, testMe.generateWords(0).length);
+        try {
+            testMe.generateWords(partial, NUM_WORDS, 3);
+            fail("Generating past the end of the array should have failed");
+        } catch (IndexOutOfBoundsException expectedException) {
+            // Expected
+        }
+        try {
+            testMe.generateWords(null, 0, 0);
+            fail("Generating into a null array should have failed");
+        } catch (IllegalArgumentException expectedException) {
+            // Expected
+        }
+    }
+
+    /** Verify the word streams from a generator: they have the requested size,
+     * contain only the generator's words, are repeatable when the generator's
+     * Random is seeded, and work in parallel.
+     * 
+     * @param testMe The generator to test
+     * @param expectedWords Every word the generator can generate
+     */
+    public static void testWordStream(WordGenerator testMe, Set<String> expectedWords) {
+        final int NUM_WORDS = 100_000;
+        
+        testMe.setRng(new Random(1234L));
+        List<String> first = testMe.words(NUM_WORDS).collect(Collectors.toList());
+        assertEquals(NUM_WORDS, first.size());
+        assertEquals(expectedWords, new HashSet<>(first));
+        
+        testMe.setRng(new Random(1234L));
+        assertEquals(first, testMe.words().limit(NUM_WORDS).collect(Collectors.toList()));
+        
+        Set<String> parallel = testMe.words().parallel().limit(NUM_WORDS)
+                .collect(Collectors.toCollection(() -> Collections.newSetFromMap(new ConcurrentHashMap<>())));
+        assertEquals(expectedWords, parallel);
+        assertEquals(NUM_WORDS, testMe.words(NUM_WORDS).parallel().count());
     }
 
 }
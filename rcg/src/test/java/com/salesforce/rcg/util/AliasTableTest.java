@@ -0,0 +1,73 @@
+package com.salesforce.rcg.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AliasTableTest {
+
+    @Test
+    public void singleOutcomeTest() {
+        AliasTable table = new AliasTable(new double[] {3.0});
+        assertEquals(1, table.size());
+
+        // There's only one thing it can return, whatever the input.
+        assertEquals(0, table.sample(0.0));
+        assertEquals(0, table.sample(0.5));
+        assertEquals(0, table.sample(0.9999999));
+    }
+
+    /** Sample across the whole [0, 1) range in even steps. Since each column
+     * of the table covers an equal slice of that range, this gives the exact
+     * distribution of the table (up to the step size), without any randomness.
+     */
+    @Test
+    public void exactDistributionTest() {
+        double weights[] = {5.0, 25.0, 70.0, 0.0, 100.0};
+        AliasTable table = new AliasTable(weights);
+        assertEquals(weights.length, table.size());
+
+        final int STEPS = 1_000_000;
+        int counts[] = new int[weights.length];
+        for (int i = 0; i < STEPS; ++i) {
+            ++counts[table.sample(i / (double) STEPS)];
+        }
+
+        assertEquals(0.025, counts[0] / (double) STEPS, 0.0001);
+        assertEquals(0.125, counts[1] / (double) STEPS, 0.0001);
+        assertEquals(0.350, counts[2] / (double) STEPS, 0.0001);
+        assertEquals(0.500, counts[4] / (double) STEPS, 0.0001);
+        // A zero weight is never picked.
+        assertEquals(0, counts[3]);
+    }
+
+    @Test
+    public void countTest() {
+        // Only the first two weights should be used.
+        AliasTable table = new AliasTable(new double[] {1.0, 1.0, 1000.0}, 2);
+        assertEquals(2, table.size());
+
+        Random rng = new Random();
+        for (int i = 0; i < 1000; ++i) {
+            assertFalse(table.sample(rng.nextDouble()) == 2);
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void negativeWeightTest() {
+        new AliasTable(new double[] {1.0, -1.0});
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void zeroWeightTest() {
+        new AliasTable(new double[] {0.0, 0.0});
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void emptyTest() {
+        new AliasTable(new double[0]);
+    }
+}
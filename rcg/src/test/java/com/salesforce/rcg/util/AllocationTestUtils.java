@@ -0,0 +1,133 @@
+package com.salesforce.rcg.util;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+import org.junit.Assume;
+
+/** Utility methods for checking that code doesn't allocate, using the
+ * HotSpot count of the bytes each thread has allocated
+ * (<tt>com.sun.management.ThreadMXBean.getThreadAllocatedBytes</tt>).
+ *
+ * Each check runs the code enough times for the JIT to compile it first,
+ * since the interpreter allocates things the compiled code doesn't, then
+ * counts the bytes allocated over many more calls. Reading the count
+ * allocates a little itself; that's measured and taken off. What's left is
+ * averaged over the calls, so a fixed allocation somewhere in the run (the
+ * JVM resizing something, say) doesn't count, but anything allocated on
+ * every call - which is at least 16 bytes - does.
+ *
+ * @author mpreslermarshall
+ *
+ */
+public class AllocationTestUtils {
+    /** Calls made before measuring, so that the code is compiled. */
+    public static final int WARMUP_CALLS = 50_000;
+
+    /** Calls measured. */
+    public static final int MEASURED_CALLS = 100_000;
+
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    /** Where results go, so the JIT can't throw the calls away. */
+    private static volatile Object objectSink;
+    private static volatile int intSink;
+
+    private static com.sun.management.ThreadMXBean threads() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return(null);
+        }
+        com.sun.management.ThreadMXBean result = (com.sun.management.ThreadMXBean) threads;
+        if (!result.isThreadAllocatedMemorySupported()) {
+            return(null);
+        }
+        if (!result.isThreadAllocatedMemoryEnabled()) {
+            result.setThreadAllocatedMemoryEnabled(true);
+        }
+        return(result);
+    }
+
+    /** Check whether this JVM can count allocated bytes. */
+    public static boolean isSupported() {
+        return(THREADS != null);
+    }
+
+    /** Get the number of bytes the current thread has allocated so far. */
+    public static long allocatedBytes() {
+        return(THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()));
+    }
+
+    /** Get the bytes allocated by reading the count itself: the smallest of
+     * a few tries, as the first can include one-off setup.
+     */
+    private static long measurementOverhead() {
+        long[] tries = new long[5];
+        for (int i = 0; i < tries.length; ++i) {
+            long start = allocatedBytes();
+            tries[i] = allocatedBytes() - start;
+        }
+        Arrays.sort(tries);
+        return(tries[0]);
+    }
+
+    /** Get the average number of bytes allocated by each call of an object
+     * returning method, once it's compiled.
+     */
+    public static double bytesPerCall(Supplier<?> call) {
+        for (int i = 0; i < WARMUP_CALLS; ++i) {
+            objectSink = call.get();
+        }
+        long overhead = measurementOverhead();
+        long start = allocatedBytes();
+        for (int i = 0; i < MEASURED_CALLS; ++i) {
+            objectSink = call.get();
+        }
+        long allocated = allocatedBytes() - start - overhead;
+        return(Math.max(0L, allocated) / (double) MEASURED_CALLS);
+    }
+
+    /** Get the average number of bytes allocated by each call of an int
+     * returning method, once it's compiled.
+     */
+    public static double bytesPerIntCall(IntSupplier call) {
+        int sum = 0;
+        for (int i = 0; i < WARMUP_CALLS; ++i) {
+            sum += call.getAsInt();
+        }
+        long overhead = measurementOverhead();
+        long start = allocatedBytes();
+        for (int i = 0; i < MEASURED_CALLS; ++i) {
+            sum += call.getAsInt();
+        }
+        long allocated = allocatedBytes() - start - overhead;
+        intSink = sum;
+        return(Math.max(0L, allocated) / (double) MEASURED_CALLS);
+    }
+
+    /** Assert that a method allocates nothing per call. The test is skipped
+     * on JVMs that can't count allocations.
+     *
+     * @param what What's being called, for the failure message
+     */
+    public static void assertAllocationFree(String what, Supplier<?> call) {
+        Assume.assumeTrue(isSupported());
+        double bytes = bytesPerCall(call);
+        assertTrue(what + " allocated " + bytes + " bytes per call", bytes < 1.0);
+    }
+
+    /** Assert that an int returning method allocates nothing per call. The
+     * test is skipped on JVMs that can't count allocations.
+     *
+     * @param what What's being called, for the failure message
+     */
+    public static void assertIntAllocationFree(String what, IntSupplier call) {
+        Assume.assumeTrue(isSupported());
+        double bytes = bytesPerIntCall(call);
+        assertTrue(what + " allocated " + bytes + " bytes per call", bytes < 1.0);
+    }
+}